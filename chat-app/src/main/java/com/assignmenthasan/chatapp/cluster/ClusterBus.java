@@ -0,0 +1,43 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * אפיק הודעות בין שרתים
+ * כל שרת נרשם עם המזהה שלו ומקבל רק מעטפות שנשלחו אליו
+ */
+public interface ClusterBus {
+
+    /**
+     * רושמת את השרת הנוכחי לקבלת מעטפות
+     * @param nodeId מזהה השרת
+     * @param inbound מטפל שנקרא לכל מעטפת שמגיעה
+     */
+    void subscribe(String nodeId, Consumer<ClusterEnvelope> inbound);
+
+    /**
+     * שולחת מעטפת לשרת אחר
+     * @param targetNode מזהה השרת המקבל
+     * @param envelope המעטפת
+     */
+    void publish(String targetNode, ClusterEnvelope envelope);
+
+    /**
+     * שולחת כמה מעטפות, בסדר הרשימה; מימוש יכול לאחד אותן לכתיבה אחת
+     * @param batch המעטפות ויעדיהן
+     */
+    default void publishAll(List<Addressed> batch) {
+        for (Addressed a : batch) publish(a.targetNode(), a.envelope());
+    }
+
+    /**
+     * מפסיקה לקבל מעטפות עבור השרת
+     * @param nodeId מזהה השרת
+     */
+    void unsubscribe(String nodeId);
+
+    /** מעטפת עם השרת שאליו היא נשלחת */
+    record Addressed(String targetNode, ClusterEnvelope envelope) {
+    }
+}
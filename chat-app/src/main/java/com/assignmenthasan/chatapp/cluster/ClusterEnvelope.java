@@ -0,0 +1,54 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * מעטפת של מסגרת שמועברת משרת לשרת
+ * המסגרת כבר מסודרת כטקסט, כך שהשרת המקבל רק מעביר אותה לחיבורים המקומיים
+ */
+@Data @AllArgsConstructor @NoArgsConstructor
+public class ClusterEnvelope {
+    /** השרת ששלח את המעטפת */
+    private String originNode;
+
+    /** המשתמש שאליו יש למסור את המסגרת */
+    private String targetUid;
+
+    /** תוכן המסגרת כפי שנשלח ללקוחות */
+    private String payload;
+
+    /** היכולת שחיבור צריך כדי לקבל את המסגרת (למשל receipts), או null לכל החיבורים */
+    private String capability;
+
+    /** בשידור לקבוצה: כל המשתמשים בשרת המקבל שצריכים את המסגרת (אז targetUid הוא null) */
+    private List<String> targetUids;
+
+    /** כשלא null: אין מסגרת למסור, רק הודעה שהחברים בקבוצה הזו השתנו ויש לטעון אותם מחדש */
+    private String changedGroup;
+
+    public ClusterEnvelope(String originNode, String targetUid, String payload) {
+        this(originNode, targetUid, payload, null);
+    }
+
+    public ClusterEnvelope(String originNode, String targetUid, String payload, String capability) {
+        this(originNode, targetUid, payload, capability, null);
+    }
+
+    public ClusterEnvelope(String originNode, String targetUid, String payload, String capability,
+                           List<String> targetUids) {
+        this(originNode, targetUid, payload, capability, targetUids, null);
+    }
+
+    /**
+     * @param originNode השרת ששלח
+     * @param groupId הקבוצה שהחברים בה השתנו
+     * @return מעטפה שמורה לשרת המקבל לזרוק את רשימת החברים של הקבוצה מהזיכרון
+     */
+    public static ClusterEnvelope groupChanged(String originNode, String groupId) {
+        return new ClusterEnvelope(originNode, null, null, null, null, groupId);
+    }
+}
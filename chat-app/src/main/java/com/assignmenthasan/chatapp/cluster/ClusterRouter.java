@@ -0,0 +1,443 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.ClusterProperties;
+import com.assignmenthasan.chatapp.ws.ChatFrame;
+import com.assignmenthasan.chatapp.ws.MessageCodec;
+import com.assignmenthasan.chatapp.ws.SessionRegistry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * ניתוב מסגרות בין שרתים
+ * מוסר קודם לחיבורים המקומיים דרך SessionRegistry, ואז שולח מעטפה לכל שרת אחר
+ * שמדריך הנוכחות מציין שהנמען או השולח מחוברים אליו.
+ * שום דבר כאן לא פונה למדריך או לאפיק על התהליכון של ה-WebSocket בכל הודעה: רשימת השרתים הפעילים
+ * מתרעננת ברקע (כשאין שרת אחר לא נשאל המדריך כלל), תשובות המדריך נשמרות לכל משתמש ל-presenceCacheTtl,
+ * והמעטפות נכתבות לאפיק מתהליכון נפרד, באצוות ולפי סדר השליחה.
+ */
+@Component
+public class ClusterRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterRouter.class);
+    private static final int PUBLISH_BATCH = 256;
+
+    private final SessionRegistry sessions;
+    private final PresenceDirectory presence;
+    private final ClusterBus bus;
+    private final ClusterProperties props;
+    private final MessageCodec codec;
+    private final ScheduledExecutorService heartbeat;
+
+    /** השרתים הפעילים מלבד הנוכחי, לפי הרענון האחרון */
+    private volatile Set<String> peers = Set.of();
+    /** תשובות המדריך לכל משתמש: השרתים האחרים שהוא מחובר אליהם */
+    private final ConcurrentHashMap<String, Cached> presenceCache = new ConcurrentHashMap<>();
+    /** נקראים כשהשרת עובר בין "יחיד" ל"יש שרתים נוספים" */
+    private final List<Runnable> peerListeners = new CopyOnWriteArrayList<>();
+    /** נקראים עם מזהה קבוצה כששרת אחר שינה את החברים בה */
+    private final List<Consumer<String>> groupListeners = new CopyOnWriteArrayList<>();
+
+    private final BlockingQueue<ClusterBus.Addressed> outbox;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final ExecutorService publisher;
+
+    private final Counter forwarded;
+    private final Counter received;
+    private final Counter presenceLookups;
+    private final Counter publishCallerRuns;
+    private final Counter publishFailed;
+    private final DistributionSummary broadcastRecipients;
+    private final Timer broadcastLatency;
+
+    /**
+     * בנאי המקבל את רישום החיבורים המקומי ואת מימוש הניתוב
+     * @param sessions רישום החיבורים בשרת הנוכחי
+     * @param presence מדריך הנוכחות
+     * @param bus האפיק בין שרתים
+     * @param props הגדרות הניתוב
+     * @param codec בונה מסגרות ממעטפות שהגיעו משרתים אחרים
+     * @param meterRegistry רישום מדדים
+     */
+    public ClusterRouter(SessionRegistry sessions, PresenceDirectory presence, ClusterBus bus,
+                         ClusterProperties props, MessageCodec codec, MeterRegistry meterRegistry) {
+        this.sessions = sessions;
+        this.presence = presence;
+        this.bus = bus;
+        this.props = props;
+        this.codec = codec;
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-cluster-hb-");
+        threads.setDaemon(true);
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(threads);
+        CustomizableThreadFactory publishThreads = new CustomizableThreadFactory("chat-cluster-pub-");
+        publishThreads.setDaemon(true);
+        this.publisher = Executors.newSingleThreadExecutor(publishThreads);
+        this.outbox = new ArrayBlockingQueue<>(props.getPublishQueueCapacity());
+        this.forwarded = Counter.builder("chat.cluster.forwarded").register(meterRegistry);
+        this.received = Counter.builder("chat.cluster.received").register(meterRegistry);
+        this.presenceLookups = Counter.builder("chat.cluster.presence.lookups")
+                .description("Presence directory queries for users not in the local cache").register(meterRegistry);
+        this.publishCallerRuns = Counter.builder("chat.cluster.publish.caller.runs")
+                .description("Envelopes published on the caller thread because the queue was full").register(meterRegistry);
+        this.publishFailed = Counter.builder("chat.cluster.publish.failed")
+                .description("Envelopes the bus did not accept").register(meterRegistry);
+        meterRegistry.gauge("chat.cluster.publish.queue.depth", outbox, BlockingQueue::size);
+        meterRegistry.gauge("chat.cluster.peers", this, r -> r.peers.size());
+        this.broadcastRecipients = DistributionSummary.builder("chat.groups.fanout.recipients")
+                .description("Members one group frame was addressed to").register(meterRegistry);
+        this.broadcastLatency = Timer.builder("chat.groups.fanout.latency")
+                .description("Time to hand one group frame to every member's writers and nodes").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        bus.subscribe(props.getNodeId(), this::onEnvelope);
+        refreshPeers();
+        if (!peers.isEmpty()) awaitPeersNoticed();
+        long period = props.getHeartbeatInterval().toMillis();
+        heartbeat.scheduleAtFixedRate(this::refreshPresence, period, period, TimeUnit.MILLISECONDS);
+        long peerPeriod = props.getPeerRefreshInterval().toMillis();
+        heartbeat.scheduleWithFixedDelay(this::refreshPeers, peerPeriod, peerPeriod, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdownNow();
+        publisher.shutdown();
+        try {
+            publisher.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        bus.unsubscribe(props.getNodeId());
+    }
+
+    /**
+     * @return מזהה השרת הנוכחי
+     */
+    public String nodeId() {
+        return props.getNodeId();
+    }
+
+    /**
+     * @return true כשאין שרת פעיל אחר, לפי הרענון האחרון
+     */
+    public boolean isSoleNode() {
+        return peers.isEmpty();
+    }
+
+    /**
+     * רושמת מטפל שנקרא (מתהליכון הרענון) כש-isSoleNode משתנה
+     * @param listener המטפל
+     */
+    public void onPeersChanged(Runnable listener) {
+        peerListeners.add(listener);
+    }
+
+    /**
+     * רושמת מטפל שנקרא (מתהליכון האפיק) כששרת אחר שינה את החברים בקבוצה
+     * @param listener המטפל, מקבל את מזהה הקבוצה
+     */
+    public void onGroupChanged(Consumer<String> listener) {
+        groupListeners.add(listener);
+    }
+
+    /**
+     * מודיעה לכל השרתים הפעילים האחרים שהחברים בקבוצה השתנו, כדי שלא ימשיכו לעבוד עם הרשימה הישנה
+     * @param groupId מזהה הקבוצה
+     */
+    public void groupChanged(String groupId) {
+        for (String node : peers) publish(node, ClusterEnvelope.groupChanged(props.getNodeId(), groupId));
+    }
+
+    /**
+     * נקראת אחרי שחיבור נרשם ב-SessionRegistry
+     * @param uid מזהה המשתמש
+     */
+    public void sessionOpened(String uid) {
+        presence.online(uid, props.getNodeId());
+    }
+
+    /**
+     * נקראת אחרי שחיבור הוסר מ-SessionRegistry
+     * אם זה היה החיבור האחרון של המשתמש בשרת, רשומת הנוכחות נמחקת.
+     * מירוץ עם חיבור חדש באותו רגע מתוקן בדופק הנוכחות הבא.
+     * @param uid מזהה המשתמש
+     */
+    public void sessionClosed(String uid) {
+        if (!sessions.isOnline(uid)) presence.offline(uid, props.getNodeId());
+    }
+
+    /**
+     * מעבירה הודעה לכל המכשירים של הנמען ושל השולח, בכל השרתים
+     * @param senderUid מזהה השולח
+     * @param receiverUid מזהה הנמען
+     * @param frame מסגרת שסודרה פעם אחת
+     */
+    public void route(String senderUid, String receiverUid, ChatFrame frame) {
+        sessions.deliver(senderUid, receiverUid, frame);
+
+        Map<String, Set<String>> remote = remoteNodesOf(List.of(receiverUid, senderUid));
+        forward(receiverUid, remote.get(receiverUid), frame);
+        forward(senderUid, remote.get(senderUid), frame);
+    }
+
+    /**
+     * מעבירה מסגרת לכל המכשירים של משתמש אחד, בכל השרתים
+     * @param uid מזהה המשתמש
+     * @param frame מסגרת שסודרה פעם אחת
+     */
+    public void sendToUser(String uid, ChatFrame frame) {
+        sendToUser(uid, frame, null);
+    }
+
+    /**
+     * מעבירה מסגרת לחיבורים של משתמש שהצהירו על יכולת, בכל השרתים
+     * @param uid מזהה המשתמש
+     * @param frame מסגרת שסודרה פעם אחת
+     * @param capability היכולת הנדרשת (למשל receipts), או null לכל החיבורים
+     * @return מספר החיבורים המקומיים והשרתים האחרים שהמסגרת נשלחה אליהם; 0 = המשתמש לא מחובר
+     */
+    public int sendToUser(String uid, ChatFrame frame, String capability) {
+        int sent = sessions.sendToUser(uid, frame, capability);
+        return sent + forward(uid, remoteNodesOf(List.of(uid)).get(uid), frame, capability);
+    }
+
+    /**
+     * מעבירה אותה מסגרת לקבוצת משתמשים עם שאילתת נוכחות אחת לכולם
+     * @param uids מזהי המשתמשים
+     * @param frame מסגרת שסודרה פעם אחת
+     * @param capability היכולת הנדרשת, או null לכל החיבורים
+     * @return מספר המשתמשים שהמסגרת נשלחה אליהם (מקומית או לשרת אחר)
+     */
+    public int sendToUsers(Collection<String> uids, ChatFrame frame, String capability) {
+        if (uids.isEmpty()) return 0;
+        Map<String, Set<String>> remote = remoteNodesOf(uids);
+        int reached = 0;
+        for (String uid : uids) {
+            int sent = sessions.sendToUser(uid, frame, capability);
+            sent += forward(uid, remote.get(uid), frame, capability);
+            if (sent > 0) reached++;
+        }
+        return reached;
+    }
+
+    /**
+     * שידור לקבוצה: אותה מסגרת (שסודרה פעם אחת לכל קידוד) נכנסת לתור של כל חיבור של כל חבר בשרת הזה,
+     * ולכל שרת אחר יוצאת מעטפה אחת עם רשימת החברים שמחוברים אליו – לא מעטפה לכל חבר.
+     * הכתיבה לסוקטים עצמה רצה במקביל על תהליכוני הכתיבה של החיבורים.
+     * @param members חברי הקבוצה, כולל השולח (ההודעה חוזרת למכשירים האחרים שלו)
+     * @param frame מסגרת שסודרה פעם אחת
+     */
+    public void broadcast(Collection<String> members, ChatFrame frame) {
+        long start = System.nanoTime();
+        for (String uid : members) sessions.sendToUser(uid, frame);
+
+        Map<String, List<String>> byNode = new HashMap<>();
+        for (Map.Entry<String, Set<String>> e : remoteNodesOf(members).entrySet()) {
+            for (String node : e.getValue()) byNode.computeIfAbsent(node, k -> new ArrayList<>()).add(e.getKey());
+        }
+        if (!byNode.isEmpty()) {
+            String payload = frame.text().getPayload();
+            for (Map.Entry<String, List<String>> e : byNode.entrySet()) {
+                publish(e.getKey(), new ClusterEnvelope(props.getNodeId(), null, payload, null, e.getValue()));
+            }
+        }
+        broadcastRecipients.record(members.size());
+        broadcastLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param uids מזהי משתמשים
+     * @return אלה מהם שמחוברים לשרת כלשהו
+     */
+    public Set<String> online(Collection<String> uids) {
+        Set<String> online = new HashSet<>(remoteNodesOf(uids).keySet());
+        for (String uid : uids) {
+            if (sessions.isOnline(uid)) online.add(uid);
+        }
+        return online;
+    }
+
+    private void forward(String uid, Set<String> nodes, ChatFrame frame) {
+        forward(uid, nodes, frame, null);
+    }
+
+    private int forward(String uid, Set<String> nodes, ChatFrame frame, String capability) {
+        if (nodes == null) return 0;
+        for (String node : nodes) {
+            publish(node, new ClusterEnvelope(props.getNodeId(), uid, frame.text().getPayload(), capability));
+        }
+        return nodes.size();
+    }
+
+    /**
+     * השרתים האחרים שכל משתמש מחובר אליהם; משתמשים שאין להם חיבור בשרת אחר לא מופיעים.
+     * פונה למדריך רק כשיש שרת פעיל אחר, ורק עבור משתמשים שהתשובה עליהם לא במטמון.
+     */
+    private Map<String, Set<String>> remoteNodesOf(Collection<String> uids) {
+        if (peers.isEmpty()) return Map.of();
+        long now = System.nanoTime();
+        Map<String, Set<String>> out = new HashMap<>();
+        List<String> misses = null;
+        for (String uid : uids) {
+            Cached c = presenceCache.get(uid);
+            if (c != null && now - c.expiresAt() < 0) {
+                if (!c.nodes().isEmpty()) out.put(uid, c.nodes());
+            } else {
+                if (misses == null) misses = new ArrayList<>();
+                misses.add(uid);
+            }
+        }
+        if (misses != null) {
+            presenceLookups.increment();
+            Map<String, Set<String>> found = presence.nodesOf(misses);
+            long expiresAt = now + props.getPresenceCacheTtl().toNanos();
+            for (String uid : misses) {
+                Set<String> nodes = new HashSet<>(found.getOrDefault(uid, Set.of()));
+                nodes.remove(props.getNodeId());
+                Set<String> remote = Set.copyOf(nodes);
+                presenceCache.put(uid, new Cached(remote, expiresAt));
+                if (!remote.isEmpty()) out.put(uid, remote);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * מכניסה מעטפה לתור השליחה; כשהתור מלא שולחת על התהליכון הקורא
+     */
+    private void publish(String node, ClusterEnvelope envelope) {
+        forwarded.increment();
+        ClusterBus.Addressed addressed = new ClusterBus.Addressed(node, envelope);
+        if (!outbox.offer(addressed)) {
+            publishCallerRuns.increment();
+            publishNow(List.of(addressed));
+            return;
+        }
+        if (draining.compareAndSet(false, true)) {
+            try {
+                publisher.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // השרת נסגר
+                draining.set(false);
+                drain();
+            }
+        }
+    }
+
+    private void drain() {
+        List<ClusterBus.Addressed> batch = new ArrayList<>(PUBLISH_BATCH);
+        while (true) {
+            outbox.drainTo(batch, PUBLISH_BATCH);
+            if (batch.isEmpty()) {
+                draining.set(false);
+                // מעטפה שנכנסה אחרי ה-drainTo ולפני השחרור לא תישאר בתור
+                if (outbox.isEmpty() || !draining.compareAndSet(false, true)) return;
+                continue;
+            }
+            publishNow(batch);
+            batch.clear();
+        }
+    }
+
+    private void publishNow(List<ClusterBus.Addressed> batch) {
+        try {
+            bus.publishAll(batch);
+        } catch (RuntimeException e) {
+            publishFailed.increment(batch.size());
+            log.warn("Publishing {} cluster envelopes failed", batch.size(), e);
+        }
+    }
+
+    private void onEnvelope(ClusterEnvelope envelope) {
+        received.increment();
+        if (envelope.getChangedGroup() != null) {
+            for (Consumer<String> listener : groupListeners) listener.accept(envelope.getChangedGroup());
+            return;
+        }
+        // בין שרתים עובר תמיד JSON; חיבורי CBOR מקבלים המרה שנעשית פעם אחת לכל מעטפה
+        ChatFrame frame = codec.frameOfJson(envelope.getPayload());
+        if (envelope.getTargetUids() != null) {
+            for (String uid : envelope.getTargetUids()) sessions.sendToUser(uid, frame);
+            return;
+        }
+        sessions.sendToUser(envelope.getTargetUid(), frame, envelope.getCapability());
+    }
+
+    private void refreshPeers() {
+        try {
+            Set<String> live = new HashSet<>(presence.liveNodes());
+            live.remove(props.getNodeId());
+            boolean wasSole = peers.isEmpty();
+            peers = Set.copyOf(live);
+            if (wasSole != live.isEmpty()) {
+                for (Runnable listener : peerListeners) listener.run();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Cluster node refresh failed", e);
+        }
+        long now = System.nanoTime();
+        presenceCache.values().removeIf(c -> now - c.expiresAt() >= 0);
+    }
+
+    /**
+     * שרת שמצטרף לשרתים פעילים ממתין בעלייה עד שכולם רעננו את רשימת השרתים וראו אותו:
+     * שרת שהיה יחיד מפסיק אז לחלק מספרי מסירה ששמר מראש, והמספרים של שני השרתים לא מתערבבים
+     */
+    private void awaitPeersNoticed() {
+        try {
+            Thread.sleep(2 * props.getPeerRefreshInterval().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return השרתים הפעילים האחרים לפי הרענון האחרון
+     */
+    Set<String> peers() {
+        return peers;
+    }
+
+    private void refreshPresence() {
+        try {
+            presence.heartbeat(props.getNodeId(), sessions.onlineUids());
+        } catch (RuntimeException e) {
+            log.warn("Presence heartbeat failed", e);
+        }
+    }
+
+    /** תשובת המדריך למשתמש אחד ומתי היא פגה (System.nanoTime) */
+    private record Cached(Set<String> nodes, long expiresAt) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * מימוש תוך-תהליכי לנוכחות ולאפיק
+ * מתאים לשרת יחיד, ולבדיקות שמריצות כמה הקשרי אפליקציה באותו JVM ומשתפים Hub אחד
+ */
+public class LocalClusterBackend implements ClusterBus, PresenceDirectory {
+
+    /** Hub משותף לכל ההקשרים ב-JVM */
+    public static final Hub SHARED = new Hub();
+
+    private final Hub hub;
+
+    /**
+     * @param hub המקום המשותף שבו נשמרים המנויים והנוכחות
+     */
+    public LocalClusterBackend(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<ClusterEnvelope> inbound) {
+        hub.subscribers.put(nodeId, inbound);
+    }
+
+    @Override
+    public void unsubscribe(String nodeId) {
+        hub.subscribers.remove(nodeId);
+        hub.presence.values().forEach(nodes -> nodes.remove(nodeId));
+    }
+
+    @Override
+    public void publish(String targetNode, ClusterEnvelope envelope) {
+        Consumer<ClusterEnvelope> target = hub.subscribers.get(targetNode);
+        if (target != null) target.accept(envelope);
+    }
+
+    @Override
+    public void online(String uid, String nodeId) {
+        hub.presence.computeIfAbsent(uid, k -> ConcurrentHashMap.newKeySet()).add(nodeId);
+    }
+
+    @Override
+    public void offline(String uid, String nodeId) {
+        hub.presence.computeIfPresent(uid, (k, nodes) -> {
+            nodes.remove(nodeId);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    @Override
+    public void heartbeat(String nodeId, Collection<String> uids) {
+        for (String uid : uids) online(uid, nodeId);
+    }
+
+    @Override
+    public Map<String, Set<String>> nodesOf(Collection<String> uids) {
+        Map<String, Set<String>> out = new HashMap<>();
+        for (String uid : uids) {
+            Set<String> nodes = hub.presence.get(uid);
+            if (nodes != null && !nodes.isEmpty()) out.put(uid, Set.copyOf(nodes));
+        }
+        return out;
+    }
+
+    @Override
+    public Set<String> liveNodes() {
+        return Set.copyOf(hub.subscribers.keySet());
+    }
+
+    /** מצב משותף: מנויים לפי שרת ונוכחות לפי משתמש */
+    public static final class Hub {
+        final Map<String, Consumer<ClusterEnvelope>> subscribers = new ConcurrentHashMap<>();
+        final Map<String, Set<String>> presence = new ConcurrentHashMap<>();
+    }
+}
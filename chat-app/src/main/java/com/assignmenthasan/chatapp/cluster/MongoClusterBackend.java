@@ -0,0 +1,276 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.assignmenthasan.chatapp.config.ClusterProperties;
+import com.mongodb.CursorType;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * מימוש MongoDB לנוכחות ולאפיק בין שרתים
+ * נוכחות: אוסף presence עם אינדקס TTL, כך ששרת שנפל נעלם מעצמו; לצידו cluster_nodes עם רשומה אחת לכל שרת
+ * פעיל, שמתחדשת באותו דופק.
+ * אפיק: אוסף capped שכל שרת קורא ממנו בסמן tailable רק את המעטפות שמיועדות אליו.
+ * לא דורש replica set (בניגוד ל-change streams).
+ */
+public class MongoClusterBackend implements ClusterBus, PresenceDirectory {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoClusterBackend.class);
+    private static final String PRESENCE = "presence";
+    private static final String NODES = "cluster_nodes";
+
+    private final MongoTemplate mongoTemplate;
+    private final ClusterProperties props;
+    private final CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-cluster-tail-");
+
+    private volatile boolean running;
+    private volatile boolean reopen;
+    private Thread tailer;
+
+    /**
+     * @param mongoTemplate תבנית MongoDB
+     * @param props הגדרות הניתוב
+     */
+    public MongoClusterBackend(MongoTemplate mongoTemplate, ClusterProperties props) {
+        this.mongoTemplate = mongoTemplate;
+        this.props = props;
+        threads.setDaemon(true);
+    }
+
+    @Override
+    public void subscribe(String nodeId, Consumer<ClusterEnvelope> inbound) {
+        ensureCollections();
+        nodeAlive(nodeId);
+        running = true;
+        tailer = threads.newThread(() -> tail(nodeId, inbound));
+        tailer.start();
+    }
+
+    @Override
+    public void unsubscribe(String nodeId) {
+        running = false;
+        if (tailer != null) tailer.interrupt();
+        presence().deleteMany(Filters.eq("nodeId", nodeId));
+        nodes().deleteOne(Filters.eq("_id", nodeId));
+    }
+
+    @Override
+    public void publish(String targetNode, ClusterEnvelope envelope) {
+        bus().insertOne(envelopeDocument(targetNode, envelope));
+    }
+
+    @Override
+    public void publishAll(List<Addressed> batch) {
+        if (batch.isEmpty()) return;
+        List<Document> docs = new ArrayList<>(batch.size());
+        for (Addressed a : batch) docs.add(envelopeDocument(a.targetNode(), a.envelope()));
+        bus().insertMany(docs);
+    }
+
+    @Override
+    public void online(String uid, String nodeId) {
+        presence().updateOne(Filters.eq("_id", presenceId(uid, nodeId)), presenceUpdate(uid, nodeId),
+                new UpdateOptions().upsert(true));
+    }
+
+    @Override
+    public void offline(String uid, String nodeId) {
+        presence().deleteOne(Filters.eq("_id", presenceId(uid, nodeId)));
+    }
+
+    @Override
+    public void heartbeat(String nodeId, Collection<String> uids) {
+        List<WriteModel<Document>> batch = new ArrayList<>();
+        for (String uid : uids) {
+            batch.add(new UpdateOneModel<>(Filters.eq("_id", presenceId(uid, nodeId)),
+                    presenceUpdate(uid, nodeId), new UpdateOptions().upsert(true)));
+            if (batch.size() == 1_000) {
+                presence().bulkWrite(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) presence().bulkWrite(batch);
+        nodeAlive(nodeId);
+    }
+
+    @Override
+    public Set<String> liveNodes() {
+        Set<String> out = new HashSet<>();
+        for (Document d : nodes().find(Filters.gt("expiresAt", new Date())).projection(new Document("_id", 1))) {
+            out.add(d.getString("_id"));
+        }
+        return out;
+    }
+
+    @Override
+    public Map<String, Set<String>> nodesOf(Collection<String> uids) {
+        Map<String, Set<String>> out = new HashMap<>();
+        Bson filter = Filters.and(Filters.in("uid", uids), Filters.gt("expiresAt", new Date()));
+        for (Document d : presence().find(filter).projection(new Document("uid", 1).append("nodeId", 1))) {
+            out.computeIfAbsent(d.getString("uid"), k -> new HashSet<>()).add(d.getString("nodeId"));
+        }
+        return out;
+    }
+
+    private void tail(String nodeId, Consumer<ClusterEnvelope> inbound) {
+        // מתחילים מסוף האוסף; מעטפות ישנות מהפעלה קודמת לא נמסרות שוב
+        BusPosition position = new BusPosition(lastRecordId());
+        while (running) {
+            // בלי תנאי על _id: המזהים נוצרים אצל כל שולח ולא עולים בסדר ההכנסה, לכן ממשיכים לפי recordId
+            // שהשרת נותן לכל רשומה באוסף capped, ומדלגים בצד שלנו על מה שכבר נמסר
+            try (MongoCursor<Document> cursor = bus().find(Filters.eq("to", nodeId))
+                    .showRecordId(true)
+                    .cursorType(CursorType.TailableAwait)
+                    .maxAwaitTime(1, TimeUnit.SECONDS)
+                    .noCursorTimeout(true)
+                    .iterator()) {
+                while (running && !reopen) {
+                    Document d = cursor.tryNext();
+                    if (d == null || !position.advance(d)) continue;
+                    inbound.accept(new ClusterEnvelope(d.getString("from"), d.getString("uid"),
+                            d.getString("payload"), d.getString("cap"), d.getList("uids", String.class),
+                            d.getString("group")));
+                }
+                reopen = false;
+            } catch (MongoException | IllegalStateException e) {
+                if (!running) return;
+                log.debug("Cluster bus cursor for node {} closed, reopening", nodeId, e);
+                sleepQuietly(500);
+            } catch (RuntimeException e) {
+                log.warn("Cluster envelope handling failed on node {}", nodeId, e);
+            }
+        }
+    }
+
+    /**
+     * סוגרת את הסמן ופותחת אותו מחדש מהמיקום האחרון (לבדיקות)
+     */
+    void reopenCursor() {
+        reopen = true;
+    }
+
+    /**
+     * @return ה-recordId של הרשומה האחרונה באוסף, או 0 כשהוא ריק
+     */
+    private long lastRecordId() {
+        Document last = bus().find().sort(new Document("$natural", -1)).limit(1).showRecordId(true).first();
+        return last == null ? 0 : BusPosition.recordIdOf(last);
+    }
+
+    private void ensureCollections() {
+        String bus = props.getBusCollection();
+        if (!mongoTemplate.collectionExists(bus)) {
+            try {
+                mongoTemplate.createCollection(bus, CollectionOptions.empty().capped().size(props.getBusCollectionSize()));
+                // סמן tailable על אוסף ריק נסגר מיד, לכן מכניסים רשומת פתיחה
+                bus().insertOne(new Document("to", "_seed"));
+            } catch (RuntimeException e) {
+                // שרת אחר יצר את האוסף במקביל
+            }
+        }
+        presence().createIndex(Indexes.ascending("uid"));
+        presence().createIndex(Indexes.ascending("expiresAt"), new IndexOptions().expireAfter(0L, TimeUnit.SECONDS));
+        nodes().createIndex(Indexes.ascending("expiresAt"), new IndexOptions().expireAfter(0L, TimeUnit.SECONDS));
+    }
+
+    private void nodeAlive(String nodeId) {
+        nodes().updateOne(Filters.eq("_id", nodeId),
+                Updates.set("expiresAt", Date.from(Instant.now().plus(props.getPresenceTtl()))),
+                new UpdateOptions().upsert(true));
+    }
+
+    private static Document envelopeDocument(String targetNode, ClusterEnvelope envelope) {
+        return new Document("to", targetNode)
+                .append("from", envelope.getOriginNode())
+                .append("uid", envelope.getTargetUid())
+                .append("payload", envelope.getPayload())
+                .append("cap", envelope.getCapability())
+                .append("uids", envelope.getTargetUids())
+                .append("group", envelope.getChangedGroup());
+    }
+
+    private Bson presenceUpdate(String uid, String nodeId) {
+        return Updates.combine(
+                Updates.set("uid", uid),
+                Updates.set("nodeId", nodeId),
+                Updates.set("expiresAt", Date.from(Instant.now().plus(props.getPresenceTtl()))));
+    }
+
+    private static String presenceId(String uid, String nodeId) {
+        return uid + "@" + nodeId;
+    }
+
+    private MongoCollection<Document> bus() {
+        return mongoTemplate.getCollection(props.getBusCollection());
+    }
+
+    private MongoCollection<Document> presence() {
+        return mongoTemplate.getCollection(PRESENCE);
+    }
+
+    private MongoCollection<Document> nodes() {
+        return mongoTemplate.getCollection(NODES);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * המיקום של שרת באפיק: ה-recordId האחרון שנמסר
+     * באוסף capped ה-recordId עולה בסדר ההכנסה ולא נעשה בו שימוש חוזר, גם אחרי שרשומות ישנות נדרסות
+     */
+    static final class BusPosition {
+        private long last;
+
+        BusPosition(long start) {
+            this.last = start;
+        }
+
+        /**
+         * @param d רשומה שנקראה עם showRecordId
+         * @return true אם הרשומה חדשה ויש למסור אותה
+         */
+        boolean advance(Document d) {
+            long record = recordIdOf(d);
+            if (record <= last) return false;
+            last = record;
+            return true;
+        }
+
+        static long recordIdOf(Document d) {
+            return ((Number) d.get("$recordId")).longValue();
+        }
+    }
+}
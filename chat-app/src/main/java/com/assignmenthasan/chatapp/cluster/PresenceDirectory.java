@@ -0,0 +1,43 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * מדריך נוכחות: לאילו שרתים מחובר כל משתמש
+ */
+public interface PresenceDirectory {
+
+    /**
+     * מסמנת שלמשתמש יש חיבור בשרת
+     * @param uid מזהה המשתמש
+     * @param nodeId מזהה השרת
+     */
+    void online(String uid, String nodeId);
+
+    /**
+     * מסמנת שלמשתמש אין יותר חיבורים בשרת
+     * @param uid מזהה המשתמש
+     * @param nodeId מזהה השרת
+     */
+    void offline(String uid, String nodeId);
+
+    /**
+     * מחדשת את רשומות הנוכחות של כל המשתמשים המחוברים לשרת
+     * @param nodeId מזהה השרת
+     * @param uids המשתמשים המחוברים כרגע
+     */
+    void heartbeat(String nodeId, Collection<String> uids);
+
+    /**
+     * @param uids מזהי משתמשים
+     * @return לכל משתמש מחובר – קבוצת השרתים שהוא מחובר אליהם
+     */
+    Map<String, Set<String>> nodesOf(Collection<String> uids);
+
+    /**
+     * @return השרתים שרשומים כפעילים (כולל הנוכחי), לפי הדופק האחרון שלהם
+     */
+    Set<String> liveNodes();
+}
@@ -0,0 +1,41 @@
+package com.assignmenthasan.chatapp.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.assignmenthasan.chatapp.cluster.LocalClusterBackend;
+import com.assignmenthasan.chatapp.cluster.MongoClusterBackend;
+
+/**
+ * תצורת הניתוב בין שרתים
+ * בוחרת את מימוש הנוכחות והאפיק לפי app.cluster.backend
+ */
+@Configuration
+@EnableConfigurationProperties(ClusterProperties.class)
+public class ClusterConfig {
+
+    /**
+     * מימוש ברירת המחדל: MongoDB הקיים משמש גם כמדריך נוכחות וגם כאפיק
+     * @param mongoTemplate תבנית MongoDB
+     * @param props הגדרות הניתוב
+     * @return מימוש הנוכחות והאפיק
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cluster", name = "backend", havingValue = "mongo", matchIfMissing = true)
+    public MongoClusterBackend mongoClusterBackend(MongoTemplate mongoTemplate, ClusterProperties props) {
+        return new MongoClusterBackend(mongoTemplate, props);
+    }
+
+    /**
+     * מימוש תוך-תהליכי לשרת יחיד ולבדיקות
+     * @return מימוש הנוכחות והאפיק
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.cluster", name = "backend", havingValue = "local")
+    public LocalClusterBackend localClusterBackend() {
+        return new LocalClusterBackend(LocalClusterBackend.SHARED);
+    }
+}
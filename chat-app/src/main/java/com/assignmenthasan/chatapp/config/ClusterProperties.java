@@ -0,0 +1,140 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לניתוב הודעות בין שרתים (nodes)
+ * קובעת את מזהה השרת, את מימוש הניתוב ואת זמני הנוכחות
+ */
+@ConfigurationProperties(prefix = "app.cluster")
+public class ClusterProperties {
+
+    /** מימושי שכבת הניתוב */
+    public enum Backend {
+        /** תוך-תהליכי: שרת יחיד או כמה הקשרים באותו JVM (בדיקות) */
+        LOCAL,
+        /** MongoDB: טבלת נוכחות עם TTL ואוסף capped כאפיק בין שרתים */
+        MONGO
+    }
+
+    /**
+     * מימוש הניתוב. ברירת המחדל משתמשת ב-MongoDB הקיים.
+     */
+    private Backend backend = Backend.MONGO;
+
+    /**
+     * מזהה השרת הנוכחי. חייב להיות ייחודי בכל מופע; ברירת מחדל אקראית.
+     */
+    private String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * תוקף רשומת נוכחות שלא חודשה. שרת שנפל יוצא מהטבלה אחרי הזמן הזה.
+     */
+    private Duration presenceTtl = Duration.ofSeconds(60);
+
+    /**
+     * תדירות חידוש רשומות הנוכחות של המשתמשים המחוברים לשרת.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(20);
+
+    /**
+     * שם האוסף (capped) שמשמש כאפיק הודעות בין שרתים.
+     */
+    private String busCollection = "cluster_bus";
+
+    /**
+     * גודל האוסף capped בבתים.
+     */
+    private long busCollectionSize = 64L * 1024 * 1024;
+
+    /**
+     * כמה זמן נשמרת בזיכרון תשובת מדריך הנוכחות לכל משתמש, כדי שהודעות רצופות לא ישאלו את המדריך שוב.
+     * מכשיר שהתחבר לשרת אחר עלול לפספס מסירה חיה בזמן הזה (ההודעה נשמרת ומגיעה בהיסטוריה ובחידוש).
+     */
+    private Duration presenceCacheTtl = Duration.ofSeconds(1);
+
+    /**
+     * תדירות רענון רשימת השרתים הפעילים. כשאין שרת פעיל אחר לא נשאל מדריך הנוכחות בכלל.
+     */
+    private Duration peerRefreshInterval = Duration.ofSeconds(1);
+
+    /**
+     * מקסימום מעטפות שממתינות לשליחה לשרתים אחרים. כשהתור מלא השליחה נעשית על התהליכון הקורא.
+     */
+    private int publishQueueCapacity = 10_000;
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Duration getPresenceTtl() {
+        return presenceTtl;
+    }
+
+    public void setPresenceTtl(Duration presenceTtl) {
+        this.presenceTtl = presenceTtl;
+    }
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public String getBusCollection() {
+        return busCollection;
+    }
+
+    public void setBusCollection(String busCollection) {
+        this.busCollection = busCollection;
+    }
+
+    public long getBusCollectionSize() {
+        return busCollectionSize;
+    }
+
+    public void setBusCollectionSize(long busCollectionSize) {
+        this.busCollectionSize = busCollectionSize;
+    }
+
+    public Duration getPresenceCacheTtl() {
+        return presenceCacheTtl;
+    }
+
+    public void setPresenceCacheTtl(Duration presenceCacheTtl) {
+        this.presenceCacheTtl = presenceCacheTtl;
+    }
+
+    public Duration getPeerRefreshInterval() {
+        return peerRefreshInterval;
+    }
+
+    public void setPeerRefreshInterval(Duration peerRefreshInterval) {
+        this.peerRefreshInterval = peerRefreshInterval;
+    }
+
+    public int getPublishQueueCapacity() {
+        return publishQueueCapacity;
+    }
+
+    public void setPublishQueueCapacity(int publishQueueCapacity) {
+        this.publishQueueCapacity = publishQueueCapacity;
+    }
+}
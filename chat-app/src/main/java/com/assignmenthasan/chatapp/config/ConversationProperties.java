@@ -0,0 +1,49 @@
+package com.assignmenthasan.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לאינדקס השיחות (אוסף conversations)
+ */
+@ConfigurationProperties(prefix = "app.conversations")
+public class ConversationProperties {
+
+    /**
+     * אורך התצוגה המקדימה של ההודעה האחרונה (בתווים).
+     */
+    private int previewLength = 120;
+
+    /**
+     * האם לבנות את אוסף השיחות מתוך messages בעליית השרת.
+     */
+    private boolean backfill = false;
+
+    /**
+     * מספר השיחות שנכתבות בכל פעולת bulk בזמן הבנייה מחדש.
+     */
+    private int backfillBatchSize = 500;
+
+    public int getPreviewLength() {
+        return previewLength;
+    }
+
+    public void setPreviewLength(int previewLength) {
+        this.previewLength = previewLength;
+    }
+
+    public boolean isBackfill() {
+        return backfill;
+    }
+
+    public void setBackfill(boolean backfill) {
+        this.backfill = backfill;
+    }
+
+    public int getBackfillBatchSize() {
+        return backfillBatchSize;
+    }
+
+    public void setBackfillBatchSize(int backfillBatchSize) {
+        this.backfillBatchSize = backfillBatchSize;
+    }
+}
@@ -0,0 +1,121 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לרצפי המסירה ולהשלמת הודעות אחרי התחברות מחדש
+ * קובעת את גודל העמודים בהשלמה, את התקרה שמעבר לה הלקוח טוען מחדש, את הטיפול בחורים ברצף
+ * ואת חלון האיחוד של אישורי המסירה והקריאה
+ */
+@ConfigurationProperties(prefix = "app.delivery")
+public class DeliveryProperties {
+
+    /**
+     * האם להקצות לכל הודעה מספר ברצף של השולח וברצף של הנמען.
+     * כבוי = אין מספרים ואין השלמה; לקוחות ששולחים lastSeq מקבלים הודעות חיות בלבד.
+     */
+    private boolean sequences = true;
+
+    /**
+     * כמה מספרים שומרים מראש לכל משתמש בפנייה אחת למאגר, כדי שהודעה לא תחכה למונה.
+     * נשמרים רק כשזה השרת הפעיל היחיד; כשיש שרתים נוספים כל הקצאה פונה למאגר, כדי שהמספרים יעלו
+     * בסדר השליחה בכל השרתים. 1 = פנייה למאגר בכל הקצאה.
+     */
+    private int seqBlockSize = 100;
+
+    /**
+     * מספר ההודעות בעמוד אחד של השלמה; העמוד הבא נקרא רק אחרי שתור השליחה התרוקן מתחת לגודל הזה.
+     */
+    private int resumePageSize = 200;
+
+    /**
+     * מספר ההודעות המקסימלי שמושלמות בהתחברות אחת. מעבר לזה הלקוח מקבל resync וטוען היסטוריה ב-REST.
+     */
+    private int maxResume = 5_000;
+
+    /**
+     * מספר ההודעות החיות המקסימלי שממתינות לחור ברצף או לסיום ההשלמה; עודף נקרא אחר כך מהמסד.
+     */
+    private int maxPending = 1_000;
+
+    /**
+     * כמה זמן מחכים שמספר חסר ברצף יגיע (הודעה שעוד בתור הכתיבה או בדרך משרת אחר) לפני שמדלגים עליו.
+     */
+    private Duration gapTimeout = Duration.ofSeconds(2);
+
+    /**
+     * מספר התהליכונים שמריצים השלמות במקביל.
+     */
+    private int resumeThreads = 4;
+
+    /**
+     * חלון איחוד האישורים: אישורי מסירה וקריאה לאותה שיחה בתוך החלון הופכים לכתיבה אחת ולמסגרת אחת.
+     */
+    private Duration receiptWindow = Duration.ofMillis(200);
+
+    public boolean isSequences() {
+        return sequences;
+    }
+
+    public void setSequences(boolean sequences) {
+        this.sequences = sequences;
+    }
+
+    public int getSeqBlockSize() {
+        return seqBlockSize;
+    }
+
+    public void setSeqBlockSize(int seqBlockSize) {
+        this.seqBlockSize = seqBlockSize;
+    }
+
+    public int getResumePageSize() {
+        return resumePageSize;
+    }
+
+    public void setResumePageSize(int resumePageSize) {
+        this.resumePageSize = resumePageSize;
+    }
+
+    public int getMaxResume() {
+        return maxResume;
+    }
+
+    public void setMaxResume(int maxResume) {
+        this.maxResume = maxResume;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    public Duration getGapTimeout() {
+        return gapTimeout;
+    }
+
+    public void setGapTimeout(Duration gapTimeout) {
+        this.gapTimeout = gapTimeout;
+    }
+
+    public int getResumeThreads() {
+        return resumeThreads;
+    }
+
+    public void setResumeThreads(int resumeThreads) {
+        this.resumeThreads = resumeThreads;
+    }
+
+    public Duration getReceiptWindow() {
+        return receiptWindow;
+    }
+
+    public void setReceiptWindow(Duration receiptWindow) {
+        this.receiptWindow = receiptWindow;
+    }
+}
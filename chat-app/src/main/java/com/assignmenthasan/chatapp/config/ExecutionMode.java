@@ -0,0 +1,90 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * מצב ההרצה של השרת: תהליכוני פלטפורמה או תהליכונים וירטואליים
+ * המתג הוא spring.threads.virtual.enabled של Spring Boot – הוא מעביר את Tomcat (בקשות REST
+ * ומסגרות WebSocket נכנסות) לתהליכונים וירטואליים, והמחלקה הזו מיישרת לפיו גם את המאגרים שלנו.
+ * תהליכונים וירטואליים פעילים רק כשהשרת רץ על Java 21 ומעלה. הפרויקט נבנה ל-Java 17, כך שעל JVM 17
+ * המתג לא משנה דבר: השרת נשאר במצב פלטפורמה וכותב אזהרה בעלייה.
+ */
+@Component
+public class ExecutionMode {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionMode.class);
+
+    static final String VIRTUAL_ENABLED = "spring.threads.virtual.enabled";
+
+    private final boolean virtual;
+
+    /**
+     * @param environment סביבת Spring (לקריאת spring.threads.virtual.enabled)
+     */
+    @Autowired
+    public ExecutionMode(Environment environment) {
+        this(Threading.VIRTUAL.isActive(environment));
+        if (!virtual && environment.getProperty(VIRTUAL_ENABLED, Boolean.class, false)) {
+            log.warn("{}=true is ignored on Java {}: virtual threads need Java 21+, running on platform threads",
+                    VIRTUAL_ENABLED, Runtime.version().feature());
+        }
+    }
+
+    private ExecutionMode(boolean virtual) {
+        this.virtual = virtual;
+    }
+
+    /**
+     * @return מצב פלטפורמה קבוע (לבדיקות ולשימוש מחוץ ל-Spring)
+     */
+    public static ExecutionMode platform() {
+        return new ExecutionMode(false);
+    }
+
+    /**
+     * @return true אם עובדים עם תהליכונים וירטואליים
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * יוצרת מאגר לעבודה חוסמת: במצב וירטואלי תהליכון וירטואלי לכל משימה, אחרת מאגר קבוע
+     * @param prefix קידומת לשמות התהליכונים
+     * @param platformThreads גודל המאגר במצב פלטפורמה
+     * @return מאגר שיש לסגור עם {@link #shutdown(Executor)}
+     */
+    public Executor newExecutor(String prefix, int platformThreads) {
+        if (virtual) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        CustomizableThreadFactory threads = new CustomizableThreadFactory(prefix);
+        threads.setDaemon(true);
+        return Executors.newFixedThreadPool(platformThreads, threads);
+    }
+
+    /**
+     * סוגרת מאגר שנוצר ב-newExecutor
+     * @param executor המאגר
+     */
+    public static void shutdown(Executor executor) {
+        if (executor instanceof ExecutorService es) {
+            es.shutdownNow();
+        } else if (executor instanceof SimpleAsyncTaskExecutor async) {
+            async.close();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.assignmenthasan.chatapp.config;
 import java.io.FileInputStream;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 
 import com.google.auth.oauth2.GoogleCredentials;
@@ -13,9 +14,11 @@ import jakarta.annotation.PostConstruct;
 
 /**
  * תצורה לאתחול Firebase Admin SDK
- * מאתחלת את החיבור ל-Firebase באמצעות קובץ חשבון שירות
+ * מאתחלת את החיבור ל-Firebase באמצעות קובץ חשבון שירות.
+ * app.firebase.enabled=false מדלג על האתחול (בדיקות עומס עם אימות טוקנים מדומה)
  */
 @Configuration
+@ConditionalOnProperty(prefix = "app.firebase", name = "enabled", matchIfMissing = true)
 public class FirebaseConfig {
 
     @Value("${app.firebase.serviceAccount}")
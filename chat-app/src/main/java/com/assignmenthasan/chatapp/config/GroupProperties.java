@@ -0,0 +1,52 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לשיחות קבוצתיות
+ * קובעת את גודל הקבוצה המקסימלי ואת מטמון החברות בזיכרון
+ */
+@ConfigurationProperties(prefix = "app.groups")
+public class GroupProperties {
+
+    /**
+     * מספר החברים המקסימלי בקבוצה.
+     */
+    private int maxMembers = 1_000;
+
+    /**
+     * מספר הקבוצות המקסימלי שהחברות שלהן מוחזקת בזיכרון; מעבר לזה מפונות אלה שלא נקראו הכי הרבה זמן.
+     */
+    private int cacheMaxGroups = 10_000;
+
+    /**
+     * כמה זמן רשימת חברים שנטענה נחשבת עדכנית. שינויים שנעשו בשרת אחר מגיעים לכאן אחרי הזמן הזה.
+     */
+    private Duration cacheMaxAge = Duration.ofSeconds(30);
+
+    public int getMaxMembers() {
+        return maxMembers;
+    }
+
+    public void setMaxMembers(int maxMembers) {
+        this.maxMembers = maxMembers;
+    }
+
+    public int getCacheMaxGroups() {
+        return cacheMaxGroups;
+    }
+
+    public void setCacheMaxGroups(int cacheMaxGroups) {
+        this.cacheMaxGroups = cacheMaxGroups;
+    }
+
+    public Duration getCacheMaxAge() {
+        return cacheMaxAge;
+    }
+
+    public void setCacheMaxAge(Duration cacheMaxAge) {
+        this.cacheMaxAge = cacheMaxAge;
+    }
+}
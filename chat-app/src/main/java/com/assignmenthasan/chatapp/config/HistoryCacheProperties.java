@@ -0,0 +1,66 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה למטמון השיחות החמות בזיכרון
+ * קובעת כמה הודעות נשמרות לכל שיחה ומה תקציב הזיכרון של המטמון כולו
+ */
+@ConfigurationProperties(prefix = "app.history-cache")
+public class HistoryCacheProperties {
+
+    /**
+     * האם להגיש היסטוריה מהמטמון.
+     */
+    private boolean enabled = true;
+
+    /**
+     * מספר ההודעות האחרונות שנשמרות לכל שיחה.
+     */
+    private int perConversation = 200;
+
+    /**
+     * תקציב הזיכרון (הערכה בבתים) לכל המטמון; מעליו מפונות השיחות שלא נקראו הכי הרבה זמן.
+     */
+    private long maxBytes = 64L * 1024 * 1024;
+
+    /**
+     * כמה זמן חלון שנטען מהמסד נחשב עדכני. הודעות שנכתבו בשרתים אחרים באשכול
+     * לא עוברות דרך המטמון המקומי, ולכן החלון נטען מחדש אחרי הזמן הזה.
+     */
+    private Duration maxAge = Duration.ofSeconds(60);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getPerConversation() {
+        return perConversation;
+    }
+
+    public void setPerConversation(int perConversation) {
+        this.perConversation = perConversation;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    public void setMaxAge(Duration maxAge) {
+        this.maxAge = maxAge;
+    }
+}
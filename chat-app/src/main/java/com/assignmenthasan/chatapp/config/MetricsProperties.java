@@ -0,0 +1,50 @@
+package com.assignmenthasan.chatapp.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה למדידת השלבים בנתיב ההודעה (פענוח, קבלה, שמירה, ניתוב, התראה)
+ * המונים תמיד פעילים; הטיימרים אפשר לדגום כדי לחסוך את קריאות השעון
+ */
+@ConfigurationProperties(prefix = "app.metrics")
+public class MetricsProperties {
+
+    /**
+     * האם למדוד זמן לכל שלב בטיפול במסגרת נכנסת.
+     */
+    private boolean stageTimers = true;
+
+    /**
+     * שיעור המסגרות (0 עד 1) שנמדדות; 1 = כל מסגרת. מספר הדגימות בטיימר הוא אז חלק מהתעבורה, ולכן הקצב נקרא מהמונים.
+     */
+    private double sampleRate = 1.0;
+
+    /**
+     * האם לפרסם היסטוגרמה (buckets של Prometheus) לכל טיימר, כך שאפשר לחשב אחוזונים על פני כמה שרתים.
+     */
+    private boolean histograms = true;
+
+    public boolean isStageTimers() {
+        return stageTimers;
+    }
+
+    public void setStageTimers(boolean stageTimers) {
+        this.stageTimers = stageTimers;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public boolean isHistograms() {
+        return histograms;
+    }
+
+    public void setHistograms(boolean histograms) {
+        this.histograms = histograms;
+    }
+}
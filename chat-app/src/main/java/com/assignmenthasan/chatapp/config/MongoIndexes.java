@@ -0,0 +1,57 @@
+package com.assignmenthasan.chatapp.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * יוצרת בעליית השרת את האינדקסים המוגדרים באנוטציות על השיחות, ועל ההודעות כשהן ב-MongoDB
+ * (auto-index-creation של Spring Data כבוי כברירת מחדל); createIndex אידמפוטנטי
+ */
+@Component
+public class MongoIndexes {
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIndexes(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        createIndexes(mongoTemplate, Conversation.class);
+    }
+
+    private static void createIndexes(MongoTemplate mongoTemplate, Class<?> type) {
+        var resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        IndexOperations ops = mongoTemplate.indexOps(type);
+        resolver.resolveIndexFor(type).forEach(ops::createIndex);
+    }
+
+    /**
+     * האינדקסים של אוסף ההודעות; רק כשההודעות ב-MongoDB (app.store.backend=mongo),
+     * כך שמאגר הלוג לא נוגע באוסף שלא שייך לו
+     */
+    @Component
+    @ConditionalOnProperty(prefix = "app.store", name = "backend", havingValue = "mongo", matchIfMissing = true)
+    public static class Messages {
+
+        private final MongoTemplate mongoTemplate;
+
+        public Messages(MongoTemplate mongoTemplate) {
+            this.mongoTemplate = mongoTemplate;
+        }
+
+        @PostConstruct
+        public void ensureIndexes() {
+            createIndexes(mongoTemplate, Message.class);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.net.http.HttpClient;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * תצורת מערכת ההתראות לפונקציית Firebase
+ * יוצרת לקוח HTTP אסינכרוני יחיד שמחזיק מאגר חיבורים לשימוש חוזר
+ */
+@Configuration
+@EnableConfigurationProperties(NotificationProperties.class)
+public class NotificationConfig {
+
+    /**
+     * לקוח HTTP לא חוסם לקריאות ההתראה
+     * @param props הגדרות ההתראות
+     * @param executionMode מצב ההרצה (תהליכוני פלטפורמה או וירטואליים)
+     * @return לקוח HTTP משותף
+     */
+    @Bean
+    public HttpClient notifyHttpClient(NotificationProperties props, ExecutionMode executionMode) {
+        return HttpClient.newBuilder()
+                .connectTimeout(props.getRequestTimeout())
+                .executor(executionMode.newExecutor("chat-notify-io-", 2))
+                .build();
+    }
+}
@@ -0,0 +1,143 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לשליחת התראות לפונקציית Firebase
+ * קובעת את כתובת הפונקציה, חלון האיחוד, ניסיונות חוזרים ומפסק הזרם
+ */
+@ConfigurationProperties(prefix = "app.functions")
+public class NotificationProperties {
+
+    /**
+     * כתובת פונקציית ההתראה (notifyMessage).
+     */
+    private String notifyUrl;
+
+    /**
+     * חלון זמן שבו הודעות רצופות לאותו נמען מאוחדות לקריאה אחת.
+     */
+    private Duration coalesceWindow = Duration.ofMillis(250);
+
+    /**
+     * מספר הנמענים המקסימלי שממתינים להתראה. מעבר לכך התראות חדשות נזרקות.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * מספר הקריאות המקסימלי שנמצאות באוויר בו זמנית.
+     */
+    private int maxInFlight = 64;
+
+    /**
+     * זמן קצוב לקריאה בודדת.
+     */
+    private Duration requestTimeout = Duration.ofSeconds(2);
+
+    /**
+     * מספר הניסיונות הכולל לקריאה (כולל הראשון).
+     */
+    private int maxAttempts = 4;
+
+    /**
+     * השהיה בסיסית לניסיון חוזר. ההשהיה גדלה פי 2 בכל ניסיון עם jitter מלא.
+     */
+    private Duration backoffBase = Duration.ofMillis(200);
+
+    /**
+     * תקרת ההשהיה בין ניסיונות.
+     */
+    private Duration backoffMax = Duration.ofSeconds(5);
+
+    /**
+     * מספר כשלונות רצופים שפותח את מפסק הזרם.
+     */
+    private int breakerFailureThreshold = 5;
+
+    /**
+     * משך הזמן שמפסק הזרם נשאר פתוח לפני ניסיון בדיקה.
+     */
+    private Duration breakerOpenDuration = Duration.ofSeconds(30);
+
+    public String getNotifyUrl() {
+        return notifyUrl;
+    }
+
+    public void setNotifyUrl(String notifyUrl) {
+        this.notifyUrl = notifyUrl;
+    }
+
+    public Duration getCoalesceWindow() {
+        return coalesceWindow;
+    }
+
+    public void setCoalesceWindow(Duration coalesceWindow) {
+        this.coalesceWindow = coalesceWindow;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public Duration getBackoffBase() {
+        return backoffBase;
+    }
+
+    public void setBackoffBase(Duration backoffBase) {
+        this.backoffBase = backoffBase;
+    }
+
+    public Duration getBackoffMax() {
+        return backoffMax;
+    }
+
+    public void setBackoffMax(Duration backoffMax) {
+        this.backoffMax = backoffMax;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+        this.breakerFailureThreshold = breakerFailureThreshold;
+    }
+
+    public Duration getBreakerOpenDuration() {
+        return breakerOpenDuration;
+    }
+
+    public void setBreakerOpenDuration(Duration breakerOpenDuration) {
+        this.breakerOpenDuration = breakerOpenDuration;
+    }
+}
@@ -0,0 +1,14 @@
+package com.assignmenthasan.chatapp.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * תצורת שכבת השמירה של הודעות
+ * מפעילה את הגדרות השמירה הדחויה, אינדקס השיחות, מטמון ההיסטוריה, רצפי המסירה, הקבוצות והחיפוש מתוך application.yml
+ */
+@Configuration
+@EnableConfigurationProperties({PersistenceProperties.class, ConversationProperties.class, HistoryCacheProperties.class,
+        DeliveryProperties.class, GroupProperties.class, SearchProperties.class})
+public class PersistenceConfig {
+}
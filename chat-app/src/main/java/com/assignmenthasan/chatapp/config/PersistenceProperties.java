@@ -0,0 +1,130 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לשלב השמירה הדחויה (write-behind) של הודעות
+ * קובעת את גודל התור, גודל האצווה, חלון הזמן ומספר תהליכוני הכתיבה
+ */
+@ConfigurationProperties(prefix = "app.persistence")
+public class PersistenceProperties {
+
+    /**
+     * קיבולת התור בזיכרון. כאשר התור מלא, השולח ממתין (backpressure).
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * מספר ההודעות המקסימלי בכתיבה מרוכזת אחת (insertMany).
+     */
+    private int batchSize = 256;
+
+    /**
+     * חלון הזמן המקסימלי לאיסוף אצווה לפני כתיבה.
+     */
+    private Duration flushInterval = Duration.ofMillis(10);
+
+    /**
+     * מספר תהליכוני הכתיבה שמרוקנים את התור.
+     */
+    private int writerThreads = 2;
+
+    /**
+     * האם למסור את ההודעה רק אחרי אישור כתיבה מהמסד (true), או מיד לאחר הכנסה לתור (false).
+     */
+    private boolean awaitAck = true;
+
+    /**
+     * זמן ההמתנה המקסימלי לפינוי מקום בתור מלא. לאחר מכן הכתיבה מתבצעת ישירות בתהליכון השולח.
+     */
+    private Duration enqueueTimeout = Duration.ofMillis(100);
+
+    /**
+     * האם להשלים ברקע את conversationKey בהודעות ישנות שנשמרו לפני שהשדה נוסף.
+     */
+    private boolean keyBackfill = true;
+
+    /**
+     * מספר ההודעות שמתעדכנות בכל אצווה של השלמת conversationKey.
+     */
+    private int keyBackfillBatchSize = 1_000;
+
+    /**
+     * השהיה בין אצוות ההשלמה, כדי לא להעמיס על המסד בזמן תעבורה רגילה.
+     */
+    private Duration keyBackfillPause = Duration.ofMillis(50);
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public boolean isAwaitAck() {
+        return awaitAck;
+    }
+
+    public void setAwaitAck(boolean awaitAck) {
+        this.awaitAck = awaitAck;
+    }
+
+    public Duration getEnqueueTimeout() {
+        return enqueueTimeout;
+    }
+
+    public void setEnqueueTimeout(Duration enqueueTimeout) {
+        this.enqueueTimeout = enqueueTimeout;
+    }
+
+    public boolean isKeyBackfill() {
+        return keyBackfill;
+    }
+
+    public void setKeyBackfill(boolean keyBackfill) {
+        this.keyBackfill = keyBackfill;
+    }
+
+    public int getKeyBackfillBatchSize() {
+        return keyBackfillBatchSize;
+    }
+
+    public void setKeyBackfillBatchSize(int keyBackfillBatchSize) {
+        this.keyBackfillBatchSize = keyBackfillBatchSize;
+    }
+
+    public Duration getKeyBackfillPause() {
+        return keyBackfillPause;
+    }
+
+    public void setKeyBackfillPause(Duration keyBackfillPause) {
+        this.keyBackfillPause = keyBackfillPause;
+    }
+}
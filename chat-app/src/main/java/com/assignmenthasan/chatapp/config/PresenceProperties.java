@@ -0,0 +1,104 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לנוכחות (מחובר/לא מחובר) ולאינדיקציית הקלדה
+ * קובעת למי נשלחים עדכונים, כל כמה זמן, ומתי חיבור שלא נשמע ממנו נחשב מת
+ */
+@ConfigurationProperties(prefix = "app.presence")
+public class PresenceProperties {
+
+    /**
+     * האם לשלוח עדכוני נוכחות והקלדה לחיבורים עם caps=presence.
+     */
+    private boolean enabled = true;
+
+    /**
+     * מספר השיחות האחרונות של משתמש שהצד השני בהן מקבל את עדכוני הנוכחות שלו.
+     */
+    private int interestLimit = 100;
+
+    /**
+     * חלון האיחוד: שינויים של אותו משתמש בתוך החלון הופכים לעדכון אחד, והתנתקות והתחברות מחדש בתוכו לא נשלחות בכלל.
+     */
+    private Duration window = Duration.ofSeconds(1);
+
+    /**
+     * מרווח מינימלי בין שני אירועי הקלדה שמועברים מאותו שולח לאותו נמען; אירועים בתוך המרווח נזרקים.
+     */
+    private Duration typingInterval = Duration.ofSeconds(2);
+
+    /**
+     * חיבור שלא נשמע ממנו דבר (מסגרת או pong) זמן כזה מקבל ping.
+     */
+    private Duration pingInterval = Duration.ofSeconds(20);
+
+    /**
+     * חיבור שלא נשמע ממנו דבר זמן כזה נסגר, והמשתמש יוצא מהנוכחות אם זה היה החיבור האחרון שלו.
+     */
+    private Duration heartbeatTimeout = Duration.ofSeconds(60);
+
+    /**
+     * מספר התהליכונים שטוענים את השיחות והנוכחות ההתחלתית של חיבורים חדשים.
+     */
+    private int threads = 2;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInterestLimit() {
+        return interestLimit;
+    }
+
+    public void setInterestLimit(int interestLimit) {
+        this.interestLimit = interestLimit;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public Duration getTypingInterval() {
+        return typingInterval;
+    }
+
+    public void setTypingInterval(Duration typingInterval) {
+        this.typingInterval = typingInterval;
+    }
+
+    public Duration getPingInterval() {
+        return pingInterval;
+    }
+
+    public void setPingInterval(Duration pingInterval) {
+        this.pingInterval = pingInterval;
+    }
+
+    public Duration getHeartbeatTimeout() {
+        return heartbeatTimeout;
+    }
+
+    public void setHeartbeatTimeout(Duration heartbeatTimeout) {
+        this.heartbeatTimeout = heartbeatTimeout;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
@@ -0,0 +1,171 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה להגבלת קצב בכניסה ל-WebSocket ול-REST
+ * כל מגבלה היא דלי אסימונים: קצב מילוי לשנייה וגודל פרץ
+ */
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * האם להגביל קצב בכלל.
+     */
+    private boolean enabled = true;
+
+    /**
+     * הודעות צ'אט לכל משתמש (כל הודעה במערך נספרת).
+     */
+    private Limit message = new Limit(20, 40);
+
+    /**
+     * אירועי הקלדה לכל משתמש.
+     */
+    private Limit typing = new Limit(5, 10);
+
+    /**
+     * אישורי מסירה וקריאה לכל משתמש.
+     */
+    private Limit receipt = new Limit(20, 50);
+
+    /**
+     * בקשות REST לכל משתמש מאומת.
+     */
+    private Limit rest = new Limit(20, 40);
+
+    /**
+     * חיפוש משתמש לפי אימייל (/api/users/resolve) לכל משתמש, בנוסף למגבלת ה-REST.
+     */
+    private Limit lookup = new Limit(1, 10);
+
+    /**
+     * בקשות HTTP (כולל לחיצות יד של WebSocket) לכל כתובת IP, לפני אימות הטוקן.
+     * מאחורי proxy הכתובת נכונה רק עם server.forward-headers-strategy.
+     */
+    private Limit ip = new Limit(50, 100);
+
+    /**
+     * דחיות לכל משתמש: מי שנדחה יותר מהפרץ מהר יותר מהקצב נחשב מציף, והחיבור שלו נסגר.
+     */
+    private Limit strikes = new Limit(0.5, 20);
+
+    /**
+     * כל כמה זמן מסירים מהזיכרון מפתחות שהדלי שלהם התמלא (שקול למפתח חדש).
+     */
+    private Duration sweepInterval = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Limit getMessage() {
+        return message;
+    }
+
+    public void setMessage(Limit message) {
+        this.message = message;
+    }
+
+    public Limit getTyping() {
+        return typing;
+    }
+
+    public void setTyping(Limit typing) {
+        this.typing = typing;
+    }
+
+    public Limit getReceipt() {
+        return receipt;
+    }
+
+    public void setReceipt(Limit receipt) {
+        this.receipt = receipt;
+    }
+
+    public Limit getRest() {
+        return rest;
+    }
+
+    public void setRest(Limit rest) {
+        this.rest = rest;
+    }
+
+    public Limit getLookup() {
+        return lookup;
+    }
+
+    public void setLookup(Limit lookup) {
+        this.lookup = lookup;
+    }
+
+    public Limit getIp() {
+        return ip;
+    }
+
+    public void setIp(Limit ip) {
+        this.ip = ip;
+    }
+
+    public Limit getStrikes() {
+        return strikes;
+    }
+
+    public void setStrikes(Limit strikes) {
+        this.strikes = strikes;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+    /**
+     * דלי אסימונים אחד
+     */
+    public static class Limit {
+
+        /**
+         * אסימונים שמתווספים בכל שנייה.
+         */
+        private double perSecond;
+
+        /**
+         * גודל הדלי: כמה אפשר לשלוח ברצף אחרי שקט.
+         */
+        private int burst;
+
+        public Limit() {
+        }
+
+        public Limit(double perSecond, int burst) {
+            this.perSecond = perSecond;
+            this.burst = burst;
+        }
+
+        public double getPerSecond() {
+            return perSecond;
+        }
+
+        public void setPerSecond(double perSecond) {
+            this.perSecond = perSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+}
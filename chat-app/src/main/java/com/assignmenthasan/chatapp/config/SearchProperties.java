@@ -0,0 +1,130 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לחיפוש בהיסטוריית ההודעות
+ * קובעת את תיקיית האינדקס, כל כמה זמן הודעות חדשות נעשות ניתנות לחיפוש ונשמרות לדיסק, וגודל העמוד
+ */
+@ConfigurationProperties(prefix = "app.search")
+public class SearchProperties {
+
+    /**
+     * האם לתחזק את אינדקס החיפוש. כבוי = לא נפתחת תיקייה ו-/api/messages/search מחזיר 404.
+     */
+    private boolean enabled = true;
+
+    /**
+     * תיקיית האינדקס בדיסק המקומי.
+     */
+    private String dir = "data/search";
+
+    /**
+     * כל כמה זמן הודעות שנוספו לאינדקס נעשות ניתנות לחיפוש (near-real-time).
+     */
+    private Duration refreshInterval = Duration.ofSeconds(1);
+
+    /**
+     * כל כמה זמן האינדקס נשמר לדיסק (commit). הודעות שנוספו אחרי ה-commit האחרון אובדות בנפילה, ו-rebuild משלים אותן.
+     */
+    private Duration commitInterval = Duration.ofSeconds(30);
+
+    /**
+     * זיכרון לאיסוף מסמכים לפני כתיבה לדיסק, במגה-בייט.
+     */
+    private double ramBufferMb = 32;
+
+    /**
+     * גודל העמוד המקסימלי בחיפוש.
+     */
+    private int maxPageSize = 100;
+
+    /**
+     * מספר המילים המקסימלי בשאילתה.
+     */
+    private int maxTerms = 16;
+
+    /**
+     * בנייה מחדש של האינדקס מכל ההודעות במאגר בעלייה (ברקע, באצוות).
+     */
+    private boolean rebuild = false;
+
+    /**
+     * גודל אצווה בבנייה מחדש.
+     */
+    private int rebuildBatchSize = 1_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public Duration getCommitInterval() {
+        return commitInterval;
+    }
+
+    public void setCommitInterval(Duration commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    public double getRamBufferMb() {
+        return ramBufferMb;
+    }
+
+    public void setRamBufferMb(double ramBufferMb) {
+        this.ramBufferMb = ramBufferMb;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public int getMaxTerms() {
+        return maxTerms;
+    }
+
+    public void setMaxTerms(int maxTerms) {
+        this.maxTerms = maxTerms;
+    }
+
+    public boolean isRebuild() {
+        return rebuild;
+    }
+
+    public void setRebuild(boolean rebuild) {
+        this.rebuild = rebuild;
+    }
+
+    public int getRebuildBatchSize() {
+        return rebuildBatchSize;
+    }
+
+    public void setRebuildBatchSize(int rebuildBatchSize) {
+        this.rebuildBatchSize = rebuildBatchSize;
+    }
+}
@@ -1,6 +1,10 @@
 package com.assignmenthasan.chatapp.config;
 
 import com.assignmenthasan.chatapp.security.FirebaseAuthenticationFilter;
+import com.assignmenthasan.chatapp.security.RateLimitFilter;
+import com.assignmenthasan.chatapp.security.RateLimiter;
+import com.assignmenthasan.chatapp.security.TokenVerifier;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -8,17 +12,21 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
+@EnableConfigurationProperties({RateLimitProperties.class, TokenCacheProperties.class})
 public class SecurityConfig {
     /**
      * מגדיר את שרשרת מסנני האבטחה (Security Filter Chain).
      *
      * @param http אובייקט התצורה הראשי של Spring Security ל־HTTP
+     * @param tokenVerifier שירות אימות הטוקנים המשותף
+     * @param rateLimiter הגבלת קצב לפי IP ולפי משתמש
      * @return SecurityFilterChain שנבנה לפי ההגדרות למטה
      * @throws Exception אם יש כשל בבניית התצורה
      */
 
     @Bean
-    SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    SecurityFilterChain securityFilterChain(HttpSecurity http, TokenVerifier tokenVerifier,
+                                           RateLimiter rateLimiter) throws Exception {
         http
                 // ב־REST APIs מבוססי טוקנים אין צורך ב־CSRF
                 .csrf(csrf -> csrf.disable())
@@ -33,6 +41,7 @@ public class SecurityConfig {
                 // הרשאות גישה לפי מסלולים
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/actuator/health").permitAll()  // בריאות המערכת פתוח
+                        .requestMatchers("/actuator/prometheus").permitAll() // נאסף ע"י Prometheus; בלי נתוני משתמשים
                         .requestMatchers("/ws/**").permitAll()          // אימות WS מתבצע בזמן handshake
                         .anyRequest().authenticated()                   // כל השאר דורש אימות
                 )
@@ -41,7 +50,12 @@ public class SecurityConfig {
                 .formLogin(f -> f.disable());
 
         // הוספת מסנן האימות של Firebase לפני מסנן שם-משתמש/סיסמה
-        http.addFilterBefore(new FirebaseAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+        FirebaseAuthenticationFilter firebaseFilter = new FirebaseAuthenticationFilter(tokenVerifier);
+        http.addFilterBefore(firebaseFilter, UsernamePasswordAuthenticationFilter.class);
+
+        // הגבלת קצב: לפי IP לפני אימות הטוקן, ולפי משתמש אחריו
+        http.addFilterBefore(new RateLimitFilter(rateLimiter, RateLimitFilter.Scope.IP), FirebaseAuthenticationFilter.class);
+        http.addFilterAfter(new RateLimitFilter(rateLimiter, RateLimitFilter.Scope.USER), FirebaseAuthenticationFilter.class);
 
         // בניית השרשרת
         return http.build();
@@ -0,0 +1,44 @@
+package com.assignmenthasan.chatapp.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.assignmenthasan.chatapp.store.LogMessageStore;
+import com.assignmenthasan.chatapp.store.MongoMessageStore;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * תצורת מאגר ההודעות
+ * בוחרת את המימוש לפי app.store.backend
+ */
+@Configuration
+@EnableConfigurationProperties(StoreProperties.class)
+public class StoreConfig {
+
+    /**
+     * מימוש ברירת המחדל: ההודעות ומוני הרצף ב-MongoDB הקיים
+     * @param mongoTemplate תבנית MongoDB
+     * @return מאגר ההודעות
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.store", name = "backend", havingValue = "mongo", matchIfMissing = true)
+    public MongoMessageStore mongoMessageStore(MongoTemplate mongoTemplate) {
+        return new MongoMessageStore(mongoTemplate);
+    }
+
+    /**
+     * לוג מוטמע בדיסק המקומי לשרת יחיד (משתמשים, שיחות וקבוצות נשארים ב-MongoDB)
+     * @param props הגדרות המאגר
+     * @param meterRegistry רישום מדדים
+     * @return מאגר ההודעות
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.store", name = "backend", havingValue = "log")
+    public LogMessageStore logMessageStore(StoreProperties props, MeterRegistry meterRegistry) {
+        return new LogMessageStore(props, meterRegistry);
+    }
+}
@@ -0,0 +1,112 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה למאגר ההודעות
+ * קובעת את המימוש, ובמאגר הלוג המוטמע גם את התיקייה, גודל המקטעים, צפיפות האינדקס, הסנכרון לדיסק והדחיסה
+ */
+@ConfigurationProperties(prefix = "app.store")
+public class StoreProperties {
+
+    /** מימושי מאגר ההודעות */
+    public enum Backend {
+        /** MongoDB: אוסף messages ומוני user_sequences, משותפים לכל השרתים */
+        MONGO,
+        /** לוג מוטמע: קבצי מקטעים ממופים לזיכרון בדיסק המקומי, לשרת יחיד */
+        LOG
+    }
+
+    /**
+     * מימוש המאגר. ברירת המחדל משתמשת ב-MongoDB הקיים.
+     */
+    private Backend backend = Backend.MONGO;
+
+    /**
+     * תיקיית קבצי הלוג (במימוש LOG).
+     */
+    private String dir = "data/messages";
+
+    /**
+     * גודל מקטע. מקטע מלא נסגר ונפתח חדש; רק מקטעים סגורים נדחסים.
+     */
+    private int segmentBytes = 64 * 1024 * 1024;
+
+    /**
+     * מספר הרשומות של שיחה (או של רצף משתמש) בכל בלוק של האינדקס הדליל. קטן יותר = קריאות מדויקות יותר ויותר זיכרון.
+     */
+    private int indexInterval = 32;
+
+    /**
+     * האם לסנכרן כל כתיבה מרוכזת לדיסק (force) לפני האישור. כבוי = אישור מהיר, ונפילת מכונה עלולה לאבד את האחרונות.
+     */
+    private boolean fsync = true;
+
+    /**
+     * גיל ההודעה המקסימלי; ישנות יותר נמחקות בדחיסה. 0 = שומרים הכל.
+     */
+    private Duration retention = Duration.ZERO;
+
+    /**
+     * תדירות הדחיסה של המקטעים הסגורים. 0 = בלי דחיסה.
+     */
+    private Duration compactionInterval = Duration.ofMinutes(10);
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public void setSegmentBytes(int segmentBytes) {
+        this.segmentBytes = segmentBytes;
+    }
+
+    public int getIndexInterval() {
+        return indexInterval;
+    }
+
+    public void setIndexInterval(int indexInterval) {
+        this.indexInterval = indexInterval;
+    }
+
+    public boolean isFsync() {
+        return fsync;
+    }
+
+    public void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    public Duration getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    public void setCompactionInterval(Duration compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+}
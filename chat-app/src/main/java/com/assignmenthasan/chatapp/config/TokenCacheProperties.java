@@ -0,0 +1,39 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה למטמון טוקני ה-ID שכבר אומתו
+ * קובעת את גודל המטמון וכל כמה זמן הוא מנוקה והמפתחות הציבוריים של Firebase מתרעננים ברקע
+ */
+@ConfigurationProperties(prefix = "app.auth.token-cache")
+public class TokenCacheProperties {
+
+    /**
+     * מספר הטוקנים המקסימלי במטמון. כשהוא מלא מסירים קודם טוקנים שפגו ואחר כך רשומות שרירותיות.
+     */
+    private int maxEntries = 10_000;
+
+    /**
+     * כל כמה זמן מנקים טוקנים שפגו ומאמתים ברקע טוקן אחרון, כדי שהמפתחות הציבוריים לא יתיישנו.
+     */
+    private Duration refreshPeriod = Duration.ofMinutes(1);
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Duration getRefreshPeriod() {
+        return refreshPeriod;
+    }
+
+    public void setRefreshPeriod(Duration refreshPeriod) {
+        this.refreshPeriod = refreshPeriod;
+    }
+}
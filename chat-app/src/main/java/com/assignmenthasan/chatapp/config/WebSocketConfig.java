@@ -6,9 +6,11 @@ import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 import com.assignmenthasan.chatapp.ws.AuthHandshakeInterceptor;
 import com.assignmenthasan.chatapp.ws.ChatWebSocketHandler;
+import com.assignmenthasan.chatapp.ws.DeflateUpgradeStrategy;
 
 /**
  * תצורת WebSocket לאפליקציית הצ'אט
@@ -16,25 +18,30 @@ import com.assignmenthasan.chatapp.ws.ChatWebSocketHandler;
  */
 @Configuration
 @EnableWebSocket
-@EnableConfigurationProperties(CorsProperties.class)
+@EnableConfigurationProperties({CorsProperties.class, WebSocketProperties.class, PresenceProperties.class,
+        MetricsProperties.class})
 public class WebSocketConfig implements WebSocketConfigurer {
 
     private final ChatWebSocketHandler chatWebSocketHandler;
     private final AuthHandshakeInterceptor authInterceptor;
     private final CorsProperties corsProperties;
+    private final WebSocketProperties webSocketProperties;
 
     /**
      * בנאי המקבל את כל הרכיבים הנדרשים
      * @param chatWebSocketHandler מטפל הודעות WebSocket
      * @param authInterceptor מיירט אימות לחיבורי WebSocket
      * @param corsProperties הגדרות CORS
+     * @param webSocketProperties הגדרות החיבורים, כולל דחיסת permessage-deflate
      */
     public WebSocketConfig(ChatWebSocketHandler chatWebSocketHandler,
                            AuthHandshakeInterceptor authInterceptor,
-                           CorsProperties corsProperties) {
+                           CorsProperties corsProperties,
+                           WebSocketProperties webSocketProperties) {
         this.chatWebSocketHandler = chatWebSocketHandler;
         this.authInterceptor = authInterceptor;
         this.corsProperties = corsProperties;
+        this.webSocketProperties = webSocketProperties;
     }
 
     /**
@@ -45,7 +52,9 @@ public class WebSocketConfig implements WebSocketConfigurer {
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         // Note: Spring WebSocket supports setAllowedOrigins (exact) and setAllowedOriginPatterns (patterns in Spring 5.3+)
         var reg = registry.addHandler((WebSocketHandler) chatWebSocketHandler, "/ws/chat")
-                .addInterceptors(authInterceptor);
+                .addInterceptors(authInterceptor)
+                .setHandshakeHandler(new DefaultHandshakeHandler(
+                        new DeflateUpgradeStrategy(webSocketProperties.getCompression())));
 
         if (!corsProperties.getAllowedOrigins().isEmpty()) {
             reg.setAllowedOrigins(corsProperties.getAllowedOrigins().toArray(String[]::new));
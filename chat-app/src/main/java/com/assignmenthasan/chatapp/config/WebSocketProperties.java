@@ -0,0 +1,232 @@
+package com.assignmenthasan.chatapp.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * מחלקת תצורה לתורי השליחה של חיבורי WebSocket
+ * קובעת את מגבלות התור לכל חיבור ומה עושים עם צרכן איטי
+ */
+@ConfigurationProperties(prefix = "app.websocket")
+public class WebSocketProperties {
+
+    /** מה לעשות עם חיבור שחורג מהמגבלות */
+    public enum OverflowPolicy {
+        /** זורקים את המסגרות הישנות ביותר בתור */
+        DROP_OLDEST,
+        /** סוגרים את החיבור; הלקוח יתחבר מחדש ויטען היסטוריה */
+        CLOSE
+    }
+
+    /**
+     * מספר המסגרות המקסימלי שממתינות בתור של חיבור אחד.
+     */
+    private int maxQueueDepth = 1_000;
+
+    /**
+     * מספר הבתים המקסימלי שממתינים בתור של חיבור אחד.
+     */
+    private int bufferSizeLimit = 512 * 1024;
+
+    /**
+     * זמן מקסימלי לשליחת מסגרת אחת. שליחה ארוכה יותר מסמנת צרכן איטי.
+     */
+    private Duration sendTimeLimit = Duration.ofSeconds(10);
+
+    /**
+     * מדיניות הטיפול בצרכן איטי.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * מספר תהליכוני הכתיבה המשותפים שמרוקנים את תורי החיבורים.
+     */
+    private int writerThreads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * מספר ההודעות המקסימלי במסגרת batch אחת מהלקוח.
+     */
+    private int maxBatchSize = 100;
+
+    /**
+     * הגדרות דחיסת permessage-deflate.
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * הגדרות איחוד הודעות יוצאות למסגרת אחת.
+     */
+    private Coalesce coalesce = new Coalesce();
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public void setMaxQueueDepth(int maxQueueDepth) {
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    public int getBufferSizeLimit() {
+        return bufferSizeLimit;
+    }
+
+    public void setBufferSizeLimit(int bufferSizeLimit) {
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    public Duration getSendTimeLimit() {
+        return sendTimeLimit;
+    }
+
+    public void setSendTimeLimit(Duration sendTimeLimit) {
+        this.sendTimeLimit = sendTimeLimit;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public int getWriterThreads() {
+        return writerThreads;
+    }
+
+    public void setWriterThreads(int writerThreads) {
+        this.writerThreads = writerThreads;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public Coalesce getCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(Coalesce coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * דחיסת permessage-deflate (RFC 7692) בנקודת הקצה /ws/chat
+     * הדחיסה עצמה נעשית ב-Tomcat; כאן נקבע אם להסכים לה ובאיזה מצב
+     */
+    public static class Compression {
+
+        /**
+         * האם להסכים ל-permessage-deflate כשהלקוח מציע אותו.
+         */
+        private boolean enabled = true;
+
+        /**
+         * true = חלון הדחיסה נשמר בין מסגרות (יחס דחיסה טוב יותר, כ-64KB זיכרון לכל חיבור בשני הכיוונים);
+         * false = כל מסגרת נדחסת לבד (server_no_context_takeover ו-client_no_context_takeover).
+         */
+        private boolean contextTakeover = true;
+
+        /**
+         * מסגרות קטנות מזה נספרות כקטנות מכדי שהדחיסה תשתלם.
+         * המימוש של Tomcat דוחס כל מסגרת נתונים בחיבור שהסכים לדחיסה, ולכן זה סף מדידה ולא סף דחיסה.
+         */
+        private int minFrameSize = 256;
+
+        /**
+         * שיעור המסגרות היוצאות (0 עד 1) שנדחסות בצד לצורך מדידת יחס הדחיסה ועלות ה-CPU.
+         */
+        private double sampleRate = 0.01;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isContextTakeover() {
+            return contextTakeover;
+        }
+
+        public void setContextTakeover(boolean contextTakeover) {
+            this.contextTakeover = contextTakeover;
+        }
+
+        public int getMinFrameSize() {
+            return minFrameSize;
+        }
+
+        public void setMinFrameSize(int minFrameSize) {
+            this.minFrameSize = minFrameSize;
+        }
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+    }
+
+    /**
+     * איחוד הודעות יוצאות לאותו משתמש במסגרת מערך אחת
+     * חל רק על חיבורים שביקשו זאת בלחיצת היד (caps=batch); שאר החיבורים מקבלים מסגרת לכל הודעה
+     */
+    public static class Coalesce {
+
+        /**
+         * האם לאחד הודעות לחיבורים שתומכים בכך.
+         */
+        private boolean enabled = true;
+
+        /**
+         * חלון האיסוף; הודעה מחכה לכל היותר זמן כזה לפני שליחה.
+         */
+        private Duration window = Duration.ofMillis(3);
+
+        /**
+         * מספר ההודעות המקסימלי במסגרת מאוחדת; מסגרת מלאה נשלחת מיד.
+         */
+        private int maxMessages = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getMaxMessages() {
+            return maxMessages;
+        }
+
+        public void setMaxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+        }
+    }
+}
@@ -2,31 +2,18 @@ package com.assignmenthasan.chatapp.controller;
 
 import com.assignmenthasan.chatapp.dto.ConversationSummary;
 import com.assignmenthasan.chatapp.model.AppUser;
+import com.assignmenthasan.chatapp.model.Conversation;
 import com.assignmenthasan.chatapp.repo.AppUserRepository;
-import com.google.firebase.auth.FirebaseAuth;
+import com.assignmenthasan.chatapp.security.TokenVerifier;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
 import com.google.firebase.auth.FirebaseToken;
-import org.bson.Document;
-import org.springframework.data.domain.Sort;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.Aggregation;
-import org.springframework.data.mongodb.core.aggregation.AggregationResults;
-import org.springframework.data.mongodb.core.aggregation.GroupOperation;
-import org.springframework.data.mongodb.core.aggregation.LimitOperation;
-import org.springframework.data.mongodb.core.aggregation.MatchOperation;
-import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
-import org.springframework.data.mongodb.core.aggregation.SortOperation;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
-
 /**
  * Controller לשיחות – מחזיר סיכומי שיחות אחרונות למשתמש המחובר.
  * נתיב בסיס: /api/conversations
@@ -35,19 +22,24 @@ import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
 @RequestMapping("/api/conversations")
 public class ConversationController {
 
-    private final MongoTemplate mongoTemplate;
+    private final ConversationIndex conversations;
     private final AppUserRepository userRepo;
+    private final TokenVerifier tokenVerifier;
 
-    public ConversationController(MongoTemplate mongoTemplate, AppUserRepository userRepo) {
-        this.mongoTemplate = mongoTemplate;
+    public ConversationController(ConversationIndex conversations, AppUserRepository userRepo,
+                                  TokenVerifier tokenVerifier) {
+        this.conversations = conversations;
         this.userRepo = userRepo;
+        this.tokenVerifier = tokenVerifier;
     }
 
     /**
      * GET /api/conversations/recent?limit=20
      *
      * מאמת את המשתמש באמצעות Firebase ID Token, ואז מחזיר רשימת סיכומי שיחות
-     * (otherUid, otherEmail, lastTimestampIso) ממוינת לפי זמן הודעה אחרונה.
+     * (otherUid, otherEmail, lastTimestampIso, preview, סימני הקריאה והמסירה) ממוינת לפי זמן הודעה אחרונה,
+     * כולל קבוצות (otherUid הוא מזהה הקבוצה, עם groupName ו-memberCount),
+     * מתוך אוסף conversations שמתעדכן בזמן שמירת ההודעות.
      *
      * @param authHeader כותרת Authorization בפורמט "Bearer <token>"
      * @param limit      כמות תוצאות מבוקשת (ברירת מחדל 20)
@@ -62,61 +54,50 @@ public class ConversationController {
             // חילוץ הטוקן מה־Authorization header
             String token = stripBearer(authHeader);
 
-            // אימות הטוקן וקבלת נתוני המשתמש מ־Firebase
-            FirebaseToken decoded = FirebaseAuth.getInstance().verifyIdToken(token);
+            // אימות הטוקן וקבלת נתוני המשתמש (מהמטמון – המסנן כבר אימת אותו)
+            FirebaseToken decoded = tokenVerifier.verify(token);
             String me = decoded.getUid();
 
-            // שלב 1: סינון רק להודעות שבהן אני שולח או מקבל
-            MatchOperation matchMine = match(new Criteria().orOperator(
-                    Criteria.where("senderId").is(me),
-                    Criteria.where("receiverId").is(me)
-            ));
-
-            // שלב 2: otherId = אם אני השולח → הנמען; אחרת → השולח
-            var otherIdExpr = ConditionalOperators.when(Criteria.where("senderId").is(me))
-                    .thenValueOf("receiverId")
-                    .otherwiseValueOf("senderId");
-
-            // נשמר גם את timestamp לצורך שלב ה־group (max)
-            ProjectionOperation projectOther = project("senderId", "receiverId", "timestamp")
-                    .and(otherIdExpr).as("otherId");
-
-            // שלב 3: קיבוץ לפי otherId ובחירת הזמן האחרון
-            GroupOperation groupByOther = group("otherId")
-                    .max("timestamp").as("lastTs");
-
-            // שלב 4+5: מיון יורד לפי הזמן האחרון והגבלת כמות
-            SortOperation sortByLast = sort(Sort.Direction.DESC, "lastTs");
-            LimitOperation limitOp = limit(limit);
-
-            Aggregation agg = newAggregation(
-                    matchMine,
-                    projectOther,
-                    groupByOther,
-                    sortByLast,
-                    limitOp
-            );
-
-            AggregationResults<Document> res =
-                    mongoTemplate.aggregate(agg, "messages", Document.class);
-            List<Document> docs = res.getMappedResults();
-
-            // Fetch emails for the "otherId" values
-            List<String> otherIds = docs.stream()
-                    .map(d -> d.getString("_id"))
-                    .collect(Collectors.toList());
-
-            Map<String, String> emailByUid = userRepo.findAllById(otherIds).stream()
-                    .collect(Collectors.toMap(AppUser::getUid, AppUser::getEmail, (a, b) -> a));
+            // קריאת טווח אחת על האינדקס {participants, lastTimestamp}
+            List<Conversation> docs = conversations.recent(me, limit);
+
+            // דוא"ל שעוד לא נכנס למסמך השיחה (משתמש שסונכרן אחרי ההודעה) – שליפה רק עבורם
+            Map<String, String> emailByUid = new HashMap<>();
+            List<String> missing = new ArrayList<>();
+            for (Conversation c : docs) {
+                if (Conversation.isGroup(c.getId())) continue;
+                String other = otherOf(c, me);
+                String email = c.getEmails() != null ? c.getEmails().get(other) : null;
+                if (email != null) emailByUid.put(other, email);
+                else missing.add(other);
+            }
+            if (!missing.isEmpty()) {
+                emailByUid.putAll(userRepo.findAllById(missing).stream()
+                        .filter(u -> u.getEmail() != null)
+                        .collect(Collectors.toMap(AppUser::getUid, AppUser::getEmail, (x, y) -> x)));
+            }
 
             List<ConversationSummary> out = new ArrayList<>();
-            for (Document d : docs) {
-                String otherUid = d.getString("_id");
-                Date lastTs = d.getDate("lastTs");
+            for (Conversation c : docs) {
+                if (Conversation.isGroup(c.getId())) {
+                    // קבוצות מגיעות מאותה קריאה, ממוינות יחד עם השיחות בין שניים
+                    out.add(new ConversationSummary(c.getId(), null,
+                            (c.getLastTimestamp() != null ? c.getLastTimestamp().toString() : null),
+                            c.getPreview(), null, null, null, c.getName(),
+                            c.getParticipants() != null ? c.getParticipants().size() : 0));
+                    continue;
+                }
+                String otherUid = otherOf(c, me);
                 out.add(new ConversationSummary(
                         otherUid,
                         emailByUid.get(otherUid),
-                        (lastTs != null ? Instant.ofEpochMilli(lastTs.getTime()).toString() : null)
+                        (c.getLastTimestamp() != null ? c.getLastTimestamp().toString() : null),
+                        c.getPreview(),
+                        watermark(c.getRead(), me),
+                        watermark(c.getRead(), otherUid),
+                        watermark(c.getDelivered(), otherUid),
+                        null,
+                        null
                 ));
             }
 
@@ -126,6 +107,17 @@ public class ConversationController {
         }
     }
 
+    private static Long watermark(Map<String, Long> marks, String uid) {
+        return marks == null ? null : marks.get(uid);
+    }
+
+    private static String otherOf(Conversation c, String me) {
+        for (String p : c.getParticipants()) {
+            if (!p.equals(me)) return p;
+        }
+        return me;
+    }
+
     private static String stripBearer(String header) {
         if (header == null) return null;
         return header.startsWith("Bearer ") ? header.substring(7) : header;
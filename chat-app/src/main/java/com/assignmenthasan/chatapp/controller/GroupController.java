@@ -0,0 +1,98 @@
+package com.assignmenthasan.chatapp.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.assignmenthasan.chatapp.dto.CreateGroupRequest;
+import com.assignmenthasan.chatapp.dto.GroupInfo;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.service.GroupDirectory;
+
+/**
+ * בקר REST לשיחות קבוצתיות
+ * יצירת קבוצה וניהול החברים בה; ההודעות עצמן עוברות ב-WebSocket עם receiverId של הקבוצה
+ */
+@RestController
+@RequestMapping("/api/groups")
+public class GroupController {
+
+    private final GroupDirectory groups;
+
+    /**
+     * בנאי המקבל את שירות החברות בקבוצות
+     * @param groups חברות בקבוצות
+     */
+    public GroupController(GroupDirectory groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * יוצרת קבוצה; המשתמש הנוכחי הוא היוצר ותמיד חבר בה
+     * @param auth פרטי האימות של המשתמש הנוכחי
+     * @param request שם הקבוצה והחברים
+     * @return פרטי הקבוצה, או 400 לשם חסר או ליותר מדי חברים
+     */
+    @PostMapping
+    public ResponseEntity<?> create(Authentication auth, @RequestBody CreateGroupRequest request) {
+        String me = (String) auth.getPrincipal();
+        try {
+            return ResponseEntity.ok(GroupInfo.of(groups.create(me, request.getName(), request.getMembers())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("{\"error\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    /**
+     * @param auth פרטי האימות של המשתמש הנוכחי
+     * @param id מזהה הקבוצה
+     * @return פרטי הקבוצה, או 404 אם אין כזו או שהמשתמש לא חבר בה
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<?> get(Authentication auth, @PathVariable String id) {
+        String me = (String) auth.getPrincipal();
+        Conversation group = groups.find(id);
+        if (group == null || group.getParticipants() == null || !group.getParticipants().contains(me)) {
+            return ResponseEntity.status(404).body("{\"error\":\"group not found\"}");
+        }
+        return ResponseEntity.ok(GroupInfo.of(group));
+    }
+
+    /**
+     * מוסיפה חבר לקבוצה; רק חבר קיים יכול להוסיף
+     * @param auth פרטי האימות של המשתמש הנוכחי
+     * @param id מזהה הקבוצה
+     * @param uid המשתמש שמתווסף
+     * @return 204, או 403 אם אין הרשאה, הקבוצה לא קיימת או מלאה
+     */
+    @PostMapping("/{id}/members/{uid}")
+    public ResponseEntity<?> addMember(Authentication auth, @PathVariable String id, @PathVariable String uid) {
+        String me = (String) auth.getPrincipal();
+        if (!groups.addMember(id, me, uid)) {
+            return ResponseEntity.status(403).body("{\"error\":\"cannot add member\"}");
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * מסירה חבר; משתמש יכול לעזוב בעצמו, והיוצר יכול להסיר חברים אחרים
+     * @param auth פרטי האימות של המשתמש הנוכחי
+     * @param id מזהה הקבוצה
+     * @param uid המשתמש שמוסר
+     * @return 204, או 403 אם אין הרשאה או שהקבוצה לא קיימת
+     */
+    @DeleteMapping("/{id}/members/{uid}")
+    public ResponseEntity<?> removeMember(Authentication auth, @PathVariable String id, @PathVariable String uid) {
+        String me = (String) auth.getPrincipal();
+        if (!groups.removeMember(id, me, uid)) {
+            return ResponseEntity.status(403).body("{\"error\":\"cannot remove member\"}");
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,6 +1,6 @@
 package com.assignmenthasan.chatapp.controller;
 
-import java.util.Comparator;
+import java.io.IOException;
 import java.util.List;
 
 import org.springframework.http.ResponseEntity;
@@ -10,46 +10,104 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.assignmenthasan.chatapp.model.Message;
-import com.assignmenthasan.chatapp.repo.MessageRepository;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.service.GroupDirectory;
+import com.assignmenthasan.chatapp.service.MessageHistory;
+import com.assignmenthasan.chatapp.service.MessageSearch;
 
 /**
  * בקר REST לניהול הודעות צ'אט
- * מספק נקודות קצה לשליפת היסטוריית הודעות
+ * מספק נקודות קצה לשליפת היסטוריית הודעות ולחיפוש בהן
  */
 @RestController
 @RequestMapping("/api/messages")
 public class MessageController {
 
-    private final MessageRepository repo;
+    private final MessageHistory history;
+    private final GroupDirectory groups;
+    private final MessageSearch search;
 
     /**
-     * בנאי המקבל את מאגר ההודעות
-     * @param repo מאגר הודעות למסד הנתונים
+     * בנאי המקבל את שירות ההיסטוריה, את החברות בקבוצות ואת החיפוש
+     * @param history קריאת היסטוריה בעמודים לפי סמן
+     * @param groups חברות בקבוצות (רק חבר קורא היסטוריה של קבוצה)
+     * @param search חיפוש טקסט חופשי בהודעות
      */
-    public MessageController(MessageRepository repo) {
-        this.repo = repo;
+    public MessageController(MessageHistory history, GroupDirectory groups, MessageSearch search) {
+        this.history = history;
+        this.groups = groups;
+        this.search = search;
     }
 
     /**
-     * מחזירה הודעות אחרונות עם משתמש מסוים
+     * מחזירה עמוד מהיסטוריית השיחה עם משתמש מסוים
+     * בלי סמן – ההודעות האחרונות; עם before – עמוד ישן יותר; עם after – הודעות חדשות יותר
      * @param auth פרטי האימות של המשתמש הנוכחי
-     * @param withUser מזהה המשתמש השני בשיחה
-     * @param limit מספר ההודעות המקסימלי להחזיר (ברירת מחדל: 50)
-     * @return רשימת הודעות ממוינות לפי זמן
+     * @param withUser מזהה המשתמש השני בשיחה, או מזהה קבוצה
+     * @param limit גודל העמוד (ברירת מחדל: 50, מקסימום 200)
+     * @param before סמן nextCursor מעמוד קודם, לגלילה אחורה
+     * @param after סמן להודעות שאחריו, לגלילה קדימה
+     * @return MessagePage עם הודעות ממוינות לפי זמן וסמן לעמוד הבא, 400 לסמן לא תקין, או 403 לקבוצה שהמשתמש לא חבר בה
      */
     @GetMapping
-    public ResponseEntity<List<Message>> getRecent(
+    public ResponseEntity<?> getRecent(
             Authentication auth,
             @RequestParam String withUser,
-            @RequestParam(defaultValue = "50") int limit) {
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after) {
 
         String me = (String) auth.getPrincipal();
-        var list = repo.findTop50BySenderIdAndReceiverIdOrSenderIdAndReceiverIdOrderByTimestampDesc(
-                me, withUser, withUser, me);
-        // repo method is desc; sort ascending for UI if desired:
-        list.sort(Comparator.comparing(Message::getTimestamp));
-        if (limit < list.size()) list = list.subList(list.size() - limit, list.size());
-        return ResponseEntity.ok(list);
+        if (Conversation.isGroup(withUser) && !groups.isMember(withUser, me)) {
+            return ResponseEntity.status(403).body("{\"error\":\"not a group member\"}");
+        }
+        try {
+            return ResponseEntity.ok(history.page(me, withUser, limit, before, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("{\"error\":\"" + e.getMessage() + "\"}");
+        }
+    }
+
+    /**
+     * מחפשת הודעות שמכילות את כל המילים בשאילתה, רק בשיחות שהמשתמש חלק מהן
+     * @param auth פרטי האימות של המשתמש הנוכחי
+     * @param q מילות החיפוש
+     * @param withUser מגביל לשיחה עם משתמש מסוים או לקבוצה (אופציונלי)
+     * @param limit גודל העמוד (ברירת מחדל: 20, מקסימום app.search.maxPageSize)
+     * @param cursor סמן nextCursor מעמוד קודם
+     * @return SearchPage עם הודעות מהחדשה לישנה, 400 לשאילתה או סמן לא תקינים, 403 לקבוצה שהמשתמש לא חבר בה,
+     *         או 404 כשהחיפוש כבוי
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> search(
+            Authentication auth,
+            @RequestParam String q,
+            @RequestParam(required = false) String withUser,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) throws IOException {
+
+        if (!search.isEnabled()) {
+            return ResponseEntity.status(404).body("{\"error\":\"search is disabled\"}");
+        }
+        String me = (String) auth.getPrincipal();
+        String conversation = null;
+        List<String> myGroups;
+        if (withUser == null) {
+            myGroups = groups.groupsOf(me);
+        } else if (Conversation.isGroup(withUser)) {
+            if (!groups.isMember(withUser, me)) {
+                return ResponseEntity.status(403).body("{\"error\":\"not a group member\"}");
+            }
+            conversation = withUser;
+            myGroups = List.of(withUser);
+        } else {
+            conversation = Conversation.keyOf(me, withUser);
+            myGroups = List.of();
+        }
+        try {
+            return ResponseEntity.ok(search.search(me, myGroups, conversation, q, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("{\"error\":\"" + e.getMessage() + "\"}");
+        }
     }
 }
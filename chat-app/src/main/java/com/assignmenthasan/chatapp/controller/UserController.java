@@ -15,7 +15,8 @@ import org.springframework.web.bind.annotation.RestController;
 import com.assignmenthasan.chatapp.dto.UserLookupResponse;
 import com.assignmenthasan.chatapp.model.AppUser;
 import com.assignmenthasan.chatapp.repo.AppUserRepository;
-import com.google.firebase.auth.FirebaseAuth;
+import com.assignmenthasan.chatapp.security.TokenVerifier;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
 import com.google.firebase.auth.FirebaseToken;
 
 /**
@@ -27,13 +28,20 @@ import com.google.firebase.auth.FirebaseToken;
 public class UserController {
 
     private final AppUserRepository repo;
+    private final TokenVerifier tokenVerifier;
+    private final ConversationIndex conversations;
 
     /**
-     * בנאי המקבל את מאגר המשתמשים
+     * בנאי המקבל את מאגר המשתמשים, את שירות אימות הטוקנים ואת אינדקס השיחות
      * @param repo מאגר משתמשים למסד הנתונים
+     * @param tokenVerifier שירות אימות הטוקנים המשותף (הטוקן כבר במטמון מהמסנן)
+     * @param conversations אינדקס השיחות (מחזיק עותק של הדוא"ל)
      */
-    public UserController(AppUserRepository repo) {
+    public UserController(AppUserRepository repo, TokenVerifier tokenVerifier,
+                          ConversationIndex conversations) {
         this.repo = repo;
+        this.tokenVerifier = tokenVerifier;
+        this.conversations = conversations;
     }
 
     /**
@@ -46,7 +54,7 @@ public class UserController {
     public ResponseEntity<?> upsertMe(@RequestHeader(HttpHeaders.AUTHORIZATION) String authHeader) {
         try {
             String token = stripBearer(authHeader);
-            FirebaseToken decoded = FirebaseAuth.getInstance().verifyIdToken(token);
+            FirebaseToken decoded = tokenVerifier.verify(token);
 
             String uid = decoded.getUid();
             String email = decoded.getEmail();           // may be null if provider didn’t supply; fine
@@ -63,6 +71,10 @@ public class UserController {
                     .build();
 
             repo.save(user);
+            // הדוא"ל השתנה או נוסף – מעדכנים את העותק במסמכי השיחות
+            if (user.getEmail() != null && (existing == null || !user.getEmail().equals(existing.getEmail()))) {
+                conversations.updateEmail(uid, user.getEmail());
+            }
             return ResponseEntity.ok(new UserLookupResponse(user.getUid(), user.getEmail()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("{\"error\":\"Unable to sync user\"}");
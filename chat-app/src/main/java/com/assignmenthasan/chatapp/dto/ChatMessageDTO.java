@@ -1,5 +1,7 @@
 package com.assignmenthasan.chatapp.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.Data;
 
 /**
@@ -8,10 +10,29 @@ import lombok.Data;
  */
 @Data
 public class ChatMessageDTO {
+
+    /** סוג מסגרת: אישור שההודעות הגיעו למכשיר */
+    public static final String TYPE_DELIVERED = "delivered";
+    /** סוג מסגרת: אישור שההודעות נקראו */
+    public static final String TYPE_READ = "read";
+    /** סוג מסגרת: השולח מקליד לנמען (לא נשמר, נזרק אם הנמען לא מחובר) */
+    public static final String TYPE_TYPING = "typing";
+
+    /**
+     * סוג המסגרת מהלקוח: null להודעת צ'אט, delivered או read לאישור, typing להקלדה.
+     * באישור senderId הוא המאשר, receiverId הוא הצד השני בשיחה ו-seq הוא המספר האחרון ברצף של המאשר
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String type;
+
+    /** באישור: כל ההודעות בשיחה עד המספר הזה ברצף של המאשר הגיעו/נקראו */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long seq;
+
     /** מזהה המשתמש ששולח את ההודעה */
     private String senderId;
     
-    /** מזהה המשתמש שאמור לקבל את ההודעה */
+    /** מזהה המשתמש שאמור לקבל את ההודעה, או מזהה קבוצה (g_...) להודעה לכל החברים */
     private String receiverId;
     
     /** חותמת זמן בפורמט ISO (הלקוח יכול לשלוח או שהשרת יקבע) */
@@ -19,4 +40,12 @@ public class ChatMessageDTO {
     
     /** תוכן ההודעה */
     private String message;
+
+    /** מספר המסירה של ההודעה ברצף של השולח (נקבע בשרת; הלקוח לא שולח אותו) */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long senderSeq;
+
+    /** מספר המסירה של ההודעה ברצף של הנמען (נקבע בשרת; הלקוח לא שולח אותו) */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long receiverSeq;
 }
@@ -6,7 +6,13 @@ import lombok.NoArgsConstructor;
 
 @Data @AllArgsConstructor @NoArgsConstructor
 public class ConversationSummary {
-    private String otherUid;
+    private String otherUid;         // the peer, or the group id (g_...) for group conversations
     private String otherEmail;       // may be null if not synced yet
     private String lastTimestampIso; // ISO-8601 string
+    private String preview;          // start of the last message
+    private Long readWatermark;           // my last read seq in this conversation (my delivery sequence)
+    private Long otherReadWatermark;      // peer's read seq; my messages with receiverSeq <= it were read
+    private Long otherDeliveredWatermark; // peer's delivered seq
+    private String groupName;        // null for one-to-one conversations
+    private Integer memberCount;     // null for one-to-one conversations
 }
@@ -0,0 +1,11 @@
+package com.assignmenthasan.chatapp.dto;
+
+import java.util.List;
+
+import lombok.Data;
+
+@Data
+public class CreateGroupRequest {
+    private String name;
+    private List<String> members; // the creator is added even if missing
+}
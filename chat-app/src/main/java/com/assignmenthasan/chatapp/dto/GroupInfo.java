@@ -0,0 +1,21 @@
+package com.assignmenthasan.chatapp.dto;
+
+import java.util.List;
+
+import com.assignmenthasan.chatapp.model.Conversation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data @AllArgsConstructor @NoArgsConstructor
+public class GroupInfo {
+    private String id;       // g_<hex>; used as receiverId for group messages and withUser for history
+    private String name;
+    private String ownerId;
+    private List<String> members;
+
+    public static GroupInfo of(Conversation group) {
+        return new GroupInfo(group.getId(), group.getName(), group.getOwnerId(), group.getParticipants());
+    }
+}
@@ -0,0 +1,19 @@
+package com.assignmenthasan.chatapp.dto;
+
+import java.util.List;
+
+import com.assignmenthasan.chatapp.model.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * עמוד אחד מהיסטוריית שיחה
+ * ההודעות ממוינות מהישנה לחדשה; nextCursor ממשיך באותו כיוון (null כשאין עוד)
+ */
+@Data @AllArgsConstructor @NoArgsConstructor
+public class MessagePage {
+    private List<Message> messages;
+    private String nextCursor;
+}
@@ -0,0 +1,35 @@
+package com.assignmenthasan.chatapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * מסגרת נוכחות או הקלדה שנשלחת רק לחיבורים עם caps=presence
+ * {"type":"presence","uid":X,"online":true|false} למי שיש לו שיחה עם X,
+ * {"type":"typing","uid":X} לנמען שאליו X מקליד
+ */
+@Data @AllArgsConstructor @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PresenceUpdate {
+    public static final String TYPE_PRESENCE = "presence";
+
+    /** presence או typing */
+    private String type;
+
+    /** המשתמש שהעדכון עליו */
+    private String uid;
+
+    /** מצב החיבור; null באירוע הקלדה */
+    private Boolean online;
+
+    public static PresenceUpdate presence(String uid, boolean online) {
+        return new PresenceUpdate(TYPE_PRESENCE, uid, online);
+    }
+
+    public static PresenceUpdate typing(String uid) {
+        return new PresenceUpdate(ChatMessageDTO.TYPE_TYPING, uid, null);
+    }
+}
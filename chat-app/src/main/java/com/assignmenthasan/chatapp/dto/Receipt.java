@@ -0,0 +1,34 @@
+package com.assignmenthasan.chatapp.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * מסגרת אישור שנשלחת לצד השני בשיחה ולמכשירים האחרים של המאשר (חיבורים עם caps=receipts)
+ * הערכים הם סימני מים ברצף המסירה של המאשר: כל הודעה בשיחה שה-receiverSeq שלה קטן או שווה להם הגיעה/נקראה
+ */
+@Data @AllArgsConstructor @NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Receipt {
+    /** תמיד receipt */
+    private String type = "receipt";
+
+    /** מפתח השיחה (Conversation.keyOf) */
+    private String conversationKey;
+
+    /** המשתמש שאישר */
+    private String uid;
+
+    /** סימן המסירה של המאשר */
+    private Long delivered;
+
+    /** סימן הקריאה של המאשר, או null אם לא השתנה */
+    private Long read;
+
+    public Receipt(String conversationKey, String uid, Long delivered, Long read) {
+        this("receipt", conversationKey, uid, delivered, read);
+    }
+}
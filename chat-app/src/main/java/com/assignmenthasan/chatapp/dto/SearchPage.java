@@ -0,0 +1,19 @@
+package com.assignmenthasan.chatapp.dto;
+
+import java.util.List;
+
+import com.assignmenthasan.chatapp.model.Message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * עמוד אחד של תוצאות חיפוש בהודעות
+ * ההודעות ממוינות מהחדשה לישנה; nextCursor מחזיר את העמוד הבא (null כשאין עוד)
+ */
+@Data @AllArgsConstructor @NoArgsConstructor
+public class SearchPage {
+    private List<Message> messages;
+    private String nextCursor;
+}
@@ -0,0 +1,87 @@
+package com.assignmenthasan.chatapp.model;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * סיכום שיחה – מסמך אחד לכל זוג משתמשים או לכל קבוצה
+ * מתעדכן בכל שמירת הודעות, כך שרשימת השיחות האחרונות היא קריאת טווח אחת באינדקס.
+ * בקבוצה המזהה מתחיל ב-GROUP_PREFIX ו-participants הם חברי הקבוצה.
+ */
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+@Document(collection = "conversations")
+@CompoundIndex(name = "participants_lastTimestamp", def = "{'participants': 1, 'lastTimestamp': -1}")
+public class Conversation {
+    /** קידומת המזהה של שיחות קבוצתיות; מזהי משתמשים של Firebase לא מכילים '_' */
+    public static final String GROUP_PREFIX = "g_";
+
+    /** מפתח הזוג: שני המזהים ממוינים ומופרדים ב-'|'; בקבוצה – מזהה הקבוצה */
+    @Id
+    private String id;
+
+    /** שני המשתתפים בשיחה, או חברי הקבוצה */
+    private List<String> participants;
+
+    /** שם הקבוצה; null בשיחה בין שניים */
+    private String name;
+
+    /** מי שיצר את הקבוצה */
+    private String ownerId;
+
+    /** זמן ההודעה האחרונה בשיחה */
+    private Instant lastTimestamp;
+
+    /** מזהה ההודעה האחרונה */
+    private String lastMessageId;
+
+    /** מי שלח את ההודעה האחרונה */
+    private String lastSenderId;
+
+    /** תחילת תוכן ההודעה האחרונה */
+    private String preview;
+
+    /** דוא"ל של כל משתתף לפי מזהה (יכול לחסור אם המשתמש עוד לא סונכרן) */
+    private Map<String, String> emails;
+
+    /** לכל משתתף: המספר הגבוה ביותר ברצף המסירה שלו שהגיע למכשיר (סימן מים, רק עולה) */
+    private Map<String, Long> delivered;
+
+    /** לכל משתתף: המספר הגבוה ביותר ברצף המסירה שלו שנקרא */
+    private Map<String, Long> read;
+
+    /**
+     * @param a מזהה משתמש אחד
+     * @param b מזהה המשתמש השני
+     * @return מפתח הזוג, זהה לשני הכיוונים
+     */
+    public static String keyOf(String a, String b) {
+        return a.compareTo(b) <= 0 ? a + "|" + b : b + "|" + a;
+    }
+
+    /**
+     * @param id מזהה משתמש, קבוצה או מפתח שיחה
+     * @return true אם זה מזהה של קבוצה
+     */
+    public static boolean isGroup(String id) {
+        return id != null && id.startsWith(GROUP_PREFIX);
+    }
+
+    /**
+     * @param sender השולח
+     * @param receiver הנמען: משתמש או קבוצה
+     * @return מפתח השיחה של הודעה: מזהה הקבוצה, או מפתח הזוג
+     */
+    public static String keyFor(String sender, String receiver) {
+        return isGroup(receiver) ? receiver : keyOf(sender, receiver);
+    }
+}
@@ -3,6 +3,8 @@ package com.assignmenthasan.chatapp.model;
 import java.time.Instant;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.AllArgsConstructor;
@@ -16,6 +18,11 @@ import lombok.NoArgsConstructor;
  */
 @Data @Builder @NoArgsConstructor @AllArgsConstructor
 @Document(collection = "messages")
+@CompoundIndexes({
+    @CompoundIndex(name = "conversationKey_timestamp_id", def = "{'conversationKey': 1, 'timestamp': -1, '_id': -1}"),
+    @CompoundIndex(name = "receiverId_receiverSeq", def = "{'receiverId': 1, 'receiverSeq': 1}"),
+    @CompoundIndex(name = "senderId_senderSeq", def = "{'senderId': 1, 'senderSeq': 1}")
+})
 public class Message {
     /** מזהה ייחודי של ההודעה */
     @Id
@@ -24,12 +31,31 @@ public class Message {
     /** מזהה המשתמש ששלח את ההודעה */
     private String senderId;
     
-    /** מזהה המשתמש שאמור לקבל את ההודעה */
+    /** מזהה המשתמש שאמור לקבל את ההודעה, או מזהה הקבוצה (הודעה קבוצתית נשמרת פעם אחת) */
     private String receiverId;
     
+    /** מפתח השיחה: שני המשתתפים ממוינים, או מזהה הקבוצה (ראו Conversation.keyFor) – השדה שעליו יושב האינדקס */
+    private String conversationKey;
+
     /** חותמת זמן של יצירת ההודעה (נשמרת כ-Instant, מוצגת כ-ISO) */
     private Instant timestamp;
     
     /** תוכן ההודעה */
     private String message;
+
+    /** מספר המסירה ברצף של השולח (DeliverySequences); null בהודעות שנכתבו לפני הרצפים */
+    private Long senderSeq;
+
+    /** מספר המסירה ברצף של הנמען; בקבוצה – המספר ברצף של הקבוצה */
+    private Long receiverSeq;
+
+    /**
+     * @param uid אחד המשתתפים
+     * @return מספר המסירה של ההודעה ברצף של המשתתף, או null
+     */
+    public Long seqOf(String uid) {
+        if (uid.equals(receiverId)) return receiverSeq;
+        if (uid.equals(senderId)) return senderSeq;
+        return null;
+    }
 }
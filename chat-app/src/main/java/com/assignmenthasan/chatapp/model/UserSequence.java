@@ -0,0 +1,23 @@
+package com.assignmenthasan.chatapp.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * מונה רצף המסירה של משתמש – מסמך אחד לכל משתמש
+ * כל הודעה שהמשתמש שולח או מקבל מקבלת את המספר הבא במונה שלו
+ */
+@Data @NoArgsConstructor @AllArgsConstructor
+@Document(collection = "user_sequences")
+public class UserSequence {
+    /** מזהה המשתמש */
+    @Id
+    private String id;
+
+    /** המספר האחרון שהוקצה */
+    private long seq;
+}
@@ -7,6 +7,5 @@ import java.util.List;
 
 public interface MessageRepository extends MongoRepository<Message, String> {
     List<Message> findTop50BySenderIdAndReceiverIdOrderByTimestampDesc(String sender, String receiver);
-    List<Message> findTop50BySenderIdAndReceiverIdOrSenderIdAndReceiverIdOrderByTimestampDesc(
-            String s1, String r1, String s2, String r2);
+    List<Message> findTop50ByConversationKeyOrderByTimestampDesc(String conversationKey);
 }
@@ -1,6 +1,5 @@
 package com.assignmenthasan.chatapp.security;
 
-import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -22,6 +21,16 @@ import java.util.List;
  * במקרה כשל אימות – מחזיר 401 ועוצר את השרשרת.
  */
 public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
+
+    private final TokenVerifier tokenVerifier;
+
+    /**
+     * @param tokenVerifier שירות האימות המשותף (עם מטמון)
+     */
+    public FirebaseAuthenticationFilter(TokenVerifier tokenVerifier) {
+        this.tokenVerifier = tokenVerifier;
+    }
+
     /**
      * רץ פעם אחת לכל בקשה HTTP.
      * @implNote אם אין Authorization או שלא מתחיל ב-"Bearer ", המסנן פשוט ממשיך בשרשרת בלי לאמת.
@@ -39,7 +48,7 @@ public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
             try {
 
                 // אימות ה-ID Token מול Firebase
-                FirebaseToken decodedToken = FirebaseAuth.getInstance().verifyIdToken(idToken);
+                FirebaseToken decodedToken = tokenVerifier.verify(idToken);
                 AbstractAuthenticationToken auth = new AbstractAuthenticationToken(
                         List.of(new SimpleGrantedAuthority("ROLE_USER"))) {
                     @Override public Object getCredentials() { return idToken; }
@@ -0,0 +1,89 @@
+package com.assignmenthasan.chatapp.security;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * מסנן הגבלת קצב לבקשות HTTP
+ * מופע אחד רץ לפני אימות הטוקן ומגביל לפי IP (כולל לחיצות יד של /ws/chat), כך שהצפה לא מגיעה לאימות מול Firebase;
+ * מופע שני רץ אחרי האימות ומגביל לפי משתמש. בקשה שנדחתה מקבלת 429 עם Retry-After.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /** לפי מה המופע מגביל */
+    public enum Scope { IP, USER }
+
+    /** הנתיב שיש לו מגבלה נוספת משלו: חיפוש משתמשים לפי אימייל */
+    static final String LOOKUP_PATH = "/api/users/resolve";
+
+    private final RateLimiter limiter;
+    private final Scope scope;
+
+    /**
+     * @param limiter מגביל הקצב המשותף
+     * @param scope לפי IP (לפני האימות) או לפי משתמש (אחריו)
+     */
+    public RateLimitFilter(RateLimiter limiter, Scope scope) {
+        this.limiter = limiter;
+        this.scope = scope;
+    }
+
+    /**
+     * בדיקות הבריאות של ה-load balancer מגיעות מאותן כתובות ולא מוגבלות
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        if (scope == Scope.IP) {
+            long wait = limiter.acquire(RateLimiter.Kind.IP, request.getRemoteAddr(), 1);
+            if (wait > 0) {
+                reject(response, RateLimiter.Kind.IP, wait);
+                return;
+            }
+        } else {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            // בקשות לא מאומתות (לחיצת יד של WebSocket) מוגבלות רק לפי IP
+            if (auth != null && auth.getPrincipal() instanceof String uid) {
+                long wait = limiter.acquire(RateLimiter.Kind.REST, uid, 1);
+                RateLimiter.Kind kind = RateLimiter.Kind.REST;
+                if (wait == 0 && request.getRequestURI().startsWith(LOOKUP_PATH)) {
+                    wait = limiter.acquire(RateLimiter.Kind.LOOKUP, uid, 1);
+                    kind = RateLimiter.Kind.LOOKUP;
+                    // בקשה שנדחתה לא נספרת גם במגבלה הכללית
+                    if (wait > 0) limiter.release(RateLimiter.Kind.REST, uid, 1);
+                }
+                if (wait > 0) {
+                    limiter.strike(uid);
+                    reject(response, kind, wait);
+                    return;
+                }
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletResponse response, RateLimiter.Kind kind, long waitMillis) throws IOException {
+        response.setStatus(429);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"rate limited\",\"kind\":\"" + kind.tag()
+                + "\",\"retryAfterMs\":" + waitMillis + "}");
+    }
+}
@@ -0,0 +1,201 @@
+package com.assignmenthasan.chatapp.security;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.RateLimitProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * הגבלת קצב לפי משתמש ולפי כתובת IP, בדלי אסימונים נפרד לכל סוג תעבורה
+ * כל דלי הוא long אחד (GCRA: הזמן שבו הדלי יתמלא שוב) שמתעדכן ב-CAS, בלי נעילות.
+ * דלי שהתמלא שקול למפתח שלא נראה מעולם, ולכן הסריקה מסירה אותו מהזיכרון;
+ * משתמשים שקטים לא תופסים מקום, ורק מי ששלח משהו ב-burst/perSecond השניות האחרונות נשאר במפה.
+ */
+@Component
+public class RateLimiter {
+
+    /** סוגי התעבורה; לכל אחד מפה ודלי משלו */
+    public enum Kind {
+        MESSAGE("message"),
+        TYPING("typing"),
+        RECEIPT("receipt"),
+        REST("rest"),
+        LOOKUP("lookup"),
+        IP("ip"),
+        STRIKE("strike");
+
+        private final String tag;
+
+        Kind(String tag) {
+            this.tag = tag;
+        }
+
+        /** @return השם במדדים ובמסגרות השגיאה */
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private final RateLimitProperties props;
+    private final LongSupplier clock;
+    private final Map<Kind, Buckets> buckets = new EnumMap<>(Kind.class);
+    private final ScheduledExecutorService sweeper;
+    private final Counter closed;
+
+    /**
+     * בנאי המקבל את ההגדרות ואת רישום המדדים
+     * @param props הגדרות המגבלות
+     * @param meterRegistry רישום מדדים
+     */
+    @Autowired
+    public RateLimiter(RateLimitProperties props, MeterRegistry meterRegistry) {
+        this(props, meterRegistry, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties props, MeterRegistry meterRegistry, LongSupplier clock) {
+        this.props = props;
+        this.clock = clock;
+        for (Kind kind : Kind.values()) buckets.put(kind, new Buckets(kind, meterRegistry));
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-ratelimit-");
+        threads.setDaemon(true);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threads);
+        this.closed = Counter.builder("chat.ratelimit.closed")
+                .description("Connections closed for repeatedly exceeding a limit").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long period = props.getSweepInterval().toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * לוקחת אסימונים מהדלי של המפתח; אם אין מספיק, לא לוקחת כלום
+     * @param kind סוג התעבורה
+     * @param key מזהה משתמש או כתובת IP
+     * @param permits כמה אסימונים (למשל מספר ההודעות במערך)
+     * @return 0 אם התקבל, אחרת כמה מילישניות לחכות עד שיהיו מספיק אסימונים
+     */
+    public long acquire(Kind kind, String key, int permits) {
+        if (!props.isEnabled() || permits <= 0 || key == null) return 0;
+        Buckets b = buckets.get(kind);
+        RateLimitProperties.Limit limit = limitOf(kind);
+        long interval = (long) (1e9 / limit.getPerSecond());
+        long capacity = interval * limit.getBurst();
+        long cost = interval * permits;
+        Cell cell = b.cells.computeIfAbsent(key, k -> new Cell());
+        long now = clock.getAsLong();
+        while (true) {
+            long full = cell.get();
+            long next = Math.max(full, now) + cost;
+            long excess = next - now - capacity;
+            if (excess > 0) {
+                b.rejected.increment();
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(excess + 999_999));
+            }
+            if (cell.compareAndSet(full, next)) {
+                b.admitted.increment();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * מחזירה אסימונים שנלקחו, למשל כשמסגרת עם כמה סוגי תעבורה נדחתה בדלי מאוחר יותר
+     * @param kind סוג התעבורה
+     * @param key מזהה משתמש או כתובת IP
+     * @param permits כמה אסימונים נלקחו
+     */
+    public void release(Kind kind, String key, int permits) {
+        if (!props.isEnabled() || permits <= 0 || key == null) return;
+        Cell cell = buckets.get(kind).cells.get(key);
+        if (cell == null) return;
+        long cost = (long) (1e9 / limitOf(kind).getPerSecond()) * permits;
+        long now = clock.getAsLong();
+        // דלי שכבר התמלא (או שנסרק ונוצר מחדש) נשאר כמו שהוא
+        cell.updateAndGet(full -> full <= now ? full : Math.max(now, full - cost));
+    }
+
+    /**
+     * רושמת דחייה של משתמש
+     * @param uid מזהה המשתמש שנדחה
+     * @return true אם הוא נדחה יותר מדי פעמים והחיבור שלו צריך להיסגר
+     */
+    public boolean strike(String uid) {
+        boolean exhausted = acquire(Kind.STRIKE, uid, 1) > 0;
+        if (exhausted) closed.increment();
+        return exhausted;
+    }
+
+    /**
+     * @param kind סוג התעבורה
+     * @return מספר המפתחות שמוחזקים בזיכרון
+     */
+    public int tracked(Kind kind) {
+        return buckets.get(kind).cells.size();
+    }
+
+    /** מסירה דליים שהתמלאו; הסרה במירוץ עם acquire לכל היותר מחזירה למשתמש את מה שלקח הרגע */
+    void sweep() {
+        long now = clock.getAsLong();
+        for (Buckets b : buckets.values()) {
+            b.cells.values().removeIf(cell -> cell.get() <= now);
+        }
+    }
+
+    private RateLimitProperties.Limit limitOf(Kind kind) {
+        return switch (kind) {
+            case MESSAGE -> props.getMessage();
+            case TYPING -> props.getTyping();
+            case RECEIPT -> props.getReceipt();
+            case REST -> props.getRest();
+            case LOOKUP -> props.getLookup();
+            case IP -> props.getIp();
+            case STRIKE -> props.getStrikes();
+        };
+    }
+
+    /** הזמן (nanoTime) שבו הדלי יהיה מלא שוב */
+    @SuppressWarnings("serial")
+    private static final class Cell extends AtomicLong {
+        Cell() {
+            super(Long.MIN_VALUE);
+        }
+    }
+
+    /** הדליים והמדדים של סוג תעבורה אחד */
+    private static final class Buckets {
+        final ConcurrentHashMap<String, Cell> cells = new ConcurrentHashMap<>();
+        final Counter admitted;
+        final Counter rejected;
+
+        Buckets(Kind kind, MeterRegistry registry) {
+            this.admitted = Counter.builder("chat.ratelimit").tag("kind", kind.tag()).tag("result", "admitted")
+                    .register(registry);
+            this.rejected = Counter.builder("chat.ratelimit").tag("kind", kind.tag()).tag("result", "rejected")
+                    .register(registry);
+            registry.gauge("chat.ratelimit.keys", Tags.of("kind", kind.tag()), cells, ConcurrentHashMap::size);
+        }
+    }
+}
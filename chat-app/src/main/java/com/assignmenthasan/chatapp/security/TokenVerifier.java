@@ -0,0 +1,186 @@
+package com.assignmenthasan.chatapp.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.TokenCacheProperties;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
+import com.google.firebase.auth.FirebaseToken;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * שירות אימות Firebase ID Token משותף לכל נקודות הכניסה (REST ו-WebSocket)
+ * מחזיק מטמון חסום של טוקנים שכבר אומתו, לפי תקציר SHA-256 של הטוקן,
+ * וכל רשומה פגה בדיוק בזמן ה-exp של הטוקן עצמו
+ */
+@Component
+public class TokenVerifier {
+
+    private final Supplier<FirebaseAuth> firebaseAuth;
+    private final TokenCacheProperties props;
+    private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService background;
+
+    /** טוקן תקף אחרון; משמש לאימות ברקע שמרענן את המפתחות הציבוריים של ה-SDK */
+    private final AtomicReference<String> lastValidToken = new AtomicReference<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter failures;
+    private final Timer verifyLatency;
+
+    /**
+     * בנאי המקבל את הגדרות המטמון ואת רישום המדדים
+     * @param props גודל המטמון ותדירות הניקוי והרענון ברקע
+     * @param meterRegistry רישום מדדים
+     */
+    @Autowired
+    public TokenVerifier(TokenCacheProperties props, MeterRegistry meterRegistry) {
+        this(FirebaseAuth::getInstance, props, meterRegistry);
+    }
+
+    TokenVerifier(Supplier<FirebaseAuth> firebaseAuth, TokenCacheProperties props, MeterRegistry meterRegistry) {
+        this.firebaseAuth = firebaseAuth;
+        this.props = props;
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-auth-");
+        threads.setDaemon(true);
+        this.background = Executors.newSingleThreadScheduledExecutor(threads);
+
+        this.hits = Counter.builder("chat.auth.token.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.auth.token.cache").tag("result", "miss").register(meterRegistry);
+        this.failures = Counter.builder("chat.auth.failures").register(meterRegistry);
+        this.verifyLatency = Timer.builder("chat.auth.token.verify")
+                .description("Firebase verifyIdToken latency on cache miss").register(meterRegistry);
+        meterRegistry.gauge("chat.auth.token.cache.size", cache, ConcurrentHashMap::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        long period = props.getRefreshPeriod().toMillis();
+        background.scheduleWithFixedDelay(this::backgroundRefresh, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        background.shutdownNow();
+    }
+
+    /**
+     * מאמתת ID Token; טוקן שכבר אומת ועדיין לא פג מוחזר מהמטמון
+     * @param idToken הטוקן מהלקוח
+     * @return הטוקן המפוענח
+     * @throws FirebaseAuthException אם הטוקן לא תקף
+     * @throws IllegalArgumentException אם הטוקן ריק
+     */
+    public FirebaseToken verify(String idToken) throws FirebaseAuthException {
+        if (idToken == null || idToken.isBlank()) {
+            failures.increment();
+            throw new IllegalArgumentException("ID token must not be empty");
+        }
+        String key = digest(idToken);
+        long now = System.currentTimeMillis();
+
+        Entry cached = cache.get(key);
+        if (cached != null) {
+            if (cached.expiresAtMillis > now) {
+                hits.increment();
+                return cached.token;
+            }
+            cache.remove(key, cached);
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        FirebaseToken decoded;
+        try {
+            decoded = firebaseAuth.get().verifyIdToken(idToken);
+        } catch (FirebaseAuthException | RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            verifyLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        long exp = expiresAtMillis(decoded);
+        if (exp > now) {
+            if (cache.size() >= props.getMaxEntries()) evict(now);
+            cache.put(key, new Entry(decoded, exp));
+            lastValidToken.set(idToken);
+        }
+        return decoded;
+    }
+
+    /**
+     * @return מספר הטוקנים במטמון
+     */
+    public int cacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * עבודת רקע: מנקה רשומות שפגו, ומאמתת מחדש טוקן תקף אחרון מחוץ למטמון.
+     * ה-SDK מרענן את המפתחות הציבוריים שלו כשהם קרובים לפקיעה בזמן אימות,
+     * ולכן האימות הזה מעביר את הרענון מנתיב הבקשה אל תהליכון הרקע.
+     */
+    void backgroundRefresh() {
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(e -> e.expiresAtMillis <= now);
+
+        String token = lastValidToken.get();
+        if (token == null) return;
+        try {
+            firebaseAuth.get().verifyIdToken(token);
+        } catch (FirebaseAuthException | RuntimeException e) {
+            // הטוקן פג בינתיים – נחכה לטוקן תקף הבא
+            lastValidToken.compareAndSet(token, null);
+        }
+    }
+
+    /** מפנה רשומות שפגו; אם המטמון עדיין מלא, מפנה רשומות שרירותיות עד שיש מקום */
+    private void evict(long now) {
+        cache.values().removeIf(e -> e.expiresAtMillis <= now);
+        Iterator<String> it = cache.keySet().iterator();
+        while (cache.size() >= props.getMaxEntries() && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static long expiresAtMillis(FirebaseToken token) {
+        Object exp = token.getClaims().get("exp");
+        return exp instanceof Number n ? n.longValue() * 1000L : 0L;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** טוקן מפוענח וזמן הפקיעה שלו */
+    private record Entry(FirebaseToken token, long expiresAtMillis) {
+    }
+}
@@ -1,17 +1,18 @@
 package com.assignmenthasan.chatapp.service;
 
-import java.net.URI;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
-import org.springframework.http.RequestEntity;
+import org.bson.types.ObjectId;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import com.assignmenthasan.chatapp.config.PersistenceProperties;
 import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.model.Conversation;
 import com.assignmenthasan.chatapp.model.Message;
-import com.assignmenthasan.chatapp.repo.MessageRepository;
 
 /**
  * שירות לניהול הודעות צ'אט
@@ -20,55 +21,101 @@ import com.assignmenthasan.chatapp.repo.MessageRepository;
 @Service
 public class ChatService {
 
-    private final MessageRepository repo;
-    private final RestTemplate rest;
-
-    @Value("${app.functions.notifyUrl}")
-    private String notifyUrl;
+    private final MessageWriteBehind writeBehind;
+    private final PersistenceProperties persistenceProps;
+    private final NotificationDispatcher notifications;
+    private final DeliverySequences sequences;
 
     /**
-     * בנאי המקבל את מאגר ההודעות
-     * @param repo מאגר הודעות למסד הנתונים
+     * בנאי המקבל את שלב השמירה הדחויה, הגדרותיו, שולח ההתראות ורצפי המסירה
+     * @param writeBehind תור כתיבה מרוכזת למסד הנתונים
+     * @param persistenceProps הגדרות השמירה (האם להמתין לאישור כתיבה)
+     * @param notifications שולח התראות אסינכרוני לפונקציית Firebase
+     * @param sequences הקצאת מספרי מסירה לשולח ולנמען
      */
-    public ChatService(MessageRepository repo) {
-        this.repo = repo;
-        this.rest = new RestTemplate();
+    public ChatService(MessageWriteBehind writeBehind,
+                       PersistenceProperties persistenceProps,
+                       NotificationDispatcher notifications,
+                       DeliverySequences sequences) {
+        this.writeBehind = writeBehind;
+        this.persistenceProps = persistenceProps;
+        this.notifications = notifications;
+        this.sequences = sequences;
     }
 
     /**
      * שומרת הודעה חדשה במסד הנתונים
-     * מוסיפה חותמת זמן שרת ושומרת את ההודעה
+     * מוסיפה חותמת זמן שרת, מזהה ומספרי מסירה, ומעבירה את ההודעה לתור הכתיבה.
+     * לפי app.persistence.awaitAck ממתינה לאישור הכתיבה או חוזרת מיד.
      * @param dto אובייקט העברת נתונים של ההודעה
-     * @return ההודעה השמורה עם מזהה ייחודי
+     * @return ההודעה עם מזהה ייחודי
      */
     public Message persist(ChatMessageDTO dto) {
-        Message msg = Message.builder()
+        Message msg = toMessage(dto);
+        sequences.assign(List.of(msg));
+        CompletableFuture<Message> ack = writeBehind.submit(msg);
+        if (!persistenceProps.isAwaitAck()) {
+            return msg;
+        }
+        try {
+            return ack.join();
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof RuntimeException re) ? re : e;
+        }
+    }
+
+    /**
+     * שומרת קבוצת הודעות שהגיעה במסגרת אחת, בכתיבה מרוכזת אחת
+     * ההתנהגות מול app.persistence.awaitAck זהה ל-persist
+     * @param dtos ההודעות לפי סדר השליחה
+     * @return ההודעות עם מזהים, באותו סדר
+     */
+    public List<Message> persistAll(List<ChatMessageDTO> dtos) {
+        List<Message> msgs = new ArrayList<>(dtos.size());
+        for (ChatMessageDTO dto : dtos) msgs.add(toMessage(dto));
+        sequences.assign(msgs);
+        CompletableFuture<List<Message>> ack = writeBehind.submitAll(msgs);
+        if (!persistenceProps.isAwaitAck()) {
+            return msgs;
+        }
+        try {
+            return ack.join();
+        } catch (CompletionException e) {
+            throw (e.getCause() instanceof RuntimeException re) ? re : e;
+        }
+    }
+
+    /**
+     * מעבירה הודעה לתור הכתיבה בלי להמתין לאישור
+     * @param dto אובייקט העברת נתונים של ההודעה
+     * @return Future שמושלם כאשר המסד אישר את הכתיבה
+     */
+    public CompletableFuture<Message> persistAsync(ChatMessageDTO dto) {
+        Message msg = toMessage(dto);
+        sequences.assign(List.of(msg));
+        return writeBehind.submit(msg);
+    }
+
+    /**
+     * בונה מסמך הודעה עם מזהה שנוצר בצד השרת, כך שהמזהה ידוע עוד לפני הכתיבה
+     */
+    private static Message toMessage(ChatMessageDTO dto) {
+        return Message.builder()
+                .id(new ObjectId().toHexString())
                 .senderId(dto.getSenderId())
                 .receiverId(dto.getReceiverId())
+                .conversationKey(Conversation.keyFor(dto.getSenderId(), dto.getReceiverId()))
                 .timestamp(Instant.now())
                 .message(dto.getMessage())
                 .build();
-        return repo.save(msg);
     }
 
     /**
      * מפעילה פונקציית Firebase להתראה על הודעה חדשה
-     * שולחת בקשת HTTP לפונקציית Firebase עם פרטי ההודעה
+     * ההתראה נכנסת לתור של NotificationDispatcher וחוזרת מיד, בלי לחסום את השולח
      * @param msg ההודעה שנשלחה
      */
     public void notifyFunction(Message msg) {
-        try {
-            var payload = """
-                {"receiverId":"%s","senderId":"%s","messageId":"%s"}
-                """.formatted(msg.getReceiverId(), msg.getSenderId(), msg.getId());
-
-            RequestEntity<String> req = RequestEntity
-                    .post(URI.create(notifyUrl))
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(payload);
-            rest.exchange(req, String.class);
-        } catch (Exception ignored) {
-            // non-critical: assignment allows console log in the function.
-        }
+        notifications.enqueue(msg);
     }
 }
@@ -0,0 +1,71 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * מפסק זרם פשוט לשירות חיצוני
+ * אחרי מספר כשלונות רצופים נפתח לזמן קבוע ודוחה קריאות,
+ * ואז מאפשר קריאת בדיקה אחת (HALF_OPEN) לפני שנסגר שוב
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+
+    /**
+     * @param failureThreshold מספר כשלונות רצופים שפותח את המפסק
+     * @param openNanos משך הזמן (בננו-שניות) שהמפסק נשאר פתוח
+     */
+    public CircuitBreaker(int failureThreshold, long openNanos) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openNanos;
+    }
+
+    /**
+     * @return true אם מותר לבצע קריאה עכשיו
+     */
+    public boolean allowRequest() {
+        State s = state.get();
+        if (s == State.CLOSED) return true;
+        if (s == State.OPEN && System.nanoTime() - openedAt.get() >= openNanos) {
+            // רק קורא אחד עובר למצב בדיקה
+            return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+        }
+        return false;
+    }
+
+    /**
+     * בדיקה ללא שינוי מצב: האם המפסק פתוח ועדיין בתוך זמן ההמתנה
+     * @return true אם קריאות נדחות כרגע
+     */
+    public boolean isRejecting() {
+        return state.get() == State.OPEN && System.nanoTime() - openedAt.get() < openNanos;
+    }
+
+    /** מדווחת על קריאה שהצליחה */
+    public void onSuccess() {
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+    }
+
+    /** מדווחת על קריאה שנכשלה */
+    public void onFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state.get() == State.HALF_OPEN || failures >= failureThreshold) {
+            openedAt.set(System.nanoTime());
+            state.set(State.OPEN);
+        }
+    }
+
+    public State state() {
+        return state.get();
+    }
+}
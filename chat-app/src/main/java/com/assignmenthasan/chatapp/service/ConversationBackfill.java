@@ -0,0 +1,87 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.project;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.ConversationProperties;
+import com.assignmenthasan.chatapp.model.Message;
+
+/**
+ * בנייה מחדש של אוסף השיחות מתוך ההודעות הקיימות
+ * רצה פעם אחת בעליית השרת כאשר app.conversations.backfill=true וההודעות ב-MongoDB;
+ * העדכונים מותנים בזמן, כך שאפשר להריץ אותה שוב או במקביל לתעבורה רגילה
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.conversations", name = "backfill", havingValue = "true")
+@ConditionalOnProperty(prefix = "app.store", name = "backend", havingValue = "mongo", matchIfMissing = true)
+public class ConversationBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationIndex conversations;
+    private final ConversationProperties props;
+
+    public ConversationBackfill(MongoTemplate mongoTemplate, ConversationIndex conversations,
+                                ConversationProperties props) {
+        this.mongoTemplate = mongoTemplate;
+        this.conversations = conversations;
+        this.props = props;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int batchSize = props.getBackfillBatchSize();
+        List<Message> batch = new ArrayList<>(batchSize);
+        int total = 0;
+
+        // ההודעה האחרונה לכל זוג, מחושבת בשרת ה-Mongo; התוצאה נקראת בזרם
+        try (Stream<Document> rows = mongoTemplate.aggregateStream(lastMessagePerPair(), "messages", Document.class)) {
+            for (Document row : (Iterable<Document>) rows::iterator) {
+                batch.add(mongoTemplate.getConverter().read(Message.class, row.get("last", Document.class)));
+                if (batch.size() >= batchSize) {
+                    conversations.apply(batch);
+                    total += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            conversations.apply(batch);
+            total += batch.size();
+        }
+        log.info("Conversations backfill: {} conversations in {} ms", total, System.currentTimeMillis() - start);
+    }
+
+    static Aggregation lastMessagePerPair() {
+        var senderFirst = ComparisonOperators.valueOf("senderId").lessThanEqualTo("receiverId");
+        return newAggregation(
+                sort(Sort.Direction.DESC, "timestamp"),
+                project("senderId", "receiverId", "timestamp", "message")
+                        .and(ConditionalOperators.when(senderFirst).thenValueOf("senderId").otherwiseValueOf("receiverId")).as("a")
+                        .and(ConditionalOperators.when(senderFirst).thenValueOf("receiverId").otherwiseValueOf("senderId")).as("b"),
+                group("a", "b").first(Aggregation.ROOT).as("last")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+    }
+}
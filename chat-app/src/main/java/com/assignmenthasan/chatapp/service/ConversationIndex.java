@@ -0,0 +1,200 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.ConversationProperties;
+import com.assignmenthasan.chatapp.dto.Receipt;
+import com.assignmenthasan.chatapp.model.AppUser;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.repo.AppUserRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * אינדקס השיחות: מסמך אחד לכל זוג משתמשים באוסף conversations
+ * מתעדכן אחרי כל כתיבה מרוכזת של הודעות, כך שרשימת השיחות האחרונות
+ * היא קריאה אחת על האינדקס {participants, lastTimestamp} במקום אגרגציה על כל ההיסטוריה
+ */
+@Component
+public class ConversationIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationIndex.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final AppUserRepository userRepo;
+    private final ConversationProperties props;
+
+    private final Timer updateLatency;
+    private final Counter failed;
+
+    /**
+     * בנאי המקבל את התבנית למסד, את מאגר המשתמשים, את ההגדרות ואת רישום המדדים
+     * @param mongoTemplate תבנית MongoDB
+     * @param userRepo מאגר משתמשים (לכתובות הדוא"ל)
+     * @param props הגדרות אינדקס השיחות
+     * @param meterRegistry רישום מדדים
+     */
+    public ConversationIndex(MongoTemplate mongoTemplate, AppUserRepository userRepo,
+                             ConversationProperties props, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.userRepo = userRepo;
+        this.props = props;
+        this.updateLatency = Timer.builder("chat.conversations.update.latency")
+                .description("Duration of a conversations bulk update").register(meterRegistry);
+        this.failed = Counter.builder("chat.conversations.update.failed")
+                .description("Persisted batches whose conversations update failed").register(meterRegistry);
+    }
+
+    /**
+     * נקראת מתהליכון הכתיבה אחרי שאצווה נשמרה; כישלון כאן לא מכשיל את ההודעות עצמן
+     * @param persisted ההודעות שנכתבו למסד
+     */
+    public void onPersisted(List<Message> persisted) {
+        try {
+            apply(persisted);
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.warn("Conversations update for {} messages failed", persisted.size(), e);
+        }
+    }
+
+    /**
+     * מעדכנת את מסמכי השיחות לפי קבוצת הודעות
+     * לכל זוג נלקחת רק ההודעה החדשה ביותר, והעדכון מותנה ב-lastTimestamp ישן יותר,
+     * כך שאצוות שנכתבות במקביל או שוב (backfill) לא מחזירות את השיחה אחורה
+     * @param messages הודעות שכבר נשמרו
+     */
+    public void apply(Collection<Message> messages) {
+        Map<String, Message> latest = latestPerPair(messages);
+        if (latest.isEmpty()) return;
+
+        Set<String> uids = new HashSet<>();
+        for (Message m : latest.values()) {
+            if (Conversation.isGroup(m.getReceiverId())) continue;
+            uids.add(m.getSenderId());
+            uids.add(m.getReceiverId());
+        }
+        Map<String, String> emailByUid = emailsOf(uids);
+
+        long start = System.nanoTime();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.ORDERED, Conversation.class);
+        for (Map.Entry<String, Message> e : latest.entrySet()) {
+            String key = e.getKey();
+            Message m = e.getValue();
+
+            // שלב 1: המסמך קיים (upsert), עם המשתתפים והדוא"ל הידוע; מסמך של קבוצה נוצר עם הקבוצה
+            if (!Conversation.isGroup(key)) ensureDirect(ops, key, m, emailByUid);
+
+            // שלב 2: ההודעה האחרונה מתעדכנת רק אם היא חדשה יותר ממה שכבר שמור
+            Query newer = Query.query(Criteria.where("_id").is(key).orOperator(
+                    Criteria.where("lastTimestamp").lt(m.getTimestamp()),
+                    Criteria.where("lastTimestamp").exists(false)));
+            ops.updateOne(newer, new Update()
+                    .set("lastTimestamp", m.getTimestamp())
+                    .set("lastMessageId", m.getId())
+                    .set("lastSenderId", m.getSenderId())
+                    .set("preview", preview(m.getMessage())));
+        }
+        ops.execute();
+        updateLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static void ensureDirect(BulkOperations ops, String key, Message m, Map<String, String> emailByUid) {
+        Update ensure = new Update().setOnInsert("participants", participantsOf(m));
+        for (String uid : List.of(m.getSenderId(), m.getReceiverId())) {
+            String email = emailByUid.get(uid);
+            if (email != null) ensure.set("emails." + uid, email);
+        }
+        ops.upsert(Query.query(Criteria.where("_id").is(key)), ensure);
+    }
+
+    /**
+     * מקדמת את סימני המסירה והקריאה בכתיבה מרוכזת אחת: עדכון $max אחד לכל שיחה ומאשר,
+     * כך שמספר הכתיבות לא תלוי במספר ההודעות שאושרו ואישור ישן שמגיע באיחור לא מחזיר סימן אחורה
+     * @param receipts האישורים המאוחדים (שיחה ומאשר ייחודיים)
+     */
+    public void advanceReceipts(Collection<Receipt> receipts) {
+        if (receipts.isEmpty()) return;
+        long start = System.nanoTime();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class);
+        for (Receipt r : receipts) {
+            Update update = new Update();
+            if (r.getDelivered() != null) update.max("delivered." + r.getUid(), r.getDelivered());
+            if (r.getRead() != null) update.max("read." + r.getUid(), r.getRead());
+            ops.updateOne(Query.query(Criteria.where("_id").is(r.getConversationKey())), update);
+        }
+        ops.execute();
+        updateLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * מעדכנת את הדוא"ל של משתמש בכל השיחות שלו (אחרי סנכרון פרטי המשתמש)
+     * @param uid מזהה המשתמש
+     * @param email הדוא"ל החדש
+     */
+    public void updateEmail(String uid, String email) {
+        if (uid == null || email == null) return;
+        mongoTemplate.updateMulti(Query.query(Criteria.where("participants").is(uid)),
+                new Update().set("emails." + uid, email), Conversation.class);
+    }
+
+    /**
+     * @param uid מזהה המשתמש
+     * @param limit מספר השיחות המקסימלי
+     * @return השיחות של המשתמש, מהחדשה לישנה
+     */
+    public List<Conversation> recent(String uid, int limit) {
+        Query q = Query.query(Criteria.where("participants").is(uid))
+                .with(Sort.by(Sort.Direction.DESC, "lastTimestamp"))
+                .limit(limit);
+        return mongoTemplate.find(q, Conversation.class);
+    }
+
+    static Map<String, Message> latestPerPair(Collection<Message> messages) {
+        Map<String, Message> latest = new LinkedHashMap<>();
+        for (Message m : messages) {
+            if (m.getSenderId() == null || m.getReceiverId() == null || m.getTimestamp() == null) continue;
+            latest.merge(Conversation.keyFor(m.getSenderId(), m.getReceiverId()), m,
+                    (a, b) -> b.getTimestamp().isAfter(a.getTimestamp()) ? b : a);
+        }
+        return latest;
+    }
+
+    private static List<String> participantsOf(Message m) {
+        String a = m.getSenderId();
+        String b = m.getReceiverId();
+        return a.compareTo(b) <= 0 ? List.of(a, b) : List.of(b, a);
+    }
+
+    private Map<String, String> emailsOf(Set<String> uids) {
+        return userRepo.findAllById(uids).stream()
+                .filter(u -> u.getEmail() != null)
+                .collect(Collectors.toMap(AppUser::getUid, AppUser::getEmail, (a, b) -> a));
+    }
+
+    private String preview(String text) {
+        if (text == null) return null;
+        int max = props.getPreviewLength();
+        return text.length() <= max ? text : text.substring(0, max);
+    }
+}
@@ -0,0 +1,229 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.DeliveryProperties;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.store.MessageStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * רצפי המסירה לכל משתמש
+ * כל הודעה מקבלת מספר ברצף של השולח ומספר ברצף של הנמען, מונה אחד למשתמש במאגר ההודעות
+ * (ב-MongoDB מונה אטומי באוסף user_sequences, כך שבכל השרתים המספרים עולים ברצף בלי כפילויות).
+ * לקוח שהתחבר מחדש מבקש את מה שאחרי המספר האחרון שראה.
+ * כששרת זה הפעיל היחיד, כל פנייה למונה שומרת מראש seqBlockSize מספרים למשתמש והם מחולקים מהזיכרון,
+ * כך שהודעה לא מחכה למאגר. כשמצטרף שרת נוסף המספרים שלא חולקו מוחזרים למונה, ומשם כל הקצאה פונה
+ * למאגר – אחרת שני שרתים היו מחלקים מספרים מטווחים שונים והנמען היה מקבל אותם שלא לפי הסדר.
+ * מספרים שמורים שלא הוחזרו (נפילת השרת) נשארים חור ברצף, שהחיבור מדלג עליו אחרי gapTimeout.
+ */
+@Component
+public class DeliverySequences {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliverySequences.class);
+    /** מעבר לזה משתמשים חדשים מקבלים מספרים בלי שמירה מראש */
+    private static final int MAX_BLOCKS = 100_000;
+
+    private final MessageStore store;
+    private final DeliveryProperties props;
+    private final BooleanSupplier soleNode;
+    /** הטווחים השמורים לכל משתמש */
+    private final ConcurrentHashMap<String, Block> blocks = new ConcurrentHashMap<>();
+    private final Timer allocateLatency;
+    private final Counter fromBlock;
+
+    /**
+     * בנאי לשרת יחיד (בדיקות ושימוש מחוץ ל-Spring): תמיד שומר מספרים מראש
+     * @param store מאגר ההודעות ומוני הרצף
+     * @param props הגדרות רצפי המסירה
+     * @param meterRegistry רישום מדדים
+     */
+    public DeliverySequences(MessageStore store, DeliveryProperties props, MeterRegistry meterRegistry) {
+        this(store, props, meterRegistry, () -> true);
+    }
+
+    /**
+     * בנאי המקבל את מאגר ההודעות, את ההגדרות, את רישום המדדים ואת הניתוב בין השרתים
+     * @param store מאגר ההודעות ומוני הרצף
+     * @param props הגדרות רצפי המסירה
+     * @param meterRegistry רישום מדדים
+     * @param cluster הניתוב בין השרתים; קובע אם מותר לשמור מספרים מראש
+     */
+    @Autowired
+    public DeliverySequences(MessageStore store, DeliveryProperties props, MeterRegistry meterRegistry,
+                             ClusterRouter cluster) {
+        this(store, props, meterRegistry, cluster::isSoleNode);
+        cluster.onPeersChanged(() -> {
+            if (!cluster.isSoleNode()) releaseBlocks();
+        });
+    }
+
+    private DeliverySequences(MessageStore store, DeliveryProperties props, MeterRegistry meterRegistry,
+                              BooleanSupplier soleNode) {
+        this.store = store;
+        this.props = props;
+        this.soleNode = soleNode;
+        this.allocateLatency = Timer.builder("chat.delivery.seq.allocate")
+                .description("Duration of one per-user sequence allocation from the store").register(meterRegistry);
+        this.fromBlock = Counter.builder("chat.delivery.seq.reserved")
+                .description("Allocations served from numbers reserved in advance, without the store").register(meterRegistry);
+        meterRegistry.gauge("chat.delivery.seq.blocks", blocks, Map::size);
+    }
+
+    /**
+     * @return true אם הודעות מקבלות מספרי מסירה
+     */
+    public boolean isEnabled() {
+        return props.isSequences();
+    }
+
+    /**
+     * מקצה מספרים לקבוצת הודעות לפני שהן נשלחות לכתיבה ולמסירה
+     * לכל משתמש בקבוצה מוקצה טווח אחד, ולא פנייה למאגר לכל הודעה
+     * @param msgs ההודעות לפי סדר השליחה; השדות senderSeq ו-receiverSeq מתמלאים במקום
+     */
+    public void assign(List<Message> msgs) {
+        if (!props.isSequences() || msgs.isEmpty()) return;
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Message m : msgs) {
+            counts.merge(m.getSenderId(), 1, Integer::sum);
+            counts.merge(m.getReceiverId(), 1, Integer::sum);
+        }
+        Map<String, long[]> next = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            long last = allocate(e.getKey(), e.getValue());
+            next.put(e.getKey(), new long[] { last - e.getValue() + 1 });
+        }
+        for (Message m : msgs) {
+            m.setSenderSeq(next.get(m.getSenderId())[0]++);
+            m.setReceiverSeq(next.get(m.getReceiverId())[0]++);
+        }
+    }
+
+    /**
+     * @param uid מזהה המשתמש
+     * @param count כמה מספרים להקצות
+     * @return המספר האחרון בטווח שהוקצה
+     */
+    long allocate(String uid, int count) {
+        int blockSize = props.getSeqBlockSize();
+        if (blockSize > 1 && soleNode.getAsBoolean()) {
+            Block b = blocks.get(uid);
+            if (b == null && blocks.size() < MAX_BLOCKS) b = blocks.computeIfAbsent(uid, k -> new Block());
+            if (b != null) {
+                b.lock.lock();
+                try {
+                    if (!b.closed) {
+                        if (b.last - b.next + 1 < count) refill(uid, b, Math.max(blockSize, count));
+                        else fromBlock.increment();
+                        b.next += count;
+                        return b.next - 1;
+                    }
+                } finally {
+                    b.lock.unlock();
+                }
+            }
+        }
+        return allocateFromStore(uid, count);
+    }
+
+    /**
+     * שומרת טווח חדש; אם הוא ממשיך את הקודם, היתרה נשארת בשימוש
+     */
+    private void refill(String uid, Block b, int size) {
+        long last = allocateFromStore(uid, size);
+        long first = last - size + 1;
+        if (b.next > b.last || first != b.last + 1) b.next = first;
+        b.last = last;
+    }
+
+    private long allocateFromStore(String uid, int count) {
+        long start = System.nanoTime();
+        long last = store.allocateSeq(uid, count);
+        allocateLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return last;
+    }
+
+    /**
+     * מחזירה למונים את המספרים השמורים שלא חולקו; מכאן כל הקצאה פונה למאגר עד שנשמר טווח חדש
+     * נקראת כשמצטרף שרת נוסף ובסגירת השרת
+     */
+    @PreDestroy
+    public void releaseBlocks() {
+        for (Map.Entry<String, Block> e : blocks.entrySet()) {
+            Block b = e.getValue();
+            b.lock.lock();
+            try {
+                if (b.closed) continue;
+                b.closed = true;
+                if (b.next <= b.last) {
+                    try {
+                        store.releaseSeq(e.getKey(), b.last, b.next - 1);
+                    } catch (RuntimeException ex) {
+                        log.warn("Could not release sequence numbers {}..{} of {}", b.next, b.last, e.getKey(), ex);
+                    }
+                }
+            } finally {
+                b.lock.unlock();
+            }
+            blocks.remove(e.getKey(), b);
+        }
+    }
+
+    /**
+     * @param uid מזהה המשתמש
+     * @return המספר האחרון שחולק למשתמש, או 0 אם עוד לא חולק
+     */
+    public long current(String uid) {
+        Block b = blocks.get(uid);
+        if (b != null) {
+            b.lock.lock();
+            try {
+                // המונה במאגר כולל גם את המספרים השמורים שעוד לא חולקו
+                if (!b.closed && b.last > 0) return b.next - 1;
+            } finally {
+                b.lock.unlock();
+            }
+        }
+        return store.currentSeq(uid);
+    }
+
+    /**
+     * ההודעות השמורות של משתמש שהמספר שלהן ברצף שלו גדול מ-afterSeq
+     * ייתכנו חורים של הודעות שעוד לא נכתבו
+     * @param uid מזהה המשתמש
+     * @param afterSeq המספר האחרון שהלקוח כבר קיבל
+     * @param limit מספר ההודעות המקסימלי
+     * @return ההודעות לפי סדר עולה ברצף של המשתמש
+     */
+    public List<Message> since(String uid, long afterSeq, int limit) {
+        return store.since(uid, afterSeq, limit);
+    }
+
+    /**
+     * טווח שמור של משתמש אחד: next הוא המספר הבא לחלוקה, last סוף הטווח; ריק כש-next > last.
+     * מילוי הטווח פונה למאגר תחת lock – ReentrantLock ולא synchronized, כדי לא להצמיד תהליכון וירטואלי
+     */
+    private static final class Block {
+        final ReentrantLock lock = new ReentrantLock();
+        long next = 1;
+        long last;
+        boolean closed;
+    }
+}
@@ -0,0 +1,248 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.GroupProperties;
+import com.assignmenthasan.chatapp.model.Conversation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * חברות בקבוצות
+ * קבוצה היא מסמך באוסף conversations שהמזהה שלו מתחיל ב-g_ וה-participants שלו הם החברים,
+ * כך שרשימת השיחות האחרונות מחזירה קבוצות ושיחות בין שניים באותה קריאה על אותו אינדקס.
+ * רשימת החברים נשמרת בזיכרון לכל קבוצה, ונטענת מחדש אחרי cacheMaxAge או אחרי שינוי בחברים;
+ * שינוי בשרת אחד נשלח לשאר השרתים דרך ClusterRouter, כך שחבר שהוסר לא נשאר חבר בהם עד שהרשימה מתיישנת.
+ */
+@Component
+public class GroupDirectory {
+
+    private final MongoTemplate mongoTemplate;
+    private final GroupProperties props;
+    private final ConcurrentHashMap<String, Members> cache = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /** גדל בכל שינוי בחברים; טעינה שהתחילה לפני שינוי לא נשמרת בזיכרון */
+    private final AtomicLong changes = new AtomicLong();
+    private final Consumer<String> changed;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    /**
+     * בנאי המקבל את התבנית למסד, את ההגדרות ואת רישום המדדים
+     * @param mongoTemplate תבנית MongoDB
+     * @param props הגדרות הקבוצות
+     * @param meterRegistry רישום מדדים
+     */
+    public GroupDirectory(MongoTemplate mongoTemplate, GroupProperties props, MeterRegistry meterRegistry) {
+        this(mongoTemplate, props, meterRegistry, groupId -> { });
+    }
+
+    /**
+     * בנאי לשרת באשכול: שינוי בחברים נשלח לשרתים האחרים, ושינוי שהגיע מהם זורק את הרשימה מהזיכרון
+     * @param mongoTemplate תבנית MongoDB
+     * @param props הגדרות הקבוצות
+     * @param meterRegistry רישום מדדים
+     * @param cluster הניתוב בין השרתים
+     */
+    @Autowired
+    public GroupDirectory(MongoTemplate mongoTemplate, GroupProperties props, MeterRegistry meterRegistry,
+                          ClusterRouter cluster) {
+        this(mongoTemplate, props, meterRegistry, cluster::groupChanged);
+        cluster.onGroupChanged(this::invalidate);
+    }
+
+    private GroupDirectory(MongoTemplate mongoTemplate, GroupProperties props, MeterRegistry meterRegistry,
+                           Consumer<String> changed) {
+        this.mongoTemplate = mongoTemplate;
+        this.props = props;
+        this.changed = changed;
+        this.hits = Counter.builder("chat.groups.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.groups.cache").tag("result", "miss").register(meterRegistry);
+        meterRegistry.gauge("chat.groups.cache.groups", cache, ConcurrentHashMap::size);
+    }
+
+    /**
+     * יוצרת קבוצה חדשה; היוצר תמיד חבר בה
+     * @param ownerId היוצר
+     * @param name שם הקבוצה
+     * @param members החברים הנוספים
+     * @return מסמך הקבוצה
+     * @throws IllegalArgumentException אם השם ריק או שיש יותר מדי חברים
+     */
+    public Conversation create(String ownerId, String name, Collection<String> members) {
+        if (name == null || name.isBlank()) throw new IllegalArgumentException("Group name is required");
+        Set<String> all = new TreeSet<>();
+        all.add(ownerId);
+        if (members != null) {
+            for (String m : members) {
+                if (m != null && !m.isBlank() && !Conversation.isGroup(m)) all.add(m);
+            }
+        }
+        if (all.size() > props.getMaxMembers()) {
+            throw new IllegalArgumentException("A group can have at most " + props.getMaxMembers() + " members");
+        }
+        Conversation group = Conversation.builder()
+                .id(Conversation.GROUP_PREFIX + new ObjectId().toHexString())
+                .name(name.trim())
+                .ownerId(ownerId)
+                .participants(new ArrayList<>(all))
+                .build();
+        mongoTemplate.insert(group);
+        put(group.getId(), Set.copyOf(all));
+        return group;
+    }
+
+    /**
+     * @param groupId מזהה הקבוצה
+     * @return מסמך הקבוצה, או null אם אין כזו
+     */
+    public Conversation find(String groupId) {
+        if (!Conversation.isGroup(groupId)) return null;
+        return mongoTemplate.findById(groupId, Conversation.class);
+    }
+
+    /**
+     * @param groupId מזהה הקבוצה
+     * @return החברים בקבוצה (קבוצה ריקה אם אין כזו), מהזיכרון כשאפשר
+     */
+    public Set<String> members(String groupId) {
+        if (!Conversation.isGroup(groupId)) return Set.of();
+        Members cached = cache.get(groupId);
+        if (cached != null && System.nanoTime() - cached.loadedAt < props.getCacheMaxAge().toNanos()) {
+            cached.lastAccess = System.nanoTime();
+            hits.increment();
+            return cached.uids;
+        }
+        misses.increment();
+        long seen = changes.get();
+        Query q = Query.query(Criteria.where("_id").is(groupId));
+        q.fields().include("participants");
+        Conversation doc = mongoTemplate.findOne(q, Conversation.class);
+        Set<String> uids = doc == null || doc.getParticipants() == null ? Set.of() : Set.copyOf(doc.getParticipants());
+        if (changes.get() == seen) put(groupId, uids);
+        return uids;
+    }
+
+    /**
+     * @param groupId מזהה הקבוצה
+     * @param uid מזהה המשתמש
+     * @return true אם המשתמש חבר בקבוצה
+     */
+    public boolean isMember(String groupId, String uid) {
+        return members(groupId).contains(uid);
+    }
+
+    /**
+     * הקבוצות של משתמש, ישירות מהמסד (לא מהזיכרון – נקרא רק בחיפוש)
+     * יושבת על האינדקס {participants, lastTimestamp}; התנאי על הקידומת מסנן את השיחות בין שניים
+     * @param uid מזהה המשתמש
+     * @return מזהי הקבוצות שהמשתמש חבר בהן
+     */
+    public List<String> groupsOf(String uid) {
+        Query q = Query.query(Criteria.where("participants").is(uid)
+                .and("_id").regex("^" + Conversation.GROUP_PREFIX));
+        q.fields().include("_id");
+        return mongoTemplate.find(q, Conversation.class).stream().map(Conversation::getId).toList();
+    }
+
+    /**
+     * מוסיפה חבר; רק חבר קיים יכול להוסיף
+     * @param groupId מזהה הקבוצה
+     * @param actor המשתמש שמבקש להוסיף
+     * @param uid המשתמש שמתווסף
+     * @return false אם הקבוצה לא קיימת, המבקש לא חבר בה או שהיא מלאה
+     */
+    public boolean addMember(String groupId, String actor, String uid) {
+        if (uid == null || uid.isBlank() || Conversation.isGroup(uid)) return false;
+        // התנאים נבדקים באותה פעולה אטומית במסד, כך ששתי הוספות מקבילות לא עוברות את המגבלה
+        Query q = Query.query(Criteria.where("_id").is(groupId).and("participants").is(actor)
+                .and("participants." + (props.getMaxMembers() - 1)).exists(false));
+        boolean ok = mongoTemplate.updateFirst(q, new Update().addToSet("participants", uid), Conversation.class)
+                .getMatchedCount() > 0;
+        if (ok) {
+            invalidate(groupId);
+            changed.accept(groupId);
+        }
+        return ok;
+    }
+
+    /**
+     * מסירה חבר; משתמש יכול לעזוב בעצמו, והיוצר יכול להסיר כל חבר אחר
+     * @param groupId מזהה הקבוצה
+     * @param actor המשתמש שמבקש להסיר
+     * @param uid המשתמש שמוסר
+     * @return false אם הקבוצה לא קיימת או שאין למבקש הרשאה
+     */
+    public boolean removeMember(String groupId, String actor, String uid) {
+        Criteria who = actor.equals(uid)
+                ? Criteria.where("participants").is(actor)
+                : Criteria.where("ownerId").is(actor);
+        Query q = Query.query(Criteria.where("_id").is(groupId).andOperator(who));
+        boolean ok = mongoTemplate.updateFirst(q, new Update().pull("participants", uid), Conversation.class)
+                .getMatchedCount() > 0;
+        if (ok) {
+            invalidate(groupId);
+            changed.accept(groupId);
+        }
+        return ok;
+    }
+
+    /** זורקת את רשימת החברים של קבוצה מהזיכרון; הקריאה הבאה טוענת אותה מהמסד */
+    private void invalidate(String groupId) {
+        changes.incrementAndGet();
+        cache.remove(groupId);
+    }
+
+    private void put(String groupId, Set<String> uids) {
+        cache.put(groupId, new Members(uids));
+        if (cache.size() > props.getCacheMaxGroups()) evict();
+    }
+
+    /** מפנה את הקבוצות שלא נקראו הכי הרבה זמן עד 90% מהתקרה; מפנה אחד בכל רגע */
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+        try {
+            int target = props.getCacheMaxGroups() * 9 / 10;
+            List<Map.Entry<String, Members>> byAge = new ArrayList<>(cache.entrySet());
+            byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (Map.Entry<String, Members> e : byAge) {
+                if (cache.size() <= target) break;
+                cache.remove(e.getKey(), e.getValue());
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /** רשימת החברים של קבוצה אחת בזיכרון */
+    private static final class Members {
+        final Set<String> uids;
+        final long loadedAt = System.nanoTime();
+        volatile long lastAccess = loadedAt;
+
+        Members(Set<String> uids) {
+            this.uids = uids;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.HistoryCacheProperties;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * מטמון בזיכרון להודעות האחרונות של שיחות חמות
+ * לכל שיחה חלון חסום של N ההודעות האחרונות, ממוין לפי (timestamp, id). חלון נוצר רק בקריאת היסטוריה
+ * (ונטען מהמסד), ומשם כתיבות שהסתיימו מתווספות אליו; כתיבה לשיחה שאין לה חלון לא נשמרת בזיכרון.
+ * המטמון כולו מוגבל בתקציב זיכרון, ומעליו מפונות השיחות שלא נקראו הכי הרבה זמן (LRU).
+ */
+@Component
+public class HotConversationCache {
+
+    /** הערכת התקורה של הודעה אחת מעבר לתווים שלה (אובייקטים, מזהה, Instant) */
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private static final Comparator<Message> BY_POSITION =
+            Comparator.comparing(Message::getTimestamp).thenComparing(Message::getId);
+
+    private final HistoryCacheProperties props;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    /**
+     * בנאי המקבל את ההגדרות ואת רישום המדדים
+     * @param props הגדרות המטמון
+     * @param meterRegistry רישום מדדים
+     */
+    public HotConversationCache(HistoryCacheProperties props, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.hits = Counter.builder("chat.history.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("chat.history.cache").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("chat.history.cache.evictions")
+                .description("Conversations evicted to stay within the memory budget").register(meterRegistry);
+        meterRegistry.gauge("chat.history.cache.bytes", bytes);
+        meterRegistry.gauge("chat.history.cache.conversations", windows, ConcurrentHashMap::size);
+        meterRegistry.gauge("chat.history.cache.hit.ratio", this, HotConversationCache::hitRatio);
+    }
+
+    /**
+     * @param key מפתח השיחה
+     * @param limit גודל העמוד
+     * @return ההודעות האחרונות מהישנה לחדשה, או null אם המטמון לא יכול לענות
+     */
+    public List<Message> latest(String key, int limit) {
+        Window w = servable(key);
+        List<Message> page = null;
+        if (w != null) {
+            w.lock.lock();
+            try {
+                int n = w.messages.size();
+                if (n >= limit || w.complete) page = copy(w.messages, Math.max(0, n - limit), n);
+            } finally {
+                w.lock.unlock();
+            }
+        }
+        return counted(page);
+    }
+
+    /**
+     * @param key מפתח השיחה
+     * @param cursor מיקום בהיסטוריה
+     * @param limit גודל העמוד
+     * @return עד limit ההודעות שלפני הסמן, מהישנה לחדשה, או null אם המטמון לא יכול לענות
+     */
+    public List<Message> before(String key, MessageHistory.Cursor cursor, int limit) {
+        Window w = servable(key);
+        List<Message> page = null;
+        if (w != null) {
+            w.lock.lock();
+            try {
+                int idx = firstAtOrAfter(w.messages, cursor);
+                if (idx >= limit || w.complete) page = copy(w.messages, Math.max(0, idx - limit), idx);
+            } finally {
+                w.lock.unlock();
+            }
+        }
+        return counted(page);
+    }
+
+    /**
+     * @param key מפתח השיחה
+     * @param cursor מיקום בהיסטוריה
+     * @param limit גודל העמוד
+     * @return עד limit ההודעות שאחרי הסמן, מהישנה לחדשה, או null אם המטמון לא יכול לענות
+     */
+    public List<Message> after(String key, MessageHistory.Cursor cursor, int limit) {
+        Window w = servable(key);
+        List<Message> page = null;
+        if (w != null) {
+            w.lock.lock();
+            try {
+                // החלון רציף מההודעה הישנה בו ועד הסוף, לכן כל סמן שלא לפניה מכוסה במלואו
+                boolean covered = w.complete || (!w.messages.isEmpty() && compare(w.messages.get(0), cursor) <= 0);
+                if (covered) {
+                    int from = firstAtOrAfter(w.messages, cursor);
+                    if (from < w.messages.size() && compare(w.messages.get(from), cursor) == 0) from++;
+                    page = copy(w.messages, from, Math.min(w.messages.size(), from + limit));
+                }
+            } finally {
+                w.lock.unlock();
+            }
+        }
+        return counted(page);
+    }
+
+    /**
+     * מסמנת שהקורא הזה טוען את החלון מהמסד; קוראים אחרים באותו זמן הולכים ישר למסד
+     * @param key מפתח השיחה
+     * @return true אם הקורא צריך לטעון ולקרוא ל-finishLoad
+     */
+    public boolean tryStartLoad(String key) {
+        if (!props.isEnabled()) return false;
+        Window w = windows.computeIfAbsent(key, k -> new Window());
+        w.lock.lock();
+        try {
+            if (w.loading) return false;
+            w.loading = true;
+            return true;
+        } finally {
+            w.lock.unlock();
+        }
+    }
+
+    /**
+     * ממזגת את ההודעות שנטענו מהמסד לחלון; כתיבות שהגיעו בזמן הטעינה כבר בפנים ולא הולכות לאיבוד
+     * @param key מפתח השיחה
+     * @param loaded ההודעות שנטענו (בכל סדר)
+     * @param requested כמה הודעות התבקשו; פחות מזה אומר שכל השיחה בחלון
+     */
+    public void finishLoad(String key, Collection<Message> loaded, int requested) {
+        Window w = windows.get(key);
+        if (w == null) return; // פונה בזמן הטעינה
+        long delta;
+        w.lock.lock();
+        try {
+            if (w.evicted) return;
+            long before = w.bytes;
+            for (Message m : loaded) insert(w, m);
+            // אם המסד החזיר פחות ממה שביקשנו – זו כל השיחה, כל עוד לא נזרקו הודעות מהחלון
+            w.complete = loaded.size() < requested && w.messages.size() < props.getPerConversation();
+            w.loadedAt = System.nanoTime();
+            w.loading = false;
+            delta = w.bytes - before;
+        } finally {
+            w.lock.unlock();
+        }
+        addBytes(delta);
+    }
+
+    /**
+     * מבטלת טעינה שנכשלה
+     * @param key מפתח השיחה
+     */
+    public void abortLoad(String key) {
+        Window w = windows.get(key);
+        if (w == null) return;
+        w.lock.lock();
+        try {
+            w.loading = false;
+        } finally {
+            w.lock.unlock();
+        }
+    }
+
+    /**
+     * נקראת מתהליכון הכתיבה אחרי שאצווה נשמרה במסד; מוסיפה רק לשיחות שכבר יש להן חלון (או טעינה שרצה)
+     * @param persisted ההודעות שנכתבו
+     */
+    public void onPersisted(List<Message> persisted) {
+        if (!props.isEnabled()) return;
+        long delta = 0;
+        for (Message m : persisted) {
+            if (m.getSenderId() == null || m.getReceiverId() == null || m.getTimestamp() == null) continue;
+            String key = m.getConversationKey() != null
+                    ? m.getConversationKey() : Conversation.keyOf(m.getSenderId(), m.getReceiverId());
+            // שיחה שאף אחד לא קרא לא תופסת זיכרון; הקריאה הראשונה תטען אותה מהמסד
+            Window w = windows.get(key);
+            if (w == null) continue;
+            w.lock.lock();
+            try {
+                if (w.evicted) continue; // פונה בדיוק עכשיו; הקריאה הבאה תטען מחדש
+                long before = w.bytes;
+                insert(w, m);
+                delta += w.bytes - before;
+            } finally {
+                w.lock.unlock();
+            }
+        }
+        addBytes(delta);
+    }
+
+    /**
+     * @return יחס הפגיעות מאז עליית השרת
+     */
+    public double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    /**
+     * @return הערכת הזיכרון שהמטמון תופס, בבתים
+     */
+    public long memoryBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return מספר השיחות במטמון
+     */
+    public int size() {
+        return windows.size();
+    }
+
+    private Window servable(String key) {
+        if (!props.isEnabled()) return null;
+        Window w = windows.get(key);
+        if (w == null) return null;
+        w.lastAccess = System.nanoTime();
+        long loadedAt = w.loadedAt;
+        if (loadedAt == 0 || System.nanoTime() - loadedAt > props.getMaxAge().toNanos()) return null;
+        return w;
+    }
+
+    private List<Message> counted(List<Message> page) {
+        (page != null ? hits : misses).increment();
+        return page;
+    }
+
+    /** הכנסה במקום הממוין (בדרך כלל בסוף), בלי כפילויות; מעבר לקיבולת נזרקת הישנה ביותר */
+    private void insert(Window w, Message m) {
+        List<Message> list = w.messages;
+        int i = list.size();
+        while (i > 0 && BY_POSITION.compare(list.get(i - 1), m) > 0) i--;
+        if (i > 0 && list.get(i - 1).getId().equals(m.getId())) return;
+        if (i == 0 && list.size() >= props.getPerConversation()) return; // ישנה מכל מה שבחלון המלא
+        list.add(i, m);
+        w.bytes += sizeOf(m);
+        if (list.size() > props.getPerConversation()) {
+            w.bytes -= sizeOf(list.remove(0));
+            w.complete = false;
+        }
+    }
+
+    private void addBytes(long delta) {
+        if (delta != 0 && bytes.addAndGet(delta) > props.getMaxBytes()) evict();
+    }
+
+    /** מפנה את השיחות שלא נקראו הכי הרבה זמן עד 90% מהתקציב; מפנה אחד בכל רגע */
+    private void evict() {
+        if (!evictionLock.tryLock()) return;
+        try {
+            long target = props.getMaxBytes() * 9 / 10;
+            List<Map.Entry<String, Window>> byAge = new ArrayList<>(windows.entrySet());
+            byAge.sort(Comparator.comparingLong(e -> e.getValue().lastAccess));
+            for (Map.Entry<String, Window> e : byAge) {
+                if (bytes.get() <= target) break;
+                Window w = e.getValue();
+                if (windows.remove(e.getKey(), w)) {
+                    // אחרי הסימון אף כתיבה לא מוסיפה לחלון הזה, כך שהספירה נשארת מדויקת
+                    w.lock.lock();
+                    try {
+                        w.evicted = true;
+                        bytes.addAndGet(-w.bytes);
+                    } finally {
+                        w.lock.unlock();
+                    }
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static int firstAtOrAfter(List<Message> list, MessageHistory.Cursor cursor) {
+        int lo = 0, hi = list.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(list.get(mid), cursor) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int compare(Message m, MessageHistory.Cursor cursor) {
+        int c = Long.compare(m.getTimestamp().toEpochMilli(), cursor.timestamp().toEpochMilli());
+        return c != 0 ? c : m.getId().compareTo(cursor.id().toHexString());
+    }
+
+    private static List<Message> copy(List<Message> list, int from, int to) {
+        return new ArrayList<>(list.subList(from, to));
+    }
+
+    private static long sizeOf(Message m) {
+        return MESSAGE_OVERHEAD_BYTES + 2L * (len(m.getMessage()) + len(m.getSenderId())
+                + len(m.getReceiverId()) + len(m.getConversationKey()));
+    }
+
+    private static int len(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    /**
+     * חלון ההודעות של שיחה אחת; כל הגישה אליו תחת lock.
+     * ReentrantLock ולא synchronized – המתנה על מוניטור מצמידה תהליכון וירטואלי לתהליכון הנושא שלו
+     */
+    private static final class Window {
+        final ReentrantLock lock = new ReentrantLock();
+        final List<Message> messages = new ArrayList<>();
+        long bytes;
+        /** כל ההיסטוריה של השיחה נמצאת בחלון */
+        boolean complete;
+        boolean loading;
+        /** הוסר מהמטמון; לא מקבל יותר הודעות */
+        boolean evicted;
+        /** זמן הטעינה האחרונה מהמסד (nanoTime), 0 = לא נטען עדיין */
+        volatile long loadedAt;
+        volatile long lastAccess = System.nanoTime();
+    }
+}
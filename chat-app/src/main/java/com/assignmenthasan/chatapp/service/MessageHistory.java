@@ -0,0 +1,141 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.assignmenthasan.chatapp.config.HistoryCacheProperties;
+import com.assignmenthasan.chatapp.dto.MessagePage;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.store.MessageStore;
+
+/**
+ * קריאת היסטוריית שיחה בעמודים לפי סמן (keyset pagination)
+ * הסמן הוא המיקום (timestamp, id) של ההודעה האחרונה בעמוד, והעמוד הבא מתחיל מיד אחריו
+ * בקריאת טווח של מאגר ההודעות (ב-MongoDB על האינדקס {conversationKey, timestamp, _id}) – כך שעמוד עמוק עולה כמו העמוד הראשון.
+ * עמודים שנמצאים בחלון של HotConversationCache מוגשים מהזיכרון בלי גישה למאגר
+ */
+@Service
+public class MessageHistory {
+
+    /** גודל עמוד מקסימלי */
+    public static final int MAX_LIMIT = 200;
+
+    private final MessageStore store;
+    private final HotConversationCache cache;
+    private final HistoryCacheProperties cacheProps;
+
+    public MessageHistory(MessageStore store, HotConversationCache cache,
+                          HistoryCacheProperties cacheProps) {
+        this.store = store;
+        this.cache = cache;
+        this.cacheProps = cacheProps;
+    }
+
+    /**
+     * מחזירה עמוד מהיסטוריית השיחה בין שני משתמשים או של קבוצה
+     * @param me המשתמש המחובר
+     * @param withUser המשתמש השני, או מזהה הקבוצה (החברות נבדקת בבקר)
+     * @param limit גודל העמוד (1..200)
+     * @param before סמן: הודעות ישנות יותר ממנו (או null)
+     * @param after סמן: הודעות חדשות יותר ממנו (או null); אם שניהם null – ההודעות האחרונות
+     * @return עמוד ממוין מהישנה לחדשה עם סמן להמשך
+     * @throws IllegalArgumentException אם הסמן לא תקין או ששני הסמנים הועברו
+     */
+    public MessagePage page(String me, String withUser, int limit, String before, String after) {
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+        int size = Math.max(1, Math.min(limit, MAX_LIMIT));
+        String key = Conversation.keyFor(me, withUser);
+
+        if (after != null) {
+            Cursor c = Cursor.decode(after);
+            List<Message> cached = cache.after(key, c, size);
+            if (cached != null) return toPage(cached, size, cached.size() - 1);
+            // הליכה קדימה – התוצאה כבר בסדר עולה
+            List<Message> page = store.range(key, c.position(), Sort.Direction.ASC, size);
+            return toPage(page, size, page.size() - 1);
+        }
+
+        MessageStore.Position from = null;
+        if (before == null) {
+            List<Message> cached = cache.latest(key, size);
+            if (cached != null) return toPage(cached, size, 0);
+            if (cache.tryStartLoad(key)) return loadLatest(key, size);
+        } else {
+            Cursor c = Cursor.decode(before);
+            List<Message> cached = cache.before(key, c, size);
+            if (cached != null) return toPage(cached, size, 0);
+            from = c.position();
+        }
+        // הליכה אחורה, ואז היפוך הרשימה (בלי מיון) לסדר עולה
+        List<Message> page = new ArrayList<>(store.range(key, from, Sort.Direction.DESC, size));
+        Collections.reverse(page);
+        return toPage(page, size, 0);
+    }
+
+    /**
+     * קריאה ראשונה של שיחה: טוענת חלון מלא למטמון ומחזירה ממנו את העמוד המבוקש
+     */
+    private MessagePage loadLatest(String key, int size) {
+        int window = Math.max(size, cacheProps.getPerConversation());
+        List<Message> loaded;
+        try {
+            loaded = store.range(key, null, Sort.Direction.DESC, window);
+        } catch (RuntimeException e) {
+            cache.abortLoad(key);
+            throw e;
+        }
+        cache.finishLoad(key, loaded, window);
+        List<Message> page = new ArrayList<>(loaded.subList(0, Math.min(size, loaded.size())));
+        Collections.reverse(page);
+        return toPage(page, size, 0);
+    }
+
+    /** עמוד מלא מקבל סמן מההודעה שבקצה כיוון ההתקדמות */
+    private static MessagePage toPage(List<Message> page, int size, int edge) {
+        return new MessagePage(page, page.size() == size ? Cursor.of(page.get(edge)).encode() : null);
+    }
+
+    /**
+     * מיקום בהיסטוריה: זמן ההודעה ומזהה שלה (שובר שוויון בין הודעות באותה מילישנייה)
+     * @param timestamp זמן ההודעה
+     * @param id מזהה ההודעה
+     */
+    record Cursor(Instant timestamp, ObjectId id) {
+
+        static Cursor of(Message m) {
+            return new Cursor(m.getTimestamp(), new ObjectId(m.getId()));
+        }
+
+        MessageStore.Position position() {
+            return new MessageStore.Position(timestamp, id.toHexString());
+        }
+
+        /** הסמן נשלח ללקוח כמחרוזת אטומה */
+        String encode() {
+            String raw = timestamp.toEpochMilli() + ":" + id.toHexString();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+                int sep = raw.indexOf(':');
+                return new Cursor(Instant.ofEpochMilli(Long.parseLong(raw.substring(0, sep))),
+                        new ObjectId(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
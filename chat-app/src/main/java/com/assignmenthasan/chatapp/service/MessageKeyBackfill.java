@@ -0,0 +1,122 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.PersistenceProperties;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * השלמה מקוונת של conversationKey בהודעות שנשמרו לפני שהשדה נוסף
+ * רצה בתהליכון רקע באצוות קטנות עם השהיה ביניהן, בזמן שהשרת כבר מקבל תעבורה.
+ * השאילתה {conversationKey: null} יושבת על האינדקס החדש, כך שכשאין מה להשלים היא כמעט חינמית.
+ * רק כשההודעות ב-MongoDB (app.store.backend=mongo)
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.persistence", name = "keyBackfill", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(prefix = "app.store", name = "backend", havingValue = "mongo", matchIfMissing = true)
+public class MessageKeyBackfill implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageKeyBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final PersistenceProperties props;
+    private final Counter updated;
+    private volatile Thread worker;
+
+    /**
+     * בנאי המקבל את התבנית למסד, את ההגדרות ואת רישום המדדים
+     * @param mongoTemplate תבנית MongoDB
+     * @param props הגדרות השמירה (גודל אצווה והשהיה)
+     * @param meterRegistry רישום מדדים
+     */
+    public MessageKeyBackfill(MongoTemplate mongoTemplate, PersistenceProperties props, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.props = props;
+        this.updated = Counter.builder("chat.migration.conversation.key")
+                .description("Messages backfilled with conversationKey").register(meterRegistry);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-key-backfill-");
+        threads.setDaemon(true);
+        worker = threads.newThread(this::runToCompletion);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = worker;
+        if (t != null) t.interrupt();
+    }
+
+    /**
+     * מעדכנת אצוות עד שלא נשארו הודעות בלי מפתח
+     * @return מספר ההודעות שעודכנו
+     */
+    long runToCompletion() {
+        long total = 0;
+        long start = System.currentTimeMillis();
+        try {
+            int n;
+            do {
+                n = backfillBatch();
+                total += n;
+                if (n > 0) Thread.sleep(props.getKeyBackfillPause().toMillis());
+            } while (n >= props.getKeyBackfillBatchSize() && !Thread.currentThread().isInterrupted());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("conversationKey backfill stopped after {} messages", total, e);
+            return total;
+        }
+        if (total > 0) {
+            log.info("conversationKey backfill: {} messages in {} ms", total, System.currentTimeMillis() - start);
+        }
+        return total;
+    }
+
+    /**
+     * @return מספר ההודעות שעודכנו באצווה הזו
+     */
+    int backfillBatch() {
+        Query missing = Query.query(Criteria.where("conversationKey").is(null))
+                .limit(props.getKeyBackfillBatchSize());
+        missing.fields().include("senderId").include("receiverId");
+        List<Document> docs = mongoTemplate.find(missing, Document.class, mongoTemplate.getCollectionName(Message.class));
+        if (docs.isEmpty()) return 0;
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class);
+        for (Document d : docs) {
+            String sender = d.getString("senderId");
+            String receiver = d.getString("receiverId");
+            // הודעה פגומה בלי משתתפים מקבלת מפתח ריק, כדי שלא תיבחר שוב בכל אצווה
+            String key = sender == null || receiver == null ? "" : Conversation.keyOf(sender, receiver);
+            // התנאי על null שומר על ערך שכבר נכתב במקביל
+            ops.updateOne(Query.query(Criteria.where("_id").is(d.get("_id")).and("conversationKey").is(null)),
+                    new Update().set("conversationKey", key));
+        }
+        ops.execute();
+        updated.increment(docs.size());
+        return docs.size();
+    }
+}
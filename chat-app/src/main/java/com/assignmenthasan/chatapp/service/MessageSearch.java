@@ -0,0 +1,344 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.SearchProperties;
+import com.assignmenthasan.chatapp.dto.SearchPage;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * חיפוש טקסט חופשי בהודעות: אינדקס הפוך מוטמע (Lucene) בדיסק המקומי
+ * מתעדכן מתהליכון הכתיבה אחרי כל כתיבה מרוכזת, כמו אינדקס השיחות; הודעות חדשות נעשות ניתנות לחיפוש
+ * אחרי refreshInterval, והאינדקס נשמר לדיסק כל commitInterval. כל הודעה נכתבת לפי המזהה שלה (update),
+ * כך שבנייה מחדש במקביל לתעבורה לא יוצרת כפילויות.
+ * התוצאות ממוינות מהחדשה לישנה, והאינדקס עצמו ממוין כך – חיפוש נעצר אחרי שאסף מספיק תוצאות
+ * במקום לעבור על כל ההתאמות. רק הודעות משיחות שהמבקש חלק מהן: בשיחה בין שניים לפי המשתתפים שנשמרו
+ * עם ההודעה, בקבוצה לפי החברים הנוכחיים (כמו קריאת ההיסטוריה).
+ * האינדקס מקומי: בכמה שרתים כל אחד רואה רק את ההודעות שנכתבו דרכו, עד בנייה מחדש.
+ */
+@Component
+public class MessageSearch {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSearch.class);
+
+    static final String ID = "id";
+    static final String CONVERSATION = "conversation";
+    /** המשתתפים בשיחה בין שניים; בהודעה קבוצתית ההרשאה לפי הקבוצה */
+    static final String MEMBER = "member";
+    static final String SENDER = "sender";
+    static final String RECEIVER = "receiver";
+    static final String TEXT = "text";
+    static final String TIMESTAMP = "ts";
+    static final String SENDER_SEQ = "senderSeq";
+    static final String RECEIVER_SEQ = "receiverSeq";
+
+    /** סדר התוצאות וגם סדר המסמכים באינדקס: מהחדשה לישנה, המזהה שובר שוויון */
+    private static final Sort NEWEST_FIRST = new Sort(
+            new SortField(TIMESTAMP, SortField.Type.LONG, true),
+            new SortField(ID, SortField.Type.STRING, true));
+
+    private final SearchProperties props;
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searchers;
+    private ScheduledExecutorService maintenance;
+    private boolean closed;
+
+    private final Timer latency;
+    private final Counter indexed;
+    private final Counter failed;
+
+    /**
+     * פותחת את האינדקס בתיקייה (או יוצרת אותו); כשהחיפוש כבוי לא נפתח דבר
+     * @param props הגדרות החיפוש
+     * @param meterRegistry רישום מדדים
+     * @throws UncheckedIOException אם אי אפשר לפתוח את האינדקס
+     */
+    public MessageSearch(SearchProperties props, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.latency = Timer.builder("chat.search.latency")
+                .description("Duration of a message search query").register(meterRegistry);
+        this.indexed = Counter.builder("chat.search.indexed")
+                .description("Messages added to the search index").register(meterRegistry);
+        this.failed = Counter.builder("chat.search.index.failed")
+                .description("Persisted messages that could not be added to the search index").register(meterRegistry);
+        if (!props.isEnabled()) {
+            directory = null;
+            writer = null;
+            searchers = null;
+            return;
+        }
+        Path dir = Path.of(props.getDir());
+        try {
+            directory = FSDirectory.open(dir);
+            IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+                    .setIndexSort(NEWEST_FIRST)
+                    .setRAMBufferSizeMB(props.getRamBufferMb());
+            writer = new IndexWriter(directory, config);
+            searchers = new SearcherManager(writer, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open search index in " + dir.toAbsolutePath(), e);
+        }
+        meterRegistry.gauge("chat.search.docs", writer, w -> w.getDocStats().numDocs);
+        log.info("Opened search index in {}: {} messages", dir.toAbsolutePath(), writer.getDocStats().numDocs);
+    }
+
+    /**
+     * מפעילה את הרענון ואת השמירה המחזוריים לאחר יצירת הבין
+     */
+    @PostConstruct
+    public void start() {
+        if (writer == null) return;
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-search-");
+        threads.setDaemon(true);
+        maintenance = Executors.newSingleThreadScheduledExecutor(threads);
+        long refresh = props.getRefreshInterval().toMillis();
+        long commit = props.getCommitInterval().toMillis();
+        if (refresh > 0) maintenance.scheduleWithFixedDelay(this::refresh, refresh, refresh, TimeUnit.MILLISECONDS);
+        if (commit > 0) maintenance.scheduleWithFixedDelay(this::commit, commit, commit, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * עוצרת את התחזוקה ושומרת את האינדקס לדיסק
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException, InterruptedException {
+        if (writer == null || closed) return;
+        closed = true;
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+            maintenance.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        searchers.close();
+        writer.close();
+        directory.close();
+    }
+
+    /**
+     * @return false כשהחיפוש כבוי (app.search.enabled=false)
+     */
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * נקראת מתהליכון הכתיבה אחרי שאצווה נשמרה; כישלון כאן לא מכשיל את ההודעות עצמן
+     * @param persisted ההודעות שנכתבו למאגר
+     */
+    public void onPersisted(List<Message> persisted) {
+        if (writer == null) return;
+        try {
+            index(persisted);
+        } catch (IOException | RuntimeException e) {
+            failed.increment(persisted.size());
+            log.warn("Search index update for {} messages failed", persisted.size(), e);
+        }
+    }
+
+    /**
+     * מוסיפה הודעות לאינדקס, או מחליפה אותן אם כבר נמצאות בו; הודעות בלי מזהה, זמן או תוכן מדולגות
+     * @param messages הודעות שכבר נשמרו
+     */
+    public void index(Collection<Message> messages) throws IOException {
+        int n = 0;
+        for (Message m : messages) {
+            if (m.getId() == null || m.getTimestamp() == null || m.getMessage() == null) continue;
+            writer.updateDocument(new Term(ID, m.getId()), toDocument(m));
+            n++;
+        }
+        indexed.increment(n);
+    }
+
+    /** הודעות שנוספו נעשות ניתנות לחיפוש */
+    void refresh() {
+        try {
+            searchers.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Search index refresh failed", e);
+        }
+    }
+
+    /** שומרת לדיסק את מה שנוסף מאז הפעם הקודמת */
+    void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) writer.commit();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Search index commit failed", e);
+        }
+    }
+
+    /**
+     * מחפשת הודעות שמכילות את כל המילים בשאילתה
+     * @param me המבקש: רק הודעות משיחות בין שניים שהוא אחד מהם, או מהקבוצות שב-groupIds
+     * @param groupIds הקבוצות שהמבקש חבר בהן (כבר נבדקו)
+     * @param conversationKey מגביל לשיחה אחת, או null לכל השיחות
+     * @param text השאילתה, מפורקת למילים כמו תוכן ההודעות
+     * @param limit גודל העמוד (1..maxPageSize)
+     * @param cursor nextCursor מעמוד קודם, או null לעמוד הראשון
+     * @return עמוד תוצאות מהחדשה לישנה
+     * @throws IllegalArgumentException אם אין בשאילתה מילים, יש יותר מדי, או שהסמן לא תקין
+     * @throws IllegalStateException אם החיפוש כבוי
+     */
+    public SearchPage search(String me, Collection<String> groupIds, String conversationKey, String text, int limit,
+                             String cursor) throws IOException {
+        if (writer == null) throw new IllegalStateException("Message search is disabled");
+        long start = System.nanoTime();
+        int size = Math.max(1, Math.min(limit, props.getMaxPageSize()));
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String term : terms(text)) {
+            query.add(new TermQuery(new Term(TEXT, term)), BooleanClause.Occur.MUST);
+        }
+        query.add(access(me, groupIds), BooleanClause.Occur.FILTER);
+        if (conversationKey != null) {
+            query.add(new TermQuery(new Term(CONVERSATION, conversationKey)), BooleanClause.Occur.FILTER);
+        }
+        MessageHistory.Cursor from = cursor == null ? null : MessageHistory.Cursor.decode(cursor);
+
+        List<Message> page = new ArrayList<>(size);
+        IndexSearcher searcher = searchers.acquire();
+        try {
+            int maxDoc = searcher.getIndexReader().maxDoc();
+            FieldDoc after = from == null || maxDoc == 0 ? null : after(from, maxDoc);
+            TopDocs top = searcher.searchAfter(after, query.build(), size, NEWEST_FIRST);
+            for (ScoreDoc hit : top.scoreDocs) page.add(toMessage(searcher.storedFields().document(hit.doc)));
+        } finally {
+            searchers.release(searcher);
+        }
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        String next = page.size() == size ? MessageHistory.Cursor.of(page.get(size - 1)).encode() : null;
+        return new SearchPage(page, next);
+    }
+
+    /** המילים של השאילתה, מפורקות ומנורמלות כמו תוכן ההודעות */
+    private List<String> terms(String text) throws IOException {
+        Set<String> terms = new LinkedHashSet<>();
+        if (text != null) {
+            try (TokenStream tokens = analyzer.tokenStream(TEXT, text)) {
+                CharTermAttribute term = tokens.addAttribute(CharTermAttribute.class);
+                tokens.reset();
+                while (tokens.incrementToken()) terms.add(term.toString());
+                tokens.end();
+            }
+        }
+        if (terms.isEmpty()) throw new IllegalArgumentException("Query has no searchable words");
+        if (terms.size() > props.getMaxTerms()) {
+            throw new IllegalArgumentException("Query has more than " + props.getMaxTerms() + " words");
+        }
+        return new ArrayList<>(terms);
+    }
+
+    private static BooleanQuery access(String me, Collection<String> groupIds) {
+        BooleanQuery.Builder access = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(MEMBER, me)), BooleanClause.Occur.SHOULD);
+        if (!groupIds.isEmpty()) {
+            List<BytesRef> groups = groupIds.stream().map(BytesRef::new).toList();
+            access.add(new TermInSetQuery(CONVERSATION, groups), BooleanClause.Occur.SHOULD);
+        }
+        return access.build();
+    }
+
+    /**
+     * המסמך שאחריו ממשיכים; בשוויון מלא במיון Lucene ממשיך רק אחרי מספר המסמך, ולכן נלקח האחרון –
+     * כך שהתוצאה של הסמן עצמו (הזמן והמזהה שלה זהים לסמן) לא חוזרת
+     */
+    private static FieldDoc after(MessageHistory.Cursor c, int maxDoc) {
+        return new FieldDoc(maxDoc - 1, Float.NaN,
+                new Object[] { c.timestamp().toEpochMilli(), new BytesRef(c.id().toHexString()) });
+    }
+
+    private static Document toDocument(Message m) {
+        String key = m.getConversationKey();
+        if (key == null && m.getSenderId() != null && m.getReceiverId() != null) {
+            key = Conversation.keyFor(m.getSenderId(), m.getReceiverId());
+        }
+        Document doc = new Document();
+        doc.add(new StringField(ID, m.getId(), Field.Store.YES));
+        doc.add(new SortedDocValuesField(ID, new BytesRef(m.getId())));
+        if (key != null) doc.add(new StringField(CONVERSATION, key, Field.Store.YES));
+        if (!Conversation.isGroup(key)) {
+            if (m.getSenderId() != null) doc.add(new StringField(MEMBER, m.getSenderId(), Field.Store.NO));
+            if (m.getReceiverId() != null) doc.add(new StringField(MEMBER, m.getReceiverId(), Field.Store.NO));
+        }
+        if (m.getSenderId() != null) doc.add(new StoredField(SENDER, m.getSenderId()));
+        if (m.getReceiverId() != null) doc.add(new StoredField(RECEIVER, m.getReceiverId()));
+        long ts = m.getTimestamp().toEpochMilli();
+        doc.add(new NumericDocValuesField(TIMESTAMP, ts));
+        doc.add(new StoredField(TIMESTAMP, ts));
+        doc.add(new TextField(TEXT, m.getMessage(), Field.Store.YES));
+        if (m.getSenderSeq() != null) doc.add(new StoredField(SENDER_SEQ, m.getSenderSeq()));
+        if (m.getReceiverSeq() != null) doc.add(new StoredField(RECEIVER_SEQ, m.getReceiverSeq()));
+        return doc;
+    }
+
+    private static Message toMessage(Document doc) {
+        return Message.builder()
+                .id(doc.get(ID))
+                .conversationKey(doc.get(CONVERSATION))
+                .senderId(doc.get(SENDER))
+                .receiverId(doc.get(RECEIVER))
+                .timestamp(Instant.ofEpochMilli(doc.getField(TIMESTAMP).numericValue().longValue()))
+                .message(doc.get(TEXT))
+                .senderSeq(longOrNull(doc, SENDER_SEQ))
+                .receiverSeq(longOrNull(doc, RECEIVER_SEQ))
+                .build();
+    }
+
+    private static Long longOrNull(Document doc, String field) {
+        IndexableField f = doc.getField(field);
+        return f == null ? null : f.numericValue().longValue();
+    }
+}
@@ -0,0 +1,85 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.SearchProperties;
+import com.assignmenthasan.chatapp.store.MessageStore;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * בנייה מחדש של אינדקס החיפוש מכל ההודעות במאגר
+ * רצה פעם אחת בעליית השרת כאשר app.search.rebuild=true, בתהליכון רקע בזמן שהשרת כבר מקבל תעבורה.
+ * כל הודעה נכתבת לפי המזהה שלה, כך שאפשר להריץ אותה שוב (למשל אחרי נפילה שאיבדה את מה שלא נשמר לדיסק)
+ */
+@Component
+@ConditionalOnProperty(prefix = "app.search", name = "rebuild", havingValue = "true")
+public class MessageSearchRebuild implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSearchRebuild.class);
+
+    private final MessageStore store;
+    private final MessageSearch search;
+    private final SearchProperties props;
+    private volatile Thread worker;
+
+    public MessageSearchRebuild(MessageStore store, MessageSearch search, SearchProperties props) {
+        this.store = store;
+        this.search = search;
+        this.props = props;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!search.isEnabled()) return;
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-search-rebuild-");
+        threads.setDaemon(true);
+        worker = threads.newThread(this::runToCompletion);
+        worker.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = worker;
+        if (t != null) t.interrupt();
+    }
+
+    /**
+     * @return מספר ההודעות שנכתבו לאינדקס
+     */
+    long runToCompletion() {
+        long start = System.currentTimeMillis();
+        AtomicLong total = new AtomicLong();
+        try {
+            store.forEachBatch(props.getRebuildBatchSize(), batch -> {
+                if (Thread.currentThread().isInterrupted()) throw new CancellationException();
+                try {
+                    search.index(batch);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                total.addAndGet(batch.size());
+            });
+            search.commit();
+        } catch (CancellationException e) {
+            log.info("Search index rebuild interrupted after {} messages", total.get());
+            return total.get();
+        } catch (RuntimeException e) {
+            log.warn("Search index rebuild stopped after {} messages", total.get(), e);
+            return total.get();
+        }
+        log.info("Search index rebuild: {} messages in {} ms", total.get(), System.currentTimeMillis() - start);
+        return total.get();
+    }
+}
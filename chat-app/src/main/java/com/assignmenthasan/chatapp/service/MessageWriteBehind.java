@@ -0,0 +1,240 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.PersistenceProperties;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.store.MessageStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * שלב שמירה דחויה (write-behind) להודעות צ'אט
+ * הודעות נכנסות לתור חסום בזיכרון, וקבוצת תהליכוני כתיבה מרוקנת אותו
+ * בכתיבות מרוכזות (MessageStore.append) לפי גודל אצווה או חלון זמן
+ */
+@Component
+public class MessageWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteBehind.class);
+
+    private final MessageStore store;
+    private final PersistenceProperties props;
+    private final ConversationIndex conversations;
+    private final HotConversationCache hotCache;
+    private final MessageSearch search;
+    private final BlockingQueue<Pending> queue;
+    private final ExecutorService writers;
+
+    private final DistributionSummary batchSize;
+    private final Timer flushLatency;
+    private final Counter callerRuns;
+    private final Counter failed;
+    private final MeterRegistry meterRegistry;
+
+    private volatile boolean running;
+
+    /**
+     * בנאי המקבל את מאגר ההודעות, את ההגדרות ואת רישום המדדים
+     * @param store מאגר ההודעות לכתיבה מרוכזת
+     * @param props הגדרות השמירה הדחויה
+     * @param conversations אינדקס השיחות שמתעדכן אחרי כל כתיבה
+     * @param hotCache מטמון ההיסטוריה שמקבל כל הודעה שנשמרה
+     * @param search אינדקס החיפוש שמקבל כל הודעה שנשמרה
+     * @param meterRegistry רישום מדדים
+     */
+    public MessageWriteBehind(MessageStore store,
+                              PersistenceProperties props,
+                              ConversationIndex conversations,
+                              HotConversationCache hotCache,
+                              MessageSearch search,
+                              MeterRegistry meterRegistry) {
+        this.store = store;
+        this.props = props;
+        this.conversations = conversations;
+        this.hotCache = hotCache;
+        this.search = search;
+        this.queue = new ArrayBlockingQueue<>(props.getQueueCapacity());
+        this.writers = Executors.newFixedThreadPool(props.getWriterThreads(),
+                new CustomizableThreadFactory("chat-writer-"));
+
+        this.batchSize = DistributionSummary.builder("chat.persist.batch.size")
+                .description("Messages per insertMany")
+                .register(meterRegistry);
+        this.flushLatency = Timer.builder("chat.persist.flush.latency")
+                .description("Duration of a single bulk insert")
+                .register(meterRegistry);
+        this.callerRuns = Counter.builder("chat.persist.caller.runs")
+                .description("Messages written on the caller thread because the queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("chat.persist.failed")
+                .description("Messages whose bulk insert failed")
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.persist.queue.depth", queue, BlockingQueue::size);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * מפעילה את תהליכוני הכתיבה לאחר יצירת הבין
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < props.getWriterThreads(); i++) {
+            writers.execute(this::drainLoop);
+        }
+    }
+
+    /**
+     * עוצרת את הכתיבה ומרוקנת את מה שנשאר בתור לפני כיבוי
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writers.shutdown();
+        writers.awaitTermination(5, TimeUnit.SECONDS);
+
+        // הודעות שנכנסו ברגע הכיבוי נכתבות כאן כדי שלא יאבדו
+        List<Pending> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) flush(rest);
+    }
+
+    /**
+     * מכניסה הודעה לתור הכתיבה
+     * אם התור מלא גם אחרי זמן ההמתנה, ההודעה נכתבת ישירות בתהליכון הקורא
+     * @param msg הודעה עם מזהה וחותמת זמן מוכנים
+     * @return Future שמושלם כאשר המסד אישר את הכתיבה
+     */
+    public CompletableFuture<Message> submit(Message msg) {
+        return enqueue(List.of(msg)).thenApply(docs -> docs.get(0));
+    }
+
+    /**
+     * מכניסה קבוצת הודעות (מסגרת batch של לקוח) כיחידה אחת בתור
+     * הקבוצה תופסת מקום אחד בתור ונכתבת כולה באותו insertMany
+     * @param msgs הודעות עם מזהים וחותמות זמן מוכנים
+     * @return Future שמושלם כאשר המסד אישר את כל הקבוצה
+     */
+    public CompletableFuture<List<Message>> submitAll(List<Message> msgs) {
+        return enqueue(List.copyOf(msgs));
+    }
+
+    private CompletableFuture<List<Message>> enqueue(List<Message> msgs) {
+        Pending p = new Pending(msgs);
+        boolean queued;
+        try {
+            queued = running && queue.offer(p, props.getEnqueueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            callerRuns.increment(msgs.size());
+            flush(List.of(p));
+        }
+        return p.ack;
+    }
+
+    /**
+     * @return מספר ההודעות שממתינות כרגע בתור
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void drainLoop() {
+        int max = props.getBatchSize();
+        long windowNanos = props.getFlushInterval().toNanos();
+        List<Pending> batch = new ArrayList<>(max);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(windowNanos, TimeUnit.NANOSECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                // ממשיכים לאסוף עד שהאצווה מלאה או שחלון הזמן נסגר
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < max) {
+                    if (queue.drainTo(batch, max - batch.size()) > 0) continue;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.drainTo(batch);
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Message> docs = new ArrayList<>(batch.size());
+        for (Pending p : batch) docs.addAll(p.msgs);
+
+        long start = System.nanoTime();
+        try {
+            store.append(docs);
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSize.record(docs.size());
+            for (Pending p : batch) p.ack.complete(p.msgs);
+        } catch (RuntimeException e) {
+            failed.increment(docs.size());
+            log.warn("Bulk insert of {} messages failed", docs.size(), e);
+            for (Pending p : batch) p.ack.completeExceptionally(e);
+            return;
+        }
+        // האישורים כבר יצאו; עדכון השיחות, המטמון והחיפוש לא מעכב את השולחים
+        afterPersist("cache", hotCache::onPersisted, docs);
+        afterPersist("conversations", conversations::onPersisted, docs);
+        afterPersist("search", search::onPersisted, docs);
+    }
+
+    /** עדכון שנכשל נרשם ונספר; ההודעות כבר במסד, ותהליכון הכתיבה ממשיך לאצווה הבאה */
+    private void afterPersist(String hook, Consumer<List<Message>> update, List<Message> docs) {
+        try {
+            update.accept(docs);
+        } catch (RuntimeException e) {
+            Counter.builder("chat.persist.hook.failed")
+                    .description("Post-persist updates (cache, conversations, search) that threw")
+                    .tag("hook", hook)
+                    .register(meterRegistry).increment();
+            log.warn("Post-persist {} update of {} messages failed", hook, docs.size(), e);
+        }
+    }
+
+    /** הודעה (או קבוצת הודעות) שממתינה לכתיבה יחד עם ה-Future של האישור */
+    private static final class Pending {
+        final List<Message> msgs;
+        final CompletableFuture<List<Message>> ack = new CompletableFuture<>();
+
+        Pending(List<Message> msgs) {
+            this.msgs = msgs;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.NotificationProperties;
+import com.assignmenthasan.chatapp.model.Message;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * שולח התראות אסינכרוני לפונקציית Firebase
+ * מאחד הודעות רצופות לאותו נמען בתוך חלון זמן קצר לקריאה אחת,
+ * מנסה שוב עם השהיה אקספוננציאלית ו-jitter, ומפסיק לשלוח כשמפסק הזרם פתוח.
+ * אף פעולה כאן לא חוסמת את תהליכון ה-WebSocket.
+ */
+@Component
+public class NotificationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final HttpClient http;
+    private final NotificationProperties props;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CircuitBreaker breaker;
+    private final ScheduledExecutorService scheduler;
+    private final Semaphore inFlight;
+
+    /** התראות שממתינות לסגירת חלון האיחוד, לפי מזהה נמען */
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter retried;
+    private final Counter coalesced;
+    private final Counter shedBreaker;
+    private final Counter shedQueue;
+    private final Timer latency;
+
+    /**
+     * בנאי המקבל את לקוח ה-HTTP, ההגדרות ורישום המדדים
+     * @param notifyHttpClient לקוח HTTP לא חוסם
+     * @param props הגדרות ההתראות
+     * @param meterRegistry רישום מדדים
+     */
+    public NotificationDispatcher(HttpClient notifyHttpClient,
+                                  NotificationProperties props,
+                                  MeterRegistry meterRegistry) {
+        this.http = notifyHttpClient;
+        this.props = props;
+        this.breaker = new CircuitBreaker(props.getBreakerFailureThreshold(),
+                props.getBreakerOpenDuration().toNanos());
+        this.inFlight = new Semaphore(props.getMaxInFlight());
+
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-notify-");
+        threads.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threads);
+
+        this.sent = Counter.builder("chat.notify.sent").register(meterRegistry);
+        this.failed = Counter.builder("chat.notify.failed")
+                .description("Notifications dropped after the last retry").register(meterRegistry);
+        this.retried = Counter.builder("chat.notify.retries").register(meterRegistry);
+        this.coalesced = Counter.builder("chat.notify.coalesced")
+                .description("Messages folded into an already pending notification").register(meterRegistry);
+        this.shedBreaker = Counter.builder("chat.notify.shed").tag("reason", "breaker").register(meterRegistry);
+        this.shedQueue = Counter.builder("chat.notify.shed").tag("reason", "queue").register(meterRegistry);
+        this.latency = Timer.builder("chat.notify.latency").register(meterRegistry);
+        meterRegistry.gauge("chat.notify.pending", pendingCount);
+        meterRegistry.gauge("chat.notify.breaker.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1);
+    }
+
+    /**
+     * מוסיפה הודעה להתראה. אם כבר ממתינה התראה לאותו נמען, ההודעה מאוחדת אליה.
+     * @param msg ההודעה שנשמרה
+     */
+    public void enqueue(Message msg) {
+        if (props.getNotifyUrl() == null || props.getNotifyUrl().isBlank()) return;
+        if (breaker.isRejecting()) {
+            shedBreaker.increment();
+            return;
+        }
+
+        String key = msg.getReceiverId();
+        Pending[] created = new Pending[1];
+        boolean[] shed = new boolean[1];
+        // compute רץ באופן אטומי מול ה-remove שבסגירת החלון, כך שהודעה לא נופלת בין החלונות
+        pending.compute(key, (k, cur) -> {
+            if (cur != null) {
+                cur.fold(msg);
+                return cur;
+            }
+            if (pendingCount.get() >= props.getQueueCapacity()) {
+                shed[0] = true;
+                return null;
+            }
+            pendingCount.incrementAndGet();
+            return created[0] = new Pending(msg);
+        });
+
+        if (shed[0]) {
+            shedQueue.increment();
+        } else if (created[0] == null) {
+            coalesced.increment();
+        } else {
+            Pending p = created[0];
+            scheduler.schedule(() -> closeWindow(key, p),
+                    props.getCoalesceWindow().toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return מצב מפסק הזרם
+     */
+    public CircuitBreaker.State breakerState() {
+        return breaker.state();
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void closeWindow(String key, Pending p) {
+        if (pending.remove(key, p)) pendingCount.decrementAndGet();
+        attempt(p, 1);
+    }
+
+    private void attempt(Pending p, int attemptNo) {
+        // קודם חיבור ורק אחר כך המפסק: קריאת הבדיקה (HALF_OPEN) חייבת לצאת בפועל ולהכריע את מצבו
+        if (!inFlight.tryAcquire()) {
+            // כל החיבורים תפוסים – ננסה שוב בסוף החלון הבא במקום לחסום
+            scheduler.schedule(() -> attempt(p, attemptNo),
+                    props.getCoalesceWindow().toNanos(), TimeUnit.NANOSECONDS);
+            return;
+        }
+        if (!breaker.allowRequest()) {
+            inFlight.release();
+            shedBreaker.increment();
+            return;
+        }
+
+        HttpRequest req;
+        try {
+            req = HttpRequest.newBuilder(URI.create(props.getNotifyUrl()))
+                    .timeout(props.getRequestTimeout())
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .POST(HttpRequest.BodyPublishers.ofString(payload(p)))
+                    .build();
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            // שגיאה מקומית ולא כשל של השירות; עדיין צריך לשחרר את המפסק אם זו הייתה קריאת הבדיקה
+            inFlight.release();
+            breaker.onSuccess();
+            failed.increment();
+            log.debug("Notification for {} could not be built: {}", p.receiverId, e.toString());
+            return;
+        }
+
+        long start = System.nanoTime();
+        http.sendAsync(req, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((res, err) -> {
+                    inFlight.release();
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (err == null && res.statusCode() / 100 == 2) {
+                        breaker.onSuccess();
+                        sent.increment();
+                    } else {
+                        breaker.onFailure();
+                        retry(p, attemptNo, err != null ? err.toString() : "HTTP " + res.statusCode());
+                    }
+                });
+    }
+
+    private void retry(Pending p, int attemptNo, String reason) {
+        if (attemptNo >= props.getMaxAttempts()) {
+            failed.increment();
+            log.debug("Notification for {} dropped after {} attempts: {}", p.receiverId, attemptNo, reason);
+            return;
+        }
+        retried.increment();
+        long base = props.getBackoffBase().toNanos();
+        long cap = Math.min(props.getBackoffMax().toNanos(), base << Math.min(attemptNo - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1); // full jitter
+        scheduler.schedule(() -> attempt(p, attemptNo + 1), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private String payload(Pending p) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(Map.of(
+                "receiverId", p.receiverId,
+                "senderId", p.senderId,
+                "messageId", p.messageId,
+                "count", p.count));
+    }
+
+    /** התראה שממתינה לנמען אחד; שומרת את ההודעה האחרונה ואת מספר ההודעות שאוחדו */
+    private static final class Pending {
+        final String receiverId;
+        String senderId;
+        String messageId;
+        int count;
+
+        Pending(Message msg) {
+            this.receiverId = msg.getReceiverId();
+            this.senderId = msg.getSenderId();
+            this.messageId = msg.getId();
+            this.count = 1;
+        }
+
+        /** מוסיפה הודעה להתראה; נקראת רק בתוך compute של המפה */
+        void fold(Message msg) {
+            senderId = msg.getSenderId();
+            messageId = msg.getId();
+            count++;
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package com.assignmenthasan.chatapp.store;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.assignmenthasan.chatapp.config.StoreProperties;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * מאגר הודעות מוטמע: לוג של מקטעים ממופים לזיכרון שנכתבים רק בסופם
+ * כל כתיבה מרוכזת נכתבת ברצף למקטע הפעיל ומסונכרנת לדיסק פעם אחת (force). מקטע מלא נסגר ונפתח חדש.
+ * קריאות עוברות דרך אינדקס דליל בזיכרון (SparseIndex) לכל שיחה ולכל רצף משתמש, שנבנה מחדש בפתיחה.
+ * בפתיחה כתיבה שנקטעה בסוף מקטע מזוהה ב-CRC ונחתכת. דחיסה ברקע כותבת מחדש מקטעים סגורים:
+ * מאחדת קטנים, מוחקת הודעות שעברו את זמן השמירה ומסדרת כל מקטע לפי שיחה, כך שהיסטוריה ישנה נקראת ברצף.
+ * מוני הרצף בזיכרון ומשוחזרים מהמספר הגבוה ביותר בלוג. מספרים שהוקצו להודעות שלא הגיעו לדיסק לפני נפילה
+ * עלולים לחזור אחרי עלייה; עם app.persistence.awaitAck=true הודעות כאלה גם לא נמסרו, כך שלקוח לא ראה אותם.
+ * לשרת יחיד: המונים והקבצים מקומיים.
+ */
+public class LogMessageStore implements MessageStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LogMessageStore.class);
+
+    private static final String LOG = "log";
+    private static final String COMPACT = "compact";
+    private static final String SEQUENCES = "sequences.snap";
+    private static final String CONVERSATION = "c:";
+    private static final String USER = "u:";
+
+    /** סדר ההודעות בשיחה – כמו האינדקס {conversationKey, timestamp, _id} ב-MongoDB */
+    private static final Comparator<Message> BY_POSITION = Comparator
+            .comparingLong((Message m) -> m.getTimestamp().toEpochMilli())
+            .thenComparing(Message::getId);
+
+    /** סדר הרשומות במקטע דחוס: שיחה אחרי שיחה */
+    private static final Comparator<Ref> CLUSTERED = Comparator
+            .comparing(Ref::conversation, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(Ref::timestamp)
+            .thenComparing(Ref::id, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final StoreProperties props;
+    private final Path dir;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock compacting = new ReentrantLock();
+    private final ConcurrentHashMap<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    /** כל המקטעים לפי base; האחרון הוא הפעיל. בשמירת lock */
+    private final TreeMap<Long, LogSegment> segments = new TreeMap<>();
+    private SparseIndex index;
+    private LogSegment active;
+    private boolean closed;
+    private ScheduledExecutorService compactor;
+
+    private final Counter compactions;
+    private final Counter expired;
+
+    /**
+     * פותחת את הלוג בתיקייה (או יוצרת אותה), משחזרת את המקטעים ובונה את האינדקס
+     * @param props הגדרות המאגר
+     * @param meterRegistry רישום מדדים
+     * @throws UncheckedIOException אם אי אפשר לקרוא או ליצור את הקבצים
+     */
+    public LogMessageStore(StoreProperties props, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.dir = Path.of(props.getDir());
+        this.index = new SparseIndex(props.getIndexInterval());
+        this.compactions = Counter.builder("chat.store.log.compactions")
+                .description("Sealed segment runs rewritten by compaction").register(meterRegistry);
+        this.expired = Counter.builder("chat.store.log.expired")
+                .description("Messages removed by compaction because they passed the retention").register(meterRegistry);
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open message log in " + dir.toAbsolutePath(), e);
+        }
+        meterRegistry.gauge("chat.store.log.segments", this, s -> s.withReadLock(s.segments::size));
+        meterRegistry.gauge("chat.store.log.index.keys", this, s -> s.withReadLock(() -> s.index.keyCount()));
+    }
+
+    /**
+     * מפעילה את הדחיסה המחזורית לאחר יצירת הבין
+     */
+    @PostConstruct
+    public void start() {
+        long every = props.getCompactionInterval().toMillis();
+        if (every <= 0) return;
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-store-compact-");
+        threads.setDaemon(true);
+        compactor = Executors.newSingleThreadScheduledExecutor(threads);
+        compactor.scheduleWithFixedDelay(this::compact, every, every, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * עוצרת את הדחיסה ומסנכרנת את המקטע הפעיל לדיסק
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (compactor != null) {
+            compactor.shutdownNow();
+            compactor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+            active.force(LogSegment.HEADER);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void append(List<Message> msgs) {
+        if (msgs.isEmpty()) return;
+        // הקידוד מחוץ לנעילה; בתוכה רק העתקה למקטע ועדכון האינדקס
+        byte[][] payloads = new byte[msgs.size()][];
+        for (int i = 0; i < payloads.length; i++) {
+            Message m = msgs.get(i);
+            if (m.getId() == null) m.setId(new ObjectId().toHexString());
+            payloads[i] = LogRecord.encode(m);
+            if (LogSegment.HEADER + LogRecord.OVERHEAD + payloads[i].length > props.getSegmentBytes()) {
+                throw new IllegalArgumentException("Message of " + payloads[i].length + " bytes does not fit in a log segment");
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) throw new IllegalStateException("Message log is closed");
+            int from = active.end;
+            for (int i = 0; i < payloads.length; i++) {
+                if (!active.fits(LogRecord.OVERHEAD + payloads[i].length)) {
+                    if (props.isFsync()) active.force(from);
+                    active = newSegment();
+                    from = active.end;
+                }
+                int pos = active.append(payloads[i]);
+                index(index, active, msgs.get(i), pos);
+            }
+            if (props.isFsync()) active.force(from);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot roll message log segment", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> range(String conversationKey, Position from, Sort.Direction direction, int limit) {
+        boolean asc = direction == Sort.Direction.ASC;
+        long bound = from == null ? (asc ? Long.MIN_VALUE : Long.MAX_VALUE) : from.timestamp().toEpochMilli();
+        Predicate<Message> inRange = from == null ? m -> m.getTimestamp() != null
+                : asc ? m -> m.getTimestamp() != null && compare(m, from) > 0
+                : m -> m.getTimestamp() != null && compare(m, from) < 0;
+        return scan(CONVERSATION + conversationKey, inRange, m -> m.getTimestamp().toEpochMilli(), BY_POSITION, bound, asc, limit);
+    }
+
+    @Override
+    public List<Message> since(String uid, long afterSeq, int limit) {
+        ToLongFunction<Message> seq = m -> m.seqOf(uid);
+        return scan(USER + uid, m -> m.seqOf(uid) != null && m.seqOf(uid) > afterSeq,
+                seq, Comparator.comparingLong(seq).thenComparing(Message::getId), afterSeq, true, limit);
+    }
+
+    /**
+     * המקטעים והסוף של כל אחד נלקחים בנעילה, והקריאה עצמה בלי נעילה: מקטע שהוחלף בדחיסה נשאר ממופה
+     * עד שהוא נאסף, כך שהמעבר רואה את התוכן שהיה בו
+     */
+    @Override
+    public void forEachBatch(int batchSize, Consumer<List<Message>> sink) {
+        List<LogSegment> snapshot;
+        List<Integer> ends = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            snapshot = new ArrayList<>(segments.values());
+            for (LogSegment s : snapshot) ends.add(s.end);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Message> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < snapshot.size(); i++) {
+            LogSegment seg = snapshot.get(i);
+            for (int pos = LogSegment.HEADER, end = ends.get(i); pos < end; pos = seg.next(pos)) {
+                batch.add(LogRecord.decode(seg.buf, pos));
+                if (batch.size() == batchSize) {
+                    sink.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        }
+        if (!batch.isEmpty()) sink.accept(batch);
+    }
+
+    @Override
+    public long allocateSeq(String uid, int count) {
+        return sequences.computeIfAbsent(uid, k -> new AtomicLong()).addAndGet(count);
+    }
+
+    @Override
+    public boolean releaseSeq(String uid, long reservedLast, long lastUsed) {
+        AtomicLong seq = sequences.get(uid);
+        return seq != null && seq.compareAndSet(reservedLast, lastUsed);
+    }
+
+    @Override
+    public long currentSeq(String uid) {
+        AtomicLong seq = sequences.get(uid);
+        return seq == null ? 0 : seq.get();
+    }
+
+    /**
+     * דחיסה אחת של המקטעים הסגורים; נקראת מהתזמון וגם ישירות (בדיקות)
+     * המקטעים החדשים נכתבים, והאינדקס החדש נבנה, מחוץ לנעילה. בנעילת הכתיבה רק נסרקים המקטעים
+     * שנכתבו בינתיים, ומחליפים את הרשימה והאינדקס.
+     */
+    public void compact() {
+        if (!compacting.tryLock()) return;
+        try {
+            compactOnce();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Message log compaction failed", e);
+        } finally {
+            compacting.unlock();
+        }
+    }
+
+    private void compactOnce() throws IOException {
+        long cutoff = props.getRetention().isZero()
+                ? Long.MIN_VALUE : System.currentTimeMillis() - props.getRetention().toMillis();
+        List<LogSegment> sealed;
+        long activeBase;
+        lock.readLock().lock();
+        try {
+            if (closed) return;
+            activeBase = active.base;
+            sealed = new ArrayList<>(segments.headMap(activeBase, false).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<List<LogSegment>> runs = plan(sealed, cutoff);
+        if (runs.isEmpty()) return;
+
+        // המונים נשמרים לפני שהודעות נמחקות, כדי שהמספר הגבוה של משתמש לא ייעלם איתן
+        if (cutoff != Long.MIN_VALUE) writeSequenceSnapshot();
+
+        TreeMap<Long, LogSegment> next = new TreeMap<>();
+        for (LogSegment s : sealed) next.put(s.base, s);
+        for (List<LogSegment> run : runs) {
+            LogSegment compacted = rewrite(run, cutoff);
+            for (LogSegment s : run) next.remove(s.base);
+            next.put(compacted.base, compacted);
+        }
+        SparseIndex fresh = new SparseIndex(props.getIndexInterval());
+        for (LogSegment s : next.values()) indexSegment(fresh, s);
+
+        lock.writeLock().lock();
+        try {
+            for (LogSegment s : segments.tailMap(activeBase, true).values()) {
+                indexSegment(fresh, s);
+                next.put(s.base, s);
+            }
+            segments.clear();
+            segments.putAll(next);
+            index = fresh;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // אף קורא כבר לא מחזיק את המקטעים הישנים; הראשון בכל רצף הוחלף בקובץ הדחוס
+        for (List<LogSegment> run : runs) {
+            for (LogSegment s : run.subList(1, run.size())) Files.deleteIfExists(segmentFile(s.base));
+        }
+        compactions.increment(runs.size());
+    }
+
+    /**
+     * רצפים של מקטעים סגורים סמוכים שנכנסים יחד למקטע אחד; רצף של מקטע דחוס יחיד נכתב מחדש רק אם יש בו הודעות שפג תוקפן
+     */
+    private List<List<LogSegment>> plan(List<LogSegment> sealed, long cutoff) {
+        List<List<LogSegment>> runs = new ArrayList<>();
+        List<LogSegment> run = new ArrayList<>();
+        long bytes = 0;
+        for (LogSegment s : sealed) {
+            long used = s.end - LogSegment.HEADER;
+            if (!run.isEmpty() && bytes + used > props.getSegmentBytes() - LogSegment.HEADER) {
+                if (worthRewriting(run, cutoff)) runs.add(run);
+                run = new ArrayList<>();
+                bytes = 0;
+            }
+            run.add(s);
+            bytes += used;
+        }
+        if (!run.isEmpty() && worthRewriting(run, cutoff)) runs.add(run);
+        return runs;
+    }
+
+    private static boolean worthRewriting(List<LogSegment> run, long cutoff) {
+        return run.size() > 1 || !run.get(0).isCompacted() || run.get(0).minTimestamp < cutoff;
+    }
+
+    /**
+     * כותבת רצף מקטעים לקובץ זמני, ממוין לפי שיחה ובלי הודעות ישנות מ-cutoff, ומחליפה בו את המקטע הראשון ברצף
+     */
+    private LogSegment rewrite(List<LogSegment> run, long cutoff) throws IOException {
+        List<Ref> refs = new ArrayList<>();
+        long dropped = 0;
+        for (LogSegment s : run) {
+            for (int pos = LogSegment.HEADER; pos < s.end; pos = s.next(pos)) {
+                Message m = LogRecord.decode(s.buf, pos);
+                long ts = m.getTimestamp() == null ? Long.MAX_VALUE : m.getTimestamp().toEpochMilli();
+                if (ts < cutoff) {
+                    dropped++;
+                    continue;
+                }
+                refs.add(new Ref(s.buf.slice(pos, LogRecord.length(s.buf, pos)), m.getConversationKey(), ts, m.getId()));
+            }
+        }
+        refs.sort(CLUSTERED);
+        List<ByteBuffer> records = new ArrayList<>(refs.size());
+        for (Ref r : refs) records.add(r.record());
+
+        long base = run.get(0).base;
+        long upTo = run.get(run.size() - 1).base;
+        Path tmp = dir.resolve(LogSegment.fileName(base, COMPACT));
+        LogSegment.writeCompacted(tmp, base, upTo, records);
+        Files.move(tmp, segmentFile(base), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        expired.increment(dropped);
+        log.info("Compacted message log segments {}..{}: {} messages kept, {} expired", base, upTo, refs.size(), dropped);
+        return LogSegment.open(segmentFile(base), base);
+    }
+
+    /** רשומה במקטע ישן יחד עם מפתח המיון שלה בדחיסה */
+    private record Ref(ByteBuffer record, String conversation, long timestamp, String id) {
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        // דחיסה שלא הסתיימה: הקובץ הזמני לא החליף כלום ואפשר לזרוק אותו
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*." + COMPACT)) {
+            for (Path p : files) Files.delete(p);
+        }
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(dir, "*." + LOG)) {
+            for (Path p : logs) {
+                String name = p.getFileName().toString();
+                files.put(Long.parseLong(name.substring(0, name.length() - LOG.length() - 1)), p);
+            }
+        }
+        for (Long base = files.isEmpty() ? null : files.firstKey(); base != null; base = files.higherKey(base)) {
+            LogSegment seg = LogSegment.open(files.get(base), base);
+            if (seg.torn > 0) {
+                log.warn("Message log segment {} ends with a torn write; discarded {} bytes after offset {}",
+                        base, seg.torn, seg.end);
+            }
+            if (seg.isCompacted()) {
+                // הקובץ הדחוס כבר מחליף את המקטעים האלה; הם נשארו כי השרת נפל לפני שנמחקו
+                for (Long stale : new ArrayList<>(files.subMap(base, false, seg.compactedUpTo, true).keySet())) {
+                    Files.deleteIfExists(files.remove(stale));
+                    log.info("Removed message log segment {} left over from an interrupted compaction", stale);
+                }
+            }
+            segments.put(base, seg);
+            indexSegment(index, seg);
+        }
+        readSequenceSnapshot();
+        LogSegment last = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        active = last != null && !last.isCompacted() ? last : newSegment();
+        log.info("Opened message log in {}: {} segments, {} index keys", dir.toAbsolutePath(), segments.size(),
+                index.keyCount());
+    }
+
+    private LogSegment newSegment() throws IOException {
+        long base = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        LogSegment seg = LogSegment.create(segmentFile(base), base, props.getSegmentBytes());
+        segments.put(base, seg);
+        return seg;
+    }
+
+    private Path segmentFile(long base) {
+        return dir.resolve(LogSegment.fileName(base, LOG));
+    }
+
+    private void indexSegment(SparseIndex target, LogSegment seg) {
+        for (int pos = LogSegment.HEADER; pos < seg.end; ) {
+            index(target, seg, LogRecord.decode(seg.buf, pos), pos);
+            pos = seg.next(pos);
+        }
+    }
+
+    /**
+     * רשומה נכנסת לאינדקס של השיחה (לפי זמן) ושל כל משתתף שיש לה מספר ברצף שלו
+     */
+    private void index(SparseIndex target, LogSegment seg, Message m, int pos) {
+        if (m.getConversationKey() != null && m.getTimestamp() != null) {
+            long ts = m.getTimestamp().toEpochMilli();
+            target.add(CONVERSATION + m.getConversationKey(), seg.base, pos, ts);
+            seg.minTimestamp = Math.min(seg.minTimestamp, ts);
+        }
+        if (m.getReceiverId() != null && m.getReceiverSeq() != null) {
+            target.add(USER + m.getReceiverId(), seg.base, pos, m.getReceiverSeq());
+            observe(m.getReceiverId(), m.getReceiverSeq());
+        }
+        // הודעה לעצמי נספרת פעם אחת, לפי receiverSeq (כמו Message.seqOf)
+        if (m.getSenderId() != null && m.getSenderSeq() != null && !m.getSenderId().equals(m.getReceiverId())) {
+            target.add(USER + m.getSenderId(), seg.base, pos, m.getSenderSeq());
+            observe(m.getSenderId(), m.getSenderSeq());
+        }
+    }
+
+    private void observe(String uid, long seq) {
+        sequences.computeIfAbsent(uid, k -> new AtomicLong()).accumulateAndGet(seq, Math::max);
+    }
+
+    /**
+     * סריקה על הבלוקים של מפתח אחד: נשמרות limit ההודעות הטובות ביותר בכיוון המבוקש
+     * ASC מתחיל בבלוק הראשון שמגיע ל-bound, DESC בבלוק האחרון שיכול להכיל ערך עד bound;
+     * הסריקה נעצרת כשאף בלוק שנשאר לא יכול להכיל הודעה טובה מהגרועה שבנשמרות
+     * @param inRange הבדיקה המדויקת על ההודעה המפוענחת
+     */
+    private List<Message> scan(String key, Predicate<Message> inRange, ToLongFunction<Message> sortKey,
+                               Comparator<Message> order, long bound, boolean asc, int limit) {
+        if (limit <= 0) return List.of();
+        // ASC: הראש הוא הגדולה מבין הנשמרות; DESC: הקטנה
+        PriorityQueue<Message> best = new PriorityQueue<>(asc ? order.reversed() : order);
+        lock.readLock().lock();
+        try {
+            SparseIndex.Blocks b = index.get(key);
+            if (b == null) return List.of();
+            if (asc) {
+                int first = b.firstReaching(bound);
+                for (int i = first; i < b.size; i++) {
+                    if (i > first && best.size() >= limit
+                            && b.prefixMax[i - 1] - b.regression > sortKey.applyAsLong(best.peek())) break;
+                    if (b.max[i] < bound) continue;
+                    collect(b, i, inRange, best, limit);
+                }
+            } else {
+                for (int i = b.lastReaching(bound); i >= 0; i--) {
+                    if (best.size() >= limit && b.prefixMax[i] < sortKey.applyAsLong(best.peek())) break;
+                    if (b.min[i] > bound) continue;
+                    collect(b, i, inRange, best, limit);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Message> out = new ArrayList<>(best);
+        out.sort(asc ? order : order.reversed());
+        return out;
+    }
+
+    private void collect(SparseIndex.Blocks b, int i, Predicate<Message> inRange, PriorityQueue<Message> best,
+                         int limit) {
+        LogSegment seg = segments.get(b.segment[i]);
+        for (int r = b.first[i], to = r + b.count[i]; r < to; r++) {
+            Message m = LogRecord.decode(seg.buf, b.offsets[r]);
+            if (!inRange.test(m)) continue;
+            best.add(m);
+            if (best.size() > limit) best.poll();
+        }
+    }
+
+    private static int compare(Message m, Position p) {
+        int c = Long.compare(m.getTimestamp().toEpochMilli(), p.timestamp().toEpochMilli());
+        return c != 0 ? c : m.getId().compareTo(p.id());
+    }
+
+    private void writeSequenceSnapshot() throws IOException {
+        Path tmp = dir.resolve(SEQUENCES + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+            Map<String, AtomicLong> snapshot = Map.copyOf(sequences);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, AtomicLong> e : snapshot.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeLong(e.getValue().get());
+            }
+        }
+        Files.move(tmp, dir.resolve(SEQUENCES), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void readSequenceSnapshot() throws IOException {
+        Path file = dir.resolve(SEQUENCES);
+        if (!Files.exists(file)) return;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            for (int n = in.readInt(); n > 0; n--) observe(in.readUTF(), in.readLong());
+        }
+    }
+
+    private <T> T withReadLock(Supplier<T> read) {
+        lock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.assignmenthasan.chatapp.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.CRC32C;
+
+import com.assignmenthasan.chatapp.model.Message;
+
+/**
+ * קידוד רשומת הודעה בלוג
+ * רשומה: [int אורך][int CRC32C][תוכן]. אורך 0 מסמן את סוף המקטע.
+ * תוכן: conversationKey, senderId, receiverId, id, timestamp (מילישניות), senderSeq, receiverSeq, message.
+ * מחרוזת היא [int אורך או -1 ל-null][UTF-8]; מספר רצף חסר נשמר כ-Long.MIN_VALUE.
+ * הזמן נשמר במילישניות, כמו תאריך ב-MongoDB, כדי שסמן עמוד (שמקודד במילישניות) ישווה אותו דבר בשני המאגרים
+ */
+final class LogRecord {
+
+    /** אורך + CRC */
+    static final int OVERHEAD = 8;
+
+    private static final long NO_SEQ = Long.MIN_VALUE;
+
+    private LogRecord() {
+    }
+
+    /**
+     * @param m ההודעה
+     * @return תוכן הרשומה (בלי האורך וה-CRC)
+     */
+    static byte[] encode(Message m) {
+        byte[] conversation = utf8(m.getConversationKey());
+        byte[] sender = utf8(m.getSenderId());
+        byte[] receiver = utf8(m.getReceiverId());
+        byte[] id = utf8(m.getId());
+        byte[] text = utf8(m.getMessage());
+        int size = 5 * 4 + 3 * 8 + len(conversation) + len(sender) + len(receiver) + len(id) + len(text);
+        ByteBuffer b = ByteBuffer.allocate(size);
+        putString(b, conversation);
+        putString(b, sender);
+        putString(b, receiver);
+        putString(b, id);
+        b.putLong(m.getTimestamp() == null ? NO_SEQ : m.getTimestamp().toEpochMilli());
+        b.putLong(m.getSenderSeq() == null ? NO_SEQ : m.getSenderSeq());
+        b.putLong(m.getReceiverSeq() == null ? NO_SEQ : m.getReceiverSeq());
+        putString(b, text);
+        return b.array();
+    }
+
+    /**
+     * כותבת רשומה במיקום נתון; האורך נכתב אחרון, כך שרשומה שנקטעה באמצע נראית כסוף המקטע או נכשלת ב-CRC
+     * @return אורך הרשומה כולו
+     */
+    static int write(ByteBuffer buf, int pos, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        buf.put(pos + OVERHEAD, payload);
+        buf.putInt(pos + 4, (int) crc.getValue());
+        buf.putInt(pos, payload.length);
+        return OVERHEAD + payload.length;
+    }
+
+    /**
+     * בודקת את הרשומה במיקום נתון
+     * @param limit סוף האזור הכתוב
+     * @return אורך הרשומה, 0 בסוף המקטע, או -1 אם הרשומה פגומה
+     */
+    static int check(ByteBuffer buf, int pos, int limit) {
+        if (pos + OVERHEAD > limit) return 0;
+        int len = buf.getInt(pos);
+        if (len == 0) return 0;
+        if (len < 0 || pos + OVERHEAD + len > limit) return -1;
+        CRC32C crc = new CRC32C();
+        crc.update(buf.slice(pos + OVERHEAD, len));
+        return (int) crc.getValue() == buf.getInt(pos + 4) ? OVERHEAD + len : -1;
+    }
+
+    /**
+     * @return אורך הרשומה (שכבר נבדקה) במיקום נתון
+     */
+    static int length(ByteBuffer buf, int pos) {
+        return OVERHEAD + buf.getInt(pos);
+    }
+
+    /**
+     * @return ההודעה שברשומה במיקום נתון
+     */
+    static Message decode(ByteBuffer buf, int pos) {
+        ByteBuffer b = buf.slice(pos + OVERHEAD, buf.getInt(pos));
+        Message m = new Message();
+        m.setConversationKey(getString(b));
+        m.setSenderId(getString(b));
+        m.setReceiverId(getString(b));
+        m.setId(getString(b));
+        long ts = b.getLong();
+        m.setTimestamp(ts == NO_SEQ ? null : Instant.ofEpochMilli(ts));
+        long senderSeq = b.getLong();
+        long receiverSeq = b.getLong();
+        m.setSenderSeq(senderSeq == NO_SEQ ? null : senderSeq);
+        m.setReceiverSeq(receiverSeq == NO_SEQ ? null : receiverSeq);
+        m.setMessage(getString(b));
+        return m;
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int len(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer b, byte[] bytes) {
+        if (bytes == null) {
+            b.putInt(-1);
+            return;
+        }
+        b.putInt(bytes.length);
+        b.put(bytes);
+    }
+
+    private static String getString(ByteBuffer b) {
+        int n = b.getInt();
+        if (n < 0) return null;
+        byte[] bytes = new byte[n];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,149 @@
+package com.assignmenthasan.chatapp.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * מקטע אחד של הלוג: קובץ שממופה כולו לזיכרון
+ * כותרת של 16 בתים: [int MAGIC][int גרסה][long compactedUpTo], ואחריה רשומות (LogRecord).
+ * מקטע רגיל נוצר בגודל מלא (קובץ דליל) ו-compactedUpTo שלו -1; מקטע דחוס מחליף את המקטעים base..compactedUpTo,
+ * כך שאם השרת נפל אחרי שהקובץ הדחוס הוחלף ולפני שהישנים נמחקו, הפתיחה הבאה יודעת למחוק אותם.
+ * כתיבה רק תחת נעילת הכתיבה של המאגר; קריאות בגישה מוחלטת (בלי position), כך שכמה קוראים לא מפריעים זה לזה
+ */
+final class LogSegment {
+
+    static final int HEADER = 16;
+    private static final int MAGIC = 0x43484C47;
+    private static final int VERSION = 1;
+
+    final long base;
+    final long compactedUpTo;
+    final MappedByteBuffer buf;
+    /** סוף הרשומות הכתובות; הרשומה הבאה נכתבת כאן */
+    int end;
+    /** הזמן המוקדם ביותר במקטע (מילישניות), לבחירת מקטעים לניקוי לפי גיל */
+    long minTimestamp = Long.MAX_VALUE;
+    /** בתים שאופסו בפתיחה אחרי רשומה פגומה */
+    int torn;
+
+    private LogSegment(long base, long compactedUpTo, MappedByteBuffer buf, int end) {
+        this.base = base;
+        this.compactedUpTo = compactedUpTo;
+        this.buf = buf;
+        this.end = end;
+    }
+
+    /**
+     * @return שם הקובץ של מקטע; המספרים מרופדים כך שמיון לפי שם הוא מיון לפי base
+     */
+    static String fileName(long base, String suffix) {
+        return String.format("%020d.%s", base, suffix);
+    }
+
+    /**
+     * יוצרת מקטע רגיל ריק בגודל מלא
+     */
+    static LogSegment create(Path file, long base, int capacity) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            buf.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, -1);
+            buf.force(0, HEADER);
+            return new LogSegment(base, -1, buf, HEADER);
+        }
+    }
+
+    /**
+     * כותבת מקטע דחוס: הרשומות הנתונות ברצף, בדיוק בגודל הנדרש, וסנכרון לדיסק לפני החזרה
+     * @param records הרשומות המלאות (אורך, CRC ותוכן), לפי הסדר
+     */
+    static void writeCompacted(Path file, long base, long compactedUpTo, List<ByteBuffer> records) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putLong(compactedUpTo).flip();
+            while (header.hasRemaining()) ch.write(header);
+            for (ByteBuffer r : records) {
+                while (r.hasRemaining()) ch.write(r);
+            }
+            ch.force(true);
+        }
+    }
+
+    /**
+     * פותחת מקטע קיים וסורקת אותו עד סוף הרשומות התקינות
+     * רשומה פגומה (כתיבה שנקטעה בנפילה) וכל מה שאחריה מאופסים, כדי שכתיבות חדשות יתחילו ממקום נקי
+     * @return המקטע; ב-torn כמה בתים אופסו
+     */
+    static LogSegment open(Path file, long base) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size());
+            if (buf.capacity() < HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+                throw new IOException("Not a message log segment: " + file);
+            }
+            LogSegment seg = new LogSegment(base, buf.getLong(8), buf, HEADER);
+            int pos = HEADER;
+            int len;
+            while ((len = LogRecord.check(buf, pos, buf.capacity())) > 0) pos += len;
+            seg.end = pos;
+            if (len < 0) seg.torn = seg.zeroFrom(pos);
+            return seg;
+        }
+    }
+
+    private int zeroFrom(int pos) {
+        byte[] zeros = new byte[8192];
+        byte[] chunk = new byte[zeros.length];
+        for (int p = pos; p < buf.capacity(); p += chunk.length) {
+            int n = Math.min(chunk.length, buf.capacity() - p);
+            buf.get(p, chunk, 0, n);
+            // רוב הקובץ הוא חור דליל; כותבים רק איפה שיש בתים, כדי לא להקצות אותו בדיסק
+            for (int i = 0; i < n; i++) {
+                if (chunk[i] != 0) {
+                    buf.put(p, zeros, 0, n);
+                    break;
+                }
+            }
+        }
+        buf.force(pos, buf.capacity() - pos);
+        return buf.capacity() - pos;
+    }
+
+    boolean isCompacted() {
+        return compactedUpTo >= 0;
+    }
+
+    /**
+     * @return true אם רשומה בגודל הזה נכנסת למקטע
+     */
+    boolean fits(int recordLength) {
+        return (long) end + recordLength <= buf.capacity();
+    }
+
+    /**
+     * @return המקום שבו נכתבה הרשומה
+     */
+    int append(byte[] payload) {
+        int pos = end;
+        end += LogRecord.write(buf, pos, payload);
+        return pos;
+    }
+
+    /**
+     * מסנכרנת לדיסק את הטווח [from, end)
+     */
+    void force(int from) {
+        if (end > from) buf.force(from, end - from);
+    }
+
+    /**
+     * @return המקום של הרשומה שאחרי הרשומה במיקום pos
+     */
+    int next(int pos) {
+        return pos + LogRecord.length(buf, pos);
+    }
+}
@@ -0,0 +1,89 @@
+package com.assignmenthasan.chatapp.store;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.springframework.data.domain.Sort;
+
+import com.assignmenthasan.chatapp.model.Message;
+
+/**
+ * מאגר ההודעות: כתיבה מרוכזת, קריאת טווח בשיחה, קריאה לפי רצף המסירה של משתמש ומוני הרצף
+ * השירותים (MessageWriteBehind, MessageHistory, DeliverySequences) עובדים רק מול הממשק הזה,
+ * והמימוש נבחר לפי app.store.backend (ראו StoreConfig)
+ */
+public interface MessageStore {
+
+    /**
+     * מיקום בשיחה: זמן ההודעה ומזהה שלה (שובר שוויון בין הודעות באותה מילישנייה)
+     * @param timestamp זמן ההודעה
+     * @param id מזהה ההודעה (ObjectId בהקסדצימלי)
+     */
+    record Position(Instant timestamp, String id) {
+
+        /**
+         * @param m הודעה שמורה
+         * @return המיקום של ההודעה
+         */
+        public static Position of(Message m) {
+            return new Position(m.getTimestamp(), m.getId());
+        }
+    }
+
+    /**
+     * כותבת קבוצת הודעות; חוזרת רק אחרי שהכתיבה אושרה
+     * @param msgs הודעות עם מזהים, חותמות זמן ומספרי רצף מוכנים
+     */
+    void append(List<Message> msgs);
+
+    /**
+     * קריאת טווח בשיחה אחת לפי (timestamp, id)
+     * @param conversationKey מפתח השיחה
+     * @param from המיקום שממנו מתחילים (לא כולל), או null מהקצה
+     * @param direction DESC – הודעות ישנות מ-from, מהחדשה לישנה; ASC – הודעות חדשות מ-from, מהישנה לחדשה
+     * @param limit מספר ההודעות המקסימלי
+     * @return ההודעות לפי סדר הכיוון
+     */
+    List<Message> range(String conversationKey, Position from, Sort.Direction direction, int limit);
+
+    /**
+     * ההודעות השמורות של משתמש שהמספר שלהן ברצף שלו גדול מ-afterSeq
+     * @param uid מזהה המשתמש (או הקבוצה)
+     * @param afterSeq המספר האחרון שהלקוח כבר קיבל
+     * @param limit מספר ההודעות המקסימלי
+     * @return ההודעות לפי סדר עולה ברצף של המשתמש; ייתכנו חורים של הודעות שעוד לא נכתבו
+     */
+    List<Message> since(String uid, long afterSeq, int limit);
+
+    /**
+     * עוברת על כל ההודעות השמורות באצוות, בלי סדר מובטח – לבנייה מחדש של אינדקסים נגזרים
+     * הודעות שנכתבות בזמן המעבר אולי נכללות ואולי לא
+     * @param batchSize מספר ההודעות המקסימלי באצווה
+     * @param sink מקבלת כל אצווה; חריגה ממנה עוצרת את המעבר
+     */
+    void forEachBatch(int batchSize, Consumer<List<Message>> sink);
+
+    /**
+     * מקצה טווח רציף ברצף המסירה של משתמש
+     * @param uid מזהה המשתמש
+     * @param count כמה מספרים להקצות
+     * @return המספר האחרון בטווח שהוקצה
+     */
+    long allocateSeq(String uid, int count);
+
+    /**
+     * מחזירה למונה את סוף טווח שהוקצה ולא נוצל, רק אם אף אחד לא הקצה אחריו
+     * @param uid מזהה המשתמש
+     * @param reservedLast המספר האחרון בטווח שהוקצה
+     * @param lastUsed המספר האחרון שנוצל בפועל
+     * @return true אם המונה הוחזר ל-lastUsed
+     */
+    boolean releaseSeq(String uid, long reservedLast, long lastUsed);
+
+    /**
+     * @param uid מזהה המשתמש
+     * @return המספר האחרון שהוקצה למשתמש, או 0 אם עוד לא הוקצה
+     */
+    long currentSeq(String uid);
+}
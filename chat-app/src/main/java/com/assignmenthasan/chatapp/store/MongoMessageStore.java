@@ -0,0 +1,124 @@
+package com.assignmenthasan.chatapp.store;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.model.UserSequence;
+
+/**
+ * מימוש MongoDB למאגר ההודעות
+ * הודעות באוסף messages: קריאת טווח על האינדקס {conversationKey, timestamp, _id}, וקריאה לפי רצף על
+ * {receiverId, receiverSeq} ו-{senderId, senderSeq}. מוני הרצף הם מסמך אחד למשתמש באוסף user_sequences,
+ * כך שבכל השרתים המספרים של משתמש עולים ברצף בלי כפילויות.
+ */
+public class MongoMessageStore implements MessageStore {
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * @param mongoTemplate תבנית MongoDB
+     */
+    public MongoMessageStore(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void append(List<Message> msgs) {
+        mongoTemplate.insert(msgs, Message.class);
+    }
+
+    @Override
+    public List<Message> range(String conversationKey, Position from, Sort.Direction direction, int limit) {
+        Criteria criteria = Criteria.where("conversationKey").is(conversationKey);
+        if (from != null) {
+            ObjectId id = new ObjectId(from.id());
+            criteria = direction == Sort.Direction.ASC
+                    ? criteria.orOperator(
+                            Criteria.where("timestamp").gt(from.timestamp()),
+                            Criteria.where("timestamp").is(from.timestamp()).and("id").gt(id))
+                    : criteria.orOperator(
+                            Criteria.where("timestamp").lt(from.timestamp()),
+                            Criteria.where("timestamp").is(from.timestamp()).and("id").lt(id));
+        }
+        // הליכה על האינדקס בכיוון המבוקש – התוצאה כבר ממוינת
+        Query q = Query.query(criteria)
+                .with(Sort.by(direction, "timestamp").and(Sort.by(direction, "id")))
+                .limit(limit);
+        return mongoTemplate.find(q, Message.class);
+    }
+
+    /**
+     * שתי קריאות טווח (כנמען וכשולח) שממוזגות לפי המספר
+     */
+    @Override
+    public List<Message> since(String uid, long afterSeq, int limit) {
+        Query asReceiver = Query.query(Criteria.where("receiverId").is(uid).and("receiverSeq").gt(afterSeq))
+                .with(Sort.by(Sort.Direction.ASC, "receiverSeq"))
+                .limit(limit);
+        Query asSender = Query.query(Criteria.where("senderId").is(uid).and("senderSeq").gt(afterSeq))
+                .with(Sort.by(Sort.Direction.ASC, "senderSeq"))
+                .limit(limit);
+        List<Message> merged = new ArrayList<>(mongoTemplate.find(asReceiver, Message.class));
+        merged.addAll(mongoTemplate.find(asSender, Message.class));
+        merged.sort(Comparator.comparingLong(m -> m.seqOf(uid)));
+        return merged.size() <= limit ? merged : merged.subList(0, limit);
+    }
+
+    /**
+     * קריאות טווח על _id: כל אצווה ממשיכה אחרי המזהה האחרון של הקודמת, בלי skip
+     */
+    @Override
+    public void forEachBatch(int batchSize, Consumer<List<Message>> sink) {
+        ObjectId last = null;
+        List<Message> batch;
+        do {
+            Criteria after = last == null ? new Criteria() : Criteria.where("_id").gt(last);
+            batch = mongoTemplate.find(Query.query(after).with(Sort.by(Sort.Direction.ASC, "_id")).limit(batchSize),
+                    Message.class);
+            if (batch.isEmpty()) return;
+            sink.accept(batch);
+            last = new ObjectId(batch.get(batch.size() - 1).getId());
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * $inc בגודל הטווח על המונה של המשתמש (upsert)
+     */
+    @Override
+    public long allocateSeq(String uid, int count) {
+        UserSequence seq = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(uid)),
+                new Update().inc("seq", count),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                UserSequence.class);
+        return seq.getSeq();
+    }
+
+    /**
+     * עדכון מותנה: המונה חוזר רק אם הוא עדיין על סוף הטווח
+     */
+    @Override
+    public boolean releaseSeq(String uid, long reservedLast, long lastUsed) {
+        return mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(uid).and("seq").is(reservedLast)),
+                new Update().set("seq", lastUsed),
+                UserSequence.class).getModifiedCount() == 1;
+    }
+
+    @Override
+    public long currentSeq(String uid) {
+        UserSequence seq = mongoTemplate.findById(uid, UserSequence.class);
+        return seq == null ? 0 : seq.getSeq();
+    }
+}
@@ -0,0 +1,122 @@
+package com.assignmenthasan.chatapp.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * אינדקס דליל בזיכרון לכל מפתח (שיחה, או רצף של משתמש)
+ * מפתחות המיון (זמן בשיחה, מספר ברצף של משתמש) נשמרים רק לכל בלוק של עד interval רשומות של המפתח באותו מקטע –
+ * הקטן והגדול בבלוק – ולכל רשומה רק המיקום שלה במקטע (int). רשומות של שיחות שונות משולבות בלוג,
+ * ולכן קריאה קופצת ישר לרשומות של המפתח ולא סורקת את טווח הבתים של הבלוק.
+ * קריאה פותחת רק את הבלוקים שיכולים להכיל את הטווח.
+ * ההודעות מגיעות כמעט בסדר המיון (שני כותבים, חותמת זמן לפני התור), ולכן נשמר גם המקסימום המצטבר
+ * והנסיגה הגדולה ביותר שנראתה – מהם נגזר מתי מותר להפסיק לסרוק. לא בטוח לשימוש מכמה תהליכונים.
+ */
+final class SparseIndex {
+
+    private final int interval;
+    private final Map<String, Blocks> keys = new HashMap<>();
+
+    SparseIndex(int interval) {
+        this.interval = Math.max(1, interval);
+    }
+
+    /**
+     * מוסיפה רשומה לבלוק הפתוח של המפתח, או פותחת בלוק חדש
+     * @param segment המקטע שבו הרשומה
+     * @param pos תחילת הרשומה
+     * @param sortKey מפתח המיון של הרשומה
+     */
+    void add(String key, long segment, int pos, long sortKey) {
+        keys.computeIfAbsent(key, k -> new Blocks()).add(segment, pos, sortKey, interval);
+    }
+
+    /**
+     * @return הבלוקים של המפתח, או null אם אין לו רשומות
+     */
+    Blocks get(String key) {
+        return keys.get(key);
+    }
+
+    int keyCount() {
+        return keys.size();
+    }
+
+    /** הבלוקים של מפתח אחד לפי סדר הכתיבה */
+    static final class Blocks {
+        int size;
+        long[] segment = new long[2];
+        /** הרשומה הראשונה של הבלוק ב-offsets */
+        int[] first = new int[2];
+        int[] count = new int[2];
+        long[] min = new long[2];
+        long[] max = new long[2];
+        /** המקסימום של max בבלוקים 0..i – מונוטוני, ולכן אפשר לחפש בו בינארית */
+        long[] prefixMax = new long[2];
+        /** הנסיגה הגדולה ביותר: כמה רשומה הייתה קטנה מהמקסימום שלפניה. כל רשומה אחרי בלוק i היא לפחות prefixMax[i] - regression */
+        long regression;
+        /** המיקומים במקטע של כל הרשומות, בלוק אחרי בלוק */
+        int[] offsets = new int[2];
+        int records;
+
+        private void add(long seg, int pos, long sortKey, int interval) {
+            if (records == offsets.length) offsets = Arrays.copyOf(offsets, records * 2);
+            offsets[records++] = pos;
+            int last = size - 1;
+            if (last >= 0) regression = Math.max(regression, prefixMax[last] - sortKey);
+            if (last >= 0 && segment[last] == seg && count[last] < interval) {
+                count[last]++;
+                min[last] = Math.min(min[last], sortKey);
+                max[last] = Math.max(max[last], sortKey);
+                prefixMax[last] = Math.max(prefixMax[last], sortKey);
+                return;
+            }
+            if (size == segment.length) grow();
+            segment[size] = seg;
+            first[size] = records - 1;
+            count[size] = 1;
+            min[size] = sortKey;
+            max[size] = sortKey;
+            prefixMax[size] = last >= 0 ? Math.max(prefixMax[last], sortKey) : sortKey;
+            size++;
+        }
+
+        private void grow() {
+            int n = segment.length * 2;
+            segment = Arrays.copyOf(segment, n);
+            first = Arrays.copyOf(first, n);
+            count = Arrays.copyOf(count, n);
+            min = Arrays.copyOf(min, n);
+            max = Arrays.copyOf(max, n);
+            prefixMax = Arrays.copyOf(prefixMax, n);
+        }
+
+        /**
+         * @return הבלוק הראשון שיכול להכיל מפתח מיון ≥ bound (בלוקים לפניו כולם קטנים ממנו)
+         */
+        int firstReaching(long bound) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (prefixMax[mid] < bound) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /**
+         * @return הבלוק האחרון שיכול להכיל מפתח מיון ≤ bound (בלוקים אחריו כולם גדולים ממנו)
+         */
+        int lastReaching(long bound) {
+            // בלוק j יכול להכיל ערך ≤ bound רק אם prefixMax[j-1] - regression ≤ bound
+            int lo = 0, hi = size - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (prefixMax[mid - 1] - regression <= bound) lo = mid;
+                else hi = mid - 1;
+            }
+            return hi;
+        }
+    }
+}
@@ -9,7 +9,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
 
-import com.google.firebase.auth.FirebaseAuth;
+import com.assignmenthasan.chatapp.security.TokenVerifier;
 import com.google.firebase.auth.FirebaseToken;
 
 /**
@@ -19,9 +19,23 @@ import com.google.firebase.auth.FirebaseToken;
 @Component
 public class AuthHandshakeInterceptor implements HandshakeInterceptor {
 
+    /** שם התכונה בחיבור שמחזיקה את המספר האחרון שהלקוח קיבל (?lastSeq=N) */
+    static final String LAST_SEQ_ATTR = "lastSeq";
+
+    private final TokenVerifier tokenVerifier;
+
+    /**
+     * בנאי המקבל את שירות אימות הטוקנים המשותף
+     * @param tokenVerifier שירות אימות עם מטמון
+     */
+    public AuthHandshakeInterceptor(TokenVerifier tokenVerifier) {
+        this.tokenVerifier = tokenVerifier;
+    }
+
     /**
      * נקראת לפני יצירת חיבור WebSocket חדש
-     * מאמתת את תוקן Firebase ומוסיפה את מזהה המשתמש לתכונות החיבור
+     * מאמתת את תוקן Firebase ומוסיפה את מזהה המשתמש לתכונות החיבור.
+     * לקוח שמבקש השלמה שולח גם lastSeq; ערך לא תקין מתעלם ממנו והחיבור נשאר רגיל
      * @param request הבקשה הנכנסת
      * @param response התגובה
      * @param wsHandler מטפל ה-WebSocket
@@ -40,14 +54,26 @@ public class AuthHandshakeInterceptor implements HandshakeInterceptor {
         if (token == null || token.isBlank()) return false;
 
         try {
-            FirebaseToken decoded = FirebaseAuth.getInstance().verifyIdToken(token);
+            FirebaseToken decoded = tokenVerifier.verify(token);
             attributes.put("uid", decoded.getUid());
+            Long lastSeq = lastSeq(servletReq.getServletRequest().getParameter(LAST_SEQ_ATTR));
+            if (lastSeq != null) attributes.put(LAST_SEQ_ATTR, lastSeq);
             return true;
         } catch (Exception e) {
             return false;
         }
     }
 
+    static Long lastSeq(String param) {
+        if (param == null || param.isBlank()) return null;
+        try {
+            long seq = Long.parseLong(param.trim());
+            return seq >= 0 ? seq : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * נקראת לאחר השלמת לחיצת היד של WebSocket
      * אין צורך בפעולות נוספות במימוש זה
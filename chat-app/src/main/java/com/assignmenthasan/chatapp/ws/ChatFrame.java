@@ -0,0 +1,140 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+
+/**
+ * מסגרת יוצאת אחת שיכולה לצאת בכל אחד מהקידודים
+ * כל קידוד מסודר לכל היותר פעם אחת, ורק אם יש חיבור שמבקש אותו,
+ * כך שפיזור ללקוחות JSON בלבד לא משלם על CBOR ולהפך
+ */
+public final class ChatFrame {
+
+    private static final ChatMessageDTO NONE = new ChatMessageDTO();
+
+    private final MessageCodec codec;
+
+    /** הערך המקורי (הודעה), או null כשהמסגרת נבנתה מ-JSON מוכן */
+    private final Object value;
+
+    /** מסגרות ההודעות שבמערך, או null במסגרת בודדת */
+    private final List<ChatFrame> parts;
+
+    private volatile TextMessage text;
+    private volatile BinaryMessage binary;
+
+    /** ההודעה שפוענחה מ-JSON מוכן (מעטפה משרת אחר), כדי לקרוא את מספרי המסירה; NONE אם זו לא הודעה */
+    private volatile ChatMessageDTO decoded;
+
+    ChatFrame(MessageCodec codec, Object value, TextMessage text) {
+        this(codec, value, text, null);
+    }
+
+    private ChatFrame(MessageCodec codec, Object value, TextMessage text, List<ChatFrame> parts) {
+        this.codec = codec;
+        this.value = value;
+        this.text = text;
+        this.parts = parts;
+    }
+
+    /**
+     * מאחדת כמה מסגרות למסגרת מערך אחת
+     * המערך נבנה מהבתים שכל הודעה כבר סודרה אליהם, בלי לסדר את ההודעות מחדש
+     * @param frames המסגרות לפי סדר השליחה (לפחות אחת)
+     * @return מסגרת מערך
+     */
+    static ChatFrame batch(List<ChatFrame> frames) {
+        return new ChatFrame(frames.get(0).codec, null, null, List.copyOf(frames));
+    }
+
+    /**
+     * @return מספר ההודעות במסגרת
+     */
+    public int size() {
+        return parts == null ? 1 : parts.size();
+    }
+
+    /**
+     * @return ההודעות שבמסגרת מערך, או המסגרת עצמה
+     */
+    List<ChatFrame> parts() {
+        return parts != null ? parts : List.of(this);
+    }
+
+    /**
+     * @param uid המשתמש שהמסגרת נמסרת לו
+     * @return מספר המסירה של ההודעה ברצף של המשתמש, או null למסגרת שאינה הודעה ממוספרת (שגיאה, מערך)
+     */
+    Long seqFor(String uid) {
+        ChatMessageDTO m = message();
+        if (m == null) return null;
+        if (uid.equals(m.getReceiverId())) return m.getReceiverSeq();
+        if (uid.equals(m.getSenderId())) return m.getSenderSeq();
+        return null;
+    }
+
+    private ChatMessageDTO message() {
+        if (parts != null) return null;
+        if (value != null) return value instanceof ChatMessageDTO dto ? dto : null;
+        ChatMessageDTO m = decoded;
+        if (m == null) {
+            byte[] bytes = text.asBytes();
+            try {
+                m = codec.decode(bytes, 0, bytes.length);
+            } catch (IOException e) {
+                m = NONE;
+            }
+            decoded = m;
+        }
+        return m == NONE ? null : m;
+    }
+
+    /**
+     * @param protocol הקידוד של החיבור
+     * @return המסגרת בקידוד הזה; אותו אובייקט לכל החיבורים באותו קידוד
+     */
+    public WebSocketMessage<?> forProtocol(WireProtocol protocol) {
+        return protocol == WireProtocol.CBOR ? binary() : text();
+    }
+
+    /**
+     * @return המסגרת כטקסט JSON (גם הצורה שעוברת בין שרתים)
+     */
+    public TextMessage text() {
+        TextMessage t = text;
+        if (t == null) {
+            // מירוץ בין שני שולחים רק מסדר פעמיים את אותו תוכן
+            try {
+                t = parts != null ? codec.joinJson(parts) : codec.encodeJson(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            text = t;
+        }
+        return t;
+    }
+
+    /**
+     * @return המסגרת כ-CBOR
+     */
+    public BinaryMessage binary() {
+        BinaryMessage b = binary;
+        if (b == null) {
+            try {
+                if (parts != null) b = codec.joinCbor(parts);
+                else b = value != null ? codec.encodeCbor(value) : codec.transcodeToCbor(text);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            binary = b;
+        }
+        return b;
+    }
+}
@@ -1,105 +1,323 @@
 package com.assignmenthasan.chatapp.ws;
 
 import java.io.IOException;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PongMessage;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
 import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.model.Conversation;
 import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.security.RateLimiter;
 import com.assignmenthasan.chatapp.service.ChatService;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.assignmenthasan.chatapp.service.GroupDirectory;
 
 /**
  * מחלקה לטיפול בחיבורי WebSocket עבור הצ'אט
- * מנהלת את החיבורים הפעילים ומעבירה הודעות בין המשתמשים בזמן אמת
+ * מנהלת את החיבורים הפעילים ומעבירה הודעות בין המשתמשים בזמן אמת.
+ * לקוח שמבקש את ה-subprotocol chat.cbor.v1 שולח ומקבל מסגרות בינאריות; כל השאר נשארים ב-JSON.
  */
 @Component
-public class ChatWebSocketHandler extends TextWebSocketHandler {
+public class ChatWebSocketHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /** סדר ההעדפה כשהלקוח מציע כמה subprotocols */
+    private static final List<String> SUB_PROTOCOLS =
+            List.of(WireProtocol.CBOR.subprotocol(), WireProtocol.JSON.subprotocol());
+
+    /** שם התכונה בחיבור שמחזיקה את תור השליחה שלו */
+    static final String OUTBOUND_ATTR = "outbound";
+
+    private final MessageCodec codec;
     private final ChatService chatService;
+    private final OutboundWriter outboundWriter;
+
+    /** רישום החיבורים הפעילים - מזהה משתמש לכל החיבורים שלו */
+    private final SessionRegistry sessions;
+
+    /** ניתוב לחיבורים בשרתים אחרים */
+    private final ClusterRouter router;
+
+    private final WebSocketProperties props;
+
+    /** השלמת הודעות לחיבורים שמתחברים מחדש עם lastSeq */
+    private final DeliveryResume resume;
+
+    /** איחוד אישורי המסירה והקריאה */
+    private final ReceiptCoalescer receipts;
 
-    /** מפה המשמרת את החיבורים הפעילים - מזהה משתמש לחיבור */
-    private final ConcurrentHashMap<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    /** נוכחות, הקלדה וזיהוי חיבורים מתים */
+    private final PresenceNotifier presence;
+
+    /** חברות בקבוצות, מהזיכרון */
+    private final GroupDirectory groups;
+
+    /** הגבלת קצב לפי משתמש וסוג מסגרת */
+    private final RateLimiter limiter;
+
+    /** זמני השלבים בטיפול במסגרת נכנסת */
+    private final StageMetrics stages;
 
     /**
-     * בנאי המקבל את שירות הצ'אט
+     * בנאי המקבל את שירות הצ'אט, מאגר הכותבים, רישום החיבורים והנתב
      * @param chatService שירות לשמירת הודעות והפעלת פונקציית Firebase
+     * @param outboundWriter יוצר תורי שליחה לא חוסמים לכל חיבור
+     * @param sessions רישום החיבורים לפי משתמש
+     * @param router נתב שמעביר הודעות גם לשרתים אחרים
+     * @param codec קידוד ופענוח משותף של מסגרות
+     * @param props הגדרות החיבורים (גודל batch מקסימלי)
+     * @param resume השלמת הודעות שהוחמצו לפי רצף המסירה
+     * @param receipts איחוד אישורי המסירה והקריאה
+     * @param presence עדכוני נוכחות והקלדה
+     * @param groups חברות בקבוצות
+     * @param limiter הגבלת קצב להודעות, הקלדה ואישורים
+     * @param stages מדידת זמן לכל שלב בטיפול במסגרת
      */
-    public ChatWebSocketHandler(ChatService chatService) {
+    public ChatWebSocketHandler(ChatService chatService, OutboundWriter outboundWriter,
+                                SessionRegistry sessions, ClusterRouter router, MessageCodec codec,
+                                WebSocketProperties props, DeliveryResume resume, ReceiptCoalescer receipts,
+                                PresenceNotifier presence, GroupDirectory groups, RateLimiter limiter,
+                                StageMetrics stages) {
+        this.codec = codec;
         this.chatService = chatService;
+        this.outboundWriter = outboundWriter;
+        this.sessions = sessions;
+        this.router = router;
+        this.props = props;
+        this.resume = resume;
+        this.receipts = receipts;
+        this.presence = presence;
+        this.groups = groups;
+        this.limiter = limiter;
+        this.stages = stages;
+    }
+
+    /**
+     * @return ה-subprotocols שהשרת מוכן לבחור בלחיצת היד
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return SUB_PROTOCOLS;
     }
 
     /**
      * נקראת כאשר חיבור WebSocket חדש נוצר בהצלחה
-     * מוסיפה את החיבור למפת החיבורים הפעילים
+     * עוטפת את החיבור בתור שליחה ומוסיפה אותו למפת החיבורים הפעילים.
+     * חיבור עם lastSeq מקבל קודם את כל מה שהוחמץ; הודעות חיות שמגיעות בינתיים ממתינות להשלמה
      * @param session החיבור החדש שנוצר
      */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         String uid = (String) session.getAttributes().get("uid");
         if (uid != null) {
-            sessions.put(uid, session);
+            OutboundSession out = outboundWriter.open(session);
+            session.getAttributes().put(OUTBOUND_ATTR, out);
+            Long lastSeq = (Long) session.getAttributes().get(AuthHandshakeInterceptor.LAST_SEQ_ATTR);
+            DeliverySequencer sequencer = lastSeq != null && resume.isEnabled()
+                    ? resume.attach(uid, out, lastSeq) : null;
+            sessions.register(uid, out);
+            router.sessionOpened(uid);
+            presence.sessionOpened(uid, out);
+            // ההשלמה מתחילה רק אחרי הרישום, כך שאף הודעה לא נופלת בין השאילתה לחיבור
+            if (sequencer != null) resume.start(sequencer);
         }
     }
 
     /**
-     * מטפלת בהודעות טקסט הנשלחות דרך WebSocket
-     * מאמתת את זהות השולח, שומרת את ההודעה ומעבירה אותה לנמען
+     * מטפלת בהודעות טקסט (JSON) הנשלחות דרך WebSocket – הודעה אחת או מערך הודעות
      * @param session החיבור שממנו נשלחה ההודעה
      * @param message ההודעה שנשלחה
      * @throws IOException במקרה של שגיאה בקריאה או כתיבה
      */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
-        String uid = (String) session.getAttributes().get("uid");
-        if (uid == null) {
-            try {
-                session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Unauthenticated"));
-            } catch (Exception ignored) {}
-            return;
+        if (authenticated(session)) {
+            heard(session);
+            long start = stages.start();
+            List<ChatMessageDTO> dtos = codec.decodeAll(message);
+            onChatMessages(session, dtos, stages.lap(StageMetrics.Stage.DECODE, start));
+            stages.lap(StageMetrics.Stage.TOTAL, start);
         }
+    }
 
-        ChatMessageDTO dto = objectMapper.readValue(message.getPayload(), ChatMessageDTO.class);
+    /**
+     * מטפלת בהודעות בינאריות (CBOR) מלקוחות שבחרו ב-chat.cbor.v1 – הודעה אחת או מערך הודעות
+     * @param session החיבור שממנו נשלחה ההודעה
+     * @param message ההודעה שנשלחה
+     * @throws IOException במקרה של שגיאה בקריאה או כתיבה
+     */
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        if (authenticated(session)) {
+            heard(session);
+            long start = stages.start();
+            List<ChatMessageDTO> dtos = codec.decodeAll(message);
+            onChatMessages(session, dtos, stages.lap(StageMetrics.Stage.DECODE, start));
+            stages.lap(StageMetrics.Stage.TOTAL, start);
+        }
+    }
+
+    /**
+     * תשובת הדפדפן ל-ping ששלחנו לחיבור שותק – הסימן שהחיבור עדיין חי
+     * @param session החיבור
+     * @param message ה-pong
+     */
+    @Override
+    protected void handlePongMessage(WebSocketSession session, PongMessage message) {
+        heard(session);
+    }
 
-        if (!uid.equals(dto.getSenderId())) {
-            session.sendMessage(new TextMessage("{\"error\":\"senderId mismatch\"}"));
+    /**
+     * מאמתת את כל ההודעות במסגרת במעבר אחד, שומרת אותן בכתיבה אחת ומעבירה כל אחת לנמען שלה.
+     * הודעה שהנמען שלה הוא קבוצה (receiverId שמתחיל ב-g_) עוברת רק אם השולח חבר בה, ומשודרת לכל החברים.
+     * מסגרת עם הודעה לא תקינה אחת נדחית כולה, כך שהלקוח יכול לשלוח אותה שוב כמו שהיא.
+     * אישורי מסירה וקריאה יכולים להגיע באותה מסגרת; הם לא נשמרים כהודעות אלא מקדמים סימן לשיחה.
+     * אירועי הקלדה לא נשמרים ועוברים לנמען רק אם הוא מחובר.
+     * מסגרת שחורגת ממגבלת הקצב של אחד הסוגים נדחית כולה עם retryAfterMs; מי שנדחה שוב ושוב מנותק.
+     * @param session החיבור שממנו נשלחה המסגרת
+     * @param dtos ההודעות המפוענחות, בלי קשר לקידוד שבו הגיעו
+     * @param t תחילת השלב הנוכחי למדידה (StageMetrics.NOT_SAMPLED אם המסגרת לא נמדדת)
+     */
+    private void onChatMessages(WebSocketSession session, List<ChatMessageDTO> dtos, long t) {
+        if (dtos.isEmpty()) return;
+        String uid = (String) session.getAttributes().get("uid");
+        OutboundSession self = (OutboundSession) session.getAttributes().get(OUTBOUND_ATTR);
+
+        if (dtos.size() > props.getMaxBatchSize()) {
+            self.send(codec.batchTooLarge());
             return;
         }
-
-        if (dto.getSenderId().equals(dto.getReceiverId())) {
-            session.sendMessage(new TextMessage("{\"error\":\"cannot send message to yourself\"}"));
+        List<ChatMessageDTO> messages = new ArrayList<>(dtos.size());
+        List<ChatMessageDTO> acks = new ArrayList<>(0);
+        List<ChatMessageDTO> typing = new ArrayList<>(0);
+        for (ChatMessageDTO dto : dtos) {
+            if (!uid.equals(dto.getSenderId())) {
+                self.send(codec.senderMismatch());
+                return;
+            }
+            if (dto.getSenderId().equals(dto.getReceiverId())) {
+                self.send(codec.selfMessage());
+                return;
+            }
+            if (dto.getType() == null) {
+                if (dto.getReceiverId() == null || dto.getReceiverId().isBlank()) {
+                    self.send(codec.missingReceiver());
+                    return;
+                }
+                if (Conversation.isGroup(dto.getReceiverId()) && !groups.isMember(dto.getReceiverId(), uid)) {
+                    self.send(codec.notGroupMember());
+                    return;
+                }
+                messages.add(dto);
+            } else if (ChatMessageDTO.TYPE_TYPING.equals(dto.getType()) && dto.getReceiverId() != null) {
+                typing.add(dto);
+            } else if (ReceiptCoalescer.isValid(dto)) {
+                acks.add(dto);
+            } else {
+                self.send(codec.invalidReceipt());
+                return;
+            }
+        }
+        // מסגרת נדחית כולה; מה שכבר נלקח מהדליים הקודמים מוחזר, כדי שהשליחה החוזרת לא תשלם פעמיים
+        if (!admitted(self, uid, RateLimiter.Kind.MESSAGE, messages.size())) return;
+        if (!admitted(self, uid, RateLimiter.Kind.RECEIPT, acks.size())) {
+            limiter.release(RateLimiter.Kind.MESSAGE, uid, messages.size());
             return;
         }
+        if (!admitted(self, uid, RateLimiter.Kind.TYPING, typing.size())) {
+            limiter.release(RateLimiter.Kind.MESSAGE, uid, messages.size());
+            limiter.release(RateLimiter.Kind.RECEIPT, uid, acks.size());
+            return;
+        }
+        stages.received(StageMetrics.Inbound.MESSAGE, messages.size());
+        stages.received(StageMetrics.Inbound.RECEIPT, acks.size());
+        stages.received(StageMetrics.Inbound.TYPING, typing.size());
+        for (ChatMessageDTO ack : acks) receipts.ack(ack);
+        for (ChatMessageDTO event : typing) presence.typing(event);
+        t = stages.lap(StageMetrics.Stage.ADMIT, t);
+        if (messages.isEmpty()) return;
+
+        List<Message> saved = messages.size() == 1
+                ? List.of(chatService.persist(messages.get(0)))
+                : chatService.persistAll(messages);
+        t = stages.lap(StageMetrics.Stage.PERSIST, t);
 
-        Message saved = chatService.persist(dto);
+        // כל קידוד מסודר פעם אחת; אותה מסגרת נכנסת לתור של כל מכשירי הנמען ושל כל מכשירי השולח, בכל השרתים.
+        // המסגרת נושאת את שני מספרי המסירה וכל מכשיר לוקח את המספר ברצף שלו
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessageDTO dto = messages.get(i);
+            dto.setSenderSeq(saved.get(i).getSenderSeq());
+            dto.setReceiverSeq(saved.get(i).getReceiverSeq());
+            if (Conversation.isGroup(dto.getReceiverId())) {
+                // הודעה קבוצתית נשמרה פעם אחת; המסגרת שלה משודרת לכל החברים
+                router.broadcast(groups.members(dto.getReceiverId()), codec.frame(dto));
+                continue;
+            }
+            router.route(uid, dto.getReceiverId(), codec.frame(dto));
+            presence.conversationActive(uid, dto.getReceiverId());
+        }
+
+        t = stages.lap(StageMetrics.Stage.ROUTE, t);
 
-        WebSocketSession recipient = sessions.get(dto.getReceiverId());
-        if (recipient != null && recipient.isOpen()) {
-            recipient.sendMessage(new TextMessage(objectMapper.writeValueAsString(dto)));
+        // התראות דחיפה רק לשיחות בין שניים; פונקציית ההתראה מצפה לנמען יחיד
+        for (Message msg : saved) {
+            if (!Conversation.isGroup(msg.getReceiverId())) chatService.notifyFunction(msg);
         }
+        stages.lap(StageMetrics.Stage.NOTIFY, t);
+    }
 
-        if (session.isOpen()) {
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(dto)));
+    /**
+     * @return true אם יש למשתמש מספיק אסימונים; אחרת שולחת מסגרת שגיאה, וסוגרת חיבור של מציף
+     */
+    private boolean admitted(OutboundSession self, String uid,
+                             RateLimiter.Kind kind, int count) {
+        long wait = limiter.acquire(kind, uid, count);
+        if (wait == 0) return true;
+        if (limiter.strike(uid)) {
+            self.close(CloseStatus.POLICY_VIOLATION.withReason("Rate limit exceeded"));
+        } else {
+            self.send(codec.rateLimited(kind.tag(), wait));
         }
+        return false;
+    }
 
-        chatService.notifyFunction(saved);
+    private static void heard(WebSocketSession session) {
+        OutboundSession out = (OutboundSession) session.getAttributes().get(OUTBOUND_ATTR);
+        if (out != null) out.heard();
+    }
+
+    private boolean authenticated(WebSocketSession session) {
+        if (session.getAttributes().get("uid") != null) return true;
+        try {
+            session.close(CloseStatus.NOT_ACCEPTABLE.withReason("Unauthenticated"));
+        } catch (Exception ignored) {}
+        return false;
     }
 
     /**
      * נקראת כאשר חיבור WebSocket נסגר
-     * מסירה את החיבור ממפת החיבורים הפעילים
+     * מסירה את החיבור ממפת החיבורים הפעילים ומשחררת את תור השליחה שלו
      * @param session החיבור שנסגר
      * @param status סטטוס הסגירה
      */
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         String uid = (String) session.getAttributes().get("uid");
-        if (uid != null) sessions.remove(uid);
+        OutboundSession out = (OutboundSession) session.getAttributes().get(OUTBOUND_ATTR);
+        if (uid != null && out != null) {
+            sessions.unregister(uid, out);
+            out.release();
+            router.sessionClosed(uid);
+            presence.sessionClosed(uid);
+        }
     }
 }
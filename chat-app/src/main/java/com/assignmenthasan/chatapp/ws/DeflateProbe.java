@@ -0,0 +1,114 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * מדידת permessage-deflate בחיבורים שהסכימו לדחיסה
+ * Tomcat לא חושף את גודל המסגרת הדחוסה, ולכן מדגם מהמסגרות היוצאות נדחס כאן שוב
+ * עם אותן הגדרות (raw deflate, SYNC_FLUSH, רמת ברירת מחדל) כדי למדוד יחס דחיסה וזמן CPU למסגרת.
+ * המדגם דוחס כל מסגרת עם חלון ריק, כך שבמצב context takeover היחס בפועל טוב יותר מהנמדד.
+ */
+final class DeflateProbe {
+
+    /** סיומת ה-SYNC_FLUSH שההרחבה מורידה מכל מסגרת (RFC 7692 7.2.1) */
+    private static final int SYNC_FLUSH_TAIL = 4;
+
+    private final WebSocketProperties.Compression props;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    private final DistributionSummary ratio;
+    private final Timer cpu;
+    private final Counter small;
+    private final Counter contextTakeover;
+    private final Counter noContextTakeover;
+
+    DeflateProbe(WebSocketProperties.Compression props, MeterRegistry registry) {
+        this.props = props;
+        this.ratio = DistributionSummary.builder("chat.ws.deflate.ratio")
+                .description("Sampled compressed/uncompressed size of outbound frames").register(registry);
+        this.cpu = Timer.builder("chat.ws.deflate.cpu")
+                .description("Sampled deflate time per outbound frame").register(registry);
+        this.small = Counter.builder("chat.ws.deflate.small")
+                .description("Frames on compressed sessions below minFrameSize").register(registry);
+        this.contextTakeover = Counter.builder("chat.ws.deflate.sessions").tag("mode", "context_takeover")
+                .register(registry);
+        this.noContextTakeover = Counter.builder("chat.ws.deflate.sessions").tag("mode", "no_context_takeover")
+                .register(registry);
+    }
+
+    /**
+     * @param extensions ההרחבות שנקבעו בלחיצת היד
+     * @return true אם החיבור דוחס מסגרות; נספר לפי מצב החלון
+     */
+    boolean negotiated(List<WebSocketExtension> extensions) {
+        if (extensions == null) return false;
+        for (WebSocketExtension ext : extensions) {
+            if (!DeflateUpgradeStrategy.PERMESSAGE_DEFLATE.equalsIgnoreCase(ext.getName())) continue;
+            if (ext.getParameters().containsKey(DeflateUpgradeStrategy.SERVER_NO_CONTEXT_TAKEOVER)) {
+                noContextTakeover.increment();
+            } else {
+                contextTakeover.increment();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * נקראת אחרי שליחת מסגרת בחיבור דחוס
+     * @param frame המסגרת שנשלחה
+     */
+    void sent(WebSocketMessage<?> frame) {
+        int length = frame.getPayloadLength();
+        if (length < props.getMinFrameSize()) small.increment();
+        if (length == 0 || ThreadLocalRandom.current().nextDouble() >= props.getSampleRate()) return;
+
+        ByteBuffer input;
+        if (frame instanceof TextMessage text) input = ByteBuffer.wrap(text.asBytes());
+        else if (frame instanceof BinaryMessage binary) input = binary.getPayload().duplicate();
+        else return;
+
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            long start = System.nanoTime();
+            deflater.setInput(input);
+            byte[] out = new byte[Math.max(64, length)];
+            long compressed = 0;
+            int n;
+            do {
+                n = deflater.deflate(out, 0, out.length, Deflater.SYNC_FLUSH);
+                compressed += n;
+            } while (n == out.length);
+            cpu.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            ratio.record((double) Math.max(0, compressed - SYNC_FLUSH_TAIL) / length);
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    /** משחררת את הזיכרון הנייטיב של הדוחסים */
+    void close() {
+        Deflater d;
+        while ((d = deflaters.poll()) != null) d.end();
+    }
+}
@@ -0,0 +1,105 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.web.socket.server.standard.StandardWebSocketUpgradeStrategy;
+
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.websocket.server.ServerEndpointConfig;
+
+/**
+ * שדרוג WebSocket שקובע את תנאי permessage-deflate לפי app.websocket.compression
+ * Tomcat מנהל את המשא ומתן על ההרחבות מול הכותרת Sec-WebSocket-Extensions של הבקשה ועונה לפי מה שהלקוח הציע,
+ * ולכן ההגדרות נאכפות בשכתוב ההצעה של הלקוח לפני השדרוג: הסרתה כשהדחיסה כבויה,
+ * או הוספת no_context_takeover לשני הכיוונים כשלא שומרים חלון בין מסגרות
+ */
+public class DeflateUpgradeStrategy extends StandardWebSocketUpgradeStrategy {
+
+    static final String EXTENSIONS_HEADER = "Sec-WebSocket-Extensions";
+    static final String PERMESSAGE_DEFLATE = "permessage-deflate";
+    static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+    static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+    private final WebSocketProperties.Compression compression;
+
+    /**
+     * @param compression הגדרות הדחיסה
+     */
+    public DeflateUpgradeStrategy(WebSocketProperties.Compression compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    protected void upgradeHttpToWebSocket(HttpServletRequest request, HttpServletResponse response,
+                                          ServerEndpointConfig endpointConfig, Map<String, String> pathParams)
+            throws Exception {
+        List<String> offered = Collections.list(request.getHeaders(EXTENSIONS_HEADER));
+        String rewritten = rewrite(String.join(",", offered), compression);
+        super.upgradeHttpToWebSocket(new ExtensionsRequest(request, rewritten), response, endpointConfig, pathParams);
+    }
+
+    /**
+     * @param header ההצעות של הלקוח, מופרדות בפסיקים
+     * @param compression הגדרות הדחיסה
+     * @return ההצעות אחרי אכיפת ההגדרות; מחרוזת ריקה אם לא נשאר כלום
+     */
+    static String rewrite(String header, WebSocketProperties.Compression compression) {
+        if (header == null || header.isBlank()) return "";
+        List<String> out = new ArrayList<>();
+        for (String offer : header.split(",")) {
+            String trimmed = offer.trim();
+            if (trimmed.isEmpty()) continue;
+            String name = trimmed.split(";", 2)[0].trim();
+            if (!PERMESSAGE_DEFLATE.equalsIgnoreCase(name)) {
+                out.add(trimmed);
+                continue;
+            }
+            if (!compression.isEnabled()) continue;
+            if (!compression.isContextTakeover()) {
+                trimmed = withParam(trimmed, SERVER_NO_CONTEXT_TAKEOVER);
+                trimmed = withParam(trimmed, CLIENT_NO_CONTEXT_TAKEOVER);
+            }
+            out.add(trimmed);
+        }
+        return String.join(", ", out);
+    }
+
+    private static String withParam(String offer, String param) {
+        for (String part : offer.split(";")) {
+            if (part.trim().split("=", 2)[0].trim().equalsIgnoreCase(param)) return offer;
+        }
+        return offer + "; " + param;
+    }
+
+    /** עוטף את הבקשה כך שכותרת ההרחבות מחזירה את ההצעה המשוכתבת */
+    private static final class ExtensionsRequest extends HttpServletRequestWrapper {
+
+        private final String extensions;
+
+        ExtensionsRequest(HttpServletRequest request, String extensions) {
+            super(request);
+            this.extensions = extensions;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (!EXTENSIONS_HEADER.equalsIgnoreCase(name)) return super.getHeader(name);
+            return extensions.isEmpty() ? null : extensions;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!EXTENSIONS_HEADER.equalsIgnoreCase(name)) return super.getHeaders(name);
+            return extensions.isEmpty() ? Collections.emptyEnumeration()
+                    : Collections.enumeration(List.of(extensions));
+        }
+    }
+}
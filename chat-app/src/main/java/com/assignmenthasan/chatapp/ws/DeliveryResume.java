@@ -0,0 +1,147 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.DeliveryProperties;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.service.DeliverySequences;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * השלמת הודעות לחיבור שהתחבר מחדש עם ?lastSeq=N
+ * כל הודעה נושאת senderSeq ו-receiverSeq; הלקוח שומר את המספר האחרון שקיבל ברצף שלו
+ * (senderSeq בהודעות שהוא שלח, receiverSeq בהודעות שקיבל) ושולח אותו בהתחברות הבאה.
+ * השרת שולח בעמודים חסומים את כל מה שאחרי N, אחר כך מסגרת {"type":"resumed","seq":M}, ורק אז הודעות חיות.
+ * כשחסרות יותר מ-maxResume הודעות נשלחת {"type":"resync","seq":M}: הלקוח טוען היסטוריה ב-REST וממשיך מ-M.
+ * בכל החיבור ההודעות יוצאות בסדר עולה ובלי כפילויות (DeliverySequencer); לקוח בלי lastSeq לא מושפע.
+ */
+@Component
+public class DeliveryResume {
+
+    private final DeliverySequences sequences;
+    private final MessageCodec codec;
+    private final DeliveryProperties props;
+    private final Executor executor;
+    final Meters meters;
+
+    /**
+     * @param sequences רצפי המסירה והשאילתה על מה שהוחמץ
+     * @param codec קידוד המסגרות
+     * @param props הגדרות ההשלמה
+     * @param executionMode מצב ההרצה; השלמה ממתינה למסד ולתור השליחה ולכן רצה במאגר משלה
+     * @param meterRegistry רישום מדדים
+     */
+    public DeliveryResume(DeliverySequences sequences, MessageCodec codec, DeliveryProperties props,
+                          ExecutionMode executionMode, MeterRegistry meterRegistry) {
+        this.sequences = sequences;
+        this.codec = codec;
+        this.props = props;
+        this.executor = executionMode.newExecutor("chat-resume-", props.getResumeThreads());
+        this.meters = new Meters(meterRegistry);
+    }
+
+    /**
+     * @return true אם ההודעות ממוספרות ואפשר להשלים לפי lastSeq
+     */
+    public boolean isEnabled() {
+        return sequences.isEnabled();
+    }
+
+    /**
+     * מחברת סידור לחיבור לפני שהוא נרשם, כך שהודעות חיות שמגיעות בזמן ההשלמה ממתינות לה
+     * @param uid מזהה המשתמש
+     * @param out תור השליחה של החיבור
+     * @param lastSeq המספר האחרון שהלקוח קיבל
+     * @return הסידור; יש להפעיל start אחרי הרישום
+     */
+    DeliverySequencer attach(String uid, OutboundSession out, long lastSeq) {
+        DeliverySequencer sequencer = new DeliverySequencer(uid, out, lastSeq, this);
+        out.setSequencer(sequencer);
+        return sequencer;
+    }
+
+    /** מתחילה את ההשלמה של חיבור שכבר רשום */
+    void start(DeliverySequencer sequencer) {
+        executor.execute(sequencer::resume);
+    }
+
+    /** משלימה חור ברצף שנפתח בהודעות החיות */
+    void fillGap(DeliverySequencer sequencer) {
+        executor.execute(sequencer::catchUp);
+    }
+
+    DeliveryProperties props() {
+        return props;
+    }
+
+    long current(String uid) {
+        return sequences.current(uid);
+    }
+
+    List<Message> since(String uid, long afterSeq) {
+        return sequences.since(uid, afterSeq, props.getResumePageSize());
+    }
+
+    /** מסגרת להודעה שמורה, באותה צורה כמו הודעה חיה */
+    ChatFrame frameOf(Message m) {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setSenderId(m.getSenderId());
+        dto.setReceiverId(m.getReceiverId());
+        dto.setTimestamp(m.getTimestamp() == null ? null : DateTimeFormatter.ISO_INSTANT.format(m.getTimestamp()));
+        dto.setMessage(m.getMessage());
+        dto.setSenderSeq(m.getSenderSeq());
+        dto.setReceiverSeq(m.getReceiverSeq());
+        return codec.frame(dto);
+    }
+
+    /** מסגרת בקרה: resumed או resync */
+    ChatFrame control(String type, long seq) {
+        return codec.frameOfJson("{\"type\":\"" + type + "\",\"seq\":" + seq + "}");
+    }
+
+    @PreDestroy
+    public void stop() {
+        ExecutionMode.shutdown(executor);
+    }
+
+    /** מדדי ההשלמה והסידור, משותפים לכל החיבורים */
+    static final class Meters {
+        final DistributionSummary replayed;
+        final Timer duration;
+        final Counter resync;
+        final Counter held;
+        final Counter duplicates;
+        final Counter gapsSkipped;
+        final Counter pendingDropped;
+        final Counter failed;
+
+        Meters(MeterRegistry registry) {
+            this.replayed = DistributionSummary.builder("chat.delivery.resume.replayed")
+                    .description("Stored messages streamed to a reconnecting session").register(registry);
+            this.duration = Timer.builder("chat.delivery.resume.duration")
+                    .description("Time from connect until live delivery resumed").register(registry);
+            this.resync = Counter.builder("chat.delivery.resync")
+                    .description("Reconnects that missed more than maxResume messages").register(registry);
+            this.held = Counter.builder("chat.delivery.held")
+                    .description("Live messages held back to keep per-user order").register(registry);
+            this.duplicates = Counter.builder("chat.delivery.duplicates")
+                    .description("Messages not sent again because the session already had them").register(registry);
+            this.gapsSkipped = Counter.builder("chat.delivery.gap.skipped")
+                    .description("Sequence numbers skipped after gapTimeout").register(registry);
+            this.pendingDropped = Counter.builder("chat.delivery.pending.dropped")
+                    .description("Held live messages dropped over maxPending, re-read from the store").register(registry);
+            this.failed = Counter.builder("chat.delivery.resume.failed").register(registry);
+        }
+    }
+}
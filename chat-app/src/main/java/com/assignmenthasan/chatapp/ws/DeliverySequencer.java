@@ -0,0 +1,257 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.CloseStatus;
+
+import com.assignmenthasan.chatapp.model.Message;
+
+/**
+ * סידור ההודעות לחיבור אחד לפי רצף המסירה של המשתמש
+ * מחזיק את המספר האחרון שנשלח לחיבור; הודעה שהמספר שלה הוא הבא בתור יוצאת מיד,
+ * הודעה שכבר נשלחה נזרקת, והודעה שמקדימה חור ממתינה עד שהחור מתמלא – מהודעה חיה
+ * או מהמסד – או עד gapTimeout, ואז מדלגים על המספר החסר.
+ * אותו מנגנון מריץ את ההשלמה אחרי התחברות מחדש: בזמן ההשלמה הודעות חיות רק ממתינות.
+ * כל ההכנסות לתור השליחה נעשות תחת הנעילה, כך ששני שולחים לא מחליפים סדר בתור.
+ */
+final class DeliverySequencer {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliverySequencer.class);
+
+    /** כל כמה זמן בודקים שוב חור ברצף */
+    private static final long GAP_POLL_MILLIS = 50;
+    /** כל כמה זמן בודקים אם תור השליחה התרוקן לפני העמוד הבא */
+    private static final long DRAIN_POLL_MILLIS = 5;
+
+    private final String uid;
+    private final OutboundSession out;
+    private final DeliveryResume resume;
+    private final DeliveryResume.Meters meters;
+    private final long lastSeen;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** הודעות חיות שמקדימות את המספר הבא, לפי מספר */
+    private final TreeMap<Long, ChatFrame> pending = new TreeMap<>();
+    /** המספר האחרון שנכנס לתור השליחה */
+    private long delivered;
+    /** השלמה רצה (בהתחברות או בגלל חור); הודעות חיות רק ממתינות */
+    private boolean catchingUp = true;
+    private boolean resumed;
+    /** מתי נראה לראשונה החור הנוכחי (nanoTime), או 0 */
+    private long gapSince;
+
+    DeliverySequencer(String uid, OutboundSession out, long lastSeen, DeliveryResume resume) {
+        this.uid = uid;
+        this.out = out;
+        this.resume = resume;
+        this.meters = resume.meters;
+        this.lastSeen = lastSeen;
+        this.delivered = lastSeen;
+    }
+
+    /**
+     * @return המספר האחרון שנשלח לחיבור
+     */
+    long delivered() {
+        lock.lock();
+        try {
+            return delivered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * מקבלת מסגרת חיה (בודדת או מערך מאוחד); מסגרות בלי מספר (שגיאות) יוצאות מיד
+     * @param frame המסגרת
+     * @return false אם החיבור סגור
+     */
+    boolean offer(ChatFrame frame) {
+        boolean fill = false;
+        lock.lock();
+        try {
+            List<ChatFrame> ready = new ArrayList<>();
+            for (ChatFrame part : frame.parts()) {
+                Long seq = part.seqFor(uid);
+                if (seq == null) {
+                    ready.add(part);
+                } else if (seq <= delivered) {
+                    meters.duplicates.increment();
+                } else if (!catchingUp && seq == delivered + 1) {
+                    delivered = seq;
+                    ready.add(part);
+                    drainPending(ready);
+                } else {
+                    hold(seq, part);
+                    if (!catchingUp) {
+                        catchingUp = true;
+                        fill = true;
+                    }
+                }
+            }
+            flush(ready);
+        } finally {
+            lock.unlock();
+        }
+        if (fill) resume.fillGap(this);
+        return out.isOpen();
+    }
+
+    /**
+     * ההשלמה שרצה פעם אחת אחרי ההתחברות
+     */
+    void resume() {
+        long start = System.nanoTime();
+        long current = resume.current(uid);
+        // לקוח שמקדים את המונה (מסד שאופס) או שחסרות לו יותר מדי הודעות מתחיל מהמספר הנוכחי
+        if (lastSeen > current || current - lastSeen > resume.props().getMaxResume()) {
+            lock.lock();
+            try {
+                delivered = current;
+                meters.resync.increment();
+                flush(List.of(resume.control("resync", current)));
+            } finally {
+                lock.unlock();
+            }
+        }
+        long replayed = catchUp();
+        if (resumed) {
+            meters.replayed.record(replayed);
+            meters.duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * קוראת מהמסד עמוד אחרי עמוד את מה שאחרי המספר האחרון שנשלח, עד שאין חור ואין עוד הודעות
+     * @return מספר ההודעות שנשלחו מהמסד
+     */
+    long catchUp() {
+        long replayed = 0;
+        try {
+            while (out.isOpen()) {
+                long from;
+                lock.lock();
+                try {
+                    from = delivered;
+                } finally {
+                    lock.unlock();
+                }
+                List<Message> page = resume.since(uid, from);
+
+                boolean gap;
+                boolean done;
+                lock.lock();
+                try {
+                    List<ChatFrame> ready = new ArrayList<>();
+                    for (Message m : page) {
+                        long seq = m.seqOf(uid);
+                        if (seq <= delivered) continue;
+                        if (seq != delivered + 1) break;
+                        delivered = seq;
+                        ready.add(resume.frameOf(m));
+                        replayed++;
+                    }
+                    drainPending(ready);
+
+                    long next = nextKnown(page);
+                    gap = next > delivered + 1;
+                    if (!gap) {
+                        gapSince = 0;
+                    } else if (gapSince == 0) {
+                        gapSince = System.nanoTime();
+                    } else if (System.nanoTime() - gapSince >= resume.props().getGapTimeout().toNanos()) {
+                        // ההודעה החסרה לא נכתבה (כתיבה שנכשלה) – ממשיכים בלעדיה
+                        meters.gapsSkipped.increment(next - delivered - 1);
+                        delivered = next - 1;
+                        gapSince = 0;
+                        gap = false;
+                        drainPending(ready);
+                    }
+
+                    done = !gap && pending.isEmpty() && page.size() < resume.props().getResumePageSize();
+                    if (done) {
+                        catchingUp = false;
+                        if (!resumed) {
+                            resumed = true;
+                            ready.add(resume.control("resumed", delivered));
+                        }
+                    }
+                    flush(ready);
+                } finally {
+                    lock.unlock();
+                }
+                if (done) break;
+                if (gap) Thread.sleep(GAP_POLL_MILLIS);
+                else awaitDrain();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // בלי השלמה הסדר לא מובטח; הלקוח יתחבר מחדש עם המספר האחרון שקיבל
+            meters.failed.increment();
+            log.warn("Resume for {} failed after seq {}", uid, delivered(), e);
+            out.close(CloseStatus.SERVER_ERROR.withReason("Resume failed"));
+        }
+        return replayed;
+    }
+
+    /** עמוד נקרא רק אחרי שהקודם כמעט יצא, כך שהשלמה ארוכה לא ממלאת את תור השליחה */
+    private void awaitDrain() throws InterruptedException {
+        int limit = resume.props().getResumePageSize();
+        while (out.isOpen() && out.queueDepth() > limit) {
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+    }
+
+    /** המספר הקטן ביותר שמעבר ל-delivered שידוע שקיים (במסד או בהמתנה), או 0 */
+    private long nextKnown(List<Message> page) {
+        long next = Long.MAX_VALUE;
+        for (Message m : page) {
+            long seq = m.seqOf(uid);
+            if (seq > delivered) {
+                next = seq;
+                break;
+            }
+        }
+        if (!pending.isEmpty()) next = Math.min(next, pending.firstKey());
+        return next == Long.MAX_VALUE ? 0 : next;
+    }
+
+    private void hold(long seq, ChatFrame frame) {
+        if (pending.size() >= resume.props().getMaxPending() && !pending.containsKey(seq)) {
+            // ההודעה כבר במסד או בדרך אליו; ההשלמה תקרא אותה משם
+            meters.pendingDropped.increment();
+            return;
+        }
+        pending.put(seq, frame);
+        meters.held.increment();
+    }
+
+    private void drainPending(List<ChatFrame> ready) {
+        while (!pending.isEmpty() && pending.firstKey() <= delivered + 1) {
+            Map.Entry<Long, ChatFrame> e = pending.pollFirstEntry();
+            if (e.getKey() <= delivered) {
+                meters.duplicates.increment();
+                continue;
+            }
+            delivered = e.getKey();
+            ready.add(e.getValue());
+        }
+    }
+
+    private void flush(List<ChatFrame> ready) {
+        if (ready.isEmpty()) return;
+        if (out.isBatching() && ready.size() > 1) {
+            out.enqueue(ChatFrame.batch(ready));
+            return;
+        }
+        for (ChatFrame f : ready) out.enqueue(f);
+    }
+}
@@ -0,0 +1,386 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * קידוד ופענוח של מסגרות הצ'אט, ב-JSON (טקסט) וב-CBOR (בינארי)
+ * מחזיק ObjectReader/ObjectWriter משותפים (בטוחים לשימוש מקבילי) שנבנים פעם אחת מה-ObjectMapper של Spring,
+ * ובונה מסגרות יוצאות מהבתים שכבר סודרו – כך שאורך המסגרת לא מחושב מחדש לכל חיבור.
+ * גודל המסגרות וזמני הקידוד נמדדים לכל קידוד בנפרד.
+ */
+@Component
+public class MessageCodec {
+
+    private final ObjectReader jsonReader;
+    private final ObjectWriter jsonWriter;
+    private final ObjectReader cborReader;
+    private final ObjectWriter cborWriter;
+    private final ObjectMapper jsonMapper;
+
+    /** מסגרות שגיאה קבועות; כל קידוד מסודר פעם אחת ואותו אובייקט נשלח בכל פעם */
+    private final ChatFrame senderMismatch;
+    private final ChatFrame selfMessage;
+    private final ChatFrame missingReceiver;
+    private final ChatFrame batchTooLarge;
+    private final ChatFrame invalidReceipt;
+    private final ChatFrame notGroupMember;
+
+    private final Map<WireProtocol, Meters> meters = new EnumMap<>(WireProtocol.class);
+
+    /**
+     * @param objectMapper ה-ObjectMapper המוגדר של האפליקציה; גם מסדר ה-CBOR נגזר ממנו
+     * @param meterRegistry רישום מדדים
+     */
+    public MessageCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        ObjectMapper cborMapper = objectMapper.copyWith(new CBORFactory());
+        this.jsonMapper = objectMapper;
+        this.jsonReader = objectMapper.readerFor(ChatMessageDTO.class);
+        this.jsonWriter = objectMapper.writerFor(ChatMessageDTO.class);
+        this.cborReader = cborMapper.readerFor(ChatMessageDTO.class);
+        this.cborWriter = cborMapper.writer();
+        for (WireProtocol p : WireProtocol.values()) meters.put(p, new Meters(p, meterRegistry));
+
+        this.senderMismatch = frameOfJson("{\"error\":\"senderId mismatch\"}");
+        this.selfMessage = frameOfJson("{\"error\":\"cannot send message to yourself\"}");
+        this.missingReceiver = frameOfJson("{\"error\":\"receiverId required\"}");
+        this.batchTooLarge = frameOfJson("{\"error\":\"batch too large\"}");
+        this.invalidReceipt = frameOfJson("{\"error\":\"invalid receipt\"}");
+        this.notGroupMember = frameOfJson("{\"error\":\"not a group member\"}");
+    }
+
+    /**
+     * מפענחת הודעה נכנסת ישירות מתוכן המסגרת, בלי עץ ביניים
+     * @param frame מסגרת הטקסט מהלקוח
+     * @return ההודעה המפוענחת
+     * @throws IOException אם ה-JSON לא תקין
+     */
+    public ChatMessageDTO decode(TextMessage frame) throws IOException {
+        Meters m = meters.get(WireProtocol.JSON);
+        long start = System.nanoTime();
+        try {
+            return jsonReader.readValue(frame.getPayload());
+        } finally {
+            m.decode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            m.inbound.record(frame.getPayloadLength());
+        }
+    }
+
+    /**
+     * מפענחת הודעה מבתים (UTF-8)
+     * @param bytes המערך
+     * @param offset תחילת ההודעה
+     * @param length אורך ההודעה
+     * @return ההודעה המפוענחת
+     * @throws IOException אם ה-JSON לא תקין
+     */
+    public ChatMessageDTO decode(byte[] bytes, int offset, int length) throws IOException {
+        return jsonReader.readValue(bytes, offset, length);
+    }
+
+    /**
+     * מפענחת הודעה בינארית (CBOR) ישירות מהבאפר של המסגרת
+     * @param frame המסגרת הבינארית מהלקוח
+     * @return ההודעה המפוענחת
+     * @throws IOException אם התוכן אינו CBOR תקין
+     */
+    public ChatMessageDTO decode(BinaryMessage frame) throws IOException {
+        Meters m = meters.get(WireProtocol.CBOR);
+        ByteBuffer buf = frame.getPayload();
+        int length = buf.remaining();
+        long start = System.nanoTime();
+        try {
+            if (buf.hasArray()) {
+                return cborReader.readValue(buf.array(), buf.arrayOffset() + buf.position(), length);
+            }
+            byte[] copy = new byte[length];
+            buf.duplicate().get(copy);
+            return cborReader.readValue(copy);
+        } finally {
+            m.decode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            m.inbound.record(length);
+        }
+    }
+
+    /**
+     * מפענחת מסגרת JSON שמכילה הודעה אחת או מערך הודעות (batch)
+     * @param frame מסגרת הטקסט מהלקוח
+     * @return ההודעות לפי הסדר במסגרת
+     * @throws IOException אם ה-JSON לא תקין או שהמערך מכיל משהו שאינו הודעה
+     */
+    public List<ChatMessageDTO> decodeAll(TextMessage frame) throws IOException {
+        Meters m = meters.get(WireProtocol.JSON);
+        long start = System.nanoTime();
+        try {
+            return readAll(jsonReader, jsonReader.createParser(frame.getPayload()));
+        } finally {
+            m.decode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            m.inbound.record(frame.getPayloadLength());
+        }
+    }
+
+    /**
+     * מפענחת מסגרת CBOR שמכילה הודעה אחת או מערך הודעות (batch)
+     * @param frame המסגרת הבינארית מהלקוח
+     * @return ההודעות לפי הסדר במסגרת
+     * @throws IOException אם התוכן אינו CBOR תקין או שהמערך מכיל משהו שאינו הודעה
+     */
+    public List<ChatMessageDTO> decodeAll(BinaryMessage frame) throws IOException {
+        Meters m = meters.get(WireProtocol.CBOR);
+        ByteBuffer buf = frame.getPayload();
+        int length = buf.remaining();
+        long start = System.nanoTime();
+        try {
+            if (buf.hasArray()) {
+                return readAll(cborReader,
+                        cborReader.createParser(buf.array(), buf.arrayOffset() + buf.position(), length));
+            }
+            byte[] copy = new byte[length];
+            buf.duplicate().get(copy);
+            return readAll(cborReader, cborReader.createParser(copy));
+        } finally {
+            m.decode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            m.inbound.record(length);
+        }
+    }
+
+    private static List<ChatMessageDTO> readAll(ObjectReader reader, JsonParser parser) throws IOException {
+        try (parser) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                ChatMessageDTO single = reader.readValue(parser);
+                return List.of(single);
+            }
+            List<ChatMessageDTO> out = new ArrayList<>();
+            JsonToken t;
+            while ((t = parser.nextToken()) == JsonToken.START_OBJECT) {
+                out.add(reader.readValue(parser));
+            }
+            if (t != JsonToken.END_ARRAY) throw new IOException("Batch frame must be an array of messages");
+            return out;
+        }
+    }
+
+    /**
+     * מסדרת הודעה פעם אחת למסגרת JSON שאפשר לשלוח לכל החיבורים
+     * @param dto ההודעה
+     * @return מסגרת טקסט שמחזיקה גם את הבתים המסודרים
+     * @throws IOException אם הסידור נכשל
+     */
+    public TextMessage encode(ChatMessageDTO dto) throws IOException {
+        return encodeJson(dto);
+    }
+
+    /**
+     * עוטפת הודעה במסגרת שמסודרת לכל קידוד רק כשחיבור ראשון מבקש אותו
+     * @param dto ההודעה
+     * @return מסגרת לפיזור
+     */
+    public ChatFrame frame(ChatMessageDTO dto) {
+        return new ChatFrame(this, dto, null);
+    }
+
+    /**
+     * עוטפת JSON מוכן (מעטפה משרת אחר, מסגרת שגיאה) במסגרת לפיזור
+     * חיבור CBOR יקבל את אותו תוכן אחרי המרה ישירה של העץ
+     * @param json תוכן המסגרת
+     * @return מסגרת לפיזור
+     */
+    public ChatFrame frameOfJson(String json) {
+        return new ChatFrame(this, null, textFrame(json));
+    }
+
+    /**
+     * מסדרת ערך שאינו הודעה (אישור, מסגרת בקרה) פעם אחת ל-JSON ועוטפת אותו במסגרת לפיזור
+     * @param value הערך
+     * @return מסגרת לפיזור
+     */
+    public ChatFrame frameOf(Object value) {
+        try {
+            return new ChatFrame(this, null, encodeJson(value, jsonMapper.writer()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return מסגרת השגיאה לשולח שמתחזה למשתמש אחר
+     */
+    public ChatFrame senderMismatch() {
+        return senderMismatch;
+    }
+
+    /**
+     * @return מסגרת השגיאה להודעה לעצמך
+     */
+    public ChatFrame selfMessage() {
+        return selfMessage;
+    }
+
+    /**
+     * @return מסגרת השגיאה להודעה בלי נמען
+     */
+    public ChatFrame missingReceiver() {
+        return missingReceiver;
+    }
+
+    /**
+     * @return מסגרת השגיאה למערך עם יותר הודעות מ-app.websocket.maxBatchSize
+     */
+    public ChatFrame batchTooLarge() {
+        return batchTooLarge;
+    }
+
+    /**
+     * @return מסגרת השגיאה לאישור בלי seq חיובי או מסוג לא מוכר
+     */
+    public ChatFrame invalidReceipt() {
+        return invalidReceipt;
+    }
+
+    /**
+     * @return מסגרת השגיאה להודעה לקבוצה שהשולח לא חבר בה (או שלא קיימת)
+     */
+    public ChatFrame notGroupMember() {
+        return notGroupMember;
+    }
+
+    /**
+     * @param kind סוג התעבורה שחרגה (message, typing, receipt)
+     * @param retryAfterMs כמה מילישניות לחכות לפני שליחה חוזרת
+     * @return מסגרת השגיאה למסגרת שנדחתה בהגבלת הקצב
+     */
+    public ChatFrame rateLimited(String kind, long retryAfterMs) {
+        return frameOfJson("{\"error\":\"rate limited\",\"kind\":\"" + kind + "\",\"retryAfterMs\":" + retryAfterMs + "}");
+    }
+
+    TextMessage encodeJson(Object value) throws IOException {
+        return encodeJson(value, jsonWriter);
+    }
+
+    private TextMessage encodeJson(Object value, ObjectWriter writer) throws IOException {
+        Meters m = meters.get(WireProtocol.JSON);
+        long start = System.nanoTime();
+        byte[] bytes = writer.writeValueAsBytes(value);
+        m.encode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        m.outbound.record(bytes.length);
+        return new TextMessage(bytes);
+    }
+
+    BinaryMessage encodeCbor(Object value) throws IOException {
+        Meters m = meters.get(WireProtocol.CBOR);
+        long start = System.nanoTime();
+        byte[] bytes = cborWriter.writeValueAsBytes(value);
+        m.encode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        m.outbound.record(bytes.length);
+        return new BinaryMessage(bytes);
+    }
+
+    /** מערך JSON מהבתים המסודרים של כל הודעה */
+    TextMessage joinJson(List<ChatFrame> parts) {
+        Meters m = meters.get(WireProtocol.JSON);
+        long start = System.nanoTime();
+        List<byte[]> items = new ArrayList<>(parts.size());
+        int length = 1 + parts.size();
+        for (ChatFrame part : parts) {
+            byte[] item = part.text().asBytes();
+            items.add(item);
+            length += item.length;
+        }
+        byte[] out = new byte[length];
+        out[0] = '[';
+        int pos = 1;
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) out[pos++] = ',';
+            byte[] item = items.get(i);
+            System.arraycopy(item, 0, out, pos, item.length);
+            pos += item.length;
+        }
+        out[pos] = ']';
+        m.encode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        m.outbound.record(out.length);
+        return new TextMessage(out);
+    }
+
+    /** מערך CBOR באורך ידוע: כותרת מערך ואחריה הבתים המסודרים של כל הודעה */
+    BinaryMessage joinCbor(List<ChatFrame> parts) {
+        Meters m = meters.get(WireProtocol.CBOR);
+        long start = System.nanoTime();
+        List<ByteBuffer> items = new ArrayList<>(parts.size());
+        int length = 0;
+        for (ChatFrame part : parts) {
+            ByteBuffer item = part.binary().getPayload().duplicate();
+            items.add(item);
+            length += item.remaining();
+        }
+        int n = parts.size();
+        ByteBuffer out = ByteBuffer.allocate(length + (n < 24 ? 1 : n < 256 ? 2 : n < 65536 ? 3 : 5));
+        // major type 4 (array); האורך מקודד בבית הראשון או בבתים שאחריו
+        if (n < 24) out.put((byte) (0x80 | n));
+        else if (n < 256) out.put((byte) 0x98).put((byte) n);
+        else if (n < 65536) out.put((byte) 0x99).putShort((short) n);
+        else out.put((byte) 0x9a).putInt(n);
+        for (ByteBuffer item : items) out.put(item);
+        out.flip();
+        m.encode.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        m.outbound.record(out.remaining());
+        return new BinaryMessage(out);
+    }
+
+    BinaryMessage transcodeToCbor(TextMessage json) throws IOException {
+        JsonNode tree = jsonMapper.readTree(json.asBytes());
+        return encodeCbor(tree);
+    }
+
+    /**
+     * בונה מסגרת טקסט שהבתים שלה מחושבים פעם אחת
+     * (TextMessage שנבנית ממחרוזת מקודדת את עצמה מחדש בכל getPayloadLength)
+     * @param json תוכן המסגרת
+     * @return מסגרת טקסט
+     */
+    public static TextMessage textFrame(String json) {
+        return new TextMessage(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** מדדי קידוד אחד; גודל יוצא נמדד פעם אחת לכל מסגרת, לא לכל נמען */
+    private static final class Meters {
+        final DistributionSummary inbound;
+        final DistributionSummary outbound;
+        final Timer encode;
+        final Timer decode;
+
+        Meters(WireProtocol protocol, MeterRegistry registry) {
+            this.inbound = DistributionSummary.builder("chat.ws.frame.bytes").baseUnit("bytes")
+                    .tag("protocol", protocol.tag()).tag("direction", "in").register(registry);
+            this.outbound = DistributionSummary.builder("chat.ws.frame.bytes").baseUnit("bytes")
+                    .tag("protocol", protocol.tag()).tag("direction", "out").register(registry);
+            this.encode = Timer.builder("chat.ws.codec")
+                    .tag("protocol", protocol.tag()).tag("op", "encode").register(registry);
+            this.decode = Timer.builder("chat.ws.codec")
+                    .tag("protocol", protocol.tag()).tag("op", "decode").register(registry);
+        }
+    }
+}
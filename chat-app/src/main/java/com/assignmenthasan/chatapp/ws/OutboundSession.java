@@ -0,0 +1,261 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.config.WebSocketProperties.OverflowPolicy;
+
+/**
+ * עוטף חיבור WebSocket בתור שליחה חסום ולא חוסם
+ * כל השולחים רק מכניסים מסגרת לתור, ותהליכון כתיבה אחד בכל רגע מרוקן אותו,
+ * כך שאין שתי כתיבות מקבילות לאותו חיבור ושולח לא נתקע בגלל נמען איטי
+ */
+public class OutboundSession {
+
+    private final WebSocketSession session;
+    private final Executor writers;
+    private final WebSocketProperties props;
+    private final OutboundWriter.Meters meters;
+    private final WireProtocol protocol;
+
+    /** מדידת הדחיסה; null אם החיבור לא הסכים ל-permessage-deflate */
+    private final DeflateProbe deflate;
+
+    /** היכולות שהלקוח הצהיר עליהן ב-?caps= (batch, receipts) */
+    private final Set<String> capabilities;
+
+    /** סידור לפי רצף המסירה ללקוח שהתחבר עם lastSeq; null ללקוח רגיל */
+    private volatile DeliverySequencer sequencer;
+
+    private final Queue<WebSocketMessage<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    /** זמן תחילת השליחה הנוכחית (nanoTime), או 0 כשאין שליחה פעילה */
+    private volatile long sendStartedAt;
+    private volatile boolean closed;
+    /** מתי התקבלה מהלקוח מסגרת או pong אחרונה (nanoTime) */
+    private volatile long lastHeard = System.nanoTime();
+
+    OutboundSession(WebSocketSession session, Executor writers,
+                    WebSocketProperties props, OutboundWriter.Meters meters, WireProtocol protocol,
+                    DeflateProbe deflate, Set<String> capabilities) {
+        this.session = session;
+        this.writers = writers;
+        this.props = props;
+        this.meters = meters;
+        this.protocol = protocol;
+        this.deflate = deflate;
+        this.capabilities = capabilities;
+    }
+
+    /**
+     * @return החיבור העטוף
+     */
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    /**
+     * @return מזהה החיבור
+     */
+    public String getId() {
+        return session.getId();
+    }
+
+    /**
+     * @return הקידוד שהלקוח בחר בלחיצת היד
+     */
+    public WireProtocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * @return true אם הלקוח מקבל הודעות מאוחדות במסגרת מערך
+     */
+    public boolean isBatching() {
+        return capabilities.contains(OutboundWriter.CAP_BATCH);
+    }
+
+    /**
+     * @param capability שם היכולת
+     * @return true אם הלקוח הצהיר עליה בלחיצת היד; מסגרות מסוגים חדשים נשלחות רק ללקוחות כאלה
+     */
+    public boolean hasCapability(String capability) {
+        return capabilities.contains(capability);
+    }
+
+    /**
+     * @return true אם החיבור פתוח וניתן לשלוח אליו
+     */
+    public boolean isOpen() {
+        return !closed && session.isOpen();
+    }
+
+    /**
+     * מסמנת שהלקוח חי: נקראת על כל מסגרת נכנסת ועל כל pong
+     */
+    public void heard() {
+        lastHeard = System.nanoTime();
+    }
+
+    /**
+     * @return כמה ננו-שניות עברו מאז שנשמע מהלקוח משהו
+     */
+    public long silentNanos() {
+        return System.nanoTime() - lastHeard;
+    }
+
+    /**
+     * @return מספר המסגרות שממתינות בתור
+     */
+    public int queueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * מכניסה מסגרת לתור השליחה וחוזרת מיד
+     * @param frame המסגרת לשליחה
+     * @return false אם החיבור סגור או נסגר בגלל חריגה מהמגבלות
+     */
+    public boolean send(WebSocketMessage<?> frame) {
+        if (!isOpen()) return false;
+
+        queue.offer(frame);
+        meters.queued.incrementAndGet();
+        int d = depth.incrementAndGet();
+        long bytes = bufferedBytes.addAndGet(frame.getPayloadLength());
+
+        if (d > props.getMaxQueueDepth() || bytes > props.getBufferSizeLimit() || sendTooLong()) {
+            if (!onSlowConsumer()) return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * מכניסה לתור את המסגרת בקידוד של החיבור הזה
+     * בחיבור עם רצף מסירה ההודעה עוברת קודם דרך הסידור, וייתכן שתמתין להודעה קודמת או לסיום ההשלמה
+     * @param frame המסגרת לשליחה
+     * @return false אם החיבור סגור או נסגר בגלל חריגה מהמגבלות
+     */
+    public boolean send(ChatFrame frame) {
+        if (!isOpen()) return false;
+        DeliverySequencer s = sequencer;
+        if (s != null) return s.offer(frame);
+        return send(frame.forProtocol(protocol));
+    }
+
+    /**
+     * מכניסה לתור בלי לעבור דרך הסידור (נקראת מהסידור עצמו)
+     */
+    boolean enqueue(ChatFrame frame) {
+        return isOpen() && send(frame.forProtocol(protocol));
+    }
+
+    void setSequencer(DeliverySequencer sequencer) {
+        this.sequencer = sequencer;
+    }
+
+    /**
+     * סוגרת את החיבור ומרוקנת את התור
+     * @param status סטטוס הסגירה
+     */
+    public void close(CloseStatus status) {
+        if (closed) return;
+        closed = true;
+        discardAll();
+        try {
+            session.close(status);
+        } catch (IOException | RuntimeException ignored) {
+            // החיבור כבר נסגר מהצד השני
+        }
+    }
+
+    /**
+     * נקראת כשהחיבור כבר נסגר (afterConnectionClosed) – רק מנקה את התור
+     */
+    void release() {
+        closed = true;
+        discardAll();
+    }
+
+    private boolean sendTooLong() {
+        long started = sendStartedAt;
+        return started != 0 && System.nanoTime() - started > props.getSendTimeLimit().toNanos();
+    }
+
+    /**
+     * מפעילה את מדיניות הצרכן האיטי
+     * @return true אם אפשר להמשיך לשלוח לחיבור
+     */
+    private boolean onSlowConsumer() {
+        if (props.getOverflowPolicy() == OverflowPolicy.CLOSE) {
+            meters.slowClosed.increment();
+            close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Slow consumer"));
+            return false;
+        }
+        meters.slowDropped.increment();
+        // זורקים מהראש עד שחוזרים לתוך המגבלות; המסגרת החדשה נשארת בזנב
+        while (depth.get() > props.getMaxQueueDepth() || bufferedBytes.get() > props.getBufferSizeLimit()) {
+            WebSocketMessage<?> oldest = queue.poll();
+            if (oldest == null) break;
+            dequeued(oldest);
+            meters.droppedFrames.increment();
+        }
+        return true;
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            writers.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            WebSocketMessage<?> frame;
+            while (!closed && session.isOpen() && (frame = queue.poll()) != null) {
+                dequeued(frame);
+                sendStartedAt = System.nanoTime();
+                try {
+                    session.sendMessage(frame);
+                    if (deflate != null) deflate.sent(frame);
+                } catch (IOException | RuntimeException e) {
+                    meters.failedSends.increment();
+                    close(CloseStatus.SERVER_ERROR.withReason("Send failed"));
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        } finally {
+            draining.set(false);
+        }
+        // מסגרת שנכנסה בדיוק אחרי הבדיקה האחרונה – מתזמנים ריקון נוסף
+        // (חיבור שנסגר מהצד השני לפני afterConnectionClosed לא מתוזמן שוב – אחרת הריקון מסתובב על תור שלא יתרוקן)
+        if (!closed && session.isOpen() && !queue.isEmpty()) scheduleDrain();
+    }
+
+    private void dequeued(WebSocketMessage<?> frame) {
+        depth.decrementAndGet();
+        bufferedBytes.addAndGet(-frame.getPayloadLength());
+        meters.queued.decrementAndGet();
+    }
+
+    private void discardAll() {
+        WebSocketMessage<?> frame;
+        while ((frame = queue.poll()) != null) dequeued(frame);
+    }
+}
@@ -0,0 +1,114 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * מאגר תהליכוני הכתיבה המשותף לכל חיבורי ה-WebSocket
+ * יוצר לכל חיבור OutboundSession עם תור משלו ומחזיק את מדדי הצרכנים האיטיים
+ */
+@Component
+public class OutboundWriter {
+
+    /** מאפיין של Tomcat שמגביל את זמן החסימה של כתיבה בודדת (במילישניות) */
+    private static final String TOMCAT_BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    /** הלקוח מבין מסגרות מערך (איחוד הודעות) */
+    public static final String CAP_BATCH = "batch";
+    /** הלקוח מבין מסגרות אישור מסירה וקריאה */
+    public static final String CAP_RECEIPTS = "receipts";
+    /** הלקוח מבין מסגרות נוכחות והקלדה */
+    public static final String CAP_PRESENCE = "presence";
+
+    private final WebSocketProperties props;
+    private final Executor writers;
+    private final Meters meters;
+    private final DeflateProbe deflate;
+
+    /**
+     * בנאי המקבל את ההגדרות ואת רישום המדדים
+     * @param props הגדרות תורי השליחה
+     * @param executionMode מצב ההרצה; במצב וירטואלי כל ריקון תור רץ על תהליכון וירטואלי משלו,
+     *                      כך שנמען איטי לא תופס אחד מ-writerThreads
+     * @param meterRegistry רישום מדדים
+     */
+    public OutboundWriter(WebSocketProperties props, ExecutionMode executionMode, MeterRegistry meterRegistry) {
+        this.props = props;
+        this.writers = executionMode.newExecutor("chat-ws-writer-", props.getWriterThreads());
+        this.meters = new Meters(meterRegistry);
+        this.deflate = new DeflateProbe(props.getCompression(), meterRegistry);
+    }
+
+    /**
+     * עוטפת חיבור חדש בתור שליחה
+     * @param session החיבור שנפתח
+     * @return עטיפה עם תור שליחה לא חוסם
+     */
+    public OutboundSession open(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nws) {
+            jakarta.websocket.Session nativeSession = nws.getNativeSession(jakarta.websocket.Session.class);
+            if (nativeSession != null) {
+                nativeSession.getUserProperties().put(TOMCAT_BLOCKING_SEND_TIMEOUT,
+                        props.getSendTimeLimit().toMillis());
+            }
+        }
+        // מדידת הדחיסה רק בחיבורים שבאמת דוחסים
+        DeflateProbe probe = deflate.negotiated(session.getExtensions()) ? deflate : null;
+        return new OutboundSession(session, writers, props, meters,
+                WireProtocol.of(session.getAcceptedProtocol()), probe, capabilities(session.getUri()));
+    }
+
+    /**
+     * יכולות שהלקוח הצהיר עליהן בלחיצת היד, למשל ?caps=batch,receipts
+     * לקוח ישן לא שולח caps ולכן ממשיך לקבל רק מסגרת הודעה לכל הודעה
+     */
+    static Set<String> capabilities(URI uri) {
+        if (uri == null) return Set.of();
+        List<String> caps = UriComponentsBuilder.fromUri(uri).build().getQueryParams().get("caps");
+        if (caps == null) return Set.of();
+        return caps.stream().flatMap(v -> Arrays.stream(v.split(","))).map(String::trim)
+                .filter(c -> !c.isEmpty()).collect(Collectors.toUnmodifiableSet());
+    }
+
+    @PreDestroy
+    public void stop() {
+        ExecutionMode.shutdown(writers);
+        deflate.close();
+    }
+
+    /** מדדי תורי השליחה, משותפים לכל החיבורים */
+    static final class Meters {
+        final AtomicLong queued = new AtomicLong();
+        final Counter slowDropped;
+        final Counter slowClosed;
+        final Counter droppedFrames;
+        final Counter failedSends;
+
+        Meters(MeterRegistry registry) {
+            registry.gauge("chat.ws.outbound.queued", queued);
+            this.slowDropped = Counter.builder("chat.ws.slow.consumer").tag("action", "drop_oldest")
+                    .description("Slow-consumer events handled by dropping queued frames").register(registry);
+            this.slowClosed = Counter.builder("chat.ws.slow.consumer").tag("action", "close")
+                    .description("Slow-consumer events handled by closing the session").register(registry);
+            this.droppedFrames = Counter.builder("chat.ws.outbound.dropped").register(registry);
+            this.failedSends = Counter.builder("chat.ws.outbound.failed").register(registry);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.PresenceProperties;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.dto.PresenceUpdate;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * נוכחות והקלדה על בסיס רישום החיבורים
+ * עדכון נוכחות של משתמש נשלח רק לצד השני ב-interestLimit השיחות האחרונות שלו, ורק למי שמחובר,
+ * ולא לכל המחוברים. שינויים נאספים בחלון window: התנתקות והתחברות מחדש בתוכו לא נשלחות בכלל.
+ * הקלדה עוברת רק לנמען מחובר, לכל היותר פעם ב-typingInterval לכל שולח ונמען.
+ * חיבור שלא נשמע ממנו דבר מקבל ping, וחיבור ששותק heartbeatTimeout נסגר ויוצא מהנוכחות.
+ * המסגרות נשלחות רק לחיבורים עם caps=presence, כך שהלקוח הקיים לא מושפע.
+ */
+@Component
+public class PresenceNotifier {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceNotifier.class);
+
+    private final SessionRegistry sessions;
+    private final ClusterRouter router;
+    private final ConversationIndex conversations;
+    private final MessageCodec codec;
+    private final PresenceProperties props;
+    /** null כשהנוכחות כבויה */
+    private final ScheduledExecutorService flusher;
+    private final Executor loader;
+
+    /** לכל משתמש שמחובר לשרת הזה – הצד השני בשיחות האחרונות שלו */
+    private final ConcurrentHashMap<String, Set<String>> interests = new ConcurrentHashMap<>();
+    /** משתמשים שהמצב שלהם אולי השתנה בחלון הנוכחי */
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    /** משתמשים שהשרת הזה הודיע שהם מחוברים */
+    private final Set<String> announced = ConcurrentHashMap.newKeySet();
+    /** אירוע ההקלדה האחרון שהועבר, לפי שולח ונמען (nanoTime) */
+    private final ConcurrentHashMap<String, Long> lastTyping = new ConcurrentHashMap<>();
+
+    private final Counter updates;
+    private final Counter suppressed;
+    private final DistributionSummary recipients;
+    private final Counter typingSent;
+    private final Counter typingThrottled;
+    private final Counter typingOffline;
+    private final Counter evicted;
+
+    /**
+     * @param sessions רישום החיבורים המקומי
+     * @param router ניתוב המסגרות לכל השרתים ומדריך הנוכחות
+     * @param conversations אינדקס השיחות, ממנו נגזר למי אכפת מהנוכחות של משתמש
+     * @param codec קידוד המסגרות
+     * @param props הגדרות הנוכחות
+     * @param executionMode מצב ההרצה; טעינת השיחות בהתחברות רצה במאגר משלה
+     * @param meterRegistry רישום מדדים
+     */
+    public PresenceNotifier(SessionRegistry sessions, ClusterRouter router, ConversationIndex conversations,
+                            MessageCodec codec, PresenceProperties props, ExecutionMode executionMode,
+                            MeterRegistry meterRegistry) {
+        this.sessions = sessions;
+        this.router = router;
+        this.conversations = conversations;
+        this.codec = codec;
+        this.props = props;
+        if (props.isEnabled()) {
+            CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-presence-");
+            threads.setDaemon(true);
+            this.flusher = Executors.newSingleThreadScheduledExecutor(threads);
+            long window = props.getWindow().toNanos();
+            flusher.scheduleAtFixedRate(this::flush, window, window, TimeUnit.NANOSECONDS);
+            long ping = props.getPingInterval().toNanos();
+            flusher.scheduleAtFixedRate(this::sweep, ping, ping, TimeUnit.NANOSECONDS);
+            this.loader = executionMode.newExecutor("chat-presence-load-", props.getThreads());
+        } else {
+            this.flusher = null;
+            this.loader = null;
+        }
+
+        meterRegistry.gauge("chat.presence.tracked", interests, ConcurrentHashMap::size);
+        this.updates = Counter.builder("chat.presence.updates")
+                .description("Presence changes fanned out to interested users").register(meterRegistry);
+        this.suppressed = Counter.builder("chat.presence.suppressed")
+                .description("Presence changes not sent because the state flipped back within the window")
+                .register(meterRegistry);
+        this.recipients = DistributionSummary.builder("chat.presence.recipients")
+                .description("Online users reached by one presence change").register(meterRegistry);
+        this.typingSent = Counter.builder("chat.presence.typing").tag("result", "sent").register(meterRegistry);
+        this.typingThrottled = Counter.builder("chat.presence.typing").tag("result", "throttled")
+                .register(meterRegistry);
+        this.typingOffline = Counter.builder("chat.presence.typing").tag("result", "offline")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("chat.presence.evicted")
+                .description("Sessions closed because heartbeats stopped").register(meterRegistry);
+    }
+
+    /**
+     * נקראת אחרי שחיבור נרשם; טוענת את השיחות של המשתמש ושולחת לחיבור את מי מהן שמחובר
+     * @param uid מזהה המשתמש
+     * @param out תור השליחה של החיבור
+     */
+    public void sessionOpened(String uid, OutboundSession out) {
+        if (flusher == null) return;
+        loader.execute(() -> {
+            try {
+                Set<String> peers = interestsOf(uid);
+                changed.add(uid);
+                if (out.hasCapability(OutboundWriter.CAP_PRESENCE)) snapshot(out, peers);
+            } catch (RuntimeException e) {
+                log.warn("Presence snapshot for {} failed", uid, e);
+            }
+        });
+    }
+
+    /**
+     * נקראת אחרי שחיבור הוסר; אם זה היה החיבור האחרון של המשתמש, ההתנתקות נשלחת בסוף החלון
+     * @param uid מזהה המשתמש
+     */
+    public void sessionClosed(String uid) {
+        if (flusher == null) return;
+        if (!sessions.isOnline(uid)) changed.add(uid);
+    }
+
+    /**
+     * שיחה חדשה בין שני משתמשים נכנסת לתחומי העניין שכבר נטענו
+     * @param a משתתף אחד
+     * @param b המשתתף השני
+     */
+    public void conversationActive(String a, String b) {
+        Set<String> ofA = interests.get(a);
+        if (ofA != null) ofA.add(b);
+        Set<String> ofB = interests.get(b);
+        if (ofB != null) ofB.add(a);
+    }
+
+    /**
+     * מעבירה אירוע הקלדה לנמען אם הוא מחובר ואם לא הועבר אירוע מאותו שולח לאותו נמען לאחרונה
+     * @param dto {"type":"typing","senderId":me,"receiverId":peer} (השולח כבר אומת מול החיבור)
+     * @return true אם האירוע הועבר
+     */
+    public boolean typing(ChatMessageDTO dto) {
+        if (flusher == null) return false;
+        long now = System.nanoTime();
+        long interval = props.getTypingInterval().toNanos();
+        long kept = lastTyping.merge(dto.getSenderId() + ">" + dto.getReceiverId(), now,
+                (last, next) -> next - last < interval ? last : next);
+        if (kept != now) {
+            typingThrottled.increment();
+            return false;
+        }
+        ChatFrame frame = codec.frameOf(PresenceUpdate.typing(dto.getSenderId()));
+        if (router.sendToUser(dto.getReceiverId(), frame, OutboundWriter.CAP_PRESENCE) == 0) {
+            typingOffline.increment();
+            return false;
+        }
+        typingSent.increment();
+        return true;
+    }
+
+    /** נקראת בכל סוף חלון; שולחת רק שינויים שלא התבטלו בתוך החלון */
+    void flush() {
+        if (changed.isEmpty()) return;
+        List<String> batch = new ArrayList<>(changed);
+        changed.removeAll(batch);
+
+        List<String> gone = new ArrayList<>();
+        for (String uid : batch) {
+            if (!sessions.isOnline(uid)) gone.add(uid);
+        }
+        // משתמש שעזב את השרת הזה אבל מחובר לשרת אחר לא מתנתק; השרת האחרון שלו ישלח את ההתנתקות
+        Set<String> elsewhere = gone.isEmpty() ? Set.of() : router.online(gone);
+
+        for (String uid : batch) {
+            try {
+                boolean local = sessions.isOnline(uid);
+                boolean online = local || elsewhere.contains(uid);
+                if (online == announced.contains(uid) || (!local && online)) {
+                    suppressed.increment();
+                } else {
+                    publish(uid, online);
+                }
+                if (!local) {
+                    announced.remove(uid);
+                    interests.remove(uid);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Presence update for {} failed", uid, e);
+            }
+        }
+    }
+
+    /** שולחת ping לחיבורים שותקים וסוגרת חיבורים שלא ענו בזמן */
+    void sweep() {
+        long ping = props.getPingInterval().toNanos();
+        long timeout = props.getHeartbeatTimeout().toNanos();
+        for (String uid : sessions.onlineUids()) {
+            for (OutboundSession out : sessions.sessionsOf(uid)) {
+                long silent = out.silentNanos();
+                if (silent >= timeout) {
+                    // הסגירה מפעילה את afterConnectionClosed, שמסירה את החיבור ומעדכנת את הנוכחות
+                    evicted.increment();
+                    out.close(CloseStatus.GOING_AWAY.withReason("Heartbeat timeout"));
+                } else if (silent >= ping) {
+                    out.send(new PingMessage());
+                }
+            }
+        }
+        long now = System.nanoTime();
+        long interval = props.getTypingInterval().toNanos();
+        lastTyping.values().removeIf(last -> now - last >= interval);
+    }
+
+    private void publish(String uid, boolean online) {
+        Set<String> peers = online ? interestsOf(uid) : interests.getOrDefault(uid, Set.of());
+        ChatFrame frame = codec.frameOf(PresenceUpdate.presence(uid, online));
+        recipients.record(router.sendToUsers(peers, frame, OutboundWriter.CAP_PRESENCE));
+        updates.increment();
+        if (online) announced.add(uid);
+    }
+
+    /** שולחת לחיבור חדש מסגרת לכל אחד מהצד השני בשיחות שלו שמחובר כרגע */
+    private void snapshot(OutboundSession out, Set<String> peers) {
+        if (peers.isEmpty()) return;
+        List<ChatFrame> frames = new ArrayList<>();
+        for (String peer : router.online(peers)) {
+            frames.add(codec.frameOf(PresenceUpdate.presence(peer, true)));
+        }
+        if (frames.isEmpty()) return;
+        if (out.isBatching() && frames.size() > 1) {
+            out.send(ChatFrame.batch(frames));
+        } else {
+            for (ChatFrame f : frames) out.send(f);
+        }
+    }
+
+    private Set<String> interestsOf(String uid) {
+        Set<String> peers = interests.get(uid);
+        if (peers != null) return peers;
+        Set<String> loaded = ConcurrentHashMap.newKeySet();
+        for (Conversation c : conversations.recent(uid, props.getInterestLimit())) {
+            // חברי קבוצה גדולה לא מקבלים את הנוכחות של כולם; רק שיחות בין שניים
+            if (Conversation.isGroup(c.getId())) continue;
+            for (String p : c.getParticipants()) {
+                if (!p.equals(uid)) loaded.add(p);
+            }
+        }
+        peers = interests.putIfAbsent(uid, loaded);
+        return peers != null ? peers : loaded;
+    }
+
+    /**
+     * @param uid מזהה המשתמש
+     * @return true אם השיחות של המשתמש כבר נטענו
+     */
+    boolean tracks(String uid) {
+        return interests.containsKey(uid);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) return;
+        flusher.shutdownNow();
+        ExecutionMode.shutdown(loader);
+    }
+}
@@ -0,0 +1,165 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.DeliveryProperties;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.dto.Receipt;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * אישורי מסירה וקריאה
+ * הלקוח שולח {"type":"delivered"|"read","senderId":me,"receiverId":peer,"seq":N}, כש-N הוא המספר האחרון
+ * ברצף המסירה שלו. אישורים לאותה שיחה מאותו משתמש נאספים בחלון receiptWindow ומתאחדים לסימן המקסימלי;
+ * בסוף החלון כל שיחה מקבלת עדכון $max אחד ב-conversations ומסגרת receipt אחת לצד השני
+ * ולמכשירים האחרים של המאשר (רק חיבורים עם caps=receipts).
+ */
+@Component
+public class ReceiptCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptCoalescer.class);
+
+    private final ConversationIndex conversations;
+    private final ClusterRouter router;
+    private final MessageCodec codec;
+    private final ScheduledExecutorService flusher;
+
+    /** האישורים שממתינים לסוף החלון, לפי שיחה ומאשר */
+    private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private final Counter delivered;
+    private final Counter read;
+    private final Counter frames;
+    private final DistributionSummary acksPerFrame;
+
+    /**
+     * @param conversations אינדקס השיחות שבו נשמרים הסימנים
+     * @param router ניתוב המסגרות לכל השרתים
+     * @param codec קידוד המסגרות
+     * @param props הגדרות המסירה (חלון האיחוד)
+     * @param meterRegistry רישום מדדים
+     */
+    public ReceiptCoalescer(ConversationIndex conversations, ClusterRouter router, MessageCodec codec,
+                            DeliveryProperties props, MeterRegistry meterRegistry) {
+        this.conversations = conversations;
+        this.router = router;
+        this.codec = codec;
+        CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-receipts-");
+        threads.setDaemon(true);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(threads);
+        long window = props.getReceiptWindow().toNanos();
+        flusher.scheduleAtFixedRate(this::flush, window, window, TimeUnit.NANOSECONDS);
+
+        this.delivered = Counter.builder("chat.receipts.acks").tag("type", ChatMessageDTO.TYPE_DELIVERED)
+                .description("Receipt acknowledgements received from clients").register(meterRegistry);
+        this.read = Counter.builder("chat.receipts.acks").tag("type", ChatMessageDTO.TYPE_READ)
+                .description("Receipt acknowledgements received from clients").register(meterRegistry);
+        this.frames = Counter.builder("chat.receipts.frames")
+                .description("Coalesced receipt frames fanned out").register(meterRegistry);
+        this.acksPerFrame = DistributionSummary.builder("chat.receipts.coalesced")
+                .description("Acknowledgements folded into one receipt frame").register(meterRegistry);
+    }
+
+    /**
+     * @param dto מסגרת מהלקוח
+     * @return true אם זו מסגרת אישור תקינה: סוג מוכר, צד שני ו-seq חיובי
+     */
+    static boolean isValid(ChatMessageDTO dto) {
+        boolean receipt = ChatMessageDTO.TYPE_DELIVERED.equals(dto.getType())
+                || ChatMessageDTO.TYPE_READ.equals(dto.getType());
+        // סימני המים הם לכל זוג; בקבוצות אין אישורים
+        return receipt && dto.getReceiverId() != null && !Conversation.isGroup(dto.getReceiverId())
+                && dto.getSeq() != null && dto.getSeq() > 0;
+    }
+
+    /**
+     * מוסיפה אישור לחלון הנוכחי; קריאה מסמנת גם מסירה
+     * @param dto האישור (השולח כבר אומת מול החיבור)
+     * @return false אם האישור לא תקין
+     */
+    boolean ack(ChatMessageDTO dto) {
+        if (!isValid(dto)) return false;
+        long seq = dto.getSeq();
+        boolean isRead = ChatMessageDTO.TYPE_READ.equals(dto.getType());
+        (isRead ? read : delivered).increment();
+
+        String key = Conversation.keyOf(dto.getSenderId(), dto.getReceiverId());
+        pending.compute(key + "#" + dto.getSenderId(), (k, p) -> {
+            if (p == null) p = new Pending(new Receipt(key, dto.getSenderId(), 0L, null));
+            Receipt r = p.receipt;
+            r.setDelivered(Math.max(r.getDelivered(), seq));
+            if (isRead) r.setRead(r.getRead() == null ? seq : Math.max(r.getRead(), seq));
+            p.acks++;
+            return p;
+        });
+        return true;
+    }
+
+    /** נקראת בכל סוף חלון; כתיבה מרוכזת אחת ומסגרת אחת לכל שיחה */
+    void flush() {
+        List<Receipt> batch = new ArrayList<>();
+        for (String key : pending.keySet()) {
+            Pending p = pending.remove(key);
+            if (p == null) continue;
+            batch.add(p.receipt);
+            acksPerFrame.record(p.acks);
+        }
+        if (batch.isEmpty()) return;
+        try {
+            conversations.advanceReceipts(batch);
+        } catch (RuntimeException e) {
+            // הסימנים נשלחים בכל זאת; הלקוח יקבל אותם שוב מהאישור הבא
+            log.warn("Persisting {} receipts failed", batch.size(), e);
+        }
+        for (Receipt r : batch) {
+            try {
+                ChatFrame frame = codec.frameOf(r);
+                router.sendToUser(peerOf(r), frame, OutboundWriter.CAP_RECEIPTS);
+                router.sendToUser(r.getUid(), frame, OutboundWriter.CAP_RECEIPTS);
+                frames.increment();
+            } catch (RuntimeException e) {
+                log.warn("Receipt fan-out for {} failed", r.getConversationKey(), e);
+            }
+        }
+    }
+
+    private static String peerOf(Receipt r) {
+        String key = r.getConversationKey();
+        int bar = key.indexOf('|');
+        String a = key.substring(0, bar);
+        return a.equals(r.getUid()) ? key.substring(bar + 1) : a;
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /** סימן מאוחד אחד ומספר האישורים שנאספו לתוכו */
+    private static final class Pending {
+        final Receipt receipt;
+        int acks;
+
+        Pending(Receipt receipt) {
+            this.receipt = receipt;
+        }
+    }
+}
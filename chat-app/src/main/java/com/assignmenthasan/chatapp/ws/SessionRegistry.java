@@ -0,0 +1,278 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketMessage;
+
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * רישום החיבורים הפעילים לפי מזהה משתמש
+ * כל משתמש יכול להחזיק כמה חיבורים במקביל (טאבים, טלפון), ולכל אחד תור שליחה משלו.
+ * הרישום וההסרה אטומיים לכל משתמש, והפיזור לחיבורים קורא עותק קבוע בלי נעילות.
+ * לחיבורים שביקשו caps=batch ההודעות לאותו משתמש נאספות בחלון קצר ונשלחות כמסגרת מערך אחת.
+ */
+@Component
+public class SessionRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionRegistry.class);
+
+    private final ConcurrentHashMap<String, CopyOnWriteArraySet<OutboundSession>> byUid = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+
+    /** הודעות שממתינות לאיחוד, לפי מזהה משתמש */
+    private final ConcurrentHashMap<String, List<ChatFrame>> pending = new ConcurrentHashMap<>();
+    /** שליחת מסגרות מאוחדות מסודרת, כך שמסגרת מלאה לא עוקפת מסגרת קודמת של אותו משתמש */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final WebSocketProperties.Coalesce coalesce;
+    /** null כשהאיחוד כבוי */
+    private final ScheduledExecutorService flusher;
+
+    private final Counter coalescedFrames;
+    private final DistributionSummary coalescedMessages;
+
+    /**
+     * בנאי המקבל את הגדרות האיחוד ואת רישום המדדים
+     * @param props הגדרות החיבורים
+     * @param meterRegistry רישום מדדים
+     */
+    public SessionRegistry(WebSocketProperties props, MeterRegistry meterRegistry) {
+        this.coalesce = props.getCoalesce();
+        if (coalesce.isEnabled()) {
+            CustomizableThreadFactory threads = new CustomizableThreadFactory("chat-ws-coalesce-");
+            threads.setDaemon(true);
+            this.flusher = Executors.newSingleThreadScheduledExecutor(threads);
+            long window = coalesce.getWindow().toNanos();
+            flusher.scheduleAtFixedRate(this::flushAll, window, window, TimeUnit.NANOSECONDS);
+        } else {
+            this.flusher = null;
+        }
+        meterRegistry.gauge("chat.ws.sessions.active", sessionCount);
+        meterRegistry.gauge("chat.ws.users.online", byUid, ConcurrentHashMap::size);
+        this.coalescedFrames = Counter.builder("chat.ws.coalesce.frames")
+                .description("Coalesced array frames sent to batching sessions").register(meterRegistry);
+        this.coalescedMessages = DistributionSummary.builder("chat.ws.coalesce.messages")
+                .description("Messages per coalesced frame").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) return;
+        flusher.shutdownNow();
+        flushAll();
+    }
+
+    /**
+     * רושמת חיבור חדש של משתמש בלי לדרוס חיבורים קיימים שלו
+     * @param uid מזהה המשתמש
+     * @param session תור השליחה של החיבור
+     */
+    public void register(String uid, OutboundSession session) {
+        byUid.compute(uid, (k, set) -> {
+            if (set == null) set = new CopyOnWriteArraySet<>();
+            if (set.add(session)) sessionCount.incrementAndGet();
+            return set;
+        });
+    }
+
+    /**
+     * מסירה חיבור אחד של משתמש; חיבורים אחרים שלו נשארים רשומים
+     * @param uid מזהה המשתמש
+     * @param session תור השליחה של החיבור שנסגר
+     */
+    public void unregister(String uid, OutboundSession session) {
+        byUid.computeIfPresent(uid, (k, set) -> {
+            if (set.remove(session)) sessionCount.decrementAndGet();
+            // הסרת הסט הריק נעשית באותה פעולה אטומית, כך שרישום מקביל לא נופל לסט שנזרק
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * @param uid מזהה המשתמש
+     * @return החיבורים הפעילים של המשתמש (תמונת מצב לקריאה בלבד)
+     */
+    public Set<OutboundSession> sessionsOf(String uid) {
+        Set<OutboundSession> set = byUid.get(uid);
+        return set == null ? Set.of() : Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * @param uid מזהה המשתמש
+     * @return true אם למשתמש יש לפחות חיבור אחד רשום
+     */
+    public boolean isOnline(String uid) {
+        return byUid.containsKey(uid);
+    }
+
+    /**
+     * @return מזהי המשתמשים שיש להם לפחות חיבור אחד בשרת הזה
+     */
+    public Set<String> onlineUids() {
+        return Collections.unmodifiableSet(byUid.keySet());
+    }
+
+    /**
+     * @return מספר החיבורים הרשומים בכל המשתמשים
+     */
+    public int sessionCount() {
+        return sessionCount.get();
+    }
+
+    /**
+     * שולחת מסגרת לכל החיבורים הפתוחים של משתמש
+     * @param uid מזהה המשתמש
+     * @param frame מסגרת שכבר סודרה; אותו אובייקט נשלח לכל החיבורים
+     * @return מספר החיבורים שהמסגרת נכנסה לתור שלהם
+     */
+    public int sendToUser(String uid, WebSocketMessage<?> frame) {
+        Set<OutboundSession> set = byUid.get(uid);
+        if (set == null) return 0;
+        int sent = 0;
+        for (OutboundSession s : set) {
+            if (s.isOpen() && s.send(frame)) sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * שולחת מסגרת לכל החיבורים הפתוחים של משתמש, כל חיבור בקידוד שבחר
+     * חיבורים שתומכים באיחוד יקבלו אותה בתוך מסגרת המערך הבאה של המשתמש
+     * @param uid מזהה המשתמש
+     * @param frame מסגרת שכל קידוד שלה מסודר פעם אחת
+     * @return מספר החיבורים שהמסגרת נכנסה לתור שלהם או לאיסוף
+     */
+    public int sendToUser(String uid, ChatFrame frame) {
+        Set<OutboundSession> set = byUid.get(uid);
+        if (set == null) return 0;
+        int sent = 0;
+        boolean collect = false;
+        for (OutboundSession s : set) {
+            if (flusher != null && s.isBatching()) {
+                if (s.isOpen()) {
+                    collect = true;
+                    sent++;
+                }
+            } else if (s.send(frame)) {
+                sent++;
+            }
+        }
+        if (collect) collect(uid, frame);
+        return sent;
+    }
+
+    /**
+     * שולחת מסגרת רק לחיבורים של משתמש שהצהירו על יכולת מסוימת (בלי איחוד)
+     * @param uid מזהה המשתמש
+     * @param frame המסגרת
+     * @param capability היכולת הנדרשת, למשל receipts; null = כל החיבורים
+     * @return מספר החיבורים שהמסגרת נכנסה לתור שלהם
+     */
+    public int sendToUser(String uid, ChatFrame frame, String capability) {
+        if (capability == null) return sendToUser(uid, frame);
+        Set<OutboundSession> set = byUid.get(uid);
+        if (set == null) return 0;
+        int sent = 0;
+        for (OutboundSession s : set) {
+            if (s.hasCapability(capability) && s.send(frame)) sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * מעבירה הודעה לכל המכשירים של הנמען ולכל המכשירים של השולח (כולל החיבור ששלח)
+     * @param senderUid מזהה השולח
+     * @param receiverUid מזהה הנמען
+     * @param frame מסגרת שסודרה פעם אחת
+     * @return מספר החיבורים של הנמען שקיבלו את ההודעה
+     */
+    public int deliver(String senderUid, String receiverUid, ChatFrame frame) {
+        int delivered = sendToUser(receiverUid, frame);
+        sendToUser(senderUid, frame);
+        return delivered;
+    }
+
+    /**
+     * כמו deliver עם מסגרת מוכנה אחת שנשלחת כמו שהיא לכל החיבורים, בלי קשר לקידוד
+     * @param senderUid מזהה השולח
+     * @param receiverUid מזהה הנמען
+     * @param frame מסגרת שסודרה פעם אחת
+     * @return מספר החיבורים של הנמען שקיבלו את ההודעה
+     */
+    public int deliver(String senderUid, String receiverUid, WebSocketMessage<?> frame) {
+        int delivered = sendToUser(receiverUid, frame);
+        sendToUser(senderUid, frame);
+        return delivered;
+    }
+
+    private void collect(String uid, ChatFrame frame) {
+        boolean[] full = new boolean[1];
+        pending.compute(uid, (k, frames) -> {
+            if (frames == null) frames = new ArrayList<>();
+            frames.add(frame);
+            full[0] = frames.size() >= coalesce.getMaxMessages();
+            return frames;
+        });
+        if (!full[0]) return;
+        // הוצאת המסגרת מהמפה והכנסתה לתורים באותה נעילה, אחרת flushAll יכול לשלוח את ההודעות שאחריה קודם
+        flushLock.lock();
+        try {
+            List<ChatFrame> frames = pending.remove(uid);
+            if (frames != null) sendBatch(uid, frames);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** נקראת בכל סוף חלון; שולחת את כל מה שנאסף */
+    private void flushAll() {
+        flushLock.lock();
+        try {
+            for (String uid : pending.keySet()) {
+                List<ChatFrame> frames = pending.remove(uid);
+                if (frames == null) continue;
+                try {
+                    sendBatch(uid, frames);
+                } catch (RuntimeException e) {
+                    // משתמש אחד לא עוצר את תהליכון האיחוד
+                    log.warn("Coalesced send to {} failed", uid, e);
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void sendBatch(String uid, List<ChatFrame> frames) {
+        Set<OutboundSession> set = byUid.get(uid);
+        if (set == null) return;
+        ChatFrame batch = ChatFrame.batch(frames);
+        boolean sent = false;
+        for (OutboundSession s : set) {
+            if (s.isBatching() && s.send(batch)) sent = true;
+        }
+        if (sent) {
+            coalescedFrames.increment();
+            coalescedMessages.record(frames.size());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.assignmenthasan.chatapp.config.MetricsProperties;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * זמני השלבים בטיפול במסגרת נכנסת ב-/ws/chat, כדי לדעת איזה שלב מזיז את ה-p99
+ * הזמן עובר בין השלבים כ-long ולא כ-Timer.Sample, וכל המדדים נרשמים מראש, כך שאין הקצאה לכל הודעה.
+ * מסגרת שלא נדגמה לא קוראת לשעון בכלל.
+ */
+@Component
+public class StageMetrics {
+
+    /** ערך שמסמן מסגרת שלא נדגמה (nanoTime יכול להיות שלילי, אבל לא זה) */
+    static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /** השלבים, לפי הסדר שבו הם קורים */
+    public enum Stage {
+        /** פענוח JSON/CBOR לרשימת הודעות */
+        DECODE("decode"),
+        /** בדיקות השולח והקבוצה, הגבלת קצב, אישורים והקלדה */
+        ADMIT("admit"),
+        /** ChatService.persist / persistAll, כולל המתנה לאישור הכתיבה */
+        PERSIST("persist"),
+        /** הכנסה לתורי השליחה של כל המכשירים ומעטפות לשרתים אחרים */
+        ROUTE("route"),
+        /** העברה לתור ההתראות (הקריאה לפונקציה עצמה נמדדת ב-chat.notify.latency) */
+        NOTIFY("notify"),
+        /** מהמסגרת הנכנסת עד סוף הטיפול */
+        TOTAL("total");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /** סוגי הפריטים במסגרת נכנסת */
+    public enum Inbound { MESSAGE, RECEIPT, TYPING }
+
+    private final MetricsProperties props;
+    private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+    private final Map<Inbound, Counter> inbound = new EnumMap<>(Inbound.class);
+    private final Counter frames;
+
+    /**
+     * @param props הגדרות המדידה
+     * @param meterRegistry רישום מדדים
+     */
+    public StageMetrics(MetricsProperties props, MeterRegistry meterRegistry) {
+        this.props = props;
+        for (Stage stage : Stage.values()) {
+            timers.put(stage, Timer.builder("chat.ws.stage")
+                    .tag("stage", stage.tag)
+                    .description("Time spent in one stage of handling an inbound /ws/chat frame")
+                    .publishPercentileHistogram(props.isHistograms())
+                    .minimumExpectedValue(Duration.ofNanos(10_000))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(meterRegistry));
+        }
+        for (Inbound kind : Inbound.values()) {
+            inbound.put(kind, Counter.builder("chat.ws.inbound").tag("kind", kind.name().toLowerCase())
+                    .description("Items received in inbound frames, not sampled").register(meterRegistry));
+        }
+        this.frames = Counter.builder("chat.ws.inbound.frames").register(meterRegistry);
+    }
+
+    /**
+     * נקראת כשמסגרת נכנסת מתחילה
+     * @return זמן ההתחלה, או NOT_SAMPLED אם המסגרת לא נמדדת
+     */
+    public long start() {
+        frames.increment();
+        if (!props.isStageTimers()) return NOT_SAMPLED;
+        double rate = props.getSampleRate();
+        if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) return NOT_SAMPLED;
+        return System.nanoTime();
+    }
+
+    /**
+     * רושמת את הזמן מאז since לשלב
+     * @param stage השלב שהסתיים
+     * @param since הזמן שהוחזר מ-start או מ-lap הקודם
+     * @return הזמן עכשיו, לשלב הבא (או NOT_SAMPLED)
+     */
+    public long lap(Stage stage, long since) {
+        if (since == NOT_SAMPLED) return NOT_SAMPLED;
+        long now = System.nanoTime();
+        timers.get(stage).record(now - since, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * @param kind סוג הפריט
+     * @param count כמה פריטים מהסוג הגיעו במסגרת
+     */
+    public void received(Inbound kind, int count) {
+        if (count > 0) inbound.get(kind).increment(count);
+    }
+}
@@ -0,0 +1,42 @@
+package com.assignmenthasan.chatapp.ws;
+
+/**
+ * קידודי המסגרות שהשרת מדבר בנקודת הקצה /ws/chat
+ * הלקוח בוחר דרך Sec-WebSocket-Protocol; לקוח שלא ביקש כלום מקבל JSON כמו קודם
+ */
+public enum WireProtocol {
+
+    /** מסגרות טקסט JSON – ברירת המחדל */
+    JSON("chat.json.v1"),
+
+    /** מסגרות בינאריות CBOR עם אותו מבנה שדות */
+    CBOR("chat.cbor.v1");
+
+    private final String subprotocol;
+
+    WireProtocol(String subprotocol) {
+        this.subprotocol = subprotocol;
+    }
+
+    /**
+     * @return שם ה-subprotocol כפי שמופיע בכותרת Sec-WebSocket-Protocol
+     */
+    public String subprotocol() {
+        return subprotocol;
+    }
+
+    /**
+     * @return תגית קצרה למדדים
+     */
+    public String tag() {
+        return name().toLowerCase();
+    }
+
+    /**
+     * @param accepted ה-subprotocol שנבחר בלחיצת היד (יכול להיות null או ריק)
+     * @return הקידוד המתאים; JSON אם לא נבחר subprotocol מוכר
+     */
+    public static WireProtocol of(String accepted) {
+        return CBOR.subprotocol.equals(accepted) ? CBOR : JSON;
+    }
+}
@@ -0,0 +1,262 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.config.ClusterProperties;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.ws.MessageCodec;
+import com.assignmenthasan.chatapp.ws.OutboundSession;
+import com.assignmenthasan.chatapp.ws.OutboundWriter;
+import com.assignmenthasan.chatapp.ws.SessionRegistry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * מריץ כמה הקשרי אפליקציה באותו JVM, כל אחד כשרת נפרד עם רישום חיבורים משלו,
+ * ומודד את זמן המסירה בין שרתים דרך מימוש הניתוב התוך-תהליכי
+ */
+class ClusterRoutingTest {
+
+    private static final int NODES = 3;
+
+    private final LocalClusterBackend.Hub hub = new LocalClusterBackend.Hub();
+    private final List<AnnotationConfigApplicationContext> nodes = new ArrayList<>();
+    private final ConcurrentHashMap<String, List<String>> inbox = new ConcurrentHashMap<>();
+    private final List<Long> latenciesNanos = new ArrayList<>();
+    private volatile CountDownLatch arrivals;
+    private final Set<String> publishThreads = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startNodes() throws InterruptedException {
+        for (int i = 0; i < NODES; i++) {
+            String nodeId = "node-" + i;
+            AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext();
+            ClusterProperties props = new ClusterProperties();
+            props.setNodeId(nodeId);
+            props.setPeerRefreshInterval(Duration.ofMillis(10));
+            ctx.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+            ctx.registerBean(WebSocketProperties.class, WebSocketProperties::new);
+            ctx.registerBean(ClusterProperties.class, () -> props);
+            ctx.registerBean(LocalClusterBackend.class, () -> new LocalClusterBackend(hub) {
+                @Override
+                public void publish(String targetNode, ClusterEnvelope envelope) {
+                    publishThreads.add(Thread.currentThread().getName());
+                    super.publish(targetNode, envelope);
+                }
+            });
+            ctx.registerBean(ExecutionMode.class, ExecutionMode::platform);
+            ctx.registerBean(OutboundWriter.class);
+            ctx.registerBean(ObjectMapper.class, () -> Jackson2ObjectMapperBuilder.json().build());
+            ctx.registerBean(MessageCodec.class);
+            ctx.registerBean(SessionRegistry.class);
+            ctx.registerBean(ClusterRouter.class);
+            ctx.refresh();
+            nodes.add(ctx);
+        }
+        // כל שרת רואה את האחרים רק אחרי רענון רשימת השרתים הפעילים
+        for (int i = 0; i < NODES; i++) {
+            while (router(i).peers().size() < NODES - 1) Thread.sleep(5);
+        }
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(AnnotationConfigApplicationContext::close);
+    }
+
+    @Test
+    void deliversToRecipientAndSenderDevicesOnOtherNodes() throws Exception {
+        arrivals = new CountDownLatch(3);
+        connect(0, "alice");
+        connect(1, "bob");
+        connect(2, "alice"); // מכשיר שני של alice בשרת אחר
+
+        router(0).route("alice", "bob", codec(0).frameOfJson("hello"));
+
+        assertThat(arrivals.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(inbox.get("bob@node-1")).containsExactly("hello");
+        assertThat(inbox.get("alice@node-0")).containsExactly("hello");
+        assertThat(inbox.get("alice@node-2")).containsExactly("hello");
+    }
+
+    @Test
+    void presenceIsLookedUpOncePerUserAndPublishedOffTheCallerThread() throws Exception {
+        arrivals = new CountDownLatch(100);
+        connect(1, "bob");
+
+        for (int i = 0; i < 100; i++) router(0).route("alice", "bob", codec(0).frameOfJson("m" + i));
+
+        assertThat(arrivals.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(inbox.get("bob@node-1")).hasSize(100).startsWith("m0", "m1", "m2").endsWith("m99");
+        assertThat(meters(0).get("chat.cluster.presence.lookups").counter().count()).isEqualTo(1);
+        assertThat(publishThreads).isNotEmpty().allMatch(name -> name.startsWith("chat-cluster-pub-"));
+    }
+
+    @Test
+    void singleNodeNeverQueriesPresence() throws Exception {
+        nodes.get(1).close();
+        nodes.get(2).close();
+        while (!router(0).peers().isEmpty()) Thread.sleep(5);
+        arrivals = new CountDownLatch(2);
+        connect(0, "alice");
+        connect(0, "bob");
+
+        router(0).route("alice", "bob", codec(0).frameOfJson("hi"));
+        router(0).broadcast(List.of("alice", "bob"), codec(0).frameOfJson("group"));
+
+        assertThat(arrivals.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(meters(0).get("chat.cluster.presence.lookups").counter().count()).isZero();
+        assertThat(meters(0).get("chat.cluster.forwarded").counter().count()).isZero();
+    }
+
+    @Test
+    void offlineUserLeavesPresenceDirectory() {
+        OutboundSession s = connect(1, "carol");
+        assertThat(hub.presence.get("carol")).containsExactly("node-1");
+
+        registry(1).unregister("carol", s);
+        router(1).sessionClosed("carol");
+        assertThat(hub.presence.get("carol")).isNull();
+    }
+
+    @Test
+    void groupBroadcastSendsOneEnvelopePerNode() throws Exception {
+        List<String> members = new ArrayList<>();
+        for (int u = 0; u < 12; u++) {
+            connect(u % NODES, "m" + u);
+            members.add("m" + u);
+        }
+        members.add("offline");
+        arrivals = new CountDownLatch(12);
+
+        router(0).broadcast(members, codec(0).frameOfJson("group"));
+
+        assertThat(arrivals.await(2, TimeUnit.SECONDS)).isTrue();
+        for (int u = 0; u < 12; u++) assertThat(inbox.get("m" + u + "@node-" + (u % NODES))).containsExactly("group");
+        // ארבעה חברים בכל שרת מרוחק, מעטפה אחת לכל שרת
+        assertThat(meters(0).get("chat.cluster.forwarded").counter().count()).isEqualTo(NODES - 1);
+        assertThat(meters(1).get("chat.cluster.received").counter().count()).isEqualTo(1);
+        assertThat(meters(2).get("chat.cluster.received").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void groupChangesReachEveryOtherNode() throws Exception {
+        CountDownLatch changed = new CountDownLatch(NODES - 1);
+        List<String> seen = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            int node = i;
+            router(i).onGroupChanged(groupId -> {
+                seen.add(groupId + "@node-" + node);
+                changed.countDown();
+            });
+        }
+
+        router(0).groupChanged("g_1");
+
+        assertThat(changed.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(seen).containsExactlyInAnyOrder("g_1@node-1", "g_1@node-2");
+        assertThat(inbox).isEmpty();
+    }
+
+    @Test
+    void measuresCrossNodeDeliveryLatency() throws Exception {
+        int users = 30;
+        int messages = 5_000;
+        for (int u = 0; u < users; u++) connect(u % NODES, "u" + u);
+        arrivals = new CountDownLatch(messages);
+
+        for (int m = 0; m < messages; m++) {
+            int from = m % users;
+            int to = (from + 1) % users; // תמיד בשרת אחר
+            // רק מסירה לנמען נמדדת; ההד לשולח מגיע בשרת המקומי
+            router(from % NODES).route("u" + from, "u" + to,
+                    codec(from % NODES).frameOfJson("t=" + System.nanoTime() + ";to=u" + to));
+        }
+        assertThat(arrivals.await(20, TimeUnit.SECONDS)).isTrue();
+
+        long[] sorted;
+        synchronized (latenciesNanos) {
+            sorted = latenciesNanos.stream().mapToLong(Long::longValue).toArray();
+        }
+        Arrays.sort(sorted);
+        assertThat(sorted).hasSize(messages);
+        // הדואר בזיכרון לא מוסיף רשת; מה שנמדד הוא התור והסידור, שצריכים להיות רחוקים מכל חלון המתנה
+        assertThat(sorted[sorted.length / 2]).as("p50 ns").isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(sorted[(int) (sorted.length * 0.99)]).as("p99 ns").isLessThan(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    private OutboundSession connect(int node, String uid) {
+        String key = uid + "@node-" + node;
+        WebSocketSession ws = mock(WebSocketSession.class);
+        when(ws.isOpen()).thenReturn(true);
+        when(ws.getId()).thenReturn(key);
+        try {
+            doAnswer(inv -> {
+                String payload = ((WebSocketMessage<?>) inv.getArgument(0)).getPayload().toString();
+                inbox.computeIfAbsent(key, k -> new ArrayList<>()).add(payload);
+                if (payload.startsWith("t=")) {
+                    String[] parts = payload.split(";to=");
+                    if (!parts[1].equals(uid)) return null;
+                    recordLatency(Long.parseLong(parts[0].substring(2)));
+                }
+                arrivals.countDown();
+                return null;
+            }).when(ws).sendMessage(any());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        OutboundSession out = nodes.get(node).getBean(OutboundWriter.class).open(ws);
+        registry(node).register(uid, out);
+        router(node).sessionOpened(uid);
+        return out;
+    }
+
+    private void recordLatency(long sentNanos) {
+        long latency = System.nanoTime() - sentNanos;
+        synchronized (latenciesNanos) {
+            latenciesNanos.add(latency);
+        }
+    }
+
+    private ClusterRouter router(int node) {
+        return nodes.get(node).getBean(ClusterRouter.class);
+    }
+
+    private SessionRegistry registry(int node) {
+        return nodes.get(node).getBean(SessionRegistry.class);
+    }
+
+    private MeterRegistry meters(int node) {
+        return nodes.get(node).getBean(MeterRegistry.class);
+    }
+
+    private MessageCodec codec(int node) {
+        return nodes.get(node).getBean(MessageCodec.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.assignmenthasan.chatapp.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.assignmenthasan.chatapp.config.ClusterProperties;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+
+/**
+ * המשך קריאת האפיק אחרי פתיחה מחדש של הסמן, כשהשעונים של השולחים לא מסונכרנים
+ * הבדיקה מול MongoDB אמיתי דורשת מסד: mvn test -Dtest=MongoClusterBackendTest -Dtest.mongo.uri=mongodb://localhost:27017
+ */
+class MongoClusterBackendTest {
+
+    private static final String BUS = "cluster_bus_test";
+
+    /** מזהה כפי ששרת עם שעון מוזז היה יוצר */
+    private static ObjectId skewed(long seconds) {
+        return new ObjectId(Date.from(Instant.now().plusSeconds(seconds)));
+    }
+
+    private static Document envelope(ObjectId id, long recordId, String payload) {
+        return new Document("_id", id).append("to", "node-a").append("payload", payload).append("$recordId", recordId);
+    }
+
+    @Test
+    void positionFollowsInsertOrderNotTheSendersIds() {
+        // node-b מפגר בעשר דקות, node-c מקדים: המזהים שלהם לא בסדר ההכנסה
+        List<Document> bus = List.of(
+                envelope(skewed(-600), 11, "b1"),
+                envelope(skewed(600), 12, "c1"),
+                envelope(skewed(-600), 13, "b2"),
+                envelope(skewed(600), 14, "c2"));
+        MongoClusterBackend.BusPosition position = new MongoClusterBackend.BusPosition(10);
+        List<String> delivered = new ArrayList<>();
+
+        // הסמן נסגר אחרי c1 ונפתח מחדש מתחילת האוסף
+        for (Document d : bus.subList(0, 2)) if (position.advance(d)) delivered.add(d.getString("payload"));
+        for (Document d : bus) if (position.advance(d)) delivered.add(d.getString("payload"));
+
+        assertThat(delivered).containsExactly("b1", "c1", "b2", "c2");
+    }
+
+    @Test
+    void startsAfterWhatIsAlreadyInTheBus() {
+        MongoClusterBackend.BusPosition position = new MongoClusterBackend.BusPosition(12);
+
+        assertThat(position.advance(envelope(skewed(600), 11, "old"))).isFalse();
+        assertThat(position.advance(envelope(skewed(600), 12, "old"))).isFalse();
+        assertThat(position.advance(envelope(skewed(-600), 13, "new"))).isTrue();
+    }
+
+    @Test
+    void skewedIdsFromTwoNodesSurviveACursorRestart() throws Exception {
+        String uri = System.getProperty("test.mongo.uri");
+        assumeTrue(uri != null, "test.mongo.uri not set");
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoTemplate mongo = new MongoTemplate(client, "chat_cluster_test");
+            mongo.dropCollection(BUS);
+            ClusterProperties props = new ClusterProperties();
+            props.setBusCollection(BUS);
+            props.setBusCollectionSize(1024 * 1024);
+            MongoClusterBackend backend = new MongoClusterBackend(mongo, props);
+            List<String> received = new CopyOnWriteArrayList<>();
+            backend.subscribe("node-a", e -> received.add(e.getPayload()));
+            MongoCollection<Document> bus = mongo.getCollection(BUS);
+
+            bus.insertOne(new Document("_id", skewed(-600)).append("to", "node-a").append("payload", "b1"));
+            bus.insertOne(new Document("_id", skewed(600)).append("to", "node-a").append("payload", "c1"));
+            awaitSize(received, 2);
+            backend.reopenCursor();
+            Thread.sleep(1_500);
+            bus.insertOne(new Document("_id", skewed(-600)).append("to", "node-a").append("payload", "b2"));
+            bus.insertOne(new Document("_id", skewed(600)).append("to", "node-a").append("payload", "c2"));
+            awaitSize(received, 4);
+
+            backend.unsubscribe("node-a");
+            assertThat(received).containsExactly("b1", "c1", "b2", "c2");
+        }
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (list.size() < size && System.nanoTime() < deadline) Thread.sleep(10);
+    }
+}
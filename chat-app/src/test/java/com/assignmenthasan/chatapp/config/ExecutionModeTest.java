@@ -0,0 +1,80 @@
+package com.assignmenthasan.chatapp.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * בחירת המאגר לפי spring.threads.virtual.enabled וגרסת ה-JVM
+ */
+class ExecutionModeTest {
+
+    private static final boolean JAVA_21 = Runtime.version().feature() >= 21;
+
+    private static ExecutionMode mode(boolean enabled) {
+        return new ExecutionMode(new MockEnvironment().withProperty(ExecutionMode.VIRTUAL_ENABLED, String.valueOf(enabled)));
+    }
+
+    private static Thread threadOf(Executor executor) throws Exception {
+        CompletableFuture<Thread> t = new CompletableFuture<>();
+        executor.execute(() -> t.complete(Thread.currentThread()));
+        return t.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void switchOffGivesAFixedPoolOfNamedDaemonThreads() throws Exception {
+        ExecutionMode mode = mode(false);
+        Executor executor = mode.newExecutor("chat-test-", 3);
+        try {
+            assertThat(mode.isVirtual()).isFalse();
+            assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+            assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize()).isEqualTo(3);
+            Thread t = threadOf(executor);
+            assertThat(t.getName()).startsWith("chat-test-");
+            assertThat(t.isDaemon()).isTrue();
+        } finally {
+            ExecutionMode.shutdown(executor);
+        }
+        assertThat(((ThreadPoolExecutor) executor).isShutdown()).isTrue();
+    }
+
+    @Test
+    void switchOnBeforeJava21StaysOnPlatformThreads() {
+        assumeTrue(!JAVA_21);
+        ExecutionMode mode = mode(true);
+        Executor executor = mode.newExecutor("chat-test-", 2);
+        try {
+            assertThat(mode.isVirtual()).isFalse();
+            assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+        } finally {
+            ExecutionMode.shutdown(executor);
+        }
+    }
+
+    @Test
+    void switchOnFromJava21RunsEachTaskOnAVirtualThread() throws Exception {
+        assumeTrue(JAVA_21);
+        ExecutionMode mode = mode(true);
+        Executor executor = mode.newExecutor("chat-test-", 2);
+        try {
+            assertThat(mode.isVirtual()).isTrue();
+            assertThat(executor).isInstanceOf(SimpleAsyncTaskExecutor.class);
+            assertThat(threadOf(executor).toString()).contains("VirtualThread");
+        } finally {
+            ExecutionMode.shutdown(executor);
+        }
+    }
+
+    @Test
+    void platformFactoryIgnoresTheEnvironment() {
+        assertThat(ExecutionMode.platform().isVirtual()).isFalse();
+    }
+}
@@ -0,0 +1,27 @@
+package com.assignmenthasan.chatapp.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+class MongoIndexesTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ApplicationContextRunner runner = new ApplicationContextRunner()
+            .withBean(MongoTemplate.class, () -> mongoTemplate)
+            .withUserConfiguration(MongoIndexes.Messages.class);
+
+    @Test
+    void logBackendLeavesTheMessagesCollectionAlone() {
+        runner.withPropertyValues("app.store.backend=log").run(context -> {
+            assertThat(context).hasNotFailed().doesNotHaveBean(MongoIndexes.Messages.class);
+            verify(mongoTemplate, never()).indexOps(any(Class.class));
+        });
+    }
+}
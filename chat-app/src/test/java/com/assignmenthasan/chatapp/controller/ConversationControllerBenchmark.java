@@ -0,0 +1,139 @@
+package com.assignmenthasan.chatapp.controller;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.assignmenthasan.chatapp.config.ConversationProperties;
+import com.assignmenthasan.chatapp.config.TokenCacheProperties;
+import com.assignmenthasan.chatapp.model.AppUser;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.repo.AppUserRepository;
+import com.assignmenthasan.chatapp.security.TokenVerifier;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.firebase.auth.FirebaseToken;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * המיפוי של GET /api/conversations/recent ממסמכי שיחה ל-ConversationSummary, ועם סידור התשובה ל-JSON
+ * המסד, האימות והמשתמשים מוחלפים במימושים שמחזירים תשובות קבועות, כך שנמדדת רק עבודת הבקר.
+ * מסמך אחד מעשרה הוא קבוצה ולאחד מעשרה חסר אימייל (שליפה מ-users).
+ * mvn test -Pbench -Dtest=ConversationControllerBenchmark, או כל הבנצ'מרקים ל-JSON: mvn test -Pjmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversationControllerBenchmark {
+
+    private static final String ME = "Yx3kPq9sLm2Zr8TwV1bN0cHd4Fg7";
+
+    @Param({ "20", "100" })
+    public int limit;
+
+    private ConversationController controller;
+    private ObjectMapper json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<Conversation> docs = new ArrayList<>(limit);
+        List<AppUser> unsynced = new ArrayList<>();
+        Instant t = Instant.parse("2025-01-01T10:00:00Z");
+        for (int i = 0; i < limit; i++) {
+            Conversation c = new Conversation();
+            c.setLastTimestamp(t.minusSeconds(i * 60L));
+            c.setPreview("are we still meeting at 6pm today? " + i);
+            if (i % 10 == 9) {
+                c.setId(Conversation.GROUP_PREFIX + i);
+                c.setName("group " + i);
+                c.setParticipants(List.of(ME, "a" + i, "b" + i, "c" + i));
+            } else {
+                String other = "peer" + i;
+                c.setId(Conversation.keyOf(ME, other));
+                c.setParticipants(List.of(ME, other));
+                Map<String, String> emails = new HashMap<>();
+                emails.put(ME, "me@example.com");
+                if (i % 10 != 4) emails.put(other, other + "@example.com");
+                else unsynced.add(new AppUser(other, other + "@example.com", null, null));
+                c.setEmails(emails);
+                c.setRead(Map.of(ME, 40L + i, other, 39L + i));
+                c.setDelivered(Map.of(ME, 41L + i, other, 41L + i));
+            }
+            docs.add(c);
+        }
+
+        // בלי Mockito: הקריאה למוק (עם מעקב אחרי מקום הקריאה) עלתה יותר מהמיפוי עצמו
+        Constructor<FirebaseToken> tokenCtor = FirebaseToken.class.getDeclaredConstructor(Map.class);
+        tokenCtor.setAccessible(true);
+        FirebaseToken token = tokenCtor.newInstance(Map.of("sub", ME));
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        TokenVerifier verifier = new TokenVerifier(new TokenCacheProperties(), meters) {
+            @Override
+            public FirebaseToken verify(String idToken) {
+                return token;
+            }
+        };
+        ConversationIndex conversations = new ConversationIndex(null, null, new ConversationProperties(), meters) {
+            @Override
+            public List<Conversation> recent(String uid, int limit) {
+                return docs;
+            }
+        };
+        AppUserRepository users = (AppUserRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { AppUserRepository.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("findAllById")) return unsynced;
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        controller = new ConversationController(conversations, users, verifier);
+        json = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> map() {
+        return controller.recent("Bearer t", limit);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerialize() throws Exception {
+        return json.writeValueAsBytes(controller.recent("Bearer t", limit).getBody());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ConversationControllerBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,239 @@
+package com.assignmenthasan.chatapp.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * בדיקת עומס מקצה לקצה: השרת המלא עולה בתוך התהליך (אחסון בזיכרון ואימות מדומה, ראו LoadTestConfig),
+ * load.users משתמשים מדומים מתחברים ל-/ws/chat, ו-load.rate הודעות בשנייה יוצאות משולחים אקראיים לנמענים אקראיים.
+ * הזמן נמדד מהרגע שבו ההודעה הייתה אמורה לצאת ועד שהגיעה לנמען, כך שעיכוב בצד השולח לא מוסתר.
+ * תרחישים (load.scenario):
+ * steady – קצב קבוע;
+ * burst – בכל 5 שניות, השנייה הראשונה בקצב פי load.burstFactor;
+ * reconnect – באמצע המדידה load.reconnectFraction מהמשתמשים מתנתקים ומתחברים שוב בבת אחת;
+ * slow – load.slowFraction מהמשתמשים קוראים מסגרת כל load.slowDelayMs, והזמנים שלהם נמדדים בנפרד.
+ * heap/conn הוא הזיכרון אחרי GC חלקי מספר החיבורים, וכולל גם את צד הלקוח שרץ באותו תהליך.
+ * mvn test -Pbench -Dtest=ChatLoadTest [-Dload.scenario=burst -Dload.users=5000 -Dload.rate=5000 -Dload.duration=60]
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.firebase.enabled=false",
+        "app.cluster.backend=local",
+        "app.rate-limit.enabled=false",
+        "app.functions.notify-url=",
+        "app.persistence.key-backfill=false",
+        "app.search.dir=target/load-test-search",
+        "server.tomcat.max-connections=65536",
+        // הלקוח של Spring Data נוצר אבל אף פעולה לא מגיעה אליו; בלי שרת הוא רק מדווח שאין חיבור
+        "logging.level.org.mongodb.driver=ERROR" })
+@Import(LoadTestConfig.class)
+class ChatLoadTest {
+
+    enum Scenario { STEADY, BURST, RECONNECT, SLOW }
+
+    private static final Scenario SCENARIO =
+            Scenario.valueOf(System.getProperty("load.scenario", "steady").toUpperCase(Locale.ROOT));
+    private static final int USERS = Integer.getInteger("load.users", 1_000);
+    private static final int RATE = Integer.getInteger("load.rate", 2_000);
+    private static final int WARMUP = Integer.getInteger("load.warmup", 5);
+    private static final int DURATION = Integer.getInteger("load.duration", 30);
+    private static final int SIZE = Integer.getInteger("load.size", 64);
+    private static final int BURST_FACTOR = Integer.getInteger("load.burstFactor", 10);
+    private static final double RECONNECT_FRACTION =
+            Double.parseDouble(System.getProperty("load.reconnectFraction", "0.5"));
+    private static final double SLOW_FRACTION = Double.parseDouble(System.getProperty("load.slowFraction", "0.1"));
+    private static final int SLOW_DELAY = Integer.getInteger("load.slowDelayMs", 500);
+    /** לקוחות HTTP נפרדים, כל אחד עם תהליכון selector משלו, כדי שצד הלקוח לא יהיה צוואר הבקבוק */
+    private static final int CLIENTS = 4;
+    private static final int CONNECT_CONCURRENCY = 256;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meters;
+
+    @Autowired
+    private InMemoryMongoTemplate store;
+
+    @Test
+    void load() throws Exception {
+        URI endpoint = URI.create("ws://localhost:" + port + "/ws/chat");
+        List<HttpClient> clients = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) clients.add(HttpClient.newHttpClient());
+        ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor();
+        SimulatedUser.Stats stats = new SimulatedUser.Stats();
+        String padding = "x".repeat(SIZE);
+
+        int slowEvery = SCENARIO == Scenario.SLOW ? (int) Math.round(1 / SLOW_FRACTION) : 0;
+        List<SimulatedUser> users = new ArrayList<>(USERS);
+        for (int u = 0; u < USERS; u++) {
+            boolean slow = slowEvery > 0 && u % slowEvery == 0;
+            users.add(new SimulatedUser("load-u" + u, slow, SLOW_DELAY, stats, delays));
+        }
+
+        long heapBefore = heapAfterGc();
+        Histogram connect = connectAll(users, clients, endpoint, CONNECT_CONCURRENCY);
+        awaitSessions(USERS);
+        long heapPerConn = (heapAfterGc() - heapBefore) / USERS;
+
+        long start = System.nanoTime();
+        stats.measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP);
+        long end = stats.measureFrom + TimeUnit.SECONDS.toNanos(DURATION);
+        CompletableFuture<Histogram> storm = SCENARIO == Scenario.RECONNECT
+                ? CompletableFuture.supplyAsync(() -> {
+                    LockSupport.parkNanos(stats.measureFrom + (end - stats.measureFrom) / 2 - System.nanoTime());
+                    return reconnectStorm(users, clients, endpoint);
+                })
+                : CompletableFuture.completedFuture(null);
+
+        long sent = 0;
+        long skipped = 0;
+        double due = 0;
+        long tick = TimeUnit.MILLISECONDS.toNanos(1);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (long t = start; t < end; t += tick) {
+            long wait = t - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            due += rateAt(t - start) / 1000.0;
+            for (; due >= 1; due--) {
+                int from = rnd.nextInt(USERS);
+                int to = rnd.nextInt(USERS - 1);
+                if (to >= from) to++;
+                boolean ok = users.get(from).send(users.get(to), t, padding);
+                if (t < stats.measureFrom) continue;
+                if (ok) sent++; else skipped++;
+            }
+        }
+        Histogram reconnect = storm.get();
+        awaitQuiet(stats);
+
+        Histogram fast = stats.latency.getIntervalHistogram();
+        Histogram slow = stats.slowLatency.getIntervalHistogram();
+        long delivered = stats.delivered.sum();
+        System.out.printf("%-9s %7s %7s %9s %9s %7s %9s %8s %8s %8s %8s%n", "scenario", "users", "rate",
+                "sent", "delivered", "deliv%", "msg/s", "p50-ms", "p99-ms", "p999-ms", "max-ms");
+        System.out.printf("%-9s %7d %7d %9d %9d %7.1f %9.0f %8.2f %8.2f %8.2f %8.2f%n",
+                SCENARIO.name().toLowerCase(Locale.ROOT), USERS, RATE, sent, delivered,
+                sent == 0 ? 0 : 100.0 * delivered / sent, (double) delivered / DURATION,
+                ms(fast, 50), ms(fast, 99), ms(fast, 99.9), fast.getMaxValue() / 1000.0);
+        if (slow.getTotalCount() > 0) {
+            System.out.printf("slow consumers (%d%%, %d ms/frame): p50 %.2f ms, p99 %.2f ms, p999 %.2f ms%n",
+                    Math.round(SLOW_FRACTION * 100), SLOW_DELAY, ms(slow, 50), ms(slow, 99), ms(slow, 99.9));
+        }
+        System.out.printf("connect: p50 %.2f ms, p99 %.2f ms; heap/conn %d bytes (server+client)%n",
+                ms(connect, 50), ms(connect, 99), heapPerConn);
+        if (reconnect != null) {
+            System.out.printf("reconnect storm: %d users, p50 %.2f ms, p99 %.2f ms, max %.2f ms; %d sends skipped%n",
+                    reconnect.getTotalCount(), ms(reconnect, 50), ms(reconnect, 99),
+                    reconnect.getMaxValue() / 1000.0, skipped);
+        }
+        // זמן הטיפול בשרת מול הזמן מקצה לקצה: הפער הוא הרשת, התורים ובצד הלקוח
+        Timer handling = meters.get("chat.ws.stage").tag("stage", "total").timer();
+        System.out.printf("server handling: mean %.2f ms, max %.2f ms (chat.ws.stage total, incl. warmup)%n",
+                handling.mean(TimeUnit.MILLISECONDS), handling.max(TimeUnit.MILLISECONDS));
+        System.out.printf("server: %d stored, %.0f dropped, %.0f slow-consumer events, %d client errors%n",
+                store.inserted(), count("chat.ws.outbound.dropped"), count("chat.ws.slow.consumer"),
+                stats.errors.sum());
+
+        for (SimulatedUser u : users) u.close();
+        delays.shutdownNow();
+        assertThat(delivered).isPositive();
+    }
+
+    /** הודעות בשנייה לפי התרחיש, בזמן elapsed מתחילת השליחה */
+    private static double rateAt(long elapsedNanos) {
+        if (SCENARIO != Scenario.BURST) return RATE;
+        return TimeUnit.NANOSECONDS.toSeconds(elapsedNanos) % 5 == 0 ? (double) RATE * BURST_FACTOR : RATE;
+    }
+
+    /**
+     * פותחת את כל החיבורים, לכל היותר concurrency בבת אחת
+     * @return זמן לחיצת היד של כל חיבור, במיקרו-שניות
+     */
+    private static Histogram connectAll(List<SimulatedUser> users, List<HttpClient> clients, URI endpoint,
+                                        int concurrency) {
+        Recorder times = new Recorder(3);
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<?>> pending = new ArrayList<>(users.size());
+        for (int u = 0; u < users.size(); u++) {
+            inFlight.acquireUninterruptibly();
+            long t = System.nanoTime();
+            pending.add(users.get(u).connect(clients.get(u % clients.size()), endpoint)
+                    .whenComplete((w, e) -> {
+                        inFlight.release();
+                        if (e == null) times.recordValue((System.nanoTime() - t) / 1_000);
+                    }));
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        return times.getIntervalHistogram();
+    }
+
+    /**
+     * מנתקת load.reconnectFraction מהמשתמשים ומחברת את כולם מחדש בבת אחת
+     * @return הזמן מהחיבור מחדש ועד שהחיבור נפתח, במיקרו-שניות
+     */
+    private static Histogram reconnectStorm(List<SimulatedUser> users, List<HttpClient> clients, URI endpoint) {
+        List<SimulatedUser> storm = users.subList(0, (int) (users.size() * RECONNECT_FRACTION));
+        CompletableFuture.allOf(storm.stream().map(SimulatedUser::close).toArray(CompletableFuture[]::new)).join();
+        return connectAll(storm, clients, endpoint, Integer.MAX_VALUE);
+    }
+
+    private void awaitSessions(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+        while (meters.get("chat.ws.sessions.active").gauge().value() < count && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    /** ממתינה עד שלא מגיעות עוד הודעות (או 30 שניות) */
+    private static void awaitQuiet(SimulatedUser.Stats stats) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        long last;
+        do {
+            last = stats.delivered.sum();
+            Thread.sleep(500);
+        } while (stats.delivered.sum() != last && System.nanoTime() < deadline);
+    }
+
+    private double count(String name) {
+        return meters.find(name).counters().stream().mapToDouble(c -> c.count()).sum();
+    }
+
+    private static double ms(Histogram h, double percentile) {
+        return h.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static long heapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,117 @@
+package com.assignmenthasan.chatapp.load;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import com.assignmenthasan.chatapp.model.UserSequence;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+
+/**
+ * MongoTemplate בזיכרון לבדיקת העומס
+ * מממש רק את מה שנתיב ה-WebSocket ועליית השרת צריכים: כתיבת הודעות מאושרת מיד (ונספרת, בלי לשמור את המסמכים,
+ * כך שהזיכרון משקף את החיבורים), מוני רצף המסירה (כולל החזרת טווח שלא נוצל), ועדכוני שיחות ואינדקסים שלא עושים כלום.
+ * קריאות מחזירות תוצאה ריקה; כל פעולה אחרת מגיעה ל-MongoTemplate האמיתי ונכשלת בלי שרת, כדי שיהיה ברור שהיא חסרה.
+ */
+class InMemoryMongoTemplate extends MongoTemplate {
+
+    private final ConcurrentHashMap<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final AtomicLong inserted = new AtomicLong();
+
+    InMemoryMongoTemplate(MongoDatabaseFactory factory, MongoConverter converter) {
+        super(factory, converter);
+    }
+
+    /**
+     * @return מספר המסמכים שנכתבו מתחילת הריצה
+     */
+    long inserted() {
+        return inserted.get();
+    }
+
+    @Override
+    public <T> Collection<T> insert(Collection<? extends T> batch, Class<?> entityClass) {
+        inserted.addAndGet(batch.size());
+        return new ArrayList<>(batch);
+    }
+
+    @Override
+    public <T> T findAndModify(Query query, UpdateDefinition update, FindAndModifyOptions options,
+                               Class<T> entityClass) {
+        // DeliverySequences: $inc על seq של משתמש אחד, upsert ו-returnNew
+        String uid = (String) query.getQueryObject().get("_id");
+        int count = ((Number) update.getUpdateObject().get("$inc", Document.class).get("seq")).intValue();
+        long seq = sequences.computeIfAbsent(uid, k -> new AtomicLong()).addAndGet(count);
+        return entityClass.cast(new UserSequence(uid, seq));
+    }
+
+    @Override
+    public UpdateResult updateFirst(Query query, UpdateDefinition update, Class<?> entityClass) {
+        // DeliverySequences: החזרת סוף טווח שלא נוצל, רק אם המונה לא זז
+        Document filter = query.getQueryObject();
+        AtomicLong seq = sequences.get((String) filter.get("_id"));
+        long expected = ((Number) filter.get("seq")).longValue();
+        long value = ((Number) update.getUpdateObject().get("$set", Document.class).get("seq")).longValue();
+        long modified = seq != null && seq.compareAndSet(expected, value) ? 1 : 0;
+        return UpdateResult.acknowledged(modified, modified, null);
+    }
+
+    @Override
+    public <T> List<T> find(Query query, Class<T> entityClass, String collectionName) {
+        return List.of();
+    }
+
+    @Override
+    public <T> T findOne(Query query, Class<T> entityClass, String collectionName) {
+        return null;
+    }
+
+    @Override
+    public <T> T findById(Object id, Class<T> entityClass, String collectionName) {
+        return null;
+    }
+
+    @Override
+    public BulkOperations bulkOps(BulkOperations.BulkMode mode, Class<?> entityClass) {
+        return noOp(BulkOperations.class);
+    }
+
+    @Override
+    public IndexOperations indexOps(Class<?> entityClass) {
+        return noOp(IndexOperations.class);
+    }
+
+    /** מימוש שמקבל כל קריאה: שרשור מחזיר את עצמו, execute מחזיר תוצאה לא מאושרת, וכל השאר ריק */
+    private static <T> T noOp(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "equals": return proxy == args[0];
+                        case "hashCode": return System.identityHashCode(proxy);
+                        case "toString": return "no-op " + type.getSimpleName();
+                        default: break;
+                    }
+                    Class<?> ret = method.getReturnType();
+                    if (ret.isInstance(proxy)) return proxy;
+                    if (ret == BulkWriteResult.class) return BulkWriteResult.unacknowledged();
+                    if (ret == List.class) return List.of();
+                    if (ret == String.class) return "";
+                    if (ret == boolean.class) return false;
+                    return null;
+                }));
+    }
+}
@@ -0,0 +1,52 @@
+package com.assignmenthasan.chatapp.load;
+
+import java.lang.reflect.Constructor;
+import java.util.Map;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import com.assignmenthasan.chatapp.config.TokenCacheProperties;
+import com.assignmenthasan.chatapp.security.TokenVerifier;
+import com.google.firebase.auth.FirebaseToken;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * השרת שבדיקת העומס מריצה בתוך התהליך: אחסון בזיכרון במקום MongoDB ואימות מדומה במקום Firebase.
+ * הטוקן של כל משתמש מדומה הוא פשוט ה-uid שלו.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+class LoadTestConfig {
+
+    /**
+     * בשם mongoTemplate, כך שהתצורה האוטומטית של Spring Data לא יוצרת את האמיתי והמאגרים משתמשים בזה
+     */
+    @Bean
+    InMemoryMongoTemplate mongoTemplate(MongoDatabaseFactory factory, MappingMongoConverter converter) {
+        return new InMemoryMongoTemplate(factory, converter);
+    }
+
+    @Bean
+    @Primary
+    TokenVerifier stubTokenVerifier(MeterRegistry meterRegistry) throws ReflectiveOperationException {
+        // לבנאי של FirebaseToken אין גישה ציבורית; הטענות הן כל מה שהשרת קורא ממנו
+        Constructor<FirebaseToken> ctor = FirebaseToken.class.getDeclaredConstructor(Map.class);
+        ctor.setAccessible(true);
+        long exp = System.currentTimeMillis() / 1000 + 24 * 3600;
+        return new TokenVerifier(new TokenCacheProperties(), meterRegistry) {
+            @Override
+            public FirebaseToken verify(String idToken) {
+                if (idToken == null || idToken.isBlank()) throw new IllegalArgumentException("ID token must not be empty");
+                try {
+                    return ctor.newInstance(Map.of("sub", idToken, "exp", exp));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+}
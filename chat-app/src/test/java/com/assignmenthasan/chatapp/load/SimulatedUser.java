@@ -0,0 +1,173 @@
+package com.assignmenthasan.chatapp.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.HdrHistogram.Recorder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * משתמש מדומה אחד עם חיבור WebSocket אחד
+ * תוכן כל הודעה מתחיל בזמן (nanoTime) שבו היא הייתה אמורה לצאת, והנמען רושם את הזמן עד שהגיעה אליו.
+ * צרכן איטי מבקש את המסגרת הבאה רק אחרי השהיה, כך שה-TCP מתמלא והתור בשרת גדל.
+ */
+final class SimulatedUser implements WebSocket.Listener {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** מונים ורישום זמנים משותפים לכל המשתמשים בריצה */
+    static final class Stats {
+        final Recorder latency = new Recorder(3);
+        final Recorder slowLatency = new Recorder(3);
+        final LongAdder delivered = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        /** הודעות שיצאו לפני הזמן הזה שייכות לחימום ולא נספרות */
+        volatile long measureFrom = Long.MAX_VALUE;
+    }
+
+    final String uid;
+    private final boolean slow;
+    private final long readDelayMillis;
+    private final Stats stats;
+    private final ScheduledExecutorService delays;
+
+    private final ReentrantLock sendLock = new ReentrantLock();
+    /** ה-API מרשה שליחה אחת בכל רגע; כל שליחה מחכה לקודמת */
+    private CompletableFuture<?> sending = CompletableFuture.completedFuture(null);
+    private final StringBuilder partial = new StringBuilder();
+    private volatile WebSocket ws;
+    private volatile boolean open;
+
+    SimulatedUser(String uid, boolean slow, long readDelayMillis, Stats stats, ScheduledExecutorService delays) {
+        this.uid = uid;
+        this.slow = slow;
+        this.readDelayMillis = readDelayMillis;
+        this.stats = stats;
+        this.delays = delays;
+    }
+
+    /**
+     * @param client לקוח ה-HTTP שפותח את החיבור
+     * @param endpoint כתובת /ws/chat של השרת
+     * @return מושלם כשהחיבור פתוח
+     */
+    CompletableFuture<WebSocket> connect(HttpClient client, URI endpoint) {
+        return client.newWebSocketBuilder()
+                .buildAsync(URI.create(endpoint + "?token=" + uid), this)
+                .thenApply(w -> {
+                    ws = w;
+                    return w;
+                });
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * שולחת הודעה לנמען; לא חוסמת
+     * @param to הנמען
+     * @param intendedAt הזמן (nanoTime) שבו ההודעה הייתה אמורה לצאת לפי הקצב, כך שעיכוב אצל השולח נספר
+     * @param padding מילוי עד גודל ההודעה
+     * @return false אם החיבור סגור
+     */
+    boolean send(SimulatedUser to, long intendedAt, String padding) {
+        WebSocket w = ws;
+        if (w == null || !open) return false;
+        String frame = "{\"senderId\":\"" + uid + "\",\"receiverId\":\"" + to.uid
+                + "\",\"message\":\"" + intendedAt + " " + padding + "\"}";
+        sendLock.lock();
+        try {
+            sending = sending.handle((v, e) -> null).thenCompose(v -> w.sendText(frame, true));
+        } finally {
+            sendLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * סוגרת את החיבור ומחכה לאישור מהשרת
+     */
+    CompletableFuture<?> close() {
+        WebSocket w = ws;
+        open = false;
+        if (w == null) return CompletableFuture.completedFuture(null);
+        sendLock.lock();
+        try {
+            sending = sending.handle((v, e) -> null).thenCompose(v -> w.sendClose(WebSocket.NORMAL_CLOSURE, ""));
+            return sending.orTimeout(10, TimeUnit.SECONDS).exceptionally(e -> null);
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        open = true;
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        partial.append(data);
+        if (last) {
+            received(partial.toString());
+            partial.setLength(0);
+        }
+        if (slow) {
+            delays.schedule(() -> webSocket.request(1), readDelayMillis, TimeUnit.MILLISECONDS);
+        } else {
+            webSocket.request(1);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        open = false;
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        open = false;
+        stats.errors.increment();
+    }
+
+    private void received(String text) {
+        long now = System.nanoTime();
+        try {
+            JsonNode node = MAPPER.readTree(text);
+            if (node.isArray()) {
+                for (JsonNode n : node) received(n, now);
+            } else {
+                received(node, now);
+            }
+        } catch (Exception e) {
+            stats.errors.increment();
+        }
+    }
+
+    private void received(JsonNode node, long now) {
+        if (node.has("error")) {
+            stats.errors.increment();
+            return;
+        }
+        // ההודעה חוזרת גם למכשירי השולח; רק הנמען מודד
+        if (!uid.equals(node.path("receiverId").asText()) || !node.has("message")) return;
+        String message = node.get("message").asText();
+        long sentAt = Long.parseLong(message.substring(0, message.indexOf(' ')));
+        if (sentAt < stats.measureFrom) return;
+        stats.delivered.increment();
+        (slow ? stats.slowLatency : stats.latency).recordValue(Math.max(0, (now - sentAt) / 1_000));
+    }
+}
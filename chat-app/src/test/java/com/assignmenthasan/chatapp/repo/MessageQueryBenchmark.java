@@ -0,0 +1,101 @@
+package com.assignmenthasan.chatapp.repo;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+/**
+ * השוואת זמני שאילתת היסטוריה לפני ואחרי conversationKey, על 1M ו-10M הודעות
+ * דורש MongoDB אמיתי: mvn test -Pbench -Dbench.mongo.uri=mongodb://localhost:27017
+ * (אפשר לשנות גדלים עם -Dbench.sizes=1000000,10000000)
+ */
+@Tag("benchmark")
+class MessageQueryBenchmark {
+
+    private static final int USERS = 20_000;
+    private static final int QUERIES = 500;
+
+    @Test
+    void historyQueryBeforeAndAfterConversationKey() {
+        String uri = System.getProperty("bench.mongo.uri");
+        assumeTrue(uri != null, "bench.mongo.uri not set");
+        long[] sizes = Arrays.stream(System.getProperty("bench.sizes", "1000000,10000000").split(","))
+                .mapToLong(Long::parseLong).toArray();
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoTemplate mongo = new MongoTemplate(client, "chatapp_bench");
+            for (long size : sizes) {
+                mongo.dropCollection("messages");
+                seed(mongo, size);
+
+                // לפני: השאילתה הישנה (OR על שולח/נמען) בלי אינדקס מתאים
+                Random r = new Random(1);
+                String before = measure(() -> {
+                    String a = "u" + r.nextInt(USERS), b = "u" + r.nextInt(USERS);
+                    return new Query(new Criteria().orOperator(
+                            Criteria.where("senderId").is(a).and("receiverId").is(b),
+                            Criteria.where("senderId").is(b).and("receiverId").is(a)));
+                }, mongo);
+
+                // אחרי: מפתח שיחה + אינדקס מורכב
+                mongo.indexOps("messages").createIndex(new Index().on("conversationKey", Sort.Direction.ASC)
+                        .on("timestamp", Sort.Direction.DESC).on("_id", Sort.Direction.DESC));
+                Random r2 = new Random(1);
+                String after = measure(() -> new Query(Criteria.where("conversationKey")
+                        .is(Conversation.keyOf("u" + r2.nextInt(USERS), "u" + r2.nextInt(USERS)))), mongo);
+
+                System.out.printf("messages=%,d before[%s] after[%s]%n", size, before, after);
+            }
+            mongo.getDb().drop();
+        }
+    }
+
+    private static void seed(MongoTemplate mongo, long size) {
+        Random r = new Random(42);
+        long t0 = Instant.now().toEpochMilli() - size;
+        List<Document> batch = new ArrayList<>(10_000);
+        for (long i = 0; i < size; i++) {
+            String a = "u" + r.nextInt(USERS);
+            String b = "u" + r.nextInt(USERS);
+            batch.add(new Document("senderId", a).append("receiverId", b)
+                    .append("conversationKey", Conversation.keyOf(a, b))
+                    .append("timestamp", new java.util.Date(t0 + i))
+                    .append("message", "message " + i));
+            if (batch.size() == 10_000) {
+                mongo.getCollection("messages").insertMany(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) mongo.getCollection("messages").insertMany(batch);
+    }
+
+    private static String measure(Supplier<Query> queries, MongoTemplate mongo) {
+        long[] nanos = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            Query q = queries.get().with(Sort.by(Sort.Direction.DESC, "timestamp")).limit(50);
+            long start = System.nanoTime();
+            mongo.find(q, Document.class, "messages");
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return String.format("p50=%.2fms p99=%.2fms", nanos[QUERIES / 2] / 1e6, nanos[QUERIES * 99 / 100] / 1e6);
+    }
+}
@@ -0,0 +1,59 @@
+package com.assignmenthasan.chatapp.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.assignmenthasan.chatapp.config.RateLimitProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RateLimitFilterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final RateLimitProperties props = new RateLimitProperties();
+    private final RateLimiter limiter;
+    private final RateLimitFilter filter;
+
+    RateLimitFilterTest() {
+        props.setRest(new RateLimitProperties.Limit(1, 3));
+        props.setLookup(new RateLimitProperties.Limit(1, 1));
+        props.setStrikes(new RateLimitProperties.Limit(1, 100));
+        limiter = new RateLimiter(props, new SimpleMeterRegistry(), clock::get);
+        filter = new RateLimitFilter(limiter, RateLimitFilter.Scope.USER);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        limiter.stop();
+    }
+
+    private int status(String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+
+    @Test
+    void rejectedLookupDoesNotCountAgainstTheRestLimit() throws Exception {
+        assertEquals(200, status(RateLimitFilter.LOOKUP_PATH));
+        assertEquals(429, status(RateLimitFilter.LOOKUP_PATH));
+        // הדחייה החזירה את האסימון הכללי: נשארו שתי בקשות מתוך שלוש
+        assertEquals(200, status("/api/conversations"));
+        assertEquals(200, status("/api/conversations"));
+        assertEquals(429, status("/api/conversations"));
+    }
+}
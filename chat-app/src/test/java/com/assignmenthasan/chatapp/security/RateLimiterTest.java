@@ -0,0 +1,140 @@
+package com.assignmenthasan.chatapp.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.assignmenthasan.chatapp.config.RateLimitProperties;
+import com.assignmenthasan.chatapp.security.RateLimiter.Kind;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+    private final RateLimitProperties props = new RateLimitProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RateLimiter limiter;
+
+    RateLimiterTest() {
+        props.setMessage(new RateLimitProperties.Limit(10, 5));
+        props.setStrikes(new RateLimitProperties.Limit(1, 3));
+        limiter = new RateLimiter(props, registry, clock::get);
+    }
+
+    @AfterEach
+    void tearDown() {
+        limiter.stop();
+    }
+
+    private void advanceMillis(long ms) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    @Test
+    void burstThenRefillAtTheConfiguredRate() {
+        for (int i = 0; i < 5; i++) assertEquals(0, limiter.acquire(Kind.MESSAGE, "alice", 1));
+        assertEquals(100, limiter.acquire(Kind.MESSAGE, "alice", 1));
+        // משתמש אחר לא מושפע
+        assertEquals(0, limiter.acquire(Kind.MESSAGE, "bob", 1));
+
+        advanceMillis(100);
+        assertEquals(0, limiter.acquire(Kind.MESSAGE, "alice", 1));
+        assertTrue(limiter.acquire(Kind.MESSAGE, "alice", 1) > 0);
+
+        assertEquals(7.0, registry.counter("chat.ratelimit", "kind", "message", "result", "admitted").count());
+        assertEquals(2.0, registry.counter("chat.ratelimit", "kind", "message", "result", "rejected").count());
+    }
+
+    @Test
+    void batchThatDoesNotFitTakesNothing() {
+        assertEquals(0, limiter.acquire(Kind.MESSAGE, "alice", 3));
+        assertEquals(100, limiter.acquire(Kind.MESSAGE, "alice", 3));
+        assertEquals(0, limiter.acquire(Kind.MESSAGE, "alice", 2));
+        // יותר מהפרץ לא יעבור לעולם, אבל ההמתנה המדווחת היא לכל הפחות עד שהדלי מלא
+        advanceMillis(1_000);
+        assertTrue(limiter.acquire(Kind.MESSAGE, "alice", 6) > 0);
+    }
+
+    @Test
+    void releaseGivesBackWhatWasTaken() {
+        assertEquals(0, limiter.acquire(Kind.MESSAGE, "alice", 4));
+        limiter.release(Kind.MESSAGE, "alice", 4);
+        // הדלי חזר למלא: כל הפרץ זמין שוב
+        assertEquals(0, limiter.acquire(Kind.MESSAGE, "alice", 5));
+        assertTrue(limiter.acquire(Kind.MESSAGE, "alice", 1) > 0);
+
+        // החזרה לא ממלאת מעבר לקיבולת
+        limiter.release(Kind.MESSAGE, "bob", 3);
+        assertEquals(0, limiter.acquire(Kind.MESSAGE, "bob", 5));
+        assertTrue(limiter.acquire(Kind.MESSAGE, "bob", 1) > 0);
+    }
+
+    @Test
+    void idleKeysAreSwept() {
+        for (int u = 0; u < 1_000; u++) limiter.acquire(Kind.MESSAGE, "u" + u, 1);
+        limiter.acquire(Kind.MESSAGE, "busy", 5);
+        assertEquals(1_001, limiter.tracked(Kind.MESSAGE));
+
+        advanceMillis(200);
+        limiter.sweep();
+        assertEquals(1, limiter.tracked(Kind.MESSAGE));
+
+        advanceMillis(500);
+        limiter.sweep();
+        assertEquals(0, limiter.tracked(Kind.MESSAGE));
+    }
+
+    @Test
+    void repeatedRejectionsCloseTheOffender() {
+        assertFalse(limiter.strike("mallory"));
+        assertFalse(limiter.strike("mallory"));
+        assertFalse(limiter.strike("mallory"));
+        assertTrue(limiter.strike("mallory"));
+        assertEquals(1.0, registry.counter("chat.ratelimit.closed").count());
+
+        advanceMillis(1_000);
+        assertFalse(limiter.strike("mallory"));
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheBurst() throws Exception {
+        int threads = 8;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1_000; i++) {
+                    if (limiter.acquire(Kind.MESSAGE, "alice", 1) == 0) admitted.incrementAndGet();
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(5, admitted.get());
+    }
+
+    @Test
+    void disabledAdmitsEverything() {
+        props.setEnabled(false);
+        for (int i = 0; i < 100; i++) assertEquals(0, limiter.acquire(Kind.MESSAGE, "alice", 1));
+        assertEquals(0, limiter.tracked(Kind.MESSAGE));
+    }
+}
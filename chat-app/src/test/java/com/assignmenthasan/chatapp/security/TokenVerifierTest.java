@@ -0,0 +1,106 @@
+package com.assignmenthasan.chatapp.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.assignmenthasan.chatapp.config.TokenCacheProperties;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseToken;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TokenVerifierTest {
+
+    private FirebaseAuth auth;
+    private SimpleMeterRegistry registry;
+    private TokenVerifier verifier;
+
+    @BeforeEach
+    void setUp() {
+        auth = mock(FirebaseAuth.class);
+        registry = new SimpleMeterRegistry();
+        TokenCacheProperties props = new TokenCacheProperties();
+        props.setMaxEntries(3);
+        verifier = new TokenVerifier(() -> auth, props, registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        verifier.stop();
+    }
+
+    private static FirebaseToken tokenExpiringIn(long seconds) {
+        FirebaseToken token = mock(FirebaseToken.class);
+        long exp = System.currentTimeMillis() / 1000 + seconds;
+        when(token.getClaims()).thenReturn(Map.of("exp", exp));
+        return token;
+    }
+
+    @Test
+    void repeatedTokenIsVerifiedOnce() throws Exception {
+        FirebaseToken decoded = tokenExpiringIn(3600);
+        when(auth.verifyIdToken("t1")).thenReturn(decoded);
+
+        assertSame(decoded, verifier.verify("t1"));
+        assertSame(decoded, verifier.verify("t1"));
+        assertSame(decoded, verifier.verify("t1"));
+
+        verify(auth, times(1)).verifyIdToken("t1");
+        assertEquals(2.0, registry.counter("chat.auth.token.cache", "result", "hit").count());
+        assertEquals(1.0, registry.counter("chat.auth.token.cache", "result", "miss").count());
+    }
+
+    @Test
+    void expiredTokenIsNotCached() throws Exception {
+        FirebaseToken decoded = tokenExpiringIn(-1);
+        when(auth.verifyIdToken("old")).thenReturn(decoded);
+
+        verifier.verify("old");
+        verifier.verify("old");
+
+        verify(auth, times(2)).verifyIdToken("old");
+        assertEquals(0, verifier.cacheSize());
+    }
+
+    @Test
+    void cacheStaysBounded() throws Exception {
+        FirebaseToken decoded = tokenExpiringIn(3600);
+        when(auth.verifyIdToken(anyString())).thenReturn(decoded);
+
+        for (int i = 0; i < 20; i++) verifier.verify("t" + i);
+
+        assertTrue(verifier.cacheSize() <= 3, "cache size " + verifier.cacheSize());
+    }
+
+    @Test
+    void blankTokenIsRejectedWithoutCallingFirebase() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> verifier.verify(" "));
+        verify(auth, times(0)).verifyIdToken(anyString());
+        assertEquals(1.0, registry.counter("chat.auth.failures").count());
+    }
+
+    @Test
+    void backgroundRefreshReverifiesLastValidToken() throws Exception {
+        FirebaseToken decoded = tokenExpiringIn(3600);
+        when(auth.verifyIdToken("t1")).thenReturn(decoded);
+        verifier.verify("t1");
+
+        verifier.backgroundRefresh();
+
+        verify(auth, times(2)).verifyIdToken("t1");
+        assertEquals(1, verifier.cacheSize());
+    }
+}
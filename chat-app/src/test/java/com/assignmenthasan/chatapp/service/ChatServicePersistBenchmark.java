@@ -0,0 +1,151 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import com.assignmenthasan.chatapp.config.ConversationProperties;
+import com.assignmenthasan.chatapp.config.DeliveryProperties;
+import com.assignmenthasan.chatapp.config.HistoryCacheProperties;
+import com.assignmenthasan.chatapp.config.PersistenceProperties;
+import com.assignmenthasan.chatapp.config.SearchProperties;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.model.UserSequence;
+import com.assignmenthasan.chatapp.store.MessageStore;
+import com.assignmenthasan.chatapp.store.MongoMessageStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * ChatService.persist מול מסד בזיכרון: הקצאת מספרי מסירה, תור הכתיבה הדחויה ו-insertMany
+ * MongoTemplate מוחלף במפות בזיכרון (ההתראות, שלא נקראות ב-persist, במוק), כך שנמדדים ההקצאה, התור, האיסוף לאצוות וההמתנה לאישור בלי הרשת.
+ * עם awaitAck=true הזמן כולל את ההמתנה לאצווה (flushInterval), כמו בשרת.
+ * mvn test -Pbench -Dtest=ChatServicePersistBenchmark, או כל הבנצ'מרקים ל-JSON: mvn test -Pjmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ChatServicePersistBenchmark {
+
+    private static final int USERS = 1_000;
+
+    @Param({ "true", "false" })
+    public boolean awaitAck;
+
+    /** המסמכים "במסד"; מתרוקן בכל איטרציה כדי שהזיכרון לא יגדל לאורך הריצה */
+    private final ConcurrentHashMap<String, Message> stored = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    private MessageWriteBehind writeBehind;
+    private ChatService chatService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        // MongoTemplate בזיכרון בלי Mockito בנתיב הנמדד; ה-factory המדומה נקרא רק בבנאי
+        MongoDatabaseFactory factory = mock(MongoDatabaseFactory.class);
+        when(factory.getExceptionTranslator()).thenReturn(new MongoExceptionTranslator());
+        MongoTemplate mongo = new MongoTemplate(factory) {
+            @Override
+            public <T> Collection<T> insert(Collection<? extends T> batch, Class<?> entityClass) {
+                for (T o : batch) stored.put(((Message) o).getId(), (Message) o);
+                @SuppressWarnings("unchecked")
+                Collection<T> out = (Collection<T>) batch;
+                return out;
+            }
+
+            @Override
+            public <T> T findAndModify(Query query, UpdateDefinition update, FindAndModifyOptions options,
+                                       Class<T> entityClass) {
+                String uid = (String) query.getQueryObject().get("_id");
+                int count = ((Number) update.getUpdateObject().get("$inc", Document.class).get("seq")).intValue();
+                long seq = sequences.computeIfAbsent(uid, k -> new AtomicLong()).addAndGet(count);
+                return entityClass.cast(new UserSequence(uid, seq));
+            }
+        };
+        MessageStore store = new MongoMessageStore(mongo);
+        ConversationIndex conversations = new ConversationIndex(mongo, null, new ConversationProperties(), meters) {
+            @Override
+            public void onPersisted(List<Message> docs) {
+            }
+        };
+
+        SearchProperties noSearch = new SearchProperties();
+        noSearch.setEnabled(false);
+
+        PersistenceProperties props = new PersistenceProperties();
+        props.setAwaitAck(awaitAck);
+        props.setFlushInterval(Duration.ofMillis(1));
+        writeBehind = new MessageWriteBehind(store, props, conversations,
+                new HotConversationCache(new HistoryCacheProperties(), meters), new MessageSearch(noSearch, meters),
+                meters);
+        writeBehind.start();
+        chatService = new ChatService(writeBehind, props,
+                mock(NotificationDispatcher.class),
+                new DeliverySequences(store, new DeliveryProperties(), meters));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        stored.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        writeBehind.stop();
+    }
+
+    @Benchmark
+    public Message persist() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setSenderId("u" + rnd.nextInt(USERS));
+        dto.setReceiverId("v" + rnd.nextInt(USERS));
+        dto.setMessage("are we still meeting at 6pm today?");
+        return chatService.persist(dto);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder().include(ChatServicePersistBenchmark.class.getName()).build()).run();
+    }
+}
@@ -0,0 +1,130 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.assignmenthasan.chatapp.config.ConversationProperties;
+import com.assignmenthasan.chatapp.dto.Receipt;
+import com.assignmenthasan.chatapp.model.AppUser;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.repo.AppUserRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ConversationIndexTest {
+
+    private final MongoTemplate mongo = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final AppUserRepository users = mock(AppUserRepository.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConversationIndex index;
+
+    ConversationIndexTest() {
+        when(mongo.bulkOps(BulkOperations.BulkMode.ORDERED, Conversation.class)).thenReturn(bulk);
+        ConversationProperties props = new ConversationProperties();
+        props.setPreviewLength(5);
+        index = new ConversationIndex(mongo, users, props, registry);
+    }
+
+    private static Message msg(String id, String from, String to, long epochSecond, String text) {
+        return Message.builder().id(id).senderId(from).receiverId(to)
+                .timestamp(Instant.ofEpochSecond(epochSecond)).message(text).build();
+    }
+
+    @Test
+    void pairKeyIsTheSameInBothDirections() {
+        assertThat(Conversation.keyOf("bob", "alice")).isEqualTo("alice|bob");
+        assertThat(Conversation.keyOf("alice", "bob")).isEqualTo("alice|bob");
+    }
+
+    @Test
+    void onlyTheNewestMessagePerPairIsWritten() {
+        when(users.findAllById(anyIterable())).thenReturn(List.of(
+                AppUser.builder().uid("alice").email("alice@example.com").build()));
+
+        index.apply(List.of(
+                msg("m1", "alice", "bob", 10, "first"),
+                msg("m2", "bob", "alice", 30, "newest reply"),
+                msg("m3", "alice", "bob", 20, "middle"),
+                msg("m4", "alice", "carol", 5, "hi")));
+
+        ArgumentCaptor<Query> ensured = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> ensureUpdates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).upsert(ensured.capture(), ensureUpdates.capture());
+        assertThat(ensured.getAllValues()).extracting(q -> q.getQueryObject().get("_id"))
+                .containsExactly("alice|bob", "alice|carol");
+        assertThat(ensureUpdates.getValue().getUpdateObject().get("$set", Document.class))
+                .containsEntry("emails.alice", "alice@example.com");
+
+        ArgumentCaptor<Update> lastUpdates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).updateOne(any(Query.class), lastUpdates.capture());
+        Document set = lastUpdates.getAllValues().get(0).getUpdateObject().get("$set", Document.class);
+        assertThat(set).containsEntry("lastMessageId", "m2")
+                .containsEntry("lastSenderId", "bob")
+                .containsEntry("preview", "newes");
+        verify(bulk).execute();
+    }
+
+    @Test
+    void lastMessageUpdateIsConditionalOnOlderTimestamp() {
+        index.apply(List.of(msg("m1", "alice", "bob", 10, "x")));
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(bulk).updateOne(q.capture(), any(Update.class));
+        assertThat(q.getValue().getQueryObject().toString()).contains("lastTimestamp").contains("$lt").contains("$exists");
+    }
+
+    @Test
+    void failuresDoNotPropagateFromPersistHook() {
+        when(mongo.bulkOps(eq(BulkOperations.BulkMode.ORDERED), eq(Conversation.class)))
+                .thenThrow(new IllegalStateException("down"));
+        when(users.findAllById(anyIterable())).thenReturn(List.of());
+
+        index.onPersisted(List.of(msg("m1", "alice", "bob", 10, "x")));
+
+        assertThat(registry.get("chat.conversations.update.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void receiptsAreOneMaxUpdatePerConversation() {
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, Conversation.class)).thenReturn(bulk);
+
+        index.advanceReceipts(List.of(new Receipt("alice|bob", "bob", 9L, 7L), new Receipt("bob|carol", "bob", 2L, null)));
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).updateOne(q.capture(), u.capture());
+        assertThat(q.getAllValues()).extracting(x -> x.getQueryObject().get("_id")).containsExactly("alice|bob", "bob|carol");
+        // $max: אישור ישן שמגיע באיחור לא מחזיר את הסימן אחורה
+        assertThat(u.getAllValues().get(0).getUpdateObject().get("$max", Document.class))
+                .containsEntry("delivered.bob", 9L).containsEntry("read.bob", 7L);
+        assertThat(u.getAllValues().get(1).getUpdateObject().get("$max", Document.class))
+                .containsOnlyKeys("delivered.bob");
+        verify(bulk).execute();
+    }
+
+    @Test
+    void emptyBatchTouchesNothing() {
+        index.apply(List.of());
+        verify(mongo, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(Conversation.class));
+    }
+}
@@ -0,0 +1,158 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.DeliveryProperties;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.store.MessageStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class DeliverySequencesTest {
+
+    private final MessageStore store = mock(MessageStore.class);
+    private final DeliveryProperties props = new DeliveryProperties();
+    private final DeliverySequences sequences = new DeliverySequences(store, props, new SimpleMeterRegistry());
+    private final ClusterRouter cluster = mock(ClusterRouter.class);
+    private final AtomicBoolean sole = new AtomicBoolean(true);
+    /** המונים במאגר המדומה */
+    private final Map<String, Long> counters = new HashMap<>();
+
+    DeliverySequencesTest() {
+        when(store.allocateSeq(anyString(), anyInt())).thenAnswer(
+                inv -> counters.merge(inv.getArgument(0), ((Integer) inv.getArgument(1)).longValue(), Long::sum));
+        when(store.releaseSeq(anyString(), anyLong(), anyLong())).thenAnswer(inv -> {
+            String uid = inv.getArgument(0);
+            if (!counters.get(uid).equals(inv.getArgument(1))) return false;
+            counters.put(uid, inv.getArgument(2));
+            return true;
+        });
+        when(store.currentSeq(anyString())).thenAnswer(inv -> counters.getOrDefault(inv.getArgument(0), 0L));
+        when(cluster.isSoleNode()).thenAnswer(inv -> sole.get());
+    }
+
+    private DeliverySequences clustered() {
+        return new DeliverySequences(store, props, new SimpleMeterRegistry(), cluster);
+    }
+
+    private static Message msg(String from, String to) {
+        return Message.builder().senderId(from).receiverId(to).message("x").build();
+    }
+
+    @Test
+    void batchGetsContiguousNumbersWithOneAllocationPerUser() {
+        counters.put("bob", 41L);
+        List<Message> batch = List.of(msg("alice", "bob"), msg("alice", "carol"), msg("alice", "bob"));
+
+        sequences.assign(batch);
+
+        assertThat(batch).extracting(Message::getSenderSeq).containsExactly(1L, 2L, 3L);
+        assertThat(batch).extracting(Message::getReceiverSeq).containsExactly(42L, 1L, 43L);
+        assertThat(batch.get(1).seqOf("carol")).isEqualTo(1L);
+        assertThat(batch.get(1).seqOf("alice")).isEqualTo(2L);
+        // alice, bob, carol – פנייה אחת לכל משתמש ולא לכל הודעה
+        verify(store, times(3)).allocateSeq(anyString(), anyInt());
+    }
+
+    @Test
+    void laterBatchesContinueTheSameSequence() {
+        sequences.assign(List.of(msg("alice", "bob")));
+        Message reply = msg("bob", "alice");
+        sequences.assign(List.of(reply));
+
+        assertThat(reply.getSenderSeq()).isEqualTo(2L);
+        assertThat(reply.getReceiverSeq()).isEqualTo(2L);
+    }
+
+    @Test
+    void disabledSequencesLeaveMessagesUnnumbered() {
+        props.setSequences(false);
+        Message m = msg("alice", "bob");
+
+        sequences.assign(List.of(m));
+
+        assertThat(m.getSenderSeq()).isNull();
+        verifyNoInteractions(store);
+    }
+
+    @Test
+    void soleNodeServesManyMessagesFromOneReservation() {
+        for (int i = 0; i < 50; i++) sequences.assign(List.of(msg("alice", "bob")));
+
+        assertThat(sequences.current("alice")).isEqualTo(50L);
+        assertThat(counters.get("alice")).isEqualTo(100L);
+        // פנייה אחת לכל משתמש במקום חמישים
+        verify(store, times(2)).allocateSeq(anyString(), anyInt());
+    }
+
+    @Test
+    void reservationContinuesWhenTheBlockRunsOut() {
+        props.setSeqBlockSize(3);
+        List<Long> seqs = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Message m = msg("alice", "bob");
+            sequences.assign(List.of(m));
+            seqs.add(m.getSenderSeq());
+        }
+
+        assertThat(seqs).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+    }
+
+    @Test
+    void withPeersEveryAllocationGoesToTheStore() {
+        sole.set(false);
+        DeliverySequences seqs = clustered();
+
+        for (int i = 0; i < 3; i++) seqs.assign(List.of(msg("alice", "bob")));
+
+        assertThat(counters.get("alice")).isEqualTo(3L);
+        assertThat(seqs.current("alice")).isEqualTo(3L);
+        verify(store, times(6)).allocateSeq(anyString(), anyInt());
+    }
+
+    @Test
+    void peerJoiningGivesBackTheUnusedNumbers() {
+        DeliverySequences seqs = clustered();
+        seqs.assign(List.of(msg("alice", "bob")));
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        verify(cluster).onPeersChanged(listener.capture());
+
+        sole.set(false);
+        listener.getValue().run();
+        Message next = msg("alice", "bob");
+        seqs.assign(List.of(next));
+
+        assertThat(next.getSenderSeq()).isEqualTo(2L);
+        assertThat(next.getReceiverSeq()).isEqualTo(2L);
+        assertThat(counters.get("alice")).isEqualTo(2L);
+    }
+
+    @Test
+    void releaseKeepsACounterThatMovedSinceTheReservation() {
+        sequences.assign(List.of(msg("alice", "bob")));
+        counters.merge("alice", 1L, Long::sum);
+
+        sequences.releaseBlocks();
+
+        assertThat(counters.get("alice")).isEqualTo(101L);
+        assertThat(sequences.current("alice")).isEqualTo(101L);
+    }
+}
@@ -0,0 +1,139 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.GroupProperties;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.mongodb.client.result.UpdateResult;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GroupDirectoryTest {
+
+    private static final String GID = "g_1";
+
+    private final MongoTemplate mongo = mock(MongoTemplate.class);
+    private final GroupProperties props = new GroupProperties();
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final GroupDirectory groups = new GroupDirectory(mongo, props, meters);
+
+    private void stored(String... members) {
+        Conversation doc = new Conversation();
+        doc.setId(GID);
+        doc.setParticipants(List.of(members));
+        when(mongo.findOne(any(Query.class), eq(Conversation.class))).thenReturn(doc);
+    }
+
+    @Test
+    void membersAreReadOnceWhileFresh() {
+        stored("alice", "bob");
+
+        assertThat(groups.members(GID)).containsExactlyInAnyOrder("alice", "bob");
+        assertThat(groups.isMember(GID, "bob")).isTrue();
+        assertThat(groups.isMember(GID, "carol")).isFalse();
+
+        verify(mongo, times(1)).findOne(any(Query.class), eq(Conversation.class));
+        assertThat(meters.get("chat.groups.cache").tag("result", "hit").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void staleEntriesAndLocalChangesReload() {
+        stored("alice", "bob");
+        props.setCacheMaxAge(Duration.ZERO);
+        groups.members(GID);
+        groups.members(GID);
+        verify(mongo, times(2)).findOne(any(Query.class), eq(Conversation.class));
+
+        props.setCacheMaxAge(Duration.ofMinutes(1));
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(Conversation.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        assertThat(groups.addMember(GID, "alice", "carol")).isTrue();
+        stored("alice", "bob", "carol");
+        assertThat(groups.members(GID)).contains("carol");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void changesArePublishedToOtherNodesAndTheirChangesEvictTheCache() {
+        ClusterRouter cluster = mock(ClusterRouter.class);
+        ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+        GroupDirectory clustered = new GroupDirectory(mongo, props, meters, cluster);
+        verify(cluster).onGroupChanged(listener.capture());
+
+        stored("alice", "bob");
+        assertThat(clustered.isMember(GID, "bob")).isTrue();
+
+        // שרת אחר הסיר את bob: הרשימה בזיכרון נזרקת בלי לחכות ל-cacheMaxAge
+        stored("alice");
+        listener.getValue().accept(GID);
+        assertThat(clustered.isMember(GID, "bob")).isFalse();
+        verify(mongo, times(2)).findOne(any(Query.class), eq(Conversation.class));
+
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(Conversation.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        assertThat(clustered.removeMember(GID, "alice", "alice")).isTrue();
+        verify(cluster).groupChanged(GID);
+
+        // עדכון שלא התבצע לא נשלח
+        when(mongo.updateFirst(any(Query.class), any(Update.class), eq(Conversation.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        assertThat(clustered.addMember(GID, "bob", "carol")).isFalse();
+        verify(cluster, times(1)).groupChanged(GID);
+    }
+
+    @Test
+    void groupsOfSelectsOnlyGroupDocumentsOfTheUser() {
+        Conversation g = new Conversation();
+        g.setId(GID);
+        when(mongo.find(any(Query.class), eq(Conversation.class))).thenReturn(List.of(g));
+
+        assertThat(groups.groupsOf("alice")).containsExactly(GID);
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(mongo).find(q.capture(), eq(Conversation.class));
+        assertThat(q.getValue().getQueryObject()).containsEntry("participants", "alice");
+        assertThat(q.getValue().getQueryObject().get("_id").toString()).isEqualTo("^g_");
+    }
+
+    @Test
+    void createEnforcesNameAndSizeAndAlwaysAddsTheOwner() {
+        props.setMaxMembers(3);
+        assertThatThrownBy(() -> groups.create("alice", " ", List.of("bob")))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> groups.create("alice", "team", List.of("bob", "carol", "dave")))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(mongo, never()).insert(any(Conversation.class));
+
+        Conversation g = groups.create("alice", "team", List.of("bob", "bob", "g_other"));
+        assertThat(g.getId()).startsWith(Conversation.GROUP_PREFIX);
+        assertThat(g.getParticipants()).containsExactly("alice", "bob");
+        // הקבוצה החדשה כבר בזיכרון
+        assertThat(groups.members(g.getId())).containsExactlyInAnyOrder("alice", "bob");
+        verify(mongo, never()).findOne(any(Query.class), eq(Conversation.class));
+    }
+
+    @Test
+    void nonGroupIdsHaveNoMembers() {
+        assertThat(groups.members("alice")).isEmpty();
+        assertThat(groups.find("alice")).isNull();
+    }
+}
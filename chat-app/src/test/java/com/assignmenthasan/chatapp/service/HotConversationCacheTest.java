@@ -0,0 +1,166 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import com.assignmenthasan.chatapp.config.HistoryCacheProperties;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HotConversationCacheTest {
+
+    private static final String KEY = "alice|bob";
+    private static final AtomicLong CLOCK = new AtomicLong(1_000);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static HistoryCacheProperties props(int perConversation) {
+        HistoryCacheProperties p = new HistoryCacheProperties();
+        p.setPerConversation(perConversation);
+        return p;
+    }
+
+    private static Message msg(String from, String to) {
+        return msg(from, to, CLOCK.incrementAndGet());
+    }
+
+    private static Message msg(String from, String to, long epochMilli) {
+        return Message.builder().id(new ObjectId().toHexString()).senderId(from).receiverId(to)
+                .timestamp(Instant.ofEpochMilli(epochMilli)).message("hello").build();
+    }
+
+    private static HotConversationCache loaded(HotConversationCache cache, List<Message> history, int requested) {
+        assertThat(cache.tryStartLoad(KEY)).isTrue();
+        cache.finishLoad(KEY, history, requested);
+        return cache;
+    }
+
+    @Test
+    void servesOnlyAfterTheWindowWasLoaded() {
+        HotConversationCache cache = new HotConversationCache(props(10), registry);
+        Message first = msg("alice", "bob");
+        cache.onPersisted(List.of(first));
+        // כתיבה לשיחה שלא נקראה לא יוצרת חלון
+        assertThat(cache.size()).isZero();
+        assertThat(cache.memoryBytes()).isZero();
+        assertThat(cache.latest(KEY, 1)).isNull();
+
+        loaded(cache, List.of(first), 10);
+        Message second = msg("bob", "alice");
+        cache.onPersisted(List.of(second));
+        assertThat(cache.latest(KEY, 2)).containsExactly(first, second);
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void shortConversationIsCompleteAndAnswersAnyPageSize() {
+        HotConversationCache cache = new HotConversationCache(props(10), registry);
+        Message a = msg("alice", "bob"), b = msg("bob", "alice");
+        loaded(cache, List.of(b, a), 10);
+
+        assertThat(cache.latest(KEY, 50)).containsExactly(a, b);
+        assertThat(cache.before(KEY, MessageHistory.Cursor.of(b), 50)).containsExactly(a);
+        assertThat(cache.after(KEY, MessageHistory.Cursor.of(a), 50)).containsExactly(b);
+    }
+
+    @Test
+    void fullWindowDropsOldestAndMissesPagesBeyondIt() {
+        HotConversationCache cache = new HotConversationCache(props(3), registry);
+        List<Message> history = new ArrayList<>();
+        for (int i = 0; i < 3; i++) history.add(msg("alice", "bob"));
+        loaded(cache, history, 3);
+
+        Message newest = msg("bob", "alice");
+        cache.onPersisted(List.of(newest));
+
+        assertThat(cache.latest(KEY, 3)).containsExactly(history.get(1), history.get(2), newest);
+        assertThat(cache.latest(KEY, 4)).isNull();
+        assertThat(cache.before(KEY, MessageHistory.Cursor.of(history.get(1)), 1)).isNull();
+    }
+
+    @Test
+    void writesDuringLoadAreNotLost() {
+        HotConversationCache cache = new HotConversationCache(props(10), registry);
+        Message old = msg("alice", "bob");
+        assertThat(cache.tryStartLoad(KEY)).isTrue();
+        assertThat(cache.tryStartLoad(KEY)).isFalse();
+
+        Message fresh = msg("bob", "alice");
+        cache.onPersisted(List.of(fresh));
+        cache.finishLoad(KEY, List.of(old), 10);
+
+        assertThat(cache.latest(KEY, 10)).containsExactly(old, fresh);
+    }
+
+    @Test
+    void concurrentWritersKeepTheWindowOrdered() throws Exception {
+        HotConversationCache cache = new HotConversationCache(props(1_000), registry);
+        loaded(cache, List.of(), 1_000);
+
+        int writers = 8, perWriter = 100;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch go = new CountDownLatch(1);
+        for (int w = 0; w < writers; w++) {
+            pool.execute(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perWriter; i++) cache.onPersisted(List.of(msg("alice", "bob")));
+            });
+        }
+        go.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        List<Message> all = cache.latest(KEY, writers * perWriter);
+        assertThat(all).hasSize(writers * perWriter);
+        assertThat(all).isSortedAccordingTo((x, y) -> x.getTimestamp().compareTo(y.getTimestamp()));
+    }
+
+    @Test
+    void evictsLeastRecentlyReadConversationsToStayInBudget() {
+        HistoryCacheProperties p = props(10);
+        p.setMaxBytes(2_000);
+        HotConversationCache cache = new HotConversationCache(p, registry);
+
+        for (int i = 0; i < 20; i++) {
+            String key = Conversation.keyOf("u" + i, "v" + i);
+            assertThat(cache.tryStartLoad(key)).isTrue();
+            cache.finishLoad(key, List.of(), 10);
+            cache.onPersisted(List.of(msg("u" + i, "v" + i), msg("u" + i, "v" + i)));
+        }
+
+        assertThat(cache.memoryBytes()).isLessThanOrEqualTo(2_000);
+        assertThat(cache.size()).isLessThan(20);
+        assertThat(registry.get("chat.history.cache.evictions").counter().count()).isPositive();
+    }
+
+    @Test
+    void staleWindowIsReloaded() throws Exception {
+        HistoryCacheProperties p = props(10);
+        p.setMaxAge(Duration.ofMillis(20));
+        HotConversationCache cache = new HotConversationCache(p, registry);
+        loaded(cache, List.of(msg("alice", "bob")), 10);
+        assertThat(cache.latest(KEY, 1)).isNotNull();
+
+        Thread.sleep(40);
+        assertThat(cache.latest(KEY, 1)).isNull();
+        assertThat(cache.tryStartLoad(KEY)).isTrue();
+    }
+}
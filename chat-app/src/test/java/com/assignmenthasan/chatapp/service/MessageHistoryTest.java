@@ -0,0 +1,120 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+
+import com.assignmenthasan.chatapp.config.HistoryCacheProperties;
+import com.assignmenthasan.chatapp.dto.MessagePage;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.store.MessageStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageHistoryTest {
+
+    private final MessageStore store = mock(MessageStore.class);
+    private final MessageHistory history = new MessageHistory(store, disabledCache(), new HistoryCacheProperties());
+
+    /** הבדיקות כאן על הקריאות למאגר; המטמון נבדק ב-HotConversationCacheTest והשאילתות ב-MongoMessageStoreTest */
+    private static HotConversationCache disabledCache() {
+        HistoryCacheProperties props = new HistoryCacheProperties();
+        props.setEnabled(false);
+        return new HotConversationCache(props, new SimpleMeterRegistry());
+    }
+
+    private static Message msg(long epochMilli) {
+        return Message.builder().id(new ObjectId().toHexString()).senderId("alice").receiverId("bob")
+                .conversationKey("alice|bob").timestamp(Instant.ofEpochMilli(epochMilli)).message("m" + epochMilli).build();
+    }
+
+    @Test
+    void latestPageIsReturnedOldestFirstWithCursorToOlderMessages() {
+        Message m3 = msg(3000), m2 = msg(2000);
+        when(store.range(anyString(), any(), any(), anyInt())).thenReturn(List.of(m3, m2));
+
+        MessagePage page = history.page("alice", "bob", 2, null, null);
+
+        assertThat(page.getMessages()).containsExactly(m2, m3);
+        assertThat(page.getNextCursor()).isNotNull();
+        MessageHistory.Cursor c = MessageHistory.Cursor.decode(page.getNextCursor());
+        assertThat(c.timestamp()).isEqualTo(m2.getTimestamp());
+        assertThat(c.id().toHexString()).isEqualTo(m2.getId());
+
+        verify(store).range(eq("alice|bob"), isNull(), eq(Sort.Direction.DESC), eq(2));
+    }
+
+    @Test
+    void shortPageHasNoNextCursor() {
+        when(store.range(anyString(), any(), any(), anyInt())).thenReturn(List.of(msg(1000)));
+
+        assertThat(history.page("bob", "alice", 50, null, null).getNextCursor()).isNull();
+    }
+
+    @Test
+    void beforeCursorSeeksStrictlyOlderPositions() {
+        Message anchor = msg(5000);
+        String cursor = MessageHistory.Cursor.of(anchor).encode();
+        when(store.range(anyString(), any(), any(), anyInt())).thenReturn(List.of());
+
+        history.page("alice", "bob", 10, cursor, null);
+
+        ArgumentCaptor<MessageStore.Position> from = ArgumentCaptor.forClass(MessageStore.Position.class);
+        verify(store).range(eq("alice|bob"), from.capture(), eq(Sort.Direction.DESC), eq(10));
+        assertThat(from.getValue()).isEqualTo(MessageStore.Position.of(anchor));
+    }
+
+    @Test
+    void afterCursorWalksForwardInAscendingOrder() {
+        String cursor = MessageHistory.Cursor.of(msg(1000)).encode();
+        Message m2 = msg(2000), m3 = msg(3000);
+        when(store.range(anyString(), any(), any(), anyInt())).thenReturn(List.of(m2, m3));
+
+        MessagePage page = history.page("alice", "bob", 2, null, cursor);
+
+        assertThat(page.getMessages()).containsExactly(m2, m3);
+        assertThat(MessageHistory.Cursor.decode(page.getNextCursor()).id().toHexString()).isEqualTo(m3.getId());
+        verify(store).range(eq("alice|bob"), any(), eq(Sort.Direction.ASC), eq(2));
+    }
+
+    @Test
+    void firstReadFillsTheCacheAndTheNextReadSkipsTheStore() {
+        HistoryCacheProperties props = new HistoryCacheProperties();
+        props.setPerConversation(10);
+        MessageHistory cached = new MessageHistory(store, new HotConversationCache(props, new SimpleMeterRegistry()), props);
+        Message m2 = msg(2000), m1 = msg(1000);
+        when(store.range(anyString(), any(), any(), anyInt())).thenReturn(List.of(m2, m1));
+
+        assertThat(cached.page("alice", "bob", 5, null, null).getMessages()).containsExactly(m1, m2);
+        assertThat(cached.page("bob", "alice", 5, null, null).getMessages()).containsExactly(m1, m2);
+
+        verify(store).range(eq("alice|bob"), isNull(), eq(Sort.Direction.DESC), eq(10));
+    }
+
+    @Test
+    void limitIsClampedAndBadCursorsAreRejected() {
+        when(store.range(anyString(), any(), any(), anyInt())).thenReturn(List.of());
+        history.page("alice", "bob", 10_000, null, null);
+        verify(store).range(anyString(), any(), any(), eq(MessageHistory.MAX_LIMIT));
+
+        assertThatThrownBy(() -> history.page("alice", "bob", 10, "not-a-cursor", null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> history.page("alice", "bob", 10, "a", "b"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.assignmenthasan.chatapp.config.PersistenceProperties;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageKeyBackfillTest {
+
+    private final MongoTemplate mongo = mock(MongoTemplate.class);
+    private final BulkOperations bulk = mock(BulkOperations.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private static Document legacy(String from, String to) {
+        return new Document("_id", new ObjectId()).append("senderId", from).append("receiverId", to);
+    }
+
+    @Test
+    void fillsKeysInBatchesUntilNothingIsLeft() {
+        PersistenceProperties props = new PersistenceProperties();
+        props.setKeyBackfillBatchSize(2);
+        props.setKeyBackfillPause(Duration.ZERO);
+        when(mongo.getCollectionName(Message.class)).thenReturn("messages");
+        when(mongo.bulkOps(BulkOperations.BulkMode.UNORDERED, Message.class)).thenReturn(bulk);
+        when(mongo.find(any(Query.class), eq(Document.class), anyString())).thenReturn(
+                List.of(legacy("bob", "alice"), legacy("alice", "carol")),
+                List.of(legacy(null, "alice")));
+
+        long total = new MessageKeyBackfill(mongo, props, registry).runToCompletion();
+
+        assertThat(total).isEqualTo(3);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(3)).updateOne(any(Query.class), updates.capture());
+        assertThat(updates.getAllValues()).extracting(u -> u.getUpdateObject().get("$set", Document.class).get("conversationKey"))
+                .containsExactly("alice|bob", "alice|carol", "");
+        verify(bulk, times(2)).execute();
+        assertThat(registry.get("chat.migration.conversation.key").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void stopsImmediatelyWhenEverythingIsMigrated() {
+        PersistenceProperties props = new PersistenceProperties();
+        when(mongo.getCollectionName(Message.class)).thenReturn("messages");
+        when(mongo.find(any(Query.class), eq(Document.class), anyString())).thenReturn(List.of());
+
+        assertThat(new MessageKeyBackfill(mongo, props, registry).runToCompletion()).isZero();
+        verify(mongo, times(1)).find(any(Query.class), eq(Document.class), anyString());
+    }
+}
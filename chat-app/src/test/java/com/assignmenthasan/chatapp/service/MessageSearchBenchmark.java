@@ -0,0 +1,148 @@
+package com.assignmenthasan.chatapp.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.assignmenthasan.chatapp.config.SearchProperties;
+import com.assignmenthasan.chatapp.dto.SearchPage;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * זמן החיפוש על אינדקס גדול: מילה נפוצה, מילה נדירה ושתי מילים, תמיד עם ההרשאה של משתמש אחד
+ * ההודעות בין 10,000 משתמשים (כל אחד כותב לעשרה שכנים) מאוצר של 10,000 מילים בהתפלגות Zipf,
+ * כך שמילה נפוצה מופיעה במאות אלפי הודעות ומעט מהן שייכות למבקש.
+ * הזריעה לתיקייה זמנית בתחילת הריצה; ברירת המחדל מיליון הודעות, והיעד (10 מיליון, מתחת ל-50ms) עם
+ * mvn test -Pbench -Dtest=MessageSearchBenchmark -Dbench.search.messages=10000000
+ * או כל הבנצ'מרקים ל-JSON: mvn test -Pjmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MessageSearchBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int VOCABULARY = 10_000;
+    private static final int WORDS_PER_MESSAGE = 8;
+
+    @Param({ "1000000" })
+    public int messages;
+
+    private Path dir;
+    private MessageSearch search;
+    private String[] words;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("chat-search-bench");
+        SearchProperties props = new SearchProperties();
+        props.setDir(dir.toString());
+        props.setRamBufferMb(256);
+        search = new MessageSearch(props, new SimpleMeterRegistry());
+
+        words = new String[VOCABULARY];
+        for (int i = 0; i < VOCABULARY; i++) words[i] = "w" + Integer.toString(i, 36);
+        double[] zipf = new double[VOCABULARY];
+        double sum = 0;
+        for (int i = 0; i < VOCABULARY; i++) zipf[i] = sum += 1.0 / (i + 1);
+        for (int i = 0; i < VOCABULARY; i++) zipf[i] /= sum;
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        Instant t0 = Instant.parse("2026-01-01T00:00:00Z");
+        List<Message> batch = new ArrayList<>(10_000);
+        StringBuilder text = new StringBuilder();
+        for (int n = 0; n < messages; n++) {
+            int from = rnd.nextInt(USERS);
+            String to = "u" + (from + 1 + rnd.nextInt(10)) % USERS;
+            text.setLength(0);
+            for (int w = 0; w < WORDS_PER_MESSAGE; w++) {
+                int idx = Arrays.binarySearch(zipf, rnd.nextDouble());
+                text.append(words[Math.min(VOCABULARY - 1, idx < 0 ? -idx - 1 : idx)]).append(' ');
+            }
+            batch.add(Message.builder().id(new ObjectId().toHexString()).senderId("u" + from).receiverId(to)
+                    .conversationKey(Conversation.keyFor("u" + from, to)).timestamp(t0.plusMillis(n * 10L))
+                    .message(text.toString()).build());
+            if (batch.size() == 10_000) {
+                search.index(batch);
+                batch.clear();
+            }
+        }
+        search.index(batch);
+        search.commit();
+        search.refresh();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        search.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    private static String user() {
+        return "u" + ThreadLocalRandom.current().nextInt(USERS);
+    }
+
+    @Benchmark
+    public SearchPage commonWord() throws IOException {
+        return search.search(user(), List.of(), null, words[ThreadLocalRandom.current().nextInt(10)], 20, null);
+    }
+
+    @Benchmark
+    public SearchPage rareWord() throws IOException {
+        return search.search(user(), List.of(), null, words[5_000 + ThreadLocalRandom.current().nextInt(5_000)], 20,
+                null);
+    }
+
+    @Benchmark
+    public SearchPage twoWords() throws IOException {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return search.search(user(), List.of(), null, words[rnd.nextInt(100)] + " " + words[100 + rnd.nextInt(900)],
+                20, null);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder().include(MessageSearchBenchmark.class.getName());
+        String size = System.getProperty("bench.search.messages");
+        if (size != null) options.param("messages", size);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,202 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.assignmenthasan.chatapp.config.SearchProperties;
+import com.assignmenthasan.chatapp.config.StoreProperties;
+import com.assignmenthasan.chatapp.dto.SearchPage;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.store.LogMessageStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * אינדקס החיפוש על תיקייה זמנית: הרשאות לפי שיחה, סדר ועמודים, עדכון לפי מזהה ושמירה לדיסק
+ * הרענון והשמירה המחזוריים לא מופעלים; הבדיקות קוראות ל-refresh בעצמן
+ */
+class MessageSearchTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T10:00:00Z");
+    private static final String GROUP = "g_team";
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private SearchProperties props;
+    private MessageSearch search;
+
+    @BeforeEach
+    void open() {
+        props = new SearchProperties();
+        props.setDir(dir.resolve("search").toString());
+        search = new MessageSearch(props, registry);
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        search.close();
+    }
+
+    private static Message msg(String from, String to, long offsetMillis, String text) {
+        return Message.builder().id(new ObjectId().toHexString()).senderId(from).receiverId(to)
+                .conversationKey(Conversation.keyFor(from, to)).timestamp(T0.plusMillis(offsetMillis))
+                .message(text).build();
+    }
+
+    private List<String> found(String me, List<String> groups, String conversation, String q) throws Exception {
+        return search.search(me, groups, conversation, q, 100, null).getMessages().stream()
+                .map(Message::getId).toList();
+    }
+
+    private void persisted(Message... msgs) {
+        search.onPersisted(List.of(msgs));
+        search.refresh();
+    }
+
+    @Test
+    void onlyConversationsOfTheCallerAreSearched() throws Exception {
+        Message ab = msg("alice", "bob", 0, "Dinner at six?");
+        Message cd = msg("carol", "dave", 10, "dinner is ready");
+        Message team = msg("carol", GROUP, 20, "team dinner on friday");
+        persisted(ab, cd, team);
+
+        assertThat(found("alice", List.of(), null, "dinner")).containsExactly(ab.getId());
+        assertThat(found("bob", List.of(GROUP), null, "DINNER")).containsExactly(team.getId(), ab.getId());
+        assertThat(found("dave", List.of(), null, "dinner")).containsExactly(cd.getId());
+        assertThat(found("eve", List.of(), null, "dinner")).isEmpty();
+        // מגבלה לשיחה אחת לא פותחת שיחה של אחרים
+        assertThat(found("alice", List.of(), "carol|dave", "dinner")).isEmpty();
+        assertThat(found("bob", List.of(GROUP), GROUP, "dinner")).containsExactly(team.getId());
+    }
+
+    @Test
+    void allWordsMustMatchInAnyOrderAndCase() throws Exception {
+        Message both = msg("alice", "bob", 0, "Meeting moved to Tuesday");
+        Message one = msg("bob", "alice", 10, "the meeting is on");
+        Message hebrew = msg("bob", "alice", 20, "נפגשים מחר בבוקר");
+        persisted(both, one, hebrew);
+
+        assertThat(found("alice", List.of(), null, "tuesday MEETING")).containsExactly(both.getId());
+        assertThat(found("alice", List.of(), null, "meeting")).containsExactly(one.getId(), both.getId());
+        assertThat(found("alice", List.of(), null, "מחר")).containsExactly(hebrew.getId());
+        assertThat(found("alice", List.of(), null, "meeting friday")).isEmpty();
+    }
+
+    @Test
+    void pagesGoFromNewestToOldestWithoutRepeats() throws Exception {
+        List<Message> batch = new ArrayList<>();
+        // שתיים באותה מילישנייה: המזהה שובר את השוויון
+        for (int i = 0; i < 25; i++) batch.add(msg("alice", "bob", i / 2, "lunch " + i));
+        persisted(batch.toArray(Message[]::new));
+
+        List<Message> all = new ArrayList<>();
+        String cursor = null;
+        do {
+            SearchPage page = search.search("alice", List.of(), null, "lunch", 10, cursor);
+            all.addAll(page.getMessages());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertThat(all).hasSize(25);
+        assertThat(all).extracting(Message::getId).doesNotHaveDuplicates();
+        for (int i = 1; i < all.size(); i++) {
+            Message newer = all.get(i - 1), older = all.get(i);
+            assertThat(newer.getTimestamp()).isAfterOrEqualTo(older.getTimestamp());
+            if (newer.getTimestamp().equals(older.getTimestamp())) {
+                assertThat(newer.getId()).isGreaterThan(older.getId());
+            }
+        }
+    }
+
+    @Test
+    void reindexingAMessageReplacesIt() throws Exception {
+        Message m = msg("alice", "bob", 0, "see you soon");
+        persisted(m);
+        search.index(List.of(m));
+        search.index(List.of(m));
+        search.refresh();
+
+        assertThat(found("alice", List.of(), null, "soon")).containsExactly(m.getId());
+    }
+
+    @Test
+    void resultsCarryTheStoredMessage() throws Exception {
+        Message m = msg("alice", "bob", 42, "pick up the keys");
+        m.setSenderSeq(7L);
+        m.setReceiverSeq(3L);
+        persisted(m);
+
+        Message hit = search.search("bob", List.of(), null, "keys", 10, null).getMessages().get(0);
+
+        assertThat(hit).isEqualTo(m);
+    }
+
+    @Test
+    void closedIndexIsReadBackFromDisk() throws Exception {
+        Message m = msg("alice", "bob", 0, "the package arrived");
+        persisted(m);
+        search.close();
+
+        search = new MessageSearch(props, registry);
+
+        assertThat(found("bob", List.of(), null, "package")).containsExactly(m.getId());
+    }
+
+    @Test
+    void invalidQueriesAreRejected() {
+        props.setMaxTerms(3);
+        assertThatThrownBy(() -> search.search("alice", List.of(), null, "  !? ", 10, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> search.search("alice", List.of(), null, "one two three four", 10, null))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> search.search("alice", List.of(), null, "one", 10, "not-a-cursor"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void disabledSearchOpensNothingAndIgnoresWrites() {
+        SearchProperties off = new SearchProperties();
+        off.setEnabled(false);
+        off.setDir(dir.resolve("off").toString());
+        MessageSearch disabled = new MessageSearch(off, new SimpleMeterRegistry());
+
+        disabled.onPersisted(List.of(msg("alice", "bob", 0, "hi")));
+
+        assertThat(disabled.isEnabled()).isFalse();
+        assertThat(dir.resolve("off")).doesNotExist();
+    }
+
+    @Test
+    void rebuildIndexesEverythingInTheStore() throws Exception {
+        StoreProperties storeProps = new StoreProperties();
+        storeProps.setDir(dir.resolve("store").toString());
+        storeProps.setCompactionInterval(Duration.ZERO);
+        LogMessageStore store = new LogMessageStore(storeProps, registry);
+        List<Message> existing = new ArrayList<>();
+        for (int i = 0; i < 30; i++) existing.add(msg("alice", "bob", i, "invoice " + i));
+        store.append(existing);
+        props.setRebuildBatchSize(7);
+
+        long total = new MessageSearchRebuild(store, search, props).runToCompletion();
+        search.refresh();
+        store.close();
+
+        assertThat(total).isEqualTo(30);
+        assertThat(found("alice", List.of(), null, "invoice")).hasSize(30);
+    }
+}
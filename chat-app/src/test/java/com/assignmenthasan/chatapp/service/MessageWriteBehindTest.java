@@ -0,0 +1,165 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import com.assignmenthasan.chatapp.config.PersistenceProperties;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.store.MessageStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageWriteBehindTest {
+
+    private final MessageStore store = mock(MessageStore.class);
+    private final ConversationIndex conversations = mock(ConversationIndex.class);
+    private final HotConversationCache hotCache = mock(HotConversationCache.class);
+    private final MessageSearch search = mock(MessageSearch.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MessageWriteBehind writeBehind;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (writeBehind != null) writeBehind.stop();
+    }
+
+    @Test
+    void groupsMessagesIntoOneBulkInsert() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            batchSizes.add(((Collection<?>) inv.getArgument(0)).size());
+            return null;
+        }).when(store).append(anyList());
+
+        writeBehind = start(props(4, Duration.ofMillis(200), 1, 100));
+        List<CompletableFuture<Message>> acks = new ArrayList<>();
+        for (int i = 0; i < 4; i++) acks.add(writeBehind.submit(message(i)));
+
+        CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(2, TimeUnit.SECONDS);
+        assertThat(batchSizes).containsExactly(4);
+        assertThat(registry.get("chat.persist.batch.size").summary().totalAmount()).isEqualTo(4);
+        verify(conversations, timeout(1000)).onPersisted(argThat(docs -> docs.size() == 4));
+        verify(search, timeout(1000)).onPersisted(argThat(docs -> docs.size() == 4));
+    }
+
+    @Test
+    void clientBatchIsInsertedWhole() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            batchSizes.add(((Collection<?>) inv.getArgument(0)).size());
+            return null;
+        }).when(store).append(anyList());
+
+        // אצווה של 2 לפי הגדרה, אבל מסגרת batch של 5 הודעות נכתבת באותו append
+        writeBehind = start(props(2, Duration.ofMillis(1), 1, 100));
+        List<Message> msgs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) msgs.add(message(i));
+
+        assertThat(writeBehind.submitAll(msgs).get(2, TimeUnit.SECONDS)).containsExactlyElementsOf(msgs);
+        assertThat(batchSizes).containsExactly(5);
+    }
+
+    @Test
+    void writesOnCallerThreadWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean first = new AtomicBoolean(true);
+        doAnswer(inv -> {
+            if (first.getAndSet(false)) release.await(2, TimeUnit.SECONDS);
+            return null;
+        }).when(store).append(anyList());
+
+        PersistenceProperties props = props(1, Duration.ofMillis(1), 1, 1);
+        props.setEnqueueTimeout(Duration.ofMillis(5));
+        writeBehind = start(props);
+
+        // הראשונה תופסת את הכותב, השנייה ממלאת את התור, השלישית נכתבת בתהליכון הקורא
+        writeBehind.submit(message(0));
+        Thread.sleep(50);
+        writeBehind.submit(message(1));
+        CompletableFuture<Message> third = writeBehind.submit(message(2));
+
+        assertThat(third).isCompleted();
+        assertThat(registry.get("chat.persist.caller.runs").counter().count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    void failedInsertCompletesAckExceptionally() {
+        doThrow(new DataAccessResourceFailureException("down"))
+                .when(store).append(anyList());
+
+        writeBehind = start(props(8, Duration.ofMillis(1), 1, 100));
+        CompletableFuture<Message> ack = writeBehind.submit(message(0));
+
+        assertThatThrownBy(() -> ack.get(2, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(DataAccessResourceFailureException.class);
+        assertThat(registry.get("chat.persist.failed").counter().count()).isEqualTo(1);
+        verify(conversations, never()).onPersisted(any());
+        verify(search, never()).onPersisted(any());
+    }
+
+    @Test
+    void failingPostPersistHookDoesNotStopTheWriter() throws Exception {
+        doThrow(new IllegalStateException("cache bug")).when(hotCache).onPersisted(anyList());
+
+        writeBehind = start(props(1, Duration.ofMillis(1), 1, 100));
+        writeBehind.submit(message(0)).get(2, TimeUnit.SECONDS);
+
+        // שאר העדכונים רצים, והכותב היחיד ממשיך לאצווה הבאה
+        verify(conversations, timeout(1000)).onPersisted(anyList());
+        verify(search, timeout(1000)).onPersisted(anyList());
+        assertThat(writeBehind.submit(message(1)).get(2, TimeUnit.SECONDS).getId()).isEqualTo("m1");
+        verify(search, timeout(1000).times(2)).onPersisted(anyList());
+        assertThat(registry.get("chat.persist.hook.failed").tag("hook", "cache").counter().count())
+                .isEqualTo(2);
+    }
+
+    private MessageWriteBehind start(PersistenceProperties props) {
+        MessageWriteBehind wb = new MessageWriteBehind(store, props, conversations, hotCache, search, registry);
+        wb.start();
+        return wb;
+    }
+
+    private static PersistenceProperties props(int batchSize, Duration window, int writers, int capacity) {
+        PersistenceProperties props = new PersistenceProperties();
+        props.setBatchSize(batchSize);
+        props.setFlushInterval(window);
+        props.setWriterThreads(writers);
+        props.setQueueCapacity(capacity);
+        return props;
+    }
+
+    private static Message message(int i) {
+        return Message.builder()
+                .id("m" + i)
+                .senderId("a")
+                .receiverId("b")
+                .timestamp(Instant.now())
+                .message("hello " + i)
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+package com.assignmenthasan.chatapp.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.assignmenthasan.chatapp.config.NotificationProperties;
+import com.assignmenthasan.chatapp.model.Message;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * בדיקות לשולח ההתראות מול נקודת קצה מקומית שמדמה את פונקציית Firebase
+ */
+class NotificationDispatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private HttpServer stub;
+    private NotificationDispatcher dispatcher;
+    private volatile int status = 200;
+    private volatile CountDownLatch received = new CountDownLatch(1);
+    /** כשלא null, נקודת הקצה מחזיקה את הבקשה עד שהשער נפתח */
+    private volatile CountDownLatch gate;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) dispatcher.stop();
+        if (stub != null) stub.stop(0);
+    }
+
+    @Test
+    void coalescesBurstToSameReceiver() throws Exception {
+        dispatcher = start(props(Duration.ofMillis(100)));
+
+        for (int i = 0; i < 20; i++) dispatcher.enqueue(message("bob", i));
+
+        assertThat(received.await(2, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(150);
+        assertThat(bodies).hasSize(1);
+        assertThat(bodies.get(0)).contains("\"count\":20").contains("\"messageId\":\"m19\"");
+        assertThat(registry.get("chat.notify.coalesced").counter().count()).isEqualTo(19);
+    }
+
+    @Test
+    void deliversDistinctReceiversAtThroughput() throws Exception {
+        int receivers = 2_000;
+        received = new CountDownLatch(receivers);
+        dispatcher = start(props(Duration.ofMillis(5)));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < receivers; i++) dispatcher.enqueue(message("user-" + i, i));
+        assertThat(received.await(20, TimeUnit.SECONDS)).isTrue();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        assertThat(bodies).hasSize(receivers);
+        // נקודת קצה מקומית: גם מכונה איטית עוברת מאות קריאות בשנייה; פחות מזה אומר שהשליחה הפכה לטורית
+        assertThat(receivers / seconds).as("calls/s").isGreaterThan(200);
+    }
+
+    @Test
+    void breakerShedsLoadWhileEndpointIsDown() throws Exception {
+        status = 503;
+        received = new CountDownLatch(2);
+        NotificationProperties props = props(Duration.ofMillis(1));
+        props.setMaxAttempts(1);
+        props.setBreakerFailureThreshold(2);
+        dispatcher = start(props);
+
+        dispatcher.enqueue(message("a", 1));
+        dispatcher.enqueue(message("b", 2));
+        assertThat(received.await(2, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+
+        assertThat(dispatcher.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+        dispatcher.enqueue(message("c", 3));
+        assertThat(registry.get("chat.notify.shed").tag("reason", "breaker").counter().count()).isEqualTo(1);
+        assertThat(bodies).hasSize(2);
+    }
+
+    @Test
+    void saturatedProbeDoesNotLeaveTheBreakerHalfOpen() throws Exception {
+        status = 503;
+        NotificationProperties props = props(Duration.ofMillis(5));
+        props.setMaxAttempts(1);
+        props.setMaxInFlight(1);
+        props.setBreakerFailureThreshold(1);
+        props.setBreakerOpenDuration(Duration.ofMillis(100));
+        dispatcher = start(props);
+
+        dispatcher.enqueue(message("a", 1));
+        assertThat(received.await(2, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(50);
+        assertThat(dispatcher.breakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+        Thread.sleep(100);
+
+        // קריאת הבדיקה נתקעת בנקודת הקצה ותופסת את החיבור היחיד
+        status = 200;
+        gate = new CountDownLatch(1);
+        received = new CountDownLatch(2);
+        dispatcher.enqueue(message("probe", 2));
+        while (bodies.size() < 2) Thread.sleep(5);
+        assertThat(dispatcher.breakerState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        dispatcher.enqueue(message("b", 3));
+        Thread.sleep(50);
+        gate.countDown();
+
+        assertThat(received.await(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(dispatcher.breakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(bodies).hasSize(3);
+        assertThat(bodies.get(2)).contains("\"receiverId\":\"b\"");
+        assertThat(registry.get("chat.notify.shed").tag("reason", "breaker").counter().count()).isZero();
+    }
+
+    @Test
+    void payloadErrorDuringProbeClosesTheBreaker() throws Exception {
+        status = 503;
+        NotificationProperties props = props(Duration.ofMillis(1));
+        props.setMaxAttempts(1);
+        props.setBreakerFailureThreshold(1);
+        props.setBreakerOpenDuration(Duration.ofMillis(50));
+        dispatcher = start(props);
+
+        dispatcher.enqueue(message("a", 1));
+        assertThat(received.await(2, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(100);
+
+        props.setNotifyUrl("http://bad host/notifyMessage");
+        dispatcher.enqueue(message("b", 2));
+        Thread.sleep(50);
+
+        assertThat(dispatcher.breakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(registry.get("chat.notify.failed").counter().count()).isEqualTo(2);
+    }
+
+    private NotificationDispatcher start(NotificationProperties props) throws IOException {
+        stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stub.setExecutor(Executors.newFixedThreadPool(8));
+        stub.createContext("/notifyMessage", exchange -> {
+            bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            received.countDown();
+        });
+        stub.start();
+        props.setNotifyUrl("http://127.0.0.1:" + stub.getAddress().getPort() + "/notifyMessage");
+        return new NotificationDispatcher(HttpClient.newHttpClient(), props, registry);
+    }
+
+    private static NotificationProperties props(Duration window) {
+        NotificationProperties props = new NotificationProperties();
+        props.setCoalesceWindow(window);
+        props.setBackoffBase(Duration.ofMillis(5));
+        return props;
+    }
+
+    private static Message message(String receiver, int i) {
+        return Message.builder().id("m" + i).senderId("alice").receiverId(receiver).message("hi").build();
+    }
+}
@@ -0,0 +1,244 @@
+package com.assignmenthasan.chatapp.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Sort;
+
+import com.assignmenthasan.chatapp.config.StoreProperties;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * המאגר המוטמע: בדיקות המשותפות לכל מאגר, ובנוסף עלייה מחדש, שחזור אחרי כתיבה שנקטעה ודחיסה
+ * מקטעים קטנים ואינדקס צפוף מעט, כך שהבדיקות עוברות בין מקטעים ובין בלוקים של האינדקס
+ */
+class LogMessageStoreTest extends MessageStoreContract {
+
+    @TempDir
+    Path dir;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private StoreProperties props;
+
+    @Override
+    MessageStore newStore() {
+        props = new StoreProperties();
+        props.setDir(dir.toString());
+        props.setSegmentBytes(4096);
+        props.setIndexInterval(4);
+        props.setCompactionInterval(Duration.ZERO);
+        return new LogMessageStore(props, registry);
+    }
+
+    @Override
+    void closeStore() throws Exception {
+        log().close();
+    }
+
+    private LogMessageStore log() {
+        return (LogMessageStore) store;
+    }
+
+    private LogMessageStore reopen() throws Exception {
+        log().close();
+        store = new LogMessageStore(props, registry);
+        return log();
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    /** 300 הודעות בשיחה אחת לסירוגין עם שיחות אחרות, עם מספרי רצף; המזהים של השיחה לפי הסדר */
+    private List<String> fill() {
+        List<String> ids = new ArrayList<>();
+        for (int batch = 0; batch < 30; batch++) {
+            List<Message> msgs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                int n = batch * 10 + i;
+                Message m = msg("alice", "bob", n, n + 1, n + 1);
+                ids.add(m.getId());
+                msgs.add(m);
+                msgs.add(msg("carol", "dave" + i, n));
+            }
+            store.append(msgs);
+        }
+        return ids;
+    }
+
+    private List<String> history(String key) {
+        List<String> ids = new ArrayList<>();
+        MessageStore.Position from = null;
+        for (List<Message> page; !(page = store.range(key, from, Sort.Direction.ASC, 50)).isEmpty(); ) {
+            page.forEach(m -> ids.add(m.getId()));
+            from = MessageStore.Position.of(page.get(page.size() - 1));
+        }
+        return ids;
+    }
+
+    @Test
+    void reopeningRebuildsTheIndexAndTheSequences() throws Exception {
+        List<String> written = fill();
+        assertThat(segmentFiles()).hasSizeGreaterThan(3);
+
+        reopen();
+
+        assertThat(history("alice|bob")).containsExactlyElementsOf(written);
+        assertThat(store.since("bob", 295, 10)).extracting(Message::getReceiverSeq).containsExactly(296L, 297L, 298L,
+                299L, 300L);
+        // המונים ממשיכים מהמספר הגבוה בלוג
+        assertThat(store.currentSeq("alice")).isEqualTo(300);
+        assertThat(store.allocateSeq("alice", 1)).isEqualTo(301);
+    }
+
+    @Test
+    void tornWriteAtTheTailIsCutOnRecovery() throws Exception {
+        Message kept = msg("alice", "bob", 0), torn = msg("alice", "bob", 10);
+        store.append(List.of(kept));
+        store.append(List.of(torn));
+        Path last = segmentFiles().get(segmentFiles().size() - 1);
+        log().close();
+
+        // כתיבה שנקטעה: התוכן של הרשומה האחרונה לא הגיע לדיסק במלואו
+        try (FileChannel ch = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            int pos = LogSegment.HEADER;
+            ch.read(header, pos);
+            pos += LogRecord.OVERHEAD + header.flip().getInt();
+            ch.write(ByteBuffer.wrap(new byte[] { 0x7f, 0x7f, 0x7f }), pos + LogRecord.OVERHEAD + 5);
+        }
+        store = new LogMessageStore(props, registry);
+
+        assertThat(store.range("alice|bob", null, Sort.Direction.DESC, 10)).extracting(Message::getId)
+                .containsExactly(kept.getId());
+        Message next = msg("bob", "alice", 20);
+        store.append(List.of(next));
+        reopen();
+        assertThat(store.range("alice|bob", null, Sort.Direction.DESC, 10)).extracting(Message::getId)
+                .containsExactly(next.getId(), kept.getId());
+    }
+
+    @Test
+    void compactionRewritesSealedSegmentsAndKeepsEveryRead() throws Exception {
+        List<String> written = fill();
+        List<String> others = history("carol|dave3");
+
+        log().compact();
+
+        assertThat(history("alice|bob")).containsExactlyElementsOf(written);
+        assertThat(history("carol|dave3")).containsExactlyElementsOf(others);
+        assertThat(store.since("alice", 150, 400)).extracting(Message::getSenderSeq)
+                .containsExactlyElementsOf(seqs(151, 300));
+        assertThat(registry.get("chat.store.log.compactions").counter().count()).isPositive();
+
+        // הקבצים הדחוסים נפתחים כמו כל מקטע
+        reopen();
+        assertThat(history("alice|bob")).containsExactlyElementsOf(written);
+        assertThat(history("carol|dave3")).containsExactlyElementsOf(others);
+    }
+
+    @Test
+    void appendsAfterCompactionAreKept() throws Exception {
+        List<String> written = fill();
+        log().compact();
+        Message after = msg("alice", "bob", 10_000);
+        store.append(List.of(after));
+        log().compact();
+
+        assertThat(store.range("alice|bob", null, Sort.Direction.DESC, 1)).extracting(Message::getId)
+                .containsExactly(after.getId());
+        assertThat(history("alice|bob")).hasSize(written.size() + 1);
+    }
+
+    @Test
+    void segmentsLeftOverFromAnInterruptedCompactionAreRemoved() throws Exception {
+        List<String> recent = expireMostOfTheLog();
+        log().compact();
+        Path copies = Files.createDirectory(dir.resolve("copies"));
+        for (Path p : segmentFiles()) Files.copy(p, copies.resolve(p.getFileName()));
+        // המקטעים שהתרוקנו מאוחדים לקובץ אחד, והשאר נמחקים
+        log().compact();
+        int merged = segmentFiles().size();
+        log().close();
+
+        // נפילה אחרי שהקובץ הדחוס החליף את הראשון ולפני שהשאר נמחקו; ודחיסה אחרת שלא הסתיימה
+        try (Stream<Path> files = Files.list(copies)) {
+            for (Path p : files.toList()) {
+                if (!Files.exists(dir.resolve(p.getFileName()))) Files.copy(p, dir.resolve(p.getFileName()));
+            }
+        }
+        assertThat(segmentFiles()).hasSizeGreaterThan(merged);
+        Files.write(dir.resolve(LogSegment.fileName(99, "compact")), new byte[] { 1, 2, 3 });
+        store = new LogMessageStore(props, registry);
+
+        assertThat(segmentFiles()).hasSize(merged);
+        assertThat(history("carol|dave")).containsExactlyElementsOf(recent);
+        assertThat(Files.exists(dir.resolve(LogSegment.fileName(99, "compact")))).isFalse();
+    }
+
+    @Test
+    void compactionDropsExpiredMessagesButNotTheirSequences() throws Exception {
+        List<String> recent = expireMostOfTheLog();
+        int before = segmentFiles().size();
+
+        log().compact();
+        reopen();
+
+        assertThat(store.range("alice|bob", null, Sort.Direction.DESC, 100)).isEmpty();
+        assertThat(history("carol|dave")).containsExactlyElementsOf(recent);
+        assertThat(registry.get("chat.store.log.expired").counter().count()).isEqualTo(200);
+        // המספר הגבוה של alice נשמר גם כשכל ההודעות שלה נמחקו
+        assertThat(store.currentSeq("alice")).isEqualTo(200);
+
+        // המקטעים שהתרוקנו מתאחדים בדחיסה הבאה
+        log().compact();
+        assertThat(segmentFiles()).hasSizeLessThan(before);
+        assertThat(history("carol|dave")).containsExactlyElementsOf(recent);
+    }
+
+    /**
+     * 200 הודעות בנות שלושה ימים ואחריהן 60 חדשות בשיחה אחרת, שממלאות מקטע כך שכל הישנות במקטעים סגורים
+     * @return המזהים של החדשות לפי הסדר
+     */
+    private List<String> expireMostOfTheLog() {
+        props.setRetention(Duration.ofDays(1));
+        Instant longAgo = Instant.now().minus(Duration.ofDays(3));
+        store.allocateSeq("alice", 200);
+        for (int i = 0; i < 200; i++) {
+            store.append(List.of(at(msg("alice", "bob", 0, i + 1, i + 1), longAgo.plusMillis(i))));
+        }
+        List<Message> recent = new ArrayList<>();
+        Instant now = Instant.now();
+        for (int i = 0; i < 60; i++) recent.add(at(msg("carol", "dave", 0), now.plusMillis(i)));
+        store.append(recent);
+        return recent.stream().map(Message::getId).toList();
+    }
+
+    private static Message at(Message m, Instant timestamp) {
+        m.setTimestamp(timestamp);
+        return m;
+    }
+
+    private static List<Long> seqs(long from, long to) {
+        List<Long> out = new ArrayList<>();
+        for (long s = from; s <= to; s++) out.add(s);
+        return out;
+    }
+}
@@ -0,0 +1,116 @@
+package com.assignmenthasan.chatapp.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.domain.Sort;
+
+import com.assignmenthasan.chatapp.config.StoreProperties;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * המאגר המוטמע: כתיבת אצווה (כמו flush של הכתיבה הדחויה) וקריאת עמוד אחרון של שיחה מתוך לוג מלא
+ * הלוג נזרע ב-200 אלף הודעות ב-2,000 שיחות, כך שהקריאה עוברת דרך האינדקס הדליל ולא סורקת הכול.
+ * ההשוואה מול MongoDB נמצאת ב-MessageQueryBenchmark.
+ * mvn test -Pbench -Dtest=MessageStoreBenchmark, או כל הבנצ'מרקים ל-JSON: mvn test -Pjmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageStoreBenchmark {
+
+    private static final int USERS = 2_000;
+    private static final int SEEDED = 200_000;
+    private static final int BATCH = 64;
+
+    @Param({ "true", "false" })
+    public boolean fsync;
+
+    private Path dir;
+    private LogMessageStore store;
+    private long clock;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("chat-store-bench");
+        StoreProperties props = new StoreProperties();
+        props.setDir(dir.toString());
+        props.setFsync(fsync);
+        props.setCompactionInterval(Duration.ZERO);
+        store = new LogMessageStore(props, new SimpleMeterRegistry());
+        for (int i = 0; i < SEEDED; i += 1_000) {
+            List<Message> batch = new ArrayList<>();
+            for (int j = 0; j < 1_000; j++) batch.add(next());
+            store.append(batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        store.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    private Message next() {
+        // כל משתמש כותב לשכן שלו: 2,000 שיחות של כ-100 הודעות כל אחת
+        int k = ThreadLocalRandom.current().nextInt(USERS);
+        String from = "u" + k, to = "u" + (k + 1) % USERS;
+        return Message.builder().senderId(from).receiverId(to).conversationKey(Conversation.keyFor(from, to))
+                .timestamp(Instant.ofEpochMilli(++clock)).message("are we still meeting at 6pm today?").build();
+    }
+
+    @Benchmark
+    public List<Message> append() {
+        List<Message> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) batch.add(next());
+        store.append(batch);
+        return batch;
+    }
+
+    @Benchmark
+    public List<Message> latestPage() {
+        int k = ThreadLocalRandom.current().nextInt(USERS);
+        String key = Conversation.keyFor("u" + k, "u" + (k + 1) % USERS);
+        return store.range(key, null, Sort.Direction.DESC, 50);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder().include(MessageStoreBenchmark.class.getName()).build()).run();
+    }
+}
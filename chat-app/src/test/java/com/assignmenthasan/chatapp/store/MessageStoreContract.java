@@ -0,0 +1,209 @@
+package com.assignmenthasan.chatapp.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.model.Message;
+
+/**
+ * הבדיקות שכל מימוש של MessageStore עובר
+ * כל מימוש יורש ומספק מאגר ריק לכל בדיקה
+ */
+abstract class MessageStoreContract {
+
+    static final Instant T0 = Instant.parse("2026-01-01T10:00:00Z");
+
+    MessageStore store;
+
+    /**
+     * @return מאגר ריק
+     */
+    abstract MessageStore newStore() throws Exception;
+
+    /** נקרא אחרי כל בדיקה */
+    void closeStore() throws Exception {
+    }
+
+    @BeforeEach
+    void openStore() throws Exception {
+        store = newStore();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeStore();
+    }
+
+    static Message msg(String from, String to, long offsetMillis) {
+        return Message.builder().id(new ObjectId().toHexString()).senderId(from).receiverId(to)
+                .conversationKey(Conversation.keyFor(from, to)).timestamp(T0.plusMillis(offsetMillis))
+                .message(from + "->" + to + "@" + offsetMillis).build();
+    }
+
+    static Message msg(String from, String to, long offsetMillis, long senderSeq, long receiverSeq) {
+        Message m = msg(from, to, offsetMillis);
+        m.setSenderSeq(senderSeq);
+        m.setReceiverSeq(receiverSeq);
+        return m;
+    }
+
+    private static List<String> ids(List<Message> msgs) {
+        return msgs.stream().map(Message::getId).toList();
+    }
+
+    @Test
+    void latestMessagesComeNewestFirstAndOnlyFromTheConversation() {
+        List<Message> ab = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ab.add(msg(i % 2 == 0 ? "alice" : "bob", i % 2 == 0 ? "bob" : "alice", i * 10));
+            store.append(List.of(ab.get(i), msg("carol", "dave", i * 10 + 5)));
+        }
+
+        List<Message> page = store.range("alice|bob", null, Sort.Direction.DESC, 3);
+
+        assertThat(ids(page)).containsExactly(ab.get(4).getId(), ab.get(3).getId(), ab.get(2).getId());
+        Message first = page.get(0);
+        assertThat(first.getSenderId()).isEqualTo("alice");
+        assertThat(first.getReceiverId()).isEqualTo("bob");
+        assertThat(first.getTimestamp()).isEqualTo(T0.plusMillis(40));
+        assertThat(first.getMessage()).isEqualTo("alice->bob@40");
+    }
+
+    @Test
+    void positionsAreStrictAndTiesAreBrokenById() {
+        Message a = msg("alice", "bob", 0), b = msg("alice", "bob", 100), c = msg("bob", "alice", 100),
+                d = msg("alice", "bob", 200);
+        store.append(List.of(a, b, c, d));
+
+        assertThat(ids(store.range("alice|bob", MessageStore.Position.of(c), Sort.Direction.DESC, 10)))
+                .containsExactly(b.getId(), a.getId());
+        assertThat(ids(store.range("alice|bob", MessageStore.Position.of(b), Sort.Direction.ASC, 10)))
+                .containsExactly(c.getId(), d.getId());
+        assertThat(store.range("alice|bob", MessageStore.Position.of(a), Sort.Direction.DESC, 10)).isEmpty();
+        assertThat(store.range("alice|bob", MessageStore.Position.of(d), Sort.Direction.ASC, 10)).isEmpty();
+    }
+
+    @Test
+    void pagingBackwardsAndForwardsVisitsEveryMessageOnce() {
+        List<String> written = new ArrayList<>();
+        for (int batch = 0; batch < 20; batch++) {
+            List<Message> msgs = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Message m = msg("alice", "bob", batch * 100 + i);
+                written.add(m.getId());
+                msgs.add(m);
+                msgs.add(msg("alice", "user" + i, batch * 100 + i));
+            }
+            store.append(msgs);
+        }
+
+        List<String> backwards = new ArrayList<>();
+        MessageStore.Position from = null;
+        for (List<Message> page; !(page = store.range("alice|bob", from, Sort.Direction.DESC, 7)).isEmpty(); ) {
+            List<String> older = new ArrayList<>(ids(page));
+            Collections.reverse(older);
+            backwards.addAll(0, older);
+            from = MessageStore.Position.of(page.get(page.size() - 1));
+        }
+        assertThat(backwards).containsExactlyElementsOf(written);
+
+        List<String> forwards = new ArrayList<>();
+        from = null;
+        for (List<Message> page; !(page = store.range("alice|bob", from, Sort.Direction.ASC, 9)).isEmpty(); ) {
+            forwards.addAll(ids(page));
+            from = MessageStore.Position.of(page.get(page.size() - 1));
+        }
+        assertThat(forwards).containsExactlyElementsOf(written);
+    }
+
+    @Test
+    void batchesWrittenOutOfTimestampOrderAreReadInOrder() {
+        // שני כותבים: אצווה עם חותמות מאוחרות נכתבת לפני אצווה עם מוקדמות
+        Message late1 = msg("alice", "bob", 500), late2 = msg("alice", "bob", 600);
+        Message early1 = msg("bob", "alice", 100), early2 = msg("bob", "alice", 200);
+        store.append(List.of(late1, late2));
+        store.append(List.of(early1, early2));
+
+        assertThat(ids(store.range("alice|bob", null, Sort.Direction.DESC, 3)))
+                .containsExactly(late2.getId(), late1.getId(), early2.getId());
+        assertThat(ids(store.range("alice|bob", null, Sort.Direction.ASC, 3)))
+                .containsExactly(early1.getId(), early2.getId(), late1.getId());
+    }
+
+    @Test
+    void sinceMergesSentAndReceivedBySequence() {
+        Message m1 = msg("alice", "bob", 0, 1, 1);
+        Message m2 = msg("bob", "alice", 10, 2, 2);
+        Message m3 = msg("carol", "alice", 20, 1, 3);
+        Message m4 = msg("alice", "carol", 30, 4, 2);
+        Message other = msg("bob", "carol", 40, 3, 3);
+        store.append(List.of(m1, m2, m3, m4, other));
+
+        assertThat(ids(store.since("alice", 1, 10))).containsExactly(m2.getId(), m3.getId(), m4.getId());
+        assertThat(ids(store.since("alice", 1, 2))).containsExactly(m2.getId(), m3.getId());
+        assertThat(ids(store.since("bob", 0, 10))).containsExactly(m1.getId(), m2.getId(), other.getId());
+        assertThat(store.since("alice", 4, 10)).isEmpty();
+        assertThat(store.since("nobody", 0, 10)).isEmpty();
+    }
+
+    @Test
+    void sequencesContinueAndReportTheLastAllocated() {
+        assertThat(store.currentSeq("alice")).isZero();
+        assertThat(store.allocateSeq("alice", 3)).isEqualTo(3);
+        assertThat(store.allocateSeq("alice", 2)).isEqualTo(5);
+        assertThat(store.allocateSeq("bob", 1)).isEqualTo(1);
+        assertThat(store.currentSeq("alice")).isEqualTo(5);
+    }
+
+    @Test
+    void releaseRewindsOnlyACounterNobodyMovedSince() {
+        store.allocateSeq("alice", 10);
+        assertThat(store.releaseSeq("alice", 10, 4)).isTrue();
+        assertThat(store.currentSeq("alice")).isEqualTo(4);
+
+        store.allocateSeq("bob", 10);
+        store.allocateSeq("bob", 1);
+        assertThat(store.releaseSeq("bob", 10, 4)).isFalse();
+        assertThat(store.currentSeq("bob")).isEqualTo(11);
+    }
+
+    @Test
+    void forEachBatchVisitsEveryMessageOnce() {
+        List<String> written = new ArrayList<>();
+        for (int batch = 0; batch < 5; batch++) {
+            List<Message> msgs = new ArrayList<>();
+            for (int i = 0; i < 5; i++) msgs.add(msg("alice", "user" + i, batch * 10 + i));
+            msgs.forEach(m -> written.add(m.getId()));
+            store.append(msgs);
+        }
+
+        List<Integer> sizes = new ArrayList<>();
+        List<String> visited = new ArrayList<>();
+        store.forEachBatch(7, b -> {
+            sizes.add(b.size());
+            visited.addAll(ids(b));
+        });
+
+        assertThat(visited).containsExactlyInAnyOrderElementsOf(written);
+        assertThat(sizes).containsExactly(7, 7, 7, 4);
+    }
+
+    @Test
+    void unknownConversationIsEmpty() {
+        store.append(List.of(msg("alice", "bob", 0)));
+
+        assertThat(store.range("alice|carol", null, Sort.Direction.DESC, 10)).isEmpty();
+        assertThat(store.range("alice|carol", null, Sort.Direction.ASC, 10)).isEmpty();
+    }
+}
@@ -0,0 +1,35 @@
+package com.assignmenthasan.chatapp.store;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.model.UserSequence;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+
+/**
+ * בדיקות החוזה מול MongoDB אמיתי
+ * דורש מסד: mvn test -Dtest=MongoMessageStoreContractTest -Dtest.mongo.uri=mongodb://localhost:27017
+ */
+class MongoMessageStoreContractTest extends MessageStoreContract {
+
+    private MongoClient client;
+
+    @Override
+    MessageStore newStore() {
+        String uri = System.getProperty("test.mongo.uri");
+        assumeTrue(uri != null, "test.mongo.uri not set");
+        client = MongoClients.create(uri);
+        MongoTemplate mongo = new MongoTemplate(client, "chat_store_test");
+        mongo.dropCollection(Message.class);
+        mongo.dropCollection(UserSequence.class);
+        return new MongoMessageStore(mongo);
+    }
+
+    @Override
+    void closeStore() {
+        if (client != null) client.close();
+    }
+}
@@ -0,0 +1,152 @@
+package com.assignmenthasan.chatapp.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.model.UserSequence;
+
+/**
+ * השאילתות ש-MongoMessageStore שולח ל-MongoDB: שיושבות על האינדקסים ובסדר הנכון
+ * ההתנהגות מול מסד אמיתי נבדקת ב-MongoMessageStoreContractTest
+ */
+class MongoMessageStoreTest {
+
+    private final MongoTemplate mongo = mock(MongoTemplate.class);
+    private final MongoMessageStore store = new MongoMessageStore(mongo);
+
+    private static Message msg(long epochMilli) {
+        return Message.builder().id(new ObjectId().toHexString()).senderId("alice").receiverId("bob")
+                .conversationKey("alice|bob").timestamp(Instant.ofEpochMilli(epochMilli)).message("m" + epochMilli).build();
+    }
+
+    private Query capturedFind() {
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(mongo).find(q.capture(), eq(Message.class));
+        return q.getValue();
+    }
+
+    @Test
+    void appendIsOneBulkInsert() {
+        List<Message> batch = List.of(msg(1000), msg(2000));
+
+        store.append(batch);
+
+        verify(mongo).insert(batch, Message.class);
+    }
+
+    @Test
+    void latestWalksTheConversationIndexBackwards() {
+        Message m3 = msg(3000), m2 = msg(2000);
+        when(mongo.find(any(Query.class), eq(Message.class))).thenReturn(List.of(m3, m2));
+
+        assertThat(store.range("alice|bob", null, Sort.Direction.DESC, 2)).containsExactly(m3, m2);
+
+        Query q = capturedFind();
+        assertThat(q.getQueryObject()).containsEntry("conversationKey", "alice|bob");
+        assertThat(q.getSortObject()).containsEntry("timestamp", -1).containsEntry("id", -1);
+        assertThat(q.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void beforePositionSeeksStrictlyOlderPositions() {
+        Message anchor = msg(5000);
+
+        store.range("alice|bob", MessageStore.Position.of(anchor), Sort.Direction.DESC, 10);
+
+        String filter = capturedFind().getQueryObject().toString();
+        assertThat(filter).contains("$or").contains("$lt").contains(anchor.getId());
+    }
+
+    @Test
+    void afterPositionWalksForwardInAscendingOrder() {
+        Message anchor = msg(1000);
+
+        store.range("alice|bob", MessageStore.Position.of(anchor), Sort.Direction.ASC, 10);
+
+        Query q = capturedFind();
+        assertThat(q.getQueryObject().toString()).contains("$gt").contains(anchor.getId());
+        assertThat(q.getSortObject()).containsEntry("timestamp", 1).containsEntry("id", 1);
+    }
+
+    @Test
+    void sinceMergesTheReceiverAndSenderRangesBySequence() {
+        Message received = msg(1000), sent = msg(2000), later = msg(3000);
+        received.setReceiverId("alice");
+        received.setReceiverSeq(5L);
+        sent.setSenderId("alice");
+        sent.setSenderSeq(4L);
+        later.setSenderId("alice");
+        later.setSenderSeq(6L);
+        when(mongo.find(any(Query.class), eq(Message.class))).thenReturn(List.of(received), List.of(sent, later));
+
+        assertThat(store.since("alice", 3, 2)).containsExactly(sent, received);
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(mongo, times(2)).find(q.capture(), eq(Message.class));
+        assertThat(q.getAllValues().get(0).getSortObject()).containsEntry("receiverSeq", 1);
+        assertThat(q.getAllValues().get(1).getSortObject()).containsEntry("senderSeq", 1);
+        assertThat(q.getAllValues()).allSatisfy(query -> assertThat(query.getLimit()).isEqualTo(2));
+    }
+
+    @Test
+    void forEachBatchContinuesAfterTheLastIdWithoutSkip() {
+        Message a = msg(1000), b = msg(2000), c = msg(3000);
+        when(mongo.find(any(Query.class), eq(Message.class))).thenReturn(List.of(a, b), List.of(c));
+        List<List<Message>> batches = new ArrayList<>();
+
+        store.forEachBatch(2, batches::add);
+
+        assertThat(batches).containsExactly(List.of(a, b), List.of(c));
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        verify(mongo, times(2)).find(q.capture(), eq(Message.class));
+        assertThat(q.getAllValues().get(0).getQueryObject()).isEmpty();
+        assertThat(q.getAllValues().get(1).getQueryObject().get("_id", Document.class))
+                .containsEntry("$gt", new ObjectId(b.getId()));
+        assertThat(q.getAllValues()).allSatisfy(query -> {
+            assertThat(query.getSortObject()).containsEntry("_id", 1);
+            assertThat(query.getSkip()).isZero();
+        });
+    }
+
+    @Test
+    void allocationIsOneAtomicIncrementOfTheUserCounter() {
+        when(mongo.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(UserSequence.class))).thenReturn(new UserSequence("alice", 45));
+
+        assertThat(store.allocateSeq("alice", 3)).isEqualTo(45);
+
+        ArgumentCaptor<Query> q = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> u = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> o = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongo).findAndModify(q.capture(), u.capture(), o.capture(), eq(UserSequence.class));
+        assertThat(q.getValue().getQueryObject()).containsEntry("_id", "alice");
+        assertThat(u.getValue().getUpdateObject().get("$inc", Document.class)).containsEntry("seq", 3);
+        assertThat(o.getValue().isUpsert()).isTrue();
+        assertThat(o.getValue().isReturnNew()).isTrue();
+    }
+
+    @Test
+    void currentIsZeroForAUserWithoutACounter() {
+        assertThat(store.currentSeq("alice")).isZero();
+    }
+}
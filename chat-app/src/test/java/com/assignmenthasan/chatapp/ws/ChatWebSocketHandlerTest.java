@@ -0,0 +1,88 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.MetricsProperties;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.security.RateLimiter;
+import com.assignmenthasan.chatapp.service.ChatService;
+import com.assignmenthasan.chatapp.service.GroupDirectory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * אימות המסגרות הנכנסות: מסגרת עם הודעה לא תקינה אחת נדחית כולה בשגיאה, בלי לשמור ובלי לסגור את החיבור
+ */
+class ChatWebSocketHandlerTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final WebSocketProperties props = new WebSocketProperties();
+    private final OutboundWriter writer = new OutboundWriter(props, ExecutionMode.platform(), meters);
+    private final ChatService chatService = mock(ChatService.class);
+    private final RateLimiter limiter = mock(RateLimiter.class);
+    private final ChatWebSocketHandler handler = new ChatWebSocketHandler(chatService, writer,
+            mock(SessionRegistry.class), mock(ClusterRouter.class),
+            new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters), props,
+            mock(DeliveryResume.class), mock(ReceiptCoalescer.class), mock(PresenceNotifier.class),
+            mock(GroupDirectory.class), limiter, new StageMetrics(new MetricsProperties(), meters));
+
+    private final WebSocketSession session = mock(WebSocketSession.class);
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+
+    ChatWebSocketHandlerTest() throws IOException {
+        attributes.put("uid", "alice");
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        when(session.getAttributes()).thenReturn(attributes);
+        doAnswer(inv -> sent.add(((TextMessage) inv.getArgument(0)).getPayload())).when(session).sendMessage(any());
+        attributes.put(ChatWebSocketHandler.OUTBOUND_ATTR, writer.open(session));
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    void batchWithAMessageWithoutReceiverIsRejectedWhole() throws Exception {
+        handler.handleTextMessage(session, new TextMessage(
+                "[{\"senderId\":\"alice\",\"receiverId\":\"bob\",\"message\":\"hi\"},"
+                        + "{\"senderId\":\"alice\",\"message\":\"to nobody\"}]"));
+        handler.handleTextMessage(session, new TextMessage(
+                "{\"senderId\":\"alice\",\"receiverId\":\" \",\"message\":\"blank\"}"));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> sent.size() == 2);
+        assertThat(sent).containsOnly("{\"error\":\"receiverId required\"}");
+        // נדחה לפני מגבלת הקצב ולפני השמירה; החיבור נשאר פתוח
+        verify(limiter, never()).acquire(any(), anyString(), anyInt());
+        verify(chatService, never()).persist(any());
+        verify(chatService, never()).persistAll(any());
+        verify(session, never()).close(any(CloseStatus.class));
+    }
+}
@@ -0,0 +1,109 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * הודעות לשנייה ומסגרות לשנייה בפיזור עם איחוד ובלעדיו
+ * כל שולח מפרסם פרצים (כמו תור לא מקוון שמתרוקן) למשתמשים אקראיים עם חיבור caps=batch.
+ * כתיבת מסגרת מדמה את עלות הכתיבה לסוקט (bench.writeMicros).
+ * mvn test -Pbench -Dtest=CoalescingBenchmark
+ */
+@Tag("benchmark")
+class CoalescingBenchmark {
+
+    private static final int USERS = Integer.getInteger("bench.users", 200);
+    private static final int PRODUCERS = Integer.getInteger("bench.producers", 8);
+    private static final int MESSAGES = Integer.getInteger("bench.messages", 400_000);
+    private static final int BURST = Integer.getInteger("bench.burst", 20);
+    private static final long WRITE_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("bench.writeMicros", 5));
+
+    @Test
+    void coalescingOnVersusOff() throws Exception {
+        for (boolean enabled : new boolean[] { false, true }) {
+            System.out.printf("coalescing %s: %s%n", enabled ? "on " : "off", run(enabled));
+        }
+    }
+
+    private static String run(boolean enabled) throws Exception {
+        WebSocketProperties props = new WebSocketProperties();
+        props.setMaxQueueDepth(1_000_000);
+        props.setBufferSizeLimit(Integer.MAX_VALUE);
+        props.getCoalesce().setEnabled(enabled);
+        props.getCoalesce().setWindow(Duration.ofMillis(3));
+
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+        OutboundWriter writer = new OutboundWriter(props, ExecutionMode.platform(), meters);
+        SessionRegistry registry = new SessionRegistry(props, meters);
+
+        AtomicLong frames = new AtomicLong();
+        CountDownLatch delivered = new CountDownLatch(MESSAGES);
+        for (int u = 0; u < USERS; u++) {
+            registry.register("u" + u, writer.open(session(frames, delivered)));
+        }
+
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        long start = System.nanoTime();
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers.execute(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int sent = 0; sent < MESSAGES / PRODUCERS; sent += BURST) {
+                    String uid = "u" + rnd.nextInt(USERS);
+                    for (int i = 0; i < BURST; i++) {
+                        registry.sendToUser(uid, codec.frameOfJson("{\"message\":\"line " + i + "\"}"));
+                    }
+                }
+            });
+        }
+        boolean done = delivered.await(2, TimeUnit.MINUTES);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        producers.shutdownNow();
+        registry.stop();
+        writer.stop();
+        return String.format("complete=%s msgs/s=%.0f frames/s=%.0f msgs/frame=%.1f",
+                done, MESSAGES / seconds, frames.get() / seconds, (double) MESSAGES / frames.get());
+    }
+
+    /** חיבור מדומה עם caps=batch שסופר מסגרות והודעות */
+    private static WebSocketSession session(AtomicLong frames, CountDownLatch delivered) throws Exception {
+        WebSocketSession ws = mock(WebSocketSession.class);
+        when(ws.isOpen()).thenReturn(true);
+        when(ws.getId()).thenReturn(Long.toString(System.nanoTime()));
+        when(ws.getUri()).thenReturn(URI.create("ws://localhost/ws/chat?caps=batch"));
+        doAnswer(inv -> {
+            String payload = ((WebSocketMessage<?>) inv.getArgument(0)).getPayload().toString();
+            long until = System.nanoTime() + WRITE_NANOS;
+            while (System.nanoTime() < until) Thread.onSpinWait();
+            frames.incrementAndGet();
+            for (int i = payload.indexOf("\"message\""); i >= 0; i = payload.indexOf("\"message\"", i + 1)) {
+                delivered.countDown();
+            }
+            return null;
+        }).when(ws).sendMessage(any());
+        return ws;
+    }
+}
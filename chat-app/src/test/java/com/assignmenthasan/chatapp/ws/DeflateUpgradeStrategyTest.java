@@ -0,0 +1,164 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * בודק מול Tomcat אמיתי שההגדרות של app.websocket.compression משנות את תשובת לחיצת היד
+ */
+class DeflateUpgradeStrategyTest {
+
+    private static final WebSocketProperties.Compression COMPRESSION = new WebSocketProperties.Compression();
+
+    private static ConfigurableApplicationContext ctx;
+    private static int port;
+
+    @BeforeAll
+    static void startServer() {
+        ctx = new SpringApplicationBuilder(DeflateServer.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("server.port=0")
+                .run();
+        port = ((ServletWebServerApplicationContext) ctx).getWebServer().getPort();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        ctx.close();
+    }
+
+    @Test
+    void negotiatesDeflateWithContextTakeoverByDefault() throws Exception {
+        configure(true, true);
+        String ext = handshake("permessage-deflate; client_max_window_bits");
+        assertThat(ext).startsWith("permessage-deflate");
+        assertThat(ext).doesNotContain("no_context_takeover");
+    }
+
+    @Test
+    void forcesNoContextTakeoverInBothDirections() throws Exception {
+        configure(true, false);
+        String ext = handshake("permessage-deflate; client_max_window_bits");
+        assertThat(ext).contains("server_no_context_takeover").contains("client_no_context_takeover");
+    }
+
+    @Test
+    void disabledCompressionIsNotNegotiated() throws Exception {
+        configure(false, true);
+        assertThat(handshake("permessage-deflate")).isNull();
+    }
+
+    @Test
+    void rewriteKeepsOtherExtensionsAndExistingParams() {
+        WebSocketProperties.Compression c = new WebSocketProperties.Compression();
+        c.setContextTakeover(false);
+        assertThat(DeflateUpgradeStrategy.rewrite("x-foo, permessage-deflate; server_no_context_takeover", c))
+                .isEqualTo("x-foo, permessage-deflate; server_no_context_takeover; client_no_context_takeover");
+
+        c.setEnabled(false);
+        assertThat(DeflateUpgradeStrategy.rewrite("permessage-deflate, x-foo", c)).isEqualTo("x-foo");
+        assertThat(DeflateUpgradeStrategy.rewrite(null, c)).isEmpty();
+    }
+
+    @Test
+    void probeMeasuresRatioAndCountsSmallFrames() {
+        WebSocketProperties.Compression c = new WebSocketProperties.Compression();
+        c.setSampleRate(1.0);
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        DeflateProbe probe = new DeflateProbe(c, meters);
+
+        assertThat(probe.negotiated(List.of(new WebSocketExtension("permessage-deflate")))).isTrue();
+        assertThat(probe.negotiated(List.of())).isFalse();
+
+        String uids = "{\"senderId\":\"Yx3kPq9sLm2Zr8TwV1bN0cHd4Fg7\",\"receiverId\":\"Ab5cDe6FgH7iJk8LmN9oPq0RsT1u\"}";
+        probe.sent(new TextMessage("[" + String.join(",", Collections.nCopies(10, uids)) + "]"));
+        probe.sent(new TextMessage("{}"));
+        probe.close();
+
+        // מסגרת חוזרת נדחסת היטב; מסגרת זעירה דווקא גדלה
+        var ratio = meters.get("chat.ws.deflate.ratio").summary();
+        assertThat(ratio.count()).isEqualTo(2);
+        assertThat(ratio.totalAmount() - ratio.max()).isBetween(0.0, 0.5);
+        assertThat(ratio.max()).isGreaterThan(1.0);
+        assertThat(meters.get("chat.ws.deflate.small").counter().count()).isEqualTo(1);
+        assertThat(meters.get("chat.ws.deflate.sessions").tag("mode", "context_takeover").counter().count())
+                .isEqualTo(1);
+    }
+
+    private static void configure(boolean enabled, boolean contextTakeover) {
+        COMPRESSION.setEnabled(enabled);
+        COMPRESSION.setContextTakeover(contextTakeover);
+    }
+
+    /** לחיצת יד גולמית; מחזירה את Sec-WebSocket-Extensions מהתשובה או null */
+    private static String handshake(String offer) throws Exception {
+        try (Socket socket = new Socket("localhost", port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /ws/deflate HTTP/1.1\r\n"
+                    + "Host: localhost:" + port + "\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                    + "Sec-WebSocket-Version: 13\r\n"
+                    + "Sec-WebSocket-Extensions: " + offer + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            assertThat(in.readLine()).contains("101");
+            String extensions = null;
+            for (String line; (line = in.readLine()) != null && !line.isEmpty();) {
+                int colon = line.indexOf(':');
+                if (line.substring(0, colon).equalsIgnoreCase("Sec-WebSocket-Extensions")) {
+                    extensions = line.substring(colon + 1).trim();
+                }
+            }
+            return extensions;
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableWebSocket
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebSocketServletAutoConfiguration.class })
+    static class DeflateServer implements WebSocketConfigurer {
+
+        @Override
+        public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+            registry.addHandler(new TextWebSocketHandler(), "/ws/deflate")
+                    .setHandshakeHandler(new DefaultHandshakeHandler(new DeflateUpgradeStrategy(COMPRESSION)));
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.config.DeliveryProperties;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.model.Message;
+import com.assignmenthasan.chatapp.service.DeliverySequences;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * השלמה אחרי התחברות מחדש: ההודעות של bob (כנמען) יוצאות לפי receiverSeq, בסדר עולה ובלי כפילויות,
+ * גם כשהודעות חיות מגיעות באמצע ההשלמה או בסדר הפוך, וגם כשהחיבור נופל באמצע
+ */
+class DeliveryResumeTest {
+
+    private static final ObjectMapper JSON = Jackson2ObjectMapperBuilder.json().build();
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final MessageCodec codec = new MessageCodec(JSON, meters);
+    private final OutboundWriter writer = new OutboundWriter(wsProps(), ExecutionMode.platform(), meters);
+    private final DeliveryProperties props = new DeliveryProperties();
+    private final DeliverySequences sequences = mock(DeliverySequences.class);
+    /** ההודעות השמורות של bob לפי receiverSeq */
+    private final ConcurrentSkipListMap<Long, Message> store = new ConcurrentSkipListMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private DeliveryResume resume;
+
+    DeliveryResumeTest() {
+        props.setResumePageSize(50);
+        props.setGapTimeout(Duration.ofSeconds(5));
+        when(sequences.isEnabled()).thenReturn(true);
+        when(sequences.current("bob")).thenAnswer(inv -> store.isEmpty() ? 0L : store.lastKey());
+        when(sequences.since(eq("bob"), anyLong(), anyInt())).thenAnswer(inv -> {
+            long after = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            return store.tailMap(after, false).values().stream().limit(limit).toList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (resume != null) resume.stop();
+        writer.stop();
+    }
+
+    @Test
+    void streamsMissedMessagesInPagesBeforeLiveTraffic() throws Exception {
+        resume = new DeliveryResume(sequences, codec, props, ExecutionMode.platform(), meters);
+        for (long s = 1; s <= 500; s++) persist(s);
+
+        Client bob = new Client(Integer.MAX_VALUE);
+        OutboundSession out = connect(bob, 100);
+        // הודעות חיות בזמן ההשלמה: נשמרות ואז מנותבות, כמו עם awaitAck
+        for (long s = 501; s <= 520; s++) {
+            persist(s);
+            out.send(live(s));
+        }
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> bob.seqs().size() == 420);
+        assertThat(bob.seqs()).containsExactlyElementsOf(range(101, 520));
+        assertThat(bob.controls()).contains("resumed");
+        assertThat(meters.get("chat.delivery.resume.replayed").summary().totalAmount()).isGreaterThanOrEqualTo(400);
+    }
+
+    @Test
+    void disconnectsMidResumeNeverLoseOrRepeatMessages() throws Exception {
+        resume = new DeliveryResume(sequences, codec, props, ExecutionMode.platform(), meters);
+        for (long s = 1; s <= 2_000; s++) persist(s);
+
+        AtomicReference<OutboundSession> current = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            // כל זוג מנותב בסדר הפוך, כמו שני שולחים שהקצו מספרים ועקפו זה את זה
+            for (long s = 2_001; s <= 3_000; s += 2) {
+                persist(s);
+                persist(s + 1);
+                OutboundSession o = current.get();
+                if (o != null) {
+                    o.send(live(s + 1));
+                    o.send(live(s));
+                }
+                if (s % 50 == 1) sleepQuietly(2);
+            }
+        });
+        producer.start();
+
+        List<Long> all = new ArrayList<>();
+        long lastSeq = 0;
+        for (int reconnect = 0; reconnect < 5; reconnect++) {
+            Client client = new Client(300);
+            OutboundSession out = connect(client, lastSeq);
+            current.set(out);
+            await().atMost(Duration.ofSeconds(5)).until(client::isClosed);
+            // afterConnectionClosed
+            current.set(null);
+            out.release();
+
+            List<Long> got = client.seqs();
+            // כל חיבור מתחיל בדיוק אחרי lastSeq וממשיך ברצף
+            assertThat(got).containsExactlyElementsOf(range(lastSeq + 1, lastSeq + got.size()));
+            all.addAll(got);
+            lastSeq = got.get(got.size() - 1);
+        }
+        producer.join();
+
+        Client last = new Client(Integer.MAX_VALUE);
+        connect(last, lastSeq);
+        await().atMost(Duration.ofSeconds(5)).until(() -> last.controls().contains("resumed"));
+        all.addAll(last.seqs());
+
+        assertThat(all).containsExactlyElementsOf(range(1, 3_000));
+    }
+
+    @Test
+    void liveMessageWaitsForAnEarlierOneThatIsStillBeingWritten() throws Exception {
+        resume = new DeliveryResume(sequences, codec, props, ExecutionMode.platform(), meters);
+        Client bob = new Client(Integer.MAX_VALUE);
+        OutboundSession out = connect(bob, 0);
+        await().atMost(Duration.ofSeconds(2)).until(() -> bob.controls().contains("resumed"));
+
+        // 2 מגיעה חיה; 1 עוד בתור הכתיבה ונכתבת רק אחר כך, בלי מסגרת חיה
+        persist(2);
+        out.send(live(2));
+        Thread.sleep(120);
+        assertThat(bob.seqs()).isEmpty();
+        persist(1);
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> bob.seqs().size() == 2);
+        assertThat(bob.seqs()).containsExactly(1L, 2L);
+        assertThat(meters.get("chat.delivery.gap.skipped").counter().count()).isZero();
+    }
+
+    @Test
+    void missingSequenceIsSkippedAfterGapTimeout() throws Exception {
+        props.setGapTimeout(Duration.ofMillis(200));
+        resume = new DeliveryResume(sequences, codec, props, ExecutionMode.platform(), meters);
+        Client bob = new Client(Integer.MAX_VALUE);
+        OutboundSession out = connect(bob, 0);
+        await().atMost(Duration.ofSeconds(2)).until(() -> bob.controls().contains("resumed"));
+
+        persist(1);
+        out.send(live(1));
+        // 2 לא נכתבה לעולם
+        persist(3);
+        out.send(live(3));
+        out.send(live(1));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> bob.seqs().size() == 2);
+        assertThat(bob.seqs()).containsExactly(1L, 3L);
+        assertThat(meters.get("chat.delivery.gap.skipped").counter().count()).isEqualTo(1);
+        assertThat(meters.get("chat.delivery.duplicates").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void clientTooFarBehindGetsResyncInsteadOfTheWholeBacklog() throws Exception {
+        props.setMaxResume(10);
+        resume = new DeliveryResume(sequences, codec, props, ExecutionMode.platform(), meters);
+        for (long s = 1; s <= 100; s++) persist(s);
+
+        Client bob = new Client(Integer.MAX_VALUE);
+        connect(bob, 5);
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> bob.controls().contains("resumed"));
+        assertThat(bob.seqs()).isEmpty();
+        assertThat(bob.frames.get(0).toString()).isEqualTo("{\"type\":\"resync\",\"seq\":100}");
+        assertThat(bob.frames.get(1).toString()).isEqualTo("{\"type\":\"resumed\",\"seq\":100}");
+    }
+
+    @Test
+    void framesWithoutSequenceBypassOrdering() throws Exception {
+        resume = new DeliveryResume(sequences, codec, props, ExecutionMode.platform(), meters);
+        for (long s = 1; s <= 3; s++) persist(s);
+        Client bob = new Client(Integer.MAX_VALUE);
+        OutboundSession out = connect(bob, 0);
+        out.send(codec.senderMismatch());
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> bob.controls().contains("resumed"));
+        assertThat(bob.seqs()).containsExactly(1L, 2L, 3L);
+        assertThat(bob.frames).anyMatch(n -> n.has("error"));
+    }
+
+    /** מדמה את סדר ההתחברות ב-ChatWebSocketHandler: סידור, רישום, ואז השלמה */
+    private OutboundSession connect(Client client, long lastSeq) {
+        OutboundSession out = writer.open(client.session);
+        DeliverySequencer sequencer = resume.attach("bob", out, lastSeq);
+        resume.start(sequencer);
+        return out;
+    }
+
+    private void persist(long seq) {
+        store.put(seq, Message.builder().id("m" + seq).senderId("alice").receiverId("bob")
+                .timestamp(Instant.ofEpochSecond(seq)).message("hi " + seq)
+                .senderSeq(seq + 10_000).receiverSeq(seq).build());
+    }
+
+    private ChatFrame live(long seq) {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setSenderId("alice");
+        dto.setReceiverId("bob");
+        dto.setMessage("hi " + seq);
+        dto.setSenderSeq(seq + 10_000);
+        dto.setReceiverSeq(seq);
+        // כמו מסגרת שהגיעה משרת אחר: JSON מוכן בלבד
+        return seq % 3 == 0 ? codec.frameOfJson(codec.frame(dto).text().getPayload()) : codec.frame(dto);
+    }
+
+    private static List<Long> range(long from, long to) {
+        List<Long> out = new ArrayList<>();
+        for (long s = from; s <= to; s++) out.add(s);
+        return out;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static WebSocketProperties wsProps() {
+        WebSocketProperties p = new WebSocketProperties();
+        p.setMaxQueueDepth(100_000);
+        p.setBufferSizeLimit(Integer.MAX_VALUE);
+        return p;
+    }
+
+    /** לקוח מדומה שמתנתק אחרי מספר הודעות נתון; כתיבה אחרי הניתוק נכשלת כמו במכולה */
+    private final class Client {
+        final WebSocketSession session = mock(WebSocketSession.class);
+        final List<JsonNode> frames = new ArrayList<>();
+        private final int disconnectAfter;
+        private int messages;
+        private boolean open = true;
+
+        Client(int disconnectAfter) throws IOException {
+            this.disconnectAfter = disconnectAfter;
+            when(session.getId()).thenReturn("s" + ids.incrementAndGet());
+            when(session.isOpen()).thenAnswer(inv -> !isClosed());
+            doAnswer(inv -> {
+                write(((TextMessage) inv.getArgument(0)).getPayload());
+                return null;
+            }).when(session).sendMessage(any());
+        }
+
+        synchronized boolean isClosed() {
+            return !open;
+        }
+
+        synchronized void write(String payload) throws IOException {
+            if (!open) throw new IOException("closed");
+            JsonNode node = JSON.readTree(payload);
+            frames.add(node);
+            if (node.has("receiverSeq") && ++messages >= disconnectAfter) open = false;
+        }
+
+        synchronized List<Long> seqs() {
+            List<Long> out = new ArrayList<>();
+            for (JsonNode n : frames) if (n.has("receiverSeq")) out.add(n.get("receiverSeq").asLong());
+            return out;
+        }
+
+        synchronized List<String> controls() {
+            List<String> out = new ArrayList<>();
+            for (JsonNode n : frames) if (n.has("type")) out.add(n.get("type").asText());
+            return out;
+        }
+    }
+}
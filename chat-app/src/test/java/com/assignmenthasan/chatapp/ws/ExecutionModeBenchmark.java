@@ -0,0 +1,147 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.embedded.EmbeddedWebServerFactoryCustomizerAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * השוואת תהליכוני פלטפורמה מול תהליכונים וירטואליים ב-Tomcat עם 10k+ חיבורים במקביל
+ * המטפל מדמה את העבודה החוסמת של ChatWebSocketHandler (המתנה לאישור כתיבה ל-Mongo) ומחזיר הד.
+ * כל לקוח שולח הודעות ברצף ובודק שההדים חוזרים בסדר (סדר לכל חיבור נשמר בשני המצבים).
+ * דורש Java 21 ומגבלת קבצים פתוחים מעל פי 2 ממספר החיבורים:
+ * mvn test -Pbench -Dtest=ExecutionModeBenchmark -Dbench.connections=10000
+ */
+@Tag("benchmark")
+class ExecutionModeBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("bench.connections", 10_000);
+    private static final int MESSAGES_PER_CONNECTION = Integer.getInteger("bench.messages", 20);
+    private static final long BLOCK_MILLIS = Long.getLong("bench.blockMillis", 10);
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need Java 21");
+        for (boolean virtual : new boolean[] { false, true }) {
+            System.out.printf("%s threads: %s%n", virtual ? "virtual" : "platform", run(virtual));
+        }
+    }
+
+    private static String run(boolean virtual) throws Exception {
+        try (var ctx = new SpringApplicationBuilder(EchoServer.class)
+                .web(WebApplicationType.SERVLET)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + virtual,
+                        "server.tomcat.max-connections=" + (CONNECTIONS + 1_000),
+                        "server.tomcat.accept-count=" + CONNECTIONS)
+                .run()) {
+            int port = ((ServletWebServerApplicationContext) ctx).getWebServer().getPort();
+            URI uri = URI.create("ws://localhost:" + port + "/ws/bench");
+            HttpClient http = HttpClient.newHttpClient();
+
+            // פתיחת החיבורים בקבוצות כדי לא להציף את תור ה-accept
+            List<Client> clients = new ArrayList<>(CONNECTIONS);
+            Semaphore opening = new Semaphore(500);
+            List<CompletableFuture<WebSocket>> opened = new ArrayList<>(CONNECTIONS);
+            for (int i = 0; i < CONNECTIONS; i++) {
+                Client c = new Client();
+                clients.add(c);
+                opening.acquire();
+                opened.add(http.newWebSocketBuilder().buildAsync(uri, c)
+                        .whenComplete((ws, e) -> opening.release()));
+            }
+            CompletableFuture.allOf(opened.toArray(CompletableFuture[]::new)).get(5, TimeUnit.MINUTES);
+
+            CountDownLatch done = new CountDownLatch(CONNECTIONS);
+            long start = System.nanoTime();
+            for (int i = 0; i < CONNECTIONS; i++) clients.get(i).start(opened.get(i).join(), done);
+            done.await(10, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long[] rtts = clients.stream().flatMapToLong(c -> Arrays.stream(c.rttNanos)).sorted().toArray();
+            long outOfOrder = clients.stream().mapToInt(c -> c.outOfOrder.get()).sum();
+            for (Client c : clients) c.ws.abort();
+            return String.format("connections=%d msgs/s=%.0f p50=%.1fms p99=%.1fms outOfOrder=%d",
+                    CONNECTIONS, rtts.length / seconds,
+                    rtts[rtts.length / 2] / 1e6, rtts[(int) (rtts.length * 0.99)] / 1e6, outOfOrder);
+        }
+    }
+
+    /** לקוח ששולח הודעה, מחכה להד ושולח את הבאה */
+    private static final class Client implements WebSocket.Listener {
+        final long[] rttNanos = new long[MESSAGES_PER_CONNECTION];
+        final AtomicInteger outOfOrder = new AtomicInteger();
+        WebSocket ws;
+        CountDownLatch done;
+        int seq;
+        long sentAt;
+
+        void start(WebSocket ws, CountDownLatch done) {
+            this.ws = ws;
+            this.done = done;
+            sendNext();
+        }
+
+        private void sendNext() {
+            sentAt = System.nanoTime();
+            ws.sendText(Integer.toString(seq), true);
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            rttNanos[seq] = System.nanoTime() - sentAt;
+            if (Integer.parseInt(data.toString()) != seq) outOfOrder.incrementAndGet();
+            if (++seq < MESSAGES_PER_CONNECTION) sendNext();
+            else done.countDown();
+            webSocket.request(1);
+            return null;
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @EnableWebSocket
+    @ImportAutoConfiguration({ ServletWebServerFactoryAutoConfiguration.class,
+            EmbeddedWebServerFactoryCustomizerAutoConfiguration.class,
+            DispatcherServletAutoConfiguration.class, WebSocketServletAutoConfiguration.class })
+    static class EchoServer implements WebSocketConfigurer {
+
+        @Override
+        public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+            registry.addHandler(new TextWebSocketHandler() {
+                @Override
+                protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+                    Thread.sleep(BLOCK_MILLIS); // כמו המתנה לאישור כתיבה של write-behind
+                    session.sendMessage(message);
+                }
+            }, "/ws/bench");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.cluster.LocalClusterBackend;
+import com.assignmenthasan.chatapp.config.ClusterProperties;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * זמן ההפצה של הודעת קבוצה לפי גודל הקבוצה
+ * call-us הוא הזמן עד ש-broadcast חוזרת (הכנסה לתורים), last-us הוא הזמן עד שהחבר האחרון קיבל את המסגרת.
+ * כל החברים מחוברים לשרת הזה; המסגרת מקודדת פעם אחת לכל הודעה.
+ * mvn test -Pbench -Dtest=GroupFanoutBenchmark
+ */
+@Tag("benchmark")
+class GroupFanoutBenchmark {
+
+    private static final int[] MEMBERS = { 10, 100, 1_000 };
+    private static final int MESSAGES = Integer.getInteger("bench.messages", 200);
+
+    @Test
+    void fanoutLatencyByGroupSize() throws Exception {
+        System.out.printf("%8s %10s %10s %10s %10s%n", "members", "call-p50", "call-p99", "last-p50", "last-p99");
+        for (int n : MEMBERS) run(n);
+    }
+
+    private static void run(int size) throws Exception {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        WebSocketProperties wsProps = new WebSocketProperties();
+        wsProps.getCoalesce().setEnabled(false);
+        MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+        LocalClusterBackend backend = new LocalClusterBackend(new LocalClusterBackend.Hub());
+        OutboundWriter writer = new OutboundWriter(wsProps, ExecutionMode.platform(), meters);
+        SessionRegistry registry = new SessionRegistry(wsProps, meters);
+        ClusterRouter router = new ClusterRouter(registry, backend, backend, new ClusterProperties(), codec, meters);
+
+        CountDownLatch[] arrivals = new CountDownLatch[1];
+        List<String> members = new ArrayList<>(size);
+        for (int u = 0; u < size; u++) {
+            String uid = "m" + u;
+            WebSocketSession ws = mock(WebSocketSession.class, withSettings().stubOnly());
+            when(ws.getId()).thenReturn(uid);
+            when(ws.isOpen()).thenReturn(true);
+            doAnswer(inv -> {
+                arrivals[0].countDown();
+                return null;
+            }).when(ws).sendMessage(any());
+            registry.register(uid, writer.open(ws));
+            router.sessionOpened(uid);
+            members.add(uid);
+        }
+
+        long[] call = new long[MESSAGES];
+        long[] last = new long[MESSAGES];
+        for (int m = 0; m < MESSAGES; m++) {
+            arrivals[0] = new CountDownLatch(size);
+            long start = System.nanoTime();
+            router.broadcast(members, codec.frameOfJson("{\"message\":\"m" + m + "\"}"));
+            call[m] = System.nanoTime() - start;
+            if (!arrivals[0].await(30, TimeUnit.SECONDS)) throw new IllegalStateException("fan-out timed out");
+            last[m] = System.nanoTime() - start;
+        }
+        Arrays.sort(call);
+        Arrays.sort(last);
+        System.out.printf("%8d %10d %10d %10d %10d%n", size,
+                call[MESSAGES / 2] / 1_000, call[(int) (MESSAGES * 0.99)] / 1_000,
+                last[MESSAGES / 2] / 1_000, last[(int) (MESSAGES * 0.99)] / 1_000);
+
+        router.stop();
+        registry.stop();
+        writer.stop();
+    }
+}
@@ -0,0 +1,96 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * ns והקצאות (gc.alloc.rate.norm) להודעה אחת בנתיב הנכנס-יוצא, לפני ואחרי MessageCodec
+ * "לפני": readValue ממחרוזת, writeValueAsString לכל יעד ו-TextMessage ממחרוזת (האורך מקודד מחדש בכל שליחה).
+ * "אחרי": ObjectReader/ObjectWriter משותפים, סידור אחד לבתים ואותה מסגרת לכל היעדים.
+ * "cbor": אותו נתיב ב-subprotocol הבינארי; גודל המסגרת בכל קידוד מודפס בסוף הריצה.
+ * mvn test -Pbench -Dtest=MessageCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageCodecBenchmark {
+
+    /** מספר היעדים לכל הודעה: נמען ושולח, כל אחד בשני מכשירים */
+    private static final int TARGETS = 4;
+
+    private static final String PAYLOAD = "{\"senderId\":\"Yx3kPq9sLm2Zr8TwV1bN0cHd4Fg7\",\"receiverId\":\"Ab5cDe6FgH7iJk8LmN9oPq0RsT1u\","
+            + "\"timestamp\":\"2025-01-01T10:00:00Z\",\"message\":\"שלום! are we still meeting at 6pm today?\"}";
+
+    private final ObjectMapper plainMapper = new ObjectMapper();
+    private final MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(),
+            new SimpleMeterRegistry());
+    private final TextMessage inbound = new TextMessage(PAYLOAD);
+    private final BinaryMessage inboundCbor = cborOf(PAYLOAD);
+
+    @Benchmark
+    public void before(Blackhole bh) throws Exception {
+        ChatMessageDTO dto = plainMapper.readValue(inbound.getPayload(), ChatMessageDTO.class);
+        // הנתיב הישן: סידור לנמען ולשולח בנפרד, ומסגרת ממחרוזת שנמדדת בכל תור
+        for (int i = 0; i < TARGETS / 2; i++) {
+            TextMessage frame = new TextMessage(plainMapper.writeValueAsString(dto));
+            for (int j = 0; j < 2; j++) bh.consume(frame.getPayloadLength() + frame.getPayloadLength());
+        }
+    }
+
+    @Benchmark
+    public void after(Blackhole bh) throws Exception {
+        ChatMessageDTO dto = codec.decode(inbound);
+        TextMessage frame = codec.encode(dto);
+        for (int i = 0; i < TARGETS; i++) bh.consume(frame.getPayloadLength() + frame.getPayloadLength());
+    }
+
+    @Benchmark
+    public void cbor(Blackhole bh) throws Exception {
+        ChatMessageDTO dto = codec.decode(inboundCbor);
+        ChatFrame frame = codec.frame(dto);
+        for (int i = 0; i < TARGETS; i++) {
+            bh.consume(frame.forProtocol(WireProtocol.CBOR).getPayloadLength());
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MessageCodecBenchmark.class.getName() + "\\.(before|after|cbor)$")
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+        System.out.printf("frame bytes: json=%d cbor=%d%n",
+                inbound.getPayloadLength(), inboundCbor.getPayloadLength());
+    }
+
+    private BinaryMessage cborOf(String json) {
+        return codec.frameOfJson(json).binary();
+    }
+}
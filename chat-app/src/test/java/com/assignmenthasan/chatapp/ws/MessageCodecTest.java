@@ -0,0 +1,120 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class MessageCodecTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+
+    @Test
+    void roundTripsThroughOneEncodedFrame() throws Exception {
+        ChatMessageDTO dto = codec.decode(new TextMessage(
+                "{\"senderId\":\"a\",\"receiverId\":\"b\",\"message\":\"שלום\",\"extra\":1}"));
+        assertThat(dto.getSenderId()).isEqualTo("a");
+        assertThat(dto.getMessage()).isEqualTo("שלום");
+
+        TextMessage frame = codec.encode(dto);
+        assertThat(frame.asBytes()).isSameAs(frame.asBytes());
+        assertThat(frame.getPayloadLength()).isEqualTo(frame.getPayload().getBytes(StandardCharsets.UTF_8).length);
+
+        byte[] bytes = frame.asBytes();
+        assertThat(codec.decode(bytes, 0, bytes.length)).isEqualTo(dto);
+    }
+
+    @Test
+    void malformedJsonIsRejected() {
+        assertThatThrownBy(() -> codec.decode(new TextMessage("{not json")))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void cborFrameRoundTripsAndIsSmallerThanJson() throws Exception {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setSenderId("Yx3kPq9sLm2Zr8TwV1bN0cHd4Fg7");
+        dto.setReceiverId("Ab5cDe6FgH7iJk8LmN9oPq0RsT1u");
+        dto.setTimestamp("2025-01-01T10:00:00Z");
+        dto.setMessage("שלום");
+
+        ChatFrame frame = codec.frame(dto);
+        BinaryMessage binary = (BinaryMessage) frame.forProtocol(WireProtocol.CBOR);
+        TextMessage text = (TextMessage) frame.forProtocol(WireProtocol.JSON);
+
+        // כל קידוד מסודר פעם אחת ומשותף לכל החיבורים
+        assertThat(frame.forProtocol(WireProtocol.CBOR)).isSameAs(binary);
+        assertThat(frame.forProtocol(WireProtocol.JSON)).isSameAs(text);
+        assertThat(binary.getPayloadLength()).isLessThan(text.getPayloadLength());
+        assertThat(codec.decode(binary)).isEqualTo(dto);
+        assertThat(codec.decode(text)).isEqualTo(dto);
+
+        assertThat(meters.get("chat.ws.frame.bytes").tag("protocol", "cbor").tag("direction", "out")
+                .summary().count()).isEqualTo(1);
+        assertThat(meters.get("chat.ws.codec").tag("protocol", "cbor").tag("op", "decode")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void jsonOnlyFanOutNeverEncodesCbor() {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setMessage("hi");
+        codec.frame(dto).forProtocol(WireProtocol.JSON);
+
+        assertThat(meters.get("chat.ws.codec").tag("protocol", "cbor").tag("op", "encode")
+                .timer().count()).isZero();
+    }
+
+    @Test
+    void jsonFromAnotherNodeIsTranscodedForBinaryClients() throws Exception {
+        ChatFrame error = codec.frameOfJson("{\"error\":\"senderId mismatch\"}");
+        BinaryMessage binary = (BinaryMessage) error.forProtocol(WireProtocol.CBOR);
+
+        byte[] bytes = new byte[binary.getPayloadLength()];
+        binary.getPayload().duplicate().get(bytes);
+        assertThat(new CBORMapper().readTree(bytes).get("error").asText())
+                .isEqualTo("senderId mismatch");
+    }
+
+    @Test
+    void subprotocolSelectsEncoding() {
+        assertThat(WireProtocol.of("chat.cbor.v1")).isEqualTo(WireProtocol.CBOR);
+        assertThat(WireProtocol.of("chat.json.v1")).isEqualTo(WireProtocol.JSON);
+        assertThat(WireProtocol.of(null)).isEqualTo(WireProtocol.JSON);
+        assertThat(WireProtocol.of("")).isEqualTo(WireProtocol.JSON);
+    }
+
+    @Test
+    void batchFramesDecodeAsListsAndJoinWithoutReencoding() throws Exception {
+        List<ChatMessageDTO> batch = codec.decodeAll(new TextMessage(
+                "[{\"senderId\":\"a\",\"message\":\"1\"},{\"senderId\":\"a\",\"message\":\"2\"}]"));
+        assertThat(batch).extracting(ChatMessageDTO::getMessage).containsExactly("1", "2");
+        assertThat(codec.decodeAll(new TextMessage("{\"senderId\":\"a\"}"))).hasSize(1);
+        assertThatThrownBy(() -> codec.decodeAll(new TextMessage("[{\"senderId\":\"a\"},3]")))
+                .isInstanceOf(IOException.class);
+
+        ChatFrame joined = ChatFrame.batch(List.of(codec.frame(batch.get(0)), codec.frame(batch.get(1))));
+        assertThat(joined.size()).isEqualTo(2);
+        assertThat(codec.decodeAll((TextMessage) joined.forProtocol(WireProtocol.JSON))).isEqualTo(batch);
+        assertThat(codec.decodeAll((BinaryMessage) joined.forProtocol(WireProtocol.CBOR))).isEqualTo(batch);
+
+        // כותרת מערך CBOR של 2 בתים (24 עד 255 פריטים)
+        List<ChatFrame> many = new ArrayList<>();
+        for (int i = 0; i < 30; i++) many.add(codec.frame(batch.get(i % 2)));
+        assertThat(codec.decodeAll((BinaryMessage) ChatFrame.batch(many).forProtocol(WireProtocol.CBOR))).hasSize(30);
+    }
+}
@@ -0,0 +1,118 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.config.WebSocketProperties.OverflowPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class OutboundSessionTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private OutboundWriter writer;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (writer != null) writer.stop();
+    }
+
+    @Test
+    void deliversInOrderWithoutBlockingTheSender() throws Exception {
+        WebSocketSession ws = session(false);
+        OutboundSession out = open(ws, props(100, OverflowPolicy.DROP_OLDEST));
+
+        for (int i = 0; i < 50; i++) out.send(new TextMessage("m" + i));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> delivered.size() == 50);
+        for (int i = 0; i < 50; i++) assertThat(delivered.get(i)).isEqualTo("m" + i);
+    }
+
+    @Test
+    void dropsOldestFramesForSlowConsumer() throws Exception {
+        WebSocketSession ws = session(true);
+        OutboundSession out = open(ws, props(3, OverflowPolicy.DROP_OLDEST));
+
+        out.send(new TextMessage("first"));
+        await().atMost(Duration.ofSeconds(2)).until(() -> out.queueDepth() == 0); // first is on the wire
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) out.send(new TextMessage("m" + i));
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(500));
+
+        release.countDown();
+        await().atMost(Duration.ofSeconds(2)).until(() -> delivered.size() == 4);
+        assertThat(delivered).containsExactly("first", "m7", "m8", "m9");
+        assertThat(registry.get("chat.ws.outbound.dropped").counter().count()).isEqualTo(7);
+    }
+
+    @Test
+    void closesSlowConsumerWhenPolicyIsClose() throws Exception {
+        WebSocketSession ws = session(true);
+        OutboundSession out = open(ws, props(2, OverflowPolicy.CLOSE));
+
+        out.send(new TextMessage("first"));
+        await().atMost(Duration.ofSeconds(2)).until(() -> out.queueDepth() == 0);
+        out.send(new TextMessage("a"));
+        out.send(new TextMessage("b"));
+        boolean accepted = out.send(new TextMessage("c"));
+
+        assertThat(accepted).isFalse();
+        assertThat(out.isOpen()).isFalse();
+        verify(ws).close(any(CloseStatus.class));
+        assertThat(registry.get("chat.ws.slow.consumer").tag("action", "close").counter().count()).isEqualTo(1);
+    }
+
+    private OutboundSession open(WebSocketSession ws, WebSocketProperties props) {
+        writer = new OutboundWriter(props, ExecutionMode.platform(), registry);
+        return writer.open(ws);
+    }
+
+    private WebSocketSession session(boolean slow) throws Exception {
+        WebSocketSession ws = mock(WebSocketSession.class);
+        when(ws.isOpen()).thenReturn(true);
+        when(ws.getId()).thenReturn("s1");
+        doAnswer(inv -> {
+            if (slow) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            delivered.add(((WebSocketMessage<?>) inv.getArgument(0)).getPayload().toString());
+            return null;
+        }).when(ws).sendMessage(any());
+        return ws;
+    }
+
+    private static WebSocketProperties props(int maxDepth, OverflowPolicy policy) {
+        WebSocketProperties props = new WebSocketProperties();
+        props.setMaxQueueDepth(maxDepth);
+        props.setOverflowPolicy(policy);
+        props.setWriterThreads(2);
+        return props;
+    }
+}
@@ -0,0 +1,168 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.cluster.LocalClusterBackend;
+import com.assignmenthasan.chatapp.config.ClusterProperties;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.PresenceProperties;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * כמה מסגרות נוכחות יוצאות כשמספר החיבורים גדל
+ * לכל משתמש bench.peers שיחות עם משתמשים אקראיים וחיבור אחד עם caps=presence.
+ * bench.churn מהמשתמשים מתנתקים ומתחברים שוב (שני שינויים נפרדים לכל אחד, בחלונות נפרדים),
+ * ומשווים את המסגרות בפועל (כולל תמונת המצב לחיבור שחזר) לשידור לכל המחוברים,
+ * שגדל עם מספר החיבורים לכל שינוי ובריבוע שלו בסך הכול.
+ * mvn test -Pbench -Dtest=PresenceFanoutBenchmark
+ */
+@Tag("benchmark")
+class PresenceFanoutBenchmark {
+
+    private static final int[] CONNECTIONS = { 1_000, 5_000, 20_000 };
+    private static final int PEERS = Integer.getInteger("bench.peers", 20);
+    private static final double CHURN = Double.parseDouble(System.getProperty("bench.churn", "0.1"));
+
+    @Test
+    void presenceTrafficByConnectionCount() throws Exception {
+        System.out.printf("%8s %8s %12s %10s %14s %10s%n",
+                "conns", "changes", "frames", "per-change", "broadcast/chg", "flush-ms");
+        for (int n : CONNECTIONS) run(n);
+    }
+
+    private static void run(int users) throws Exception {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        WebSocketProperties wsProps = new WebSocketProperties();
+        wsProps.getCoalesce().setEnabled(false);
+        PresenceProperties props = new PresenceProperties();
+        props.setWindow(Duration.ofHours(1));
+        props.setPingInterval(Duration.ofHours(1));
+        props.setHeartbeatTimeout(Duration.ofHours(2));
+        props.setThreads(8);
+
+        ConversationIndex conversations = mock(ConversationIndex.class, withSettings().stubOnly());
+        when(conversations.recent(anyString(), anyInt())).thenAnswer(inv -> peersOf(inv.getArgument(0), users));
+
+        MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+        LocalClusterBackend backend = new LocalClusterBackend(new LocalClusterBackend.Hub());
+        OutboundWriter writer = new OutboundWriter(wsProps, ExecutionMode.platform(), meters);
+        SessionRegistry registry = new SessionRegistry(wsProps, meters);
+        ClusterRouter router = new ClusterRouter(registry, backend, backend, new ClusterProperties(), codec, meters);
+        PresenceNotifier presence = new PresenceNotifier(registry, router, conversations, codec, props,
+                ExecutionMode.platform(), meters);
+
+        AtomicLong frames = new AtomicLong();
+        List<OutboundSession> sessions = new ArrayList<>(users);
+        for (int u = 0; u < users; u++) sessions.add(connect(writer, registry, router, presence, "u" + u, frames));
+        awaitTracked(presence, users);
+        presence.flush();
+        awaitQuiet(frames);
+
+        int churn = (int) (users * CHURN);
+        long before = frames.get();
+        long flushNanos = 0;
+        for (int u = 0; u < churn; u++) {
+            String uid = "u" + u;
+            registry.unregister(uid, sessions.get(u));
+            sessions.get(u).release();
+            router.sessionClosed(uid);
+            presence.sessionClosed(uid);
+        }
+        long start = System.nanoTime();
+        presence.flush();
+        flushNanos += System.nanoTime() - start;
+        for (int u = 0; u < churn; u++) sessions.set(u, connect(writer, registry, router, presence, "u" + u, frames));
+        awaitTracked(presence, churn);
+        start = System.nanoTime();
+        presence.flush();
+        flushNanos += System.nanoTime() - start;
+        awaitQuiet(frames);
+
+        int changes = churn * 2;
+        long sent = frames.get() - before;
+        System.out.printf("%8d %8d %12d %10.1f %14d %10.1f%n", users, changes, sent,
+                (double) sent / changes, users - 1, flushNanos / 1e6);
+
+        presence.stop();
+        router.stop();
+        registry.stop();
+        writer.stop();
+    }
+
+    /** שיחות קבועות לכל משתמש, כך שכל הרצה רואה את אותו גרף */
+    private static List<Conversation> peersOf(String uid, int users) {
+        Random rnd = new Random(uid.hashCode());
+        List<Conversation> list = new ArrayList<>(PEERS);
+        for (int i = 0; i < PEERS; i++) {
+            Conversation c = new Conversation();
+            c.setParticipants(List.of(uid, "u" + rnd.nextInt(users)));
+            list.add(c);
+        }
+        return list;
+    }
+
+    private static OutboundSession connect(OutboundWriter writer, SessionRegistry registry, ClusterRouter router,
+                                           PresenceNotifier presence, String uid, AtomicLong frames) throws Exception {
+        // stubOnly: עשרות אלפי חיבורים מדומים בלי לשמור כל קריאה בזיכרון
+        WebSocketSession ws = mock(WebSocketSession.class, withSettings().stubOnly());
+        when(ws.getId()).thenReturn(uid + "-" + System.nanoTime());
+        when(ws.isOpen()).thenReturn(true);
+        when(ws.getUri()).thenReturn(URI.create("ws://localhost/ws/chat?caps=presence"));
+        doAnswer(inv -> {
+            if (((WebSocketMessage<?>) inv.getArgument(0)).getPayload().toString().contains("\"presence\"")) {
+                frames.incrementAndGet();
+            }
+            return null;
+        }).when(ws).sendMessage(any());
+        OutboundSession out = writer.open(ws);
+        registry.register(uid, out);
+        router.sessionOpened(uid);
+        presence.sessionOpened(uid, out);
+        return out;
+    }
+
+    /** ממתינה עד שהשיחות של u0..u(count-1) נטענו */
+    private static void awaitTracked(PresenceNotifier presence, int count) {
+        await().atMost(1, TimeUnit.MINUTES).until(() -> {
+            for (int u = 0; u < count; u++) {
+                if (!presence.tracks("u" + u)) return false;
+            }
+            return true;
+        });
+    }
+
+    /** ממתינה עד שתורי השליחה התרוקנו */
+    private static void awaitQuiet(AtomicLong frames) throws InterruptedException {
+        long last;
+        do {
+            last = frames.get();
+            Thread.sleep(200);
+        } while (frames.get() != last);
+    }
+}
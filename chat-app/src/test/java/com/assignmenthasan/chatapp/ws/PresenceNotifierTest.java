@@ -0,0 +1,205 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.PingMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.cluster.LocalClusterBackend;
+import com.assignmenthasan.chatapp.config.ClusterProperties;
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.PresenceProperties;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.model.Conversation;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PresenceNotifierTest {
+
+    private static final String ALICE_ONLINE = "{\"type\":\"presence\",\"uid\":\"alice\",\"online\":true}";
+    private static final String ALICE_OFFLINE = "{\"type\":\"presence\",\"uid\":\"alice\",\"online\":false}";
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final PresenceProperties props = new PresenceProperties();
+    private final ConversationIndex conversations = mock(ConversationIndex.class);
+    private final OutboundWriter writer;
+    private final SessionRegistry registry;
+    private final ClusterRouter router;
+    private final PresenceNotifier presence;
+    /** מה שכל חיבור קיבל, לפי שם החיבור */
+    private final Map<String, List<String>> inbox = new ConcurrentHashMap<>();
+
+    PresenceNotifierTest() {
+        WebSocketProperties wsProps = new WebSocketProperties();
+        wsProps.getCoalesce().setEnabled(false);
+        // החלון והסריקה רצים רק בקריאה ידנית
+        props.setWindow(Duration.ofHours(1));
+        props.setPingInterval(Duration.ofHours(1));
+        props.setHeartbeatTimeout(Duration.ofHours(2));
+
+        MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+        LocalClusterBackend backend = new LocalClusterBackend(new LocalClusterBackend.Hub());
+        writer = new OutboundWriter(wsProps, ExecutionMode.platform(), meters);
+        registry = new SessionRegistry(wsProps, meters);
+        router = new ClusterRouter(registry, backend, backend, new ClusterProperties(), codec, meters);
+        presence = new PresenceNotifier(registry, router, conversations, codec, props,
+                ExecutionMode.platform(), meters);
+
+        // alice מדברת עם bob ועם carol; dave לא מכיר אותה
+        conversations("alice", "bob", "carol");
+        conversations("bob", "alice");
+        conversations("carol", "alice");
+        conversations("dave");
+    }
+
+    @AfterEach
+    void tearDown() {
+        presence.stop();
+        router.stop();
+        registry.stop();
+        writer.stop();
+    }
+
+    private void conversations(String uid, String... peers) {
+        List<Conversation> list = new CopyOnWriteArrayList<>();
+        for (String p : peers) {
+            Conversation c = new Conversation();
+            c.setParticipants(List.of(uid, p));
+            list.add(c);
+        }
+        when(conversations.recent(eq(uid), anyInt())).thenReturn(list);
+    }
+
+    private OutboundSession connect(String name, String uid, String caps) throws Exception {
+        WebSocketSession ws = mock(WebSocketSession.class);
+        when(ws.getId()).thenReturn(name);
+        when(ws.isOpen()).thenReturn(true);
+        when(ws.getUri()).thenReturn(URI.create("ws://localhost/ws/chat" + (caps == null ? "" : "?caps=" + caps)));
+        List<String> frames = inbox.computeIfAbsent(name, k -> new CopyOnWriteArrayList<>());
+        doAnswer(inv -> {
+            WebSocketMessage<?> m = inv.getArgument(0);
+            frames.add(m instanceof PingMessage ? "ping" : m.getPayload().toString());
+            return null;
+        }).when(ws).sendMessage(any());
+
+        OutboundSession out = writer.open(ws);
+        registry.register(uid, out);
+        router.sessionOpened(uid);
+        presence.sessionOpened(uid, out);
+        await().until(() -> presence.tracks(uid));
+        return out;
+    }
+
+    private void disconnect(String uid, OutboundSession out) {
+        registry.unregister(uid, out);
+        out.release();
+        router.sessionClosed(uid);
+        presence.sessionClosed(uid);
+    }
+
+    private List<String> inbox(String name) {
+        return inbox.getOrDefault(name, List.of());
+    }
+
+    @Test
+    void presenceReachesOnlyOnlinePeersThatAskedForIt() throws Exception {
+        connect("bob-1", "bob", "presence");
+        connect("carol-1", "carol", null);
+        connect("dave-1", "dave", "presence");
+        presence.flush();
+
+        OutboundSession alice = connect("alice-1", "alice", null);
+        presence.flush();
+        await().until(() -> inbox("bob-1").contains(ALICE_ONLINE));
+
+        // מכשיר חדש של bob מקבל את מי שכבר מחובר מבין אנשי השיחה שלו
+        connect("bob-2", "bob", "presence");
+        await().until(() -> inbox("bob-2").contains(ALICE_ONLINE));
+
+        disconnect("alice", alice);
+        presence.flush();
+        await().until(() -> inbox("bob-1").contains(ALICE_OFFLINE));
+
+        // carol בלי caps=presence ו-dave בלי שיחה עם alice לא מקבלים כלום
+        assertThat(inbox("carol-1")).isEmpty();
+        assertThat(inbox("dave-1")).isEmpty();
+        assertThat(meters.get("chat.presence.updates").counter().count()).isEqualTo(5);
+    }
+
+    @Test
+    void reconnectInsideTheWindowIsNotAnnounced() throws Exception {
+        connect("bob-1", "bob", "presence");
+        OutboundSession alice = connect("alice-1", "alice", null);
+        presence.flush();
+        await().until(() -> inbox("bob-1").contains(ALICE_ONLINE));
+
+        disconnect("alice", alice);
+        connect("alice-2", "alice", null);
+        presence.flush();
+
+        // רגע לשליחות שאולי עוד בתור
+        Thread.sleep(100);
+        assertThat(inbox("bob-1")).containsExactly(ALICE_ONLINE);
+        assertThat(meters.get("chat.presence.suppressed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void typingIsThrottledPerSenderAndDroppedForOfflineTargets() throws Exception {
+        connect("bob-1", "bob", "presence");
+        connect("alice-1", "alice", null);
+
+        assertThat(presence.typing(typing("alice", "bob"))).isTrue();
+        assertThat(presence.typing(typing("alice", "bob"))).isFalse();
+        assertThat(presence.typing(typing("alice", "erin"))).isFalse();
+        await().until(() -> inbox("bob-1").contains("{\"type\":\"typing\",\"uid\":\"alice\"}"));
+
+        assertThat(meters.get("chat.presence.typing").tag("result", "throttled").counter().count()).isEqualTo(1);
+        assertThat(meters.get("chat.presence.typing").tag("result", "offline").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void silentSessionsArePingedThenClosed() throws Exception {
+        OutboundSession bob = connect("bob-1", "bob", "presence");
+        props.setPingInterval(Duration.ofMillis(1));
+        Thread.sleep(5);
+
+        presence.sweep();
+        await().until(() -> inbox("bob-1").contains("ping"));
+
+        props.setHeartbeatTimeout(Duration.ofMillis(1));
+        presence.sweep();
+        verify(bob.getSession()).close(CloseStatus.GOING_AWAY.withReason("Heartbeat timeout"));
+        assertThat(meters.get("chat.presence.evicted").counter().count()).isEqualTo(1);
+    }
+
+    private static ChatMessageDTO typing(String from, String to) {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setType(ChatMessageDTO.TYPE_TYPING);
+        dto.setSenderId(from);
+        dto.setReceiverId(to);
+        return dto;
+    }
+}
@@ -0,0 +1,107 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.assignmenthasan.chatapp.cluster.ClusterRouter;
+import com.assignmenthasan.chatapp.config.DeliveryProperties;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+import com.assignmenthasan.chatapp.dto.Receipt;
+import com.assignmenthasan.chatapp.service.ConversationIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ReceiptCoalescerTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final ConversationIndex conversations = mock(ConversationIndex.class);
+    private final ClusterRouter router = mock(ClusterRouter.class);
+    private final ReceiptCoalescer receipts;
+
+    ReceiptCoalescerTest() {
+        DeliveryProperties props = new DeliveryProperties();
+        // החלון נסגר רק בקריאה ידנית ל-flush
+        props.setReceiptWindow(Duration.ofHours(1));
+        receipts = new ReceiptCoalescer(conversations, router,
+                new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters), props, meters);
+    }
+
+    @AfterEach
+    void tearDown() {
+        receipts.stop();
+    }
+
+    private static ChatMessageDTO ack(String type, String from, String to, Long seq) {
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setType(type);
+        dto.setSenderId(from);
+        dto.setReceiverId(to);
+        dto.setSeq(seq);
+        return dto;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void burstOfAcksBecomesOneWriteAndOneFramePerConversation() {
+        // bob מאשר הודעה אחר הודעה, לא בסדר, ואז קורא עד 7
+        for (long seq : new long[] { 3, 1, 9, 4 }) {
+            assertThat(receipts.ack(ack("delivered", "bob", "alice", seq))).isTrue();
+        }
+        receipts.ack(ack("read", "bob", "alice", 7L));
+        receipts.ack(ack("read", "bob", "alice", 5L));
+        receipts.ack(ack("read", "bob", "carol", 2L));
+
+        receipts.flush();
+
+        ArgumentCaptor<Collection<Receipt>> written = ArgumentCaptor.forClass(Collection.class);
+        verify(conversations).advanceReceipts(written.capture());
+        assertThat(written.getValue()).containsExactlyInAnyOrder(
+                new Receipt("alice|bob", "bob", 9L, 7L),
+                new Receipt("bob|carol", "bob", 2L, 2L));
+
+        ArgumentCaptor<ChatFrame> frames = ArgumentCaptor.forClass(ChatFrame.class);
+        verify(router).sendToUser(eq("alice"), frames.capture(), eq(OutboundWriter.CAP_RECEIPTS));
+        assertThat(frames.getValue().text().getPayload()).isEqualTo(
+                "{\"type\":\"receipt\",\"conversationKey\":\"alice|bob\",\"uid\":\"bob\",\"delivered\":9,\"read\":7}");
+        verify(router).sendToUser(eq("carol"), any(ChatFrame.class), eq(OutboundWriter.CAP_RECEIPTS));
+        // המכשירים האחרים של bob מסתנכרנים מאותה מסגרת
+        verify(router, times(2)).sendToUser(eq("bob"), any(ChatFrame.class), eq(OutboundWriter.CAP_RECEIPTS));
+
+        assertThat(meters.get("chat.receipts.coalesced").summary().totalAmount()).isEqualTo(7);
+        assertThat(meters.get("chat.receipts.frames").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void deliveredOnlyAckLeavesReadUntouched() {
+        receipts.ack(ack("delivered", "bob", "alice", 4L));
+        receipts.flush();
+        receipts.flush();
+
+        verify(conversations, times(1)).advanceReceipts(List.of(new Receipt("alice|bob", "bob", 4L, null)));
+    }
+
+    @Test
+    void invalidAcksAreRejected() {
+        assertThat(receipts.ack(ack("read", "bob", "alice", null))).isFalse();
+        assertThat(receipts.ack(ack("read", "bob", "alice", 0L))).isFalse();
+        assertThat(receipts.ack(ack("seen", "bob", "alice", 3L))).isFalse();
+        assertThat(receipts.ack(ack("read", "bob", null, 3L))).isFalse();
+
+        receipts.flush();
+        verify(conversations, never()).advanceReceipts(any());
+    }
+}
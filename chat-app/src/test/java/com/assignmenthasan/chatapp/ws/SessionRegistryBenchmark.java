@@ -0,0 +1,103 @@
+package com.assignmenthasan.chatapp.ws;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+import com.assignmenthasan.chatapp.dto.ChatMessageDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * חיפוש חיבורים ופיזור הודעה בין שני משתמשים ב-SessionRegistry, מארבעה תהליכונים במקביל
+ * lookup: isOnline ו-sessionsOf למשתמש אקראי. fanout: deliver של אותה מסגרת לשני המכשירים של הנמען ושל השולח
+ * (הכנסה לתורים בלבד; הכתיבה עצמה רצה בתהליכוני הכותבים מול חיבור מדומה).
+ * mvn test -Pbench -Dtest=SessionRegistryBenchmark, או כל הבנצ'מרקים ל-JSON: mvn test -Pjmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class SessionRegistryBenchmark {
+
+    /** מכשירים לכל משתמש */
+    private static final int DEVICES = 2;
+
+    @Param({ "1000", "100000" })
+    public int users;
+
+    private SimpleMeterRegistry meters;
+    private OutboundWriter writer;
+    private SessionRegistry registry;
+    private ChatFrame frame;
+    private String[] uids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        meters = new SimpleMeterRegistry();
+        WebSocketProperties props = new WebSocketProperties();
+        props.getCoalesce().setEnabled(false);
+        writer = new OutboundWriter(props, ExecutionMode.platform(), meters);
+        registry = new SessionRegistry(props, meters);
+        uids = new String[users];
+        for (int u = 0; u < users; u++) {
+            uids[u] = "user-" + u;
+            for (int d = 0; d < DEVICES; d++) registry.register(uids[u], writer.open(new StubSession(uids[u] + "-" + d, null)));
+        }
+        ChatMessageDTO dto = new ChatMessageDTO();
+        dto.setSenderId(uids[0]);
+        dto.setReceiverId(uids[1]);
+        dto.setTimestamp("2025-01-01T10:00:00Z");
+        dto.setMessage("are we still meeting at 6pm today?");
+        frame = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters).frame(dto);
+        frame.text();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registry.stop();
+        writer.stop();
+    }
+
+    @Benchmark
+    public int lookup() {
+        String uid = uids[ThreadLocalRandom.current().nextInt(users)];
+        return registry.isOnline(uid) ? registry.sessionsOf(uid).size() : 0;
+    }
+
+    @Benchmark
+    public int fanout() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return registry.deliver(uids[rnd.nextInt(users)], uids[rnd.nextInt(users)], frame);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws Exception {
+        new Runner(new OptionsBuilder().include(SessionRegistryBenchmark.class.getName()).build()).run();
+    }
+}
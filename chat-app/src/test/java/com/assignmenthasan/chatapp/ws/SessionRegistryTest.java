@@ -0,0 +1,314 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.assignmenthasan.chatapp.config.ExecutionMode;
+import com.assignmenthasan.chatapp.config.WebSocketProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SessionRegistryTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final SessionRegistry registry = new SessionRegistry(props(), meters);
+    private final OutboundWriter writer = new OutboundWriter(props(), ExecutionMode.platform(), meters);
+    private final AtomicInteger ids = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong writesToClosed = new AtomicLong();
+
+    @AfterEach
+    void tearDown() {
+        registry.stop();
+        writer.stop();
+    }
+
+    @Test
+    void secondDeviceDoesNotReplaceFirst() {
+        FakeSession phone = new FakeSession();
+        FakeSession laptop = new FakeSession();
+        OutboundSession a = connect("alice", phone);
+        OutboundSession b = connect("alice", laptop);
+
+        assertThat(registry.sessionsOf("alice")).containsExactlyInAnyOrder(a, b);
+
+        // סגירת המכשיר הישן לא מוחקת את החדש
+        disconnect("alice", a, phone);
+        assertThat(registry.sessionsOf("alice")).containsExactly(b);
+        assertThat(registry.isOnline("alice")).isTrue();
+    }
+
+    @Test
+    void deliverReachesAllDevicesOfBothParticipantsWithOneFrame() throws Exception {
+        FakeSession bob1 = new FakeSession();
+        FakeSession bob2 = new FakeSession();
+        FakeSession aliceTab = new FakeSession();
+        FakeSession alicePhone = new FakeSession();
+        connect("bob", bob1);
+        connect("bob", bob2);
+        connect("alice", aliceTab);
+        connect("alice", alicePhone);
+
+        TextMessage frame = new TextMessage("{\"message\":\"hi\"}");
+        assertThat(registry.deliver("alice", "bob", frame)).isEqualTo(2);
+
+        awaitDelivered(4);
+        for (FakeSession s : List.of(bob1, bob2, aliceTab, alicePhone)) {
+            assertThat(s.frames).containsExactly(frame);
+        }
+    }
+
+    @Test
+    void noLostSessionsAndNoFramesToClosedSessionsUnderChurn() throws Exception {
+        int threads = 16;
+        int iterations = 3_000;
+        String[] uids = {"u0", "u1", "u2", "u3", "u4", "u5", "u6", "u7"};
+        Map<OutboundSession, String> live = new ConcurrentHashMap<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                List<Object[]> mine = new ArrayList<>();
+                TextMessage frame = new TextMessage("x");
+                try {
+                    for (int i = 0; i < iterations; i++) {
+                        int op = rnd.nextInt(3);
+                        if (op == 0 || mine.isEmpty()) {
+                            String uid = uids[rnd.nextInt(uids.length)];
+                            FakeSession fs = new FakeSession();
+                            OutboundSession out = connect(uid, fs);
+                            live.put(out, uid);
+                            mine.add(new Object[] {uid, out, fs});
+                        } else if (op == 1) {
+                            Object[] victim = mine.remove(rnd.nextInt(mine.size()));
+                            live.remove(victim[1]);
+                            disconnect((String) victim[0], (OutboundSession) victim[1], (FakeSession) victim[2]);
+                        } else {
+                            registry.sendToUser(uids[rnd.nextInt(uids.length)], frame);
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+
+        Set<OutboundSession> registered = new HashSet<>();
+        for (String uid : uids) {
+            for (OutboundSession s : registry.sessionsOf(uid)) {
+                assertThat(live.get(s)).isEqualTo(uid);
+                registered.add(s);
+            }
+        }
+        assertThat(registered).isEqualTo(live.keySet());
+        assertThat(registry.sessionCount()).isEqualTo(live.size());
+        assertThat(delivered.get()).isPositive();
+
+        // כל חיבור שנסגר לא מקבל מסגרות נוספות; ניסיונות כתיבה שנתפסו באמצע סגירה נדחים כמו במכולה
+        assertThat(writesToClosed.get()).isLessThan(delivered.get() / 100 + 10);
+    }
+
+    @Test
+    void batchingSessionsReceiveOneArrayFramePerWindow() throws Exception {
+        MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+        // חלון ארוך ומסגרת מלאה אחרי 5 הודעות – השליחה נקבעת רק לפי maxMessages
+        WebSocketProperties props = props();
+        props.getCoalesce().setWindow(Duration.ofHours(1));
+        props.getCoalesce().setMaxMessages(5);
+        SessionRegistry coalescing = new SessionRegistry(props, meters);
+        FakeSession batching = new FakeSession(true);
+        FakeSession legacy = new FakeSession(false);
+        coalescing.register("bob", writer.open(batching.session));
+        coalescing.register("bob", writer.open(legacy.session));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(coalescing.sendToUser("bob", codec.frameOfJson("{\"message\":\"m" + i + "\"}"))).isEqualTo(2);
+        }
+
+        awaitDelivered(6);
+        // לקוח ישן מקבל מסגרת לכל הודעה; לקוח עם caps=batch מקבל מערך אחד לפי הסדר
+        assertThat(legacy.frames).hasSize(5);
+        assertThat(batching.frames).hasSize(1);
+        assertThat(((TextMessage) batching.frames.get(0)).getPayload()).isEqualTo(
+                "[{\"message\":\"m0\"},{\"message\":\"m1\"},{\"message\":\"m2\"},"
+                        + "{\"message\":\"m3\"},{\"message\":\"m4\"}]");
+        assertThat(meters.get("chat.ws.coalesce.messages").summary().totalAmount()).isEqualTo(5);
+        coalescing.stop();
+    }
+
+    @Test
+    void fullBatchesAndWindowFlushesKeepEachSendersOrder() throws Exception {
+        MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+        // חלון קצר ומסגרות קטנות, כך שמסגרת מלאה ושליחת סוף החלון מתחרות כל הזמן
+        WebSocketProperties props = props();
+        props.getCoalesce().setWindow(Duration.ofMillis(1));
+        props.getCoalesce().setMaxMessages(3);
+        SessionRegistry coalescing = new SessionRegistry(props, meters);
+        FakeSession bob = new FakeSession(true);
+        coalescing.register("bob", writer.open(bob.session));
+
+        int threads = 8;
+        int perThread = 2_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int sender = t;
+            pool.execute(() -> {
+                try {
+                    for (int i = 0; i < perThread; i++) {
+                        coalescing.sendToUser("bob", codec.frameOfJson("{\"message\":\"t" + sender + "-" + i + "\"}"));
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertThat(done.await(60, TimeUnit.SECONDS)).isTrue();
+        pool.shutdown();
+
+        int[] next = new int[threads];
+        Pattern message = Pattern.compile("t(\\d+)-(\\d+)");
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        int seen = 0;
+        int read = 0;
+        while (seen < threads * perThread && System.nanoTime() < deadline) {
+            List<Object> frames;
+            synchronized (bob) {
+                frames = new ArrayList<>(bob.frames.subList(read, bob.frames.size()));
+            }
+            read += frames.size();
+            for (Object f : frames) {
+                Matcher m = message.matcher(((TextMessage) f).getPayload());
+                while (m.find()) {
+                    int sender = Integer.parseInt(m.group(1));
+                    assertThat(Integer.parseInt(m.group(2))).as("order of sender %d", sender).isEqualTo(next[sender]);
+                    next[sender]++;
+                    seen++;
+                }
+            }
+            if (frames.isEmpty()) Thread.sleep(5);
+        }
+        assertThat(seen).isEqualTo(threads * perThread);
+        coalescing.stop();
+    }
+
+    @Test
+    void capabilityFramesReachOnlySessionsThatAskedForThem() throws Exception {
+        MessageCodec codec = new MessageCodec(Jackson2ObjectMapperBuilder.json().build(), meters);
+        FakeSession modern = new FakeSession(URI.create("ws://localhost/ws/chat?token=t&caps=batch,receipts"));
+        FakeSession legacy = new FakeSession();
+        connect("bob", modern);
+        connect("bob", legacy);
+
+        assertThat(registry.sendToUser("bob", codec.frameOfJson("{\"type\":\"receipt\"}"), OutboundWriter.CAP_RECEIPTS))
+                .isEqualTo(1);
+
+        awaitDelivered(1);
+        assertThat(modern.frames).hasSize(1);
+        assertThat(legacy.frames).isEmpty();
+    }
+
+    private OutboundSession connect(String uid, FakeSession fs) {
+        OutboundSession out = writer.open(fs.session);
+        registry.register(uid, out);
+        return out;
+    }
+
+    /** מדמה את הסדר האמיתי: החיבור נסגר ואז afterConnectionClosed מסיר אותו */
+    private void disconnect(String uid, OutboundSession out, FakeSession fs) {
+        fs.close();
+        registry.unregister(uid, out);
+        out.release();
+    }
+
+    private void awaitDelivered(long n) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+        while (delivered.get() < n && System.nanoTime() < deadline) Thread.sleep(5);
+    }
+
+    private static WebSocketProperties props() {
+        WebSocketProperties props = new WebSocketProperties();
+        props.setWriterThreads(4);
+        props.setMaxQueueDepth(100_000);
+        props.setBufferSizeLimit(Integer.MAX_VALUE);
+        return props;
+    }
+
+    /** חיבור מדומה שמתנהג כמו המכולה: כתיבה אחרי סגירה נכשלת ב-IOException */
+    private final class FakeSession {
+        final WebSocketSession session = mock(WebSocketSession.class);
+        final List<Object> frames = new ArrayList<>();
+        private boolean open = true;
+
+        FakeSession() {
+            this(false);
+        }
+
+        FakeSession(boolean batching) {
+            this(batching ? URI.create("ws://localhost/ws/chat?token=t&caps=batch") : null);
+        }
+
+        FakeSession(URI uri) {
+            when(session.getId()).thenReturn("s" + ids.incrementAndGet());
+            if (uri != null) when(session.getUri()).thenReturn(uri);
+            when(session.isOpen()).thenAnswer(inv -> isOpen());
+            try {
+                doAnswer(inv -> {
+                    write(inv.getArgument(0));
+                    return null;
+                }).when(session).sendMessage(any());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        synchronized boolean isOpen() {
+            return open;
+        }
+
+        synchronized void close() {
+            open = false;
+        }
+
+        synchronized void write(Object frame) throws IOException {
+            if (!open) {
+                writesToClosed.incrementAndGet();
+                throw new IOException("closed");
+            }
+            frames.add(frame);
+            delivered.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.assignmenthasan.chatapp.ws;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.assignmenthasan.chatapp.config.MetricsProperties;
+import com.assignmenthasan.chatapp.ws.StageMetrics.Inbound;
+import com.assignmenthasan.chatapp.ws.StageMetrics.Stage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class StageMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MetricsProperties props = new MetricsProperties();
+    private final StageMetrics stages = new StageMetrics(props, registry);
+
+    private long count(Stage stage) {
+        return registry.get("chat.ws.stage").tag("stage", stage.name().toLowerCase()).timer().count();
+    }
+
+    @Test
+    void lapsRecordEachStageAndChainTheirTimes() throws Exception {
+        long start = stages.start();
+        Thread.sleep(2);
+        long t = stages.lap(Stage.DECODE, start);
+        t = stages.lap(Stage.ADMIT, t);
+        stages.lap(Stage.TOTAL, start);
+
+        assertThat(count(Stage.DECODE)).isEqualTo(1);
+        assertThat(count(Stage.ADMIT)).isEqualTo(1);
+        assertThat(count(Stage.PERSIST)).isZero();
+        assertThat(registry.get("chat.ws.stage").tag("stage", "total").timer().totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    void unsampledFramesSkipTimersButStillCount() {
+        props.setSampleRate(0.0);
+        for (int i = 0; i < 100; i++) {
+            long start = stages.start();
+            assertThat(start).isEqualTo(StageMetrics.NOT_SAMPLED);
+            stages.lap(Stage.TOTAL, stages.lap(Stage.DECODE, start));
+            stages.received(Inbound.MESSAGE, 3);
+        }
+        assertThat(count(Stage.DECODE)).isZero();
+        assertThat(count(Stage.TOTAL)).isZero();
+        assertThat(registry.get("chat.ws.inbound.frames").counter().count()).isEqualTo(100);
+        assertThat(registry.get("chat.ws.inbound").tag("kind", "message").counter().count()).isEqualTo(300);
+    }
+
+    @Test
+    void partialSampleRateMeasuresAboutThatShare() {
+        props.setSampleRate(0.25);
+        for (int i = 0; i < 10_000; i++) stages.lap(Stage.TOTAL, stages.start());
+        assertThat(count(Stage.TOTAL)).isBetween(2_000L, 3_000L);
+    }
+}
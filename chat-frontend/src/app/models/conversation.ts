@@ -2,7 +2,17 @@
  * תקציר שיחה לתצוגת רשימת "אחרונות".
  */
 export interface ConversationSummary {
+  /** הצד השני, או מזהה הקבוצה (g_...) בשיחה קבוצתית */
   otherUid: string;
   otherEmail: string | null;
   lastTimestampIso: string | null;
+  /** תחילת ההודעה האחרונה */
+  preview?: string | null;
+  /** סימני מים ברצף המסירה: עד איפה קראתי, ועד איפה הצד השני קיבל/קרא */
+  readWatermark?: number | null;
+  otherReadWatermark?: number | null;
+  otherDeliveredWatermark?: number | null;
+  /** רק בשיחה קבוצתית */
+  groupName?: string | null;
+  memberCount?: number | null;
 }
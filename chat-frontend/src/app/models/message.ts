@@ -7,4 +7,15 @@ export interface Message {
   receiverId: string;
   timestamp: string; // ISO string
   message: string;
+  /** מספרי המסירה ברצף של השולח ושל הנמען (מהשרת) */
+  senderSeq?: number;
+  receiverSeq?: number;
+}
+
+/**
+ * עמוד מהיסטוריית שיחה; nextCursor ממשיך לעמוד ישן יותר (null כשאין עוד).
+ */
+export interface MessagePage {
+  messages: Message[];
+  nextCursor: string | null;
 }
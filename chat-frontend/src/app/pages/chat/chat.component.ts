@@ -599,6 +599,10 @@ export class ChatComponent implements OnInit, OnDestroy {
         this.error.set('User not found');
         return;
       }
+      if (code === 'RATE_LIMITED') {
+        this.error.set('Too many lookups, try again in a few seconds');
+        return;
+      }
       this.error.set('Failed to resolve user');
     }
   }
@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
 import { HttpClient, HttpHeaders } from '@angular/common/http';
 import { AuthService } from './auth.service';
-import { Message } from '../models/message';
+import { Message, MessagePage } from '../models/message';
 import { ConfigService } from './config.service';
 
 @Injectable({ providedIn: 'root' })
@@ -23,14 +23,26 @@ export class ChatService {
    * @param withUser מזהה המשתמש השני
    * @param limit מספר הודעות מירבי להחזרה
    */
-  async getHistory(withUser: string, limit = 50) {
+  async getHistory(withUser: string, limit = 50): Promise<Message[]> {
+    const page = await this.getHistoryPage(withUser, limit);
+    return page?.messages ?? [];
+  }
+
+  /**
+   * מחזיר עמוד מהיסטוריית ההודעות; להמשך גלילה אחורה מעבירים את nextCursor כ־before.
+   * @param withUser מזהה המשתמש השני
+   * @param limit גודל העמוד
+   * @param before סמן מעמוד קודם (אופציונלי)
+   */
+  async getHistoryPage(withUser: string, limit = 50, before?: string) {
     const token = await this.auth.user?.getIdToken();
     const headers = new HttpHeaders({ Authorization: `Bearer ${token}` });
+    const cursor = before ? `&before=${encodeURIComponent(before)}` : '';
     return this.http
-      .get<Message[]>(
+      .get<MessagePage>(
         `${this.config.apiBaseUrl}/api/messages?withUser=${encodeURIComponent(
           withUser
-        )}&limit=${limit}`,
+        )}&limit=${limit}${cursor}`,
         { headers }
       )
       .toPromise();
@@ -120,7 +132,7 @@ export class ChatService {
 
   /**
    * מאתר משתמש לפי אימייל או UID דרך ה־backend ומטיל שגיאות ייעודיות על פי סטטוס.
-   * @throws שגיאה עם code: 'SELF' | 'NOT_FOUND' | 'RESOLVE_FAILED' | 'BAD_REQUEST'
+   * @throws שגיאה עם code: 'SELF' | 'NOT_FOUND' | 'RESOLVE_FAILED' | 'BAD_REQUEST' | 'RATE_LIMITED'
    */
   async resolveUser(input: {
     email?: string;
@@ -163,6 +175,11 @@ export class ChatService {
       err.code = 'NOT_FOUND';
       throw err;
     }
+    if (res.status === 429) {
+      const err: any = new Error('RATE_LIMITED');
+      err.code = 'RATE_LIMITED';
+      throw err;
+    }
     const err: any = new Error('RESOLVE_FAILED');
     err.code = 'RESOLVE_FAILED';
     throw err;